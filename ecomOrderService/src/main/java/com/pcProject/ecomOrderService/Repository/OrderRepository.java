@@ -1,6 +1,8 @@
 package com.pcProject.ecomOrderService.Repository;
 
 import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -15,4 +17,8 @@ public interface OrderRepository extends JpaRepository<OrderDetails,Integer> {
     List<OrderDetails> findAllByProductName(String productName);
     List<OrderDetails> findAllByUserName(String userName);
     List<OrderDetails> findAllByUserNameAndProductName(String userName, String productName);
+    // Oldest order of the User Product with the given payment status, served by idx_order_user_product_payment
+    OrderDetails findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(String userName, String productName, PaymentStatus paymentStatus);
+    // Keyset page, the next page starts after the last orderId returned
+    List<OrderDetails> findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(String userName, int orderId, Limit limit);
 }
@@ -0,0 +1,39 @@
+package com.pcProject.ecomOrderService.Repository;
+
+import com.pcProject.ecomOrderService.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent,Long> {
+    List<OutboxEvent> findAllByOrderByOutboxEventId(Pageable pageable);
+
+    // The oldest events, locked until the caller's transaction ends. A lock timeout of 0 is FOR UPDATE NOWAIT,
+    // a relay finding them locked fails at once since another replica is claiming them
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = "0"))
+    @Query(value = "Select e from OutboxEvent e order by e.outboxEventId")
+    List<OutboxEvent> findBatchToPublish(Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Update OutboxEvent e set e.leasedBy = :leasedBy, e.leasedUntil = :leasedUntil where e.outboxEventId in :outboxEventIds")
+    int lease(Collection<Long> outboxEventIds, String leasedBy, long leasedUntil);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Update OutboxEvent e set e.leasedBy = null, e.leasedUntil = null where e.leasedBy = :leasedBy")
+    int releaseLease(String leasedBy);
+}
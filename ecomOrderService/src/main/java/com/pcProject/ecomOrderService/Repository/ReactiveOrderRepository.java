@@ -0,0 +1,100 @@
+package com.pcProject.ecomOrderService.Repository;
+
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// R2DBC reads of order_details for the reactive query paths, the same queries and indexes as OrderRepository.
+// The pool is kept out of the context on purpose, a ConnectionFactory bean makes Boot skip the JDBC DataSource
+@Repository
+public class ReactiveOrderRepository {
+
+    private static final String SELECT_ORDER_DETAILS = "select order_id, user_name, product_name, order_status, payment_status from order_details ";
+    private static final OrderStatus.DbConverter ORDER_STATUS = new OrderStatus.DbConverter();
+    private static final PaymentStatus.DbConverter PAYMENT_STATUS = new PaymentStatus.DbConverter();
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public ReactiveOrderRepository(@Value("${ecom.orders.r2dbc.url}") String url,
+                                   @Value("${spring.datasource.username}") String username,
+                                   @Value("${spring.datasource.password}") String password,
+                                   @Value("${ecom.orders.r2dbc.pool.max-size:20}") int maxPoolSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(0)
+                .maxSize(maxPoolSize)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    public Flux<OrderDetails> findAllByUserName(String userName) {
+        return databaseClient.sql(SELECT_ORDER_DETAILS + "where user_name = :userName")
+                .bind("userName", userName)
+                .map(ReactiveOrderRepository::toOrderDetails)
+                .all();
+    }
+
+    // Keyset page, the next page starts after the last orderId returned
+    public Flux<OrderDetails> findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(String userName, int orderId, int limit) {
+        return databaseClient.sql(SELECT_ORDER_DETAILS + "where user_name = :userName and order_id > :orderId order by order_id limit :limit")
+                .bind("userName", userName)
+                .bind("orderId", orderId)
+                .bind("limit", limit)
+                .map(ReactiveOrderRepository::toOrderDetails)
+                .all();
+    }
+
+    // Oldest order of the User Product with the given payment status, served by idx_order_user_product_payment
+    public Mono<OrderDetails> findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(String userName, String productName, PaymentStatus paymentStatus) {
+        return databaseClient.sql(SELECT_ORDER_DETAILS + "where user_name = :userName and product_name = :productName and payment_status = :paymentStatus order by order_id limit 1")
+                .bind("userName", userName)
+                .bind("productName", productName)
+                .bind("paymentStatus", PAYMENT_STATUS.convertToDatabaseColumn(paymentStatus))
+                .map(ReactiveOrderRepository::toOrderDetails)
+                .one();
+    }
+
+    // All orders of a User in orderId order, read one keyset page at a time as the subscriber asks for more
+    public Flux<OrderDetails> streamAllByUserName(String userName, int pageSize) {
+        return findPage(userName, 0, pageSize)
+                .expand(page -> page.size() < pageSize ? Mono.empty() : findPage(userName, page.get(page.size() - 1).getOrderId(), pageSize))
+                // Prefetch of one page, the next one is only read once this one has been taken
+                .concatMapIterable(page -> page, 1);
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+
+    private Mono<List<OrderDetails>> findPage(String userName, int afterOrderId, int pageSize) {
+        return findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(userName, afterOrderId, pageSize).collectList();
+    }
+
+    private static OrderDetails toOrderDetails(Readable row) {
+        return new OrderDetails(row.get("order_id", Integer.class),
+                row.get("user_name", String.class),
+                row.get("product_name", String.class),
+                ORDER_STATUS.convertToEntityAttribute(row.get("order_status", Byte.class)),
+                PAYMENT_STATUS.convertToEntityAttribute(row.get("payment_status", Byte.class)));
+    }
+}
@@ -0,0 +1,43 @@
+package com.pcProject.ecomOrderService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// spring.threads.virtual.enabled for the executors Spring Boot doesn't build itself. Virtual threads need Java 21,
+// on an older runtime the switch is ignored with a warning and platform threads are kept
+@Slf4j
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean supported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    public static boolean enabled(boolean requested) {
+        if (requested && !supported())
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads, using platform threads", Runtime.version().feature());
+        return requested && supported();
+    }
+
+    public static AsyncTaskExecutor taskExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    // One new virtual thread per task like Executors.newVirtualThreadPerTaskExecutor, written against Java 17.
+    // Idle threads end at once, nothing is pooled
+    public static ExecutorService newThreadPerTaskExecutor(String threadNamePrefix) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory());
+    }
+}
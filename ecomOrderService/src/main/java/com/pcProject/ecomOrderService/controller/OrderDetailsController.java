@@ -1,13 +1,17 @@
 package com.pcProject.ecomOrderService.controller;
 
 import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderDetailsPage;
 import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.UserCart;
 import com.pcProject.ecomOrderService.model.UserProducts;
 import com.pcProject.ecomOrderService.model.UserProductsResponse;
 import com.pcProject.ecomOrderService.service.OrderDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -25,6 +29,20 @@ public class OrderDetailsController {
         return orderService.getAllOrderDetails(userName);
     }
 
+    // One page of a user's orders, pass the returned nextOrderId as afterOrderId for the next page
+    @GetMapping("getOrderDetailsPage/{userName}")
+    public ResponseEntity<UserProductsResponse<OrderDetailsPage>> getOrderDetailsPage(@PathVariable String userName,
+                                                                                     @RequestParam(defaultValue = "0") int afterOrderId,
+                                                                                     @RequestParam(defaultValue = "100") int limit){
+        return orderService.getOrderDetailsPage(userName, afterOrderId, limit);
+    }
+
+    // All orders of a user as NDJSON, one order per line written while the orders are read
+    @GetMapping(value = "streamOrderDetails/{userName}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamOrderDetails(@PathVariable String userName){
+        return orderService.streamOrderDetails(userName);
+    }
+
     @PostMapping("getOneOrderDetails")
     public ResponseEntity<UserProductsResponse<OrderDetails>> getOneOrderDetails(@RequestBody UserProducts userProduct){
         return orderService.getOneOrderDetails(userProduct);
@@ -36,6 +54,12 @@ public class OrderDetailsController {
         return orderService.addOrderDetails(products);
     }
 
+    // Order every Product in a User's cart at once
+    @PostMapping("checkoutCart")
+    public ResponseEntity<UserProductsResponse<List<OrderDetails>>> checkoutCart(@RequestBody UserCart cart){
+        return orderService.checkoutCart(cart);
+    }
+
     // Delete an ordered Product for a User
     @DeleteMapping("deleteOrderDetails")
     public ResponseEntity<UserProductsResponse<OrderDetailsWrapper>> deleteOrderDetails(@RequestBody OrderDetailsWrapper orderDetailsWrapper){
@@ -47,4 +71,24 @@ public class OrderDetailsController {
     public ResponseEntity<UserProductsResponse<OrderDetails>> updateOrderStatus(@PathVariable int orderId){
         return orderService.updateOrderStatus(orderId);
     }
+
+    @GetMapping("getUserCacheStats")
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getUserCacheStats(){
+        return orderService.getUserCacheStats();
+    }
+
+    @GetMapping("getPlacementStats")
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getPlacementStats(){
+        return orderService.getPlacementStats();
+    }
+
+    @GetMapping("getLoadBalancerStats")
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getLoadBalancerStats(){
+        return orderService.getLoadBalancerStats();
+    }
+
+    @GetMapping("getResilienceStats")
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getResilienceStats(){
+        return orderService.getResilienceStats();
+    }
 }
@@ -7,6 +7,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("payment")
 public class PaymentDetailsController {
@@ -28,4 +30,9 @@ public class PaymentDetailsController {
     public ResponseEntity<UserProductsResponse<String>> settleAllPayment(@PathVariable String userName){
         return paymentService.settleAllPayment(userName);
     }
+
+    @GetMapping("getPriceCacheStats")
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getPriceCacheStats(){
+        return paymentService.getPriceCacheStats();
+    }
 }
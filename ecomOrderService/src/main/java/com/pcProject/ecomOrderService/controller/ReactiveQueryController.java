@@ -0,0 +1,45 @@
+package com.pcProject.ecomOrderService.controller;
+
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.UserProducts;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import com.pcProject.ecomOrderService.service.ReactiveQueryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// Non-blocking versions of the order and payment reads, same paths under /reactive and same answers. The request
+// thread goes back to Tomcat while ecomUsers, ecomProducts and the database answer
+@RestController
+@RequestMapping("reactive")
+public class ReactiveQueryController {
+
+    @Autowired
+    private ReactiveQueryService reactiveQueryService;
+
+    @GetMapping("order/getAllOrderDetails/{userName}")
+    public Mono<ResponseEntity<UserProductsResponse<List<OrderDetails>>>> getAllOrderDetails(@PathVariable String userName){
+        return reactiveQueryService.getAllOrderDetails(userName);
+    }
+
+    // All orders of a user as NDJSON, a slow client slows down the reads instead of having them buffered
+    @GetMapping(value = "order/streamOrderDetails/{userName}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<OrderDetails> streamOrderDetails(@PathVariable String userName){
+        return reactiveQueryService.streamOrderDetails(userName);
+    }
+
+    @PostMapping("order/getOneOrderDetails")
+    public Mono<ResponseEntity<UserProductsResponse<OrderDetails>>> getOneOrderDetails(@RequestBody UserProducts userProduct){
+        return reactiveQueryService.getOneOrderDetails(userProduct);
+    }
+
+    @GetMapping("payment/totalPayment/{userName}")
+    public Mono<ResponseEntity<UserProductsResponse<String>>> getAllPayment(@PathVariable String userName){
+        return reactiveQueryService.getAllPayment(userName);
+    }
+}
@@ -1,18 +1,30 @@
 package com.pcProject.ecomOrderService.feignRepository;
 
+import com.pcProject.ecomOrderService.model.ProductQuantity;
 import com.pcProject.ecomOrderService.model.ProductWrapper;
 import com.pcProject.ecomOrderService.model.UserProductsResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+import java.util.Map;
 
 @FeignClient("ECOMPRODUCTS")
 public interface EcomProductService {
 
+    // The placement id lets ecomProducts release the units later when the answer is lost
     @PostMapping ("/product/consumeProduct")
-    public ResponseEntity<UserProductsResponse<ProductWrapper>> consumeProduct(@RequestBody ProductWrapper product);
+    public ResponseEntity<UserProductsResponse<ProductWrapper>> consumeProduct(@RequestBody ProductWrapper product, @RequestParam("placementId") String placementId);
+
+    @PostMapping("/product/consumeProducts")
+    public ResponseEntity<UserProductsResponse<List<ProductQuantity>>> consumeProducts(@RequestBody List<ProductQuantity> products, @RequestParam("placementId") String placementId);
 
     @PostMapping("/product/getProductValue")
     public ResponseEntity<UserProductsResponse<String>> getProductValue(@RequestBody ProductWrapper product);
+
+    @PostMapping("/product/getProductValues")
+    public ResponseEntity<UserProductsResponse<Map<String,Integer>>> getProductValues(@RequestBody List<String> productNames);
 }
\ No newline at end of file
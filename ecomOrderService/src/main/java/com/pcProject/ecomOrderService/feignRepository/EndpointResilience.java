@@ -0,0 +1,293 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import feign.FeignException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreaker;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Guards the calls of one Feign endpoint. A semaphore bulkhead caps the threads it can hold, a count based circuit
+// breaker fails fast once most recent calls failed, the caller stops waiting after a timeout derived from the
+// latency the endpoint has shown, and idempotent reads may send a second attempt when the first one is slower than usual.
+// Mutating endpoints only get the bulkhead and the circuit breaker: a caller that stopped waiting couldn't tell whether
+// the change was made, so they are waited for up to Feign's read timeout and never sent twice
+@Slf4j
+public class EndpointResilience implements CircuitBreaker {
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    public record Policy(int failureRateThreshold, int slidingWindow, int minimumCalls, long openMillis,
+                         int maxConcurrentCalls, int timeoutPercentile, double timeoutMultiplier,
+                         long minTimeoutMillis, long maxTimeoutMillis, boolean hedged, int hedgePercentile,
+                         boolean mutating) {
+    }
+
+    // Below this many samples the percentiles mean little, the maximum timeout applies and nothing is hedged
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final String endpoint;
+    private final Policy policy;
+    private final Executor executor;
+    private final Semaphore bulkhead;
+    private final LatencyWindow latencies = new LatencyWindow(200);
+    // Outcomes of the last calls, true for a failure
+    private final boolean[] outcomes;
+    private int nextOutcome;
+    private int recordedOutcomes;
+    private int failedOutcomes;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private boolean probing;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejectedByCircuit = new LongAdder();
+    private final LongAdder rejectedByBulkhead = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public EndpointResilience(String endpoint, Policy policy, Executor executor) {
+        this.endpoint = endpoint;
+        this.policy = policy;
+        this.executor = executor;
+        this.bulkhead = new Semaphore(policy.maxConcurrentCalls());
+        this.outcomes = new boolean[policy.slidingWindow()];
+    }
+
+    @Override
+    public <T> T run(Supplier<T> toRun, Function<Throwable, T> fallback) {
+        calls.increment();
+        if (!bulkhead.tryAcquire()) {
+            rejectedByBulkhead.increment();
+            return fallback.apply(new RejectedExecutionException(endpoint + " already has " + policy.maxConcurrentCalls() + " calls in flight"));
+        }
+        Permission permission = acquirePermission();
+        if (permission == Permission.REJECTED) {
+            bulkhead.release();
+            rejectedByCircuit.increment();
+            return fallback.apply(new RejectedExecutionException(endpoint + " circuit breaker is open"));
+        }
+        try {
+            T result = policy.mutating() ? executeInPlace(toRun) : execute(toRun, permission == Permission.PROBE);
+            onResult(false);
+            return result;
+        } catch (Throwable e) {
+            onResult(isFailure(e));
+            return fallback.apply(e);
+        }
+    }
+
+    // On the caller's thread, only Feign's own timeouts end the call
+    private <T> T executeInPlace(Supplier<T> toRun) {
+        long start = System.nanoTime();
+        try {
+            T result = toRun.get();
+            latencies.record(System.nanoTime() - start);
+            return result;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    // A probe gets the maximum timeout, so an endpoint that became slower for good is measured again
+    private <T> T execute(Supplier<T> toRun, boolean probe) throws Throwable {
+        long timeoutMillis = probe ? policy.maxTimeoutMillis() : timeoutMillis();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pendingAttempts = new AtomicInteger(1);
+        attempt(toRun, result, pendingAttempts, deadline, false);
+
+        long hedgeDelayMillis = probe ? 0 : hedgeDelayMillis();
+        if (hedgeDelayMillis > 0 && hedgeDelayMillis < timeoutMillis) {
+            CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS, executor).execute(() -> {
+                // The hedge needs a permit of its own, a saturated endpoint is not sent more work
+                if (result.isDone() || !bulkhead.tryAcquire())
+                    return;
+                pendingAttempts.incrementAndGet();
+                hedges.increment();
+                attempt(toRun, result, pendingAttempts, deadline, true);
+            });
+        }
+
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new TimeoutException(endpoint + " did not answer within " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    // The permit is held until the call really ends, a caller that gave up doesn't free the thread stuck on it.
+    // Calls that ended after the caller gave up are left out of the latencies, or the timeout would grow with them
+    private <T> void attempt(Supplier<T> toRun, CompletableFuture<T> result, AtomicInteger pendingAttempts, long deadline, boolean hedge) {
+        long start = System.nanoTime();
+        CompletableFuture.supplyAsync(toRun, executor).whenComplete((value, e) -> {
+            bulkhead.release();
+            long end = System.nanoTime();
+            if ((e == null || !isFailure(unwrap(e))) && end <= deadline)
+                latencies.record(end - start);
+            if (e == null) {
+                // Counted first, the caller may read the stats as soon as the result is complete
+                if (hedge && !result.isDone())
+                    hedgeWins.increment();
+                result.complete(value);
+            } else if (pendingAttempts.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(e));
+            }
+        });
+    }
+
+    long timeoutMillis() {
+        if (latencies.size() < MIN_LATENCY_SAMPLES)
+            return policy.maxTimeoutMillis();
+        long timeoutMillis = (long) (latencies.percentile(policy.timeoutPercentile()) * policy.timeoutMultiplier() / 1_000_000);
+        return Math.max(policy.minTimeoutMillis(), Math.min(policy.maxTimeoutMillis(), timeoutMillis));
+    }
+
+    // 0 when the endpoint is not hedged
+    long hedgeDelayMillis() {
+        if (!policy.hedged() || latencies.size() < MIN_LATENCY_SAMPLES)
+            return 0;
+        return Math.max(1, latencies.percentile(policy.hedgePercentile()) / 1_000_000);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private enum Permission {CALL, PROBE, REJECTED}
+
+    private synchronized Permission acquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < policy.openMillis() * 1_000_000)
+                return Permission.REJECTED;
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            // One probe at a time decides whether the endpoint recovered
+            if (probing)
+                return Permission.REJECTED;
+            probing = true;
+            return Permission.PROBE;
+        }
+        return Permission.CALL;
+    }
+
+    private synchronized void onResult(boolean failure) {
+        if (failure)
+            failures.increment();
+        if (state == State.HALF_OPEN) {
+            probing = false;
+            if (failure) {
+                open();
+            } else {
+                log.info("Circuit breaker of {} closed", endpoint);
+                state = State.CLOSED;
+                // Latencies from before the outage say little about the endpoint now
+                latencies.clear();
+                Arrays.fill(outcomes, false);
+                recordedOutcomes = 0;
+                failedOutcomes = 0;
+            }
+            return;
+        }
+        if (state == State.OPEN)
+            return;
+        if (recordedOutcomes == outcomes.length && outcomes[nextOutcome])
+            failedOutcomes--;
+        outcomes[nextOutcome] = failure;
+        if (failure)
+            failedOutcomes++;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+        recordedOutcomes = Math.min(outcomes.length, recordedOutcomes + 1);
+        if (recordedOutcomes >= policy.minimumCalls() && failedOutcomes * 100 >= policy.failureRateThreshold() * recordedOutcomes)
+            open();
+    }
+
+    private void open() {
+        log.warn("Circuit breaker of {} opened for {} ms after {} failures in {} calls", endpoint, policy.openMillis(), failedOutcomes, recordedOutcomes);
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+    }
+
+    // A 4xx answer means the dependency is up and said no, it doesn't count against the endpoint
+    private static boolean isFailure(Throwable e) {
+        return !(e instanceof FeignException feignException && feignException.status() >= 400 && feignException.status() < 500);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null)
+            e = e.getCause();
+        return e;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("state", state);
+            stats.put("failureRate", recordedOutcomes == 0 ? 0 : failedOutcomes * 100 / recordedOutcomes);
+        }
+        stats.put("inFlight", policy.maxConcurrentCalls() - bulkhead.availablePermits());
+        stats.put("p50Millis", latencies.percentile(50) / 1_000_000);
+        stats.put("p99Millis", latencies.percentile(99) / 1_000_000);
+        // 0 when the caller waits for Feign's read timeout
+        stats.put("timeoutMillis", policy.mutating() ? 0 : timeoutMillis());
+        stats.put("hedgeDelayMillis", hedgeDelayMillis());
+        stats.put("calls", calls.sum());
+        stats.put("failures", failures.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("rejectedByCircuit", rejectedByCircuit.sum());
+        stats.put("rejectedByBulkhead", rejectedByBulkhead.sum());
+        stats.put("hedges", hedges.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        return stats;
+    }
+
+    // Durations of the last calls, in nanoseconds
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        private LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        private synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(samples.length, size + 1);
+        }
+
+        private synchronized void clear() {
+            size = 0;
+            next = 0;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized long percentile(int percentile) {
+            if (size == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, size * percentile / 100)];
+        }
+    }
+}
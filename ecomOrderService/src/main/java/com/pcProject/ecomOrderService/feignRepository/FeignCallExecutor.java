@@ -0,0 +1,141 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import com.pcProject.ecomOrderService.VirtualThreads;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs independent Feign calls concurrently so a request waits for the slowest call instead of the sum of all calls
+@Slf4j
+@Component
+public class FeignCallExecutor {
+
+    private final ExecutorService executor;
+    private final long callTimeoutMillis;
+    private final long totalTimeoutMillis;
+
+    @Autowired
+    public FeignCallExecutor(@Value("${ecom.feign.fanout.pool-size:32}") int poolSize,
+                             @Value("${ecom.feign.fanout.queue-size:256}") int queueSize,
+                             @Value("${ecom.feign.fanout.call-timeout-ms:3000}") long callTimeoutMillis,
+                             @Value("${ecom.feign.fanout.total-timeout-ms:5000}") long totalTimeoutMillis,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        // A waiting virtual thread costs next to nothing, the pool and its queue are only needed for platform threads
+        this(VirtualThreads.enabled(virtualThreads) ? VirtualThreads.newThreadPerTaskExecutor("feign-fanout-") : newBoundedExecutor(poolSize, queueSize),
+                callTimeoutMillis, totalTimeoutMillis);
+    }
+
+    public FeignCallExecutor(ExecutorService executor, long callTimeoutMillis, long totalTimeoutMillis) {
+        this.executor = executor;
+        this.callTimeoutMillis = callTimeoutMillis;
+        this.totalTimeoutMillis = totalTimeoutMillis;
+    }
+
+    // Starts the call right away, it fails with a TimeoutException if it runs past the per-call deadline
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return submit(call, true);
+    }
+
+    // A call that changes state on the other side isn't timed out or interrupted by the caller : giving up on it
+    // can't undo what it did, and interrupting it halfway leaves it unknown whether it did. It's bounded by the Feign
+    // client's own timeouts, matching ecom.resilience.mutating.endpoints
+    public <T> CompletableFuture<T> submit(Supplier<T> call, boolean timed) {
+        CompletableFuture<T> result = timed ? new CompletableFuture<>() : new UntimedCall<>();
+        Future<?> worker = executor.submit(() -> {
+            try {
+                result.complete(call.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        if (!timed) {
+            result.whenComplete((response, ex) -> {
+                if (ex != null)
+                    log.error("Feign call failed : {}", ex.toString());
+            });
+            return result;
+        }
+        // Cancelling a CompletableFuture doesn't reach the thread running the call, so a call that times out or is
+        // cancelled interrupts its worker. A queued call never starts, a running one stops at its next blocking wait
+        result.orTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((response, ex) -> {
+                    if (ex == null)
+                        return;
+                    worker.cancel(true);
+                    log.error("Feign call failed : {}", ex.toString());
+                });
+        return result;
+    }
+
+    // Waits for all calls, the timed ones within the combined timeout, timed calls still running after it are
+    // cancelled and interrupted. Untimed calls are waited for until they end
+    public void awaitAll(CompletableFuture<?>... calls) {
+        CompletableFuture<?>[] timedCalls = Arrays.stream(calls).filter(call -> !(call instanceof UntimedCall)).toArray(CompletableFuture<?>[]::new);
+        CompletableFuture<?>[] untimedCalls = Arrays.stream(calls).filter(call -> call instanceof UntimedCall).toArray(CompletableFuture<?>[]::new);
+        try {
+            CompletableFuture.allOf(timedCalls).get(totalTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.error("Feign calls did not complete within {} ms", totalTimeoutMillis);
+            for (CompletableFuture<?> call : timedCalls)
+                call.cancel(true);
+        } catch (ExecutionException e) {
+            // Failed calls are reported individually through resultOf
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (CompletableFuture<?> call : timedCalls)
+                call.cancel(true);
+            return;
+        }
+        try {
+            CompletableFuture.allOf(untimedCalls).get();
+        } catch (ExecutionException e) {
+            // Same as above
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Result of a completed call, or null if it failed, timed out or is still running
+    public static <T> T resultOf(CompletableFuture<T> call) {
+        if (!call.isDone() || call.isCompletedExceptionally())
+            return null;
+        return call.join();
+    }
+
+    // Body of a completed call, or null in the same cases as resultOf
+    public static <T> T bodyOf(CompletableFuture<ResponseEntity<T>> call) {
+        ResponseEntity<T> response = resultOf(call);
+        return response == null ? null : response.getBody();
+    }
+
+    private static class UntimedCall<T> extends CompletableFuture<T> {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService newBoundedExecutor(int poolSize, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "feign-fanout-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // When saturated the caller runs the call itself, which degrades to the old serial behaviour
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+}
@@ -0,0 +1,103 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import com.pcProject.ecomOrderService.VirtualThreads;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreakerFactory;
+import org.springframework.cloud.client.circuitbreaker.ConfigBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Spring Cloud OpenFeign wraps every method of EcomProductService and EcomUserService in the circuit breaker this
+// factory creates (spring.cloud.openfeign.circuitbreaker.enabled), one EndpointResilience per endpoint such as
+// "EcomUserService#getAllUserProducts". Endpoints that change state on the other service are never timed out by the
+// caller nor hedged, a hedge configured for one of them is refused at startup
+@Component
+public class FeignResilienceFactory extends CircuitBreakerFactory<EndpointResilience.Policy, ConfigBuilder<EndpointResilience.Policy>> {
+
+    // Consume stock or change a User's products, a call the caller gave up on usually still succeeds
+    static final String MUTATING_ENDPOINTS = "EcomProductService#consumeProduct,EcomProductService#consumeProducts,"
+            + "EcomUserService#addUserProduct,EcomUserService#removeUserProduct";
+
+    private final Map<String, EndpointResilience> endpoints = new ConcurrentHashMap<>();
+    private final Set<String> hedgedEndpoints;
+    private final ExecutorService executor;
+    private Function<String, EndpointResilience.Policy> defaultPolicy;
+
+    @Autowired
+    public FeignResilienceFactory(@Value("${ecom.resilience.failure-rate-threshold:50}") int failureRateThreshold,
+                                  @Value("${ecom.resilience.sliding-window:20}") int slidingWindow,
+                                  @Value("${ecom.resilience.minimum-calls:10}") int minimumCalls,
+                                  @Value("${ecom.resilience.open-ms:5000}") long openMillis,
+                                  @Value("${ecom.resilience.max-concurrent-calls:20}") int maxConcurrentCalls,
+                                  @Value("${ecom.resilience.timeout.percentile:99}") int timeoutPercentile,
+                                  @Value("${ecom.resilience.timeout.multiplier:2}") double timeoutMultiplier,
+                                  @Value("${ecom.resilience.timeout.min-ms:200}") long minTimeoutMillis,
+                                  @Value("${ecom.resilience.timeout.max-ms:3000}") long maxTimeoutMillis,
+                                  @Value("${ecom.resilience.hedge.endpoints:}") Set<String> hedgedEndpoints,
+                                  @Value("${ecom.resilience.hedge.percentile:95}") int hedgePercentile,
+                                  @Value("${ecom.resilience.mutating.endpoints:" + MUTATING_ENDPOINTS + "}") Set<String> mutatingEndpoints,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        Set<String> hedgedMutations = new TreeSet<>(hedgedEndpoints);
+        hedgedMutations.retainAll(mutatingEndpoints);
+        if (!hedgedMutations.isEmpty())
+            throw new IllegalArgumentException("ecom.resilience.hedge.endpoints can't hedge " + hedgedMutations
+                    + ", a second attempt would apply their change twice");
+        this.hedgedEndpoints = hedgedEndpoints;
+        this.defaultPolicy = endpoint -> new EndpointResilience.Policy(failureRateThreshold, slidingWindow, minimumCalls, openMillis,
+                maxConcurrentCalls, timeoutPercentile, timeoutMultiplier, minTimeoutMillis, maxTimeoutMillis,
+                this.hedgedEndpoints.contains(endpoint), hedgePercentile, mutatingEndpoints.contains(endpoint));
+        // Unbounded on purpose, the bulkheads already cap the calls in flight per endpoint
+        this.executor = VirtualThreads.enabled(virtualThreads) ? VirtualThreads.newThreadPerTaskExecutor("feign-resilience-") : newCachedExecutor();
+    }
+
+    // Feign names circuit breakers "EcomUserService#getAllUserProducts(String)", the parameters are dropped
+    @Override
+    public CircuitBreaker create(String id) {
+        String endpoint = id.indexOf('(') < 0 ? id : id.substring(0, id.indexOf('('));
+        return endpoints.computeIfAbsent(endpoint, key -> new EndpointResilience(key,
+                getConfigurations().computeIfAbsent(key, defaultPolicy), executor));
+    }
+
+    @Override
+    protected ConfigBuilder<EndpointResilience.Policy> configBuilder(String id) {
+        return () -> defaultPolicy.apply(id);
+    }
+
+    @Override
+    public void configureDefault(Function<String, EndpointResilience.Policy> defaultConfiguration) {
+        this.defaultPolicy = defaultConfiguration;
+    }
+
+    // Per endpoint, sorted by name
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        endpoints.forEach((endpoint, resilience) -> stats.put(endpoint, resilience.stats()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService newCachedExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "feign-resilience-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,136 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.*;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Response time (EWMA) and in-flight calls of every ECOMPRODUCTS / ECOMUSERS instance, fed by the lifecycle of the
+// Feign load balancer and read by LatencyAwareLoadBalancer. The average decays while an instance gets no calls,
+// so one that was slow is tried again once it had time to recover
+@Component
+public class InstanceLatencyTracker implements LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    private final double weight;
+    private final long decayNanos;
+    private final long failurePenaltyNanos;
+    private final Map<String, InstanceStats> instances = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InstanceLatencyTracker(@Value("${ecom.loadbalancer.ewma-weight:0.3}") double weight,
+                                  @Value("${ecom.loadbalancer.decay-ms:10000}") long decayMillis,
+                                  @Value("${ecom.loadbalancer.failure-penalty-ms:1000}") long failurePenaltyMillis) {
+        this.weight = weight;
+        this.decayNanos = decayMillis * 1_000_000;
+        this.failurePenaltyNanos = failurePenaltyMillis * 1_000_000;
+    }
+
+    // Expected wait on the instance, lower is better. An instance without samples yet only counts its in-flight
+    // calls, so new instances are tried right away without all callers piling onto them
+    public double cost(ServiceInstance instance) {
+        InstanceStats stats = instances.get(keyOf(instance));
+        if (stats == null)
+            return 0;
+        double ewmaNanos = stats.decayedEwmaNanos(System.nanoTime());
+        if (ewmaNanos == 0)
+            return stats.inFlight.get();
+        return ewmaNanos * (stats.inFlight.get() + 1);
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse == null || !lbResponse.hasServer())
+            return;
+        statsOf(lbResponse.getServer()).inFlight.incrementAndGet();
+        if (request.getContext() instanceof TimedRequestContext timedContext)
+            timedContext.setRequestStartTime(System.nanoTime());
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (completionContext.status() == CompletionContext.Status.DISCARD || lbResponse == null || !lbResponse.hasServer())
+            return;
+        InstanceStats stats = statsOf(lbResponse.getServer());
+        stats.inFlight.decrementAndGet();
+        Object context = completionContext.getLoadBalancerRequest() == null ? null : completionContext.getLoadBalancerRequest().getContext();
+        if (!(context instanceof TimedRequestContext timedContext) || timedContext.getRequestStartTime() == 0)
+            return;
+        long now = System.nanoTime();
+        long elapsedNanos = now - timedContext.getRequestStartTime();
+        if (isFailure(completionContext)) {
+            stats.failureCount.increment();
+            // A fast failing instance must not look like the fastest one
+            elapsedNanos = Math.max(elapsedNanos, failurePenaltyNanos);
+        }
+        stats.record(elapsedNanos, now, weight);
+    }
+
+    // Per instance, sorted by service and address
+    public Map<String, Object> stats() {
+        long now = System.nanoTime();
+        Map<String, Object> metrics = new TreeMap<>();
+        instances.forEach((instance, stats) -> {
+            Map<String, Object> instanceMetrics = new LinkedHashMap<>();
+            instanceMetrics.put("ewmaMillis", Math.round(stats.decayedEwmaNanos(now) / 1_000_000));
+            instanceMetrics.put("inFlight", stats.inFlight.get());
+            instanceMetrics.put("requestCount", stats.requestCount.sum());
+            instanceMetrics.put("failureCount", stats.failureCount.sum());
+            metrics.put(instance, instanceMetrics);
+        });
+        return metrics;
+    }
+
+    private static boolean isFailure(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        if (completionContext.status() == CompletionContext.Status.FAILED)
+            return true;
+        return completionContext.getClientResponse() instanceof ResponseData responseData
+                && responseData.getHttpStatus() != null && responseData.getHttpStatus().is5xxServerError();
+    }
+
+    private InstanceStats statsOf(ServiceInstance instance) {
+        return instances.computeIfAbsent(keyOf(instance), key -> new InstanceStats(decayNanos));
+    }
+
+    private static String keyOf(ServiceInstance instance) {
+        return instance.getServiceId() + " " + instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static final class InstanceStats {
+        private final long decayNanos;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder requestCount = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+        private double ewmaNanos;
+        private long lastSampleNanos;
+
+        private InstanceStats(long decayNanos) {
+            this.decayNanos = decayNanos;
+        }
+
+        private synchronized void record(long elapsedNanos, long now, double weight) {
+            requestCount.increment();
+            double previousNanos = decayedEwmaNanos(now);
+            ewmaNanos = previousNanos == 0 ? elapsedNanos : previousNanos + weight * (elapsedNanos - previousNanos);
+            lastSampleNanos = now;
+        }
+
+        private synchronized double decayedEwmaNanos(long now) {
+            if (ewmaNanos == 0)
+                return 0;
+            return ewmaNanos * Math.exp(-(double) Math.max(0, now - lastSampleNanos) / decayNanos);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.support.WebClientAdapter;
+import org.springframework.web.service.invoker.HttpServiceProxyFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+// WebClient behind ReactiveEcomUserService and ReactiveEcomProductService. @LoadBalanced resolves ECOMUSERS and
+// ECOMPRODUCTS through the same latency aware load balancer as the Feign clients
+@Configuration
+public class ReactiveClientConfiguration {
+
+    @Bean
+    @LoadBalanced
+    public WebClient.Builder loadBalancedWebClientBuilder(@Value("${spring.cloud.openfeign.client.config.default.connect-timeout:2000}") int connectTimeoutMillis,
+                                                          @Value("${spring.cloud.openfeign.client.config.default.read-timeout:3000}") long readTimeoutMillis,
+                                                          @Value("${ecom.reactive.client.max-connections:500}") int maxConnections,
+                                                          @Value("${ecom.reactive.client.pending-acquire-timeout-ms:3000}") long pendingAcquireTimeoutMillis) {
+        // Callers beyond the pool wait for a connection instead of failing, pendingAcquireTimeout bounds the wait
+        ConnectionProvider connections = ConnectionProvider.builder("ecom-reactive")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMillis))
+                .build();
+        HttpClient httpClient = HttpClient.create(connections)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(Duration.ofMillis(readTimeoutMillis))
+                .compress(true);
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                // A 4xx answer still carries the UserProductsResponse whose status the callers check
+                .defaultStatusHandler(HttpStatusCode::is4xxClientError, response -> Mono.empty());
+    }
+
+    @Bean
+    public ReactiveEcomUserService reactiveEcomUserService(WebClient.Builder loadBalancedWebClientBuilder) {
+        return client(loadBalancedWebClientBuilder, "http://ECOMUSERS", ReactiveEcomUserService.class);
+    }
+
+    @Bean
+    public ReactiveEcomProductService reactiveEcomProductService(WebClient.Builder loadBalancedWebClientBuilder) {
+        return client(loadBalancedWebClientBuilder, "http://ECOMPRODUCTS", ReactiveEcomProductService.class);
+    }
+
+    public static <S> S client(WebClient.Builder webClientBuilder, String baseUrl, Class<S> serviceType) {
+        WebClient webClient = webClientBuilder.clone().baseUrl(baseUrl).build();
+        return HttpServiceProxyFactory.builderFor(WebClientAdapter.create(webClient)).build().createClient(serviceType);
+    }
+}
@@ -0,0 +1,15 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.service.annotation.PostExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+// Non-blocking counterpart of EcomProductService for the reactive read paths, built by ReactiveClientConfiguration
+public interface ReactiveEcomProductService {
+    @PostExchange("/product/getProductValues")
+    public Mono<UserProductsResponse<Map<String,Integer>>> getProductValues(@RequestBody List<String> productNames);
+}
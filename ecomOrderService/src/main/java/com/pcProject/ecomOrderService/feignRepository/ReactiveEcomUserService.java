@@ -0,0 +1,20 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import com.pcProject.ecomOrderService.model.UserProducts;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.service.annotation.GetExchange;
+import org.springframework.web.service.annotation.PostExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// Non-blocking counterpart of EcomUserService for the reactive read paths, built by ReactiveClientConfiguration
+public interface ReactiveEcomUserService {
+    @GetExchange("/users/getAllUserProducts/{userName}")
+    public Mono<UserProductsResponse<List<String>>> getAllUserProducts(@PathVariable String userName);
+
+    @PostExchange("/users/validateUserProduct")
+    public Mono<UserProductsResponse<UserProducts>> validateUserProduct(@RequestBody UserProducts userProducts);
+}
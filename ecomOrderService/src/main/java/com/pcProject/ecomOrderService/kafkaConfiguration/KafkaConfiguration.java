@@ -1,14 +1,25 @@
 package com.pcProject.ecomOrderService.kafkaConfiguration;
 
-import com.fasterxml.jackson.databind.ser.std.JsonValueSerializer;
-import com.pcProject.ecomOrderService.model.UserProducts;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomOrderService.VirtualThreads;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.ProductPrice;
+import com.pcProject.ecomOrderService.model.UserExistence;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
@@ -17,11 +28,38 @@ import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
+@Slf4j
 @Configuration
 @EnableKafka
 public class KafkaConfiguration {
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    // Spring Boot only runs the listener containers it builds itself on virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // json or binary, consumers read both so producers can be switched one service at a time
+    @Value("${ecom.kafka.wire-format:json}")
+    private String wireFormat;
+
+    @Value("${ecom.kafka.producer.linger-ms:5}")
+    private int lingerMs;
+
+    // Consumer threads per listener, ecom.kafka.listener.concurrency.<topic> overrides it for one topic
+    @Value("${ecom.kafka.listener.concurrency:1}")
+    private int listenerConcurrency;
+
+    // ecom.kafka.topic.partitions.<topic> overrides it for one topic, the services sharing a topic must agree on it
+    @Value("${ecom.kafka.topic.partitions:6}")
+    private int topicPartitions;
+
     @Bean
     public ProducerFactory<String,Object> producerFactory(){
         Map<String,Object> configParams = new HashMap<>();
@@ -30,6 +68,14 @@ public class KafkaConfiguration {
         configParams.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configParams.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         configParams.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, true);
+        // The outbox relay retries failed sends, idempotence keeps retries from duplicating or reordering a partition
+        configParams.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configParams.put(ProducerConfig.ACKS_CONFIG, "all");
+        configParams.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        configParams.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        if ("binary".equalsIgnoreCase(wireFormat))
+            return new DefaultKafkaProducerFactory<>(configParams, new StringSerializer(),
+                    new OrderEventSerializer(new JsonSerializer<>(objectMapper)));
         return new DefaultKafkaProducerFactory<>(configParams);
     }
 
@@ -39,30 +85,101 @@ public class KafkaConfiguration {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    // The topics this service publishes to, created with enough partitions for their consumers to scale.
+    // KafkaAdmin adds partitions to an existing topic, which moves keys, so raise the count once the topic is drained
+    @Bean
+    public KafkaAdmin.NewTopics orderEventTopics() {
+        return new KafkaAdmin.NewTopics(newTopic("ecomOrderService_addUserProduct"),
+                newTopic("ecomOrderService_removeUserProduct"),
+                newTopic("ecomOrderService_addToProductQuantity"),
+                newTopic("ecomOrderService_releaseReservation"));
+    }
+
     // --- CONSUMER CONFIG (Add this now) ---
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, UserProductsResponse<OrderDetailsWrapper>> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "ecomOrderService");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-//        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-//        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
-        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
 
         // This ensures the consumer reads old messages if it's the first time joining the group
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
-        return new DefaultKafkaConsumerFactory<>(props);
+        // Each record is parsed once by the shared ObjectMapper, the producer's type header is ignored since
+        // it names the other service's class. A malformed record goes to the error handler instead of the listener
+        JsonDeserializer<UserProductsResponse<OrderDetailsWrapper>> valueDeserializer =
+                new JsonDeserializer<>(new TypeReference<UserProductsResponse<OrderDetailsWrapper>>() {}, objectMapper, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new OrderEventDeserializer<>(UserProductsResponse.class, valueDeserializer)));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, UserProductsResponse<OrderDetailsWrapper>> kafkaListenerContainerFactory() {
+        return listenerContainerFactory(consumerFactory());
+    }
+
+    // Every replica keeps its own price cache, so each one reads the price changes in its own consumer group
+    // and only from the moment it started
+    @Bean
+    public ConsumerFactory<String, ProductPrice> productPriceConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "ecomOrderService-priceCache-" + UUID.randomUUID());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+
+        JsonDeserializer<ProductPrice> valueDeserializer = new JsonDeserializer<>(ProductPrice.class, objectMapper, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ErrorHandlingDeserializer<>(valueDeserializer));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ProductPrice> productPriceListenerContainerFactory() {
+        return listenerContainerFactory(productPriceConsumerFactory());
+    }
+
+    // Same as the price changes, every replica applies the User lifecycle events to its own cache
+    @Bean
+    public ConsumerFactory<String, UserExistence> userExistenceConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "ecomOrderService-userCache-" + UUID.randomUUID());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+
+        JsonDeserializer<UserExistence> valueDeserializer = new JsonDeserializer<>(UserExistence.class, objectMapper, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ErrorHandlingDeserializer<>(valueDeserializer));
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory =
-                new ConcurrentKafkaListenerContainerFactory<>();
-        factory.setConsumerFactory(consumerFactory());
+    public ConcurrentKafkaListenerContainerFactory<String, UserExistence> userExistenceListenerContainerFactory() {
+        return listenerContainerFactory(userExistenceConsumerFactory());
+    }
+
+    private <K, V> ConcurrentKafkaListenerContainerFactory<K, V> listenerContainerFactory(ConsumerFactory<K, V> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<K, V> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        if (VirtualThreads.enabled(virtualThreads))
+            factory.getContainerProperties().setListenerTaskExecutor(VirtualThreads.taskExecutor("kafka-listener-"));
+        factory.setContainerCustomizer(container -> container.setConcurrency(listenerConcurrency(container.getContainerProperties().getTopics())));
         return factory;
     }
+
+    // A partition is read by one consumer thread at a time, threads beyond the partition count would stay idle
+    int listenerConcurrency(String... topics) {
+        int concurrency = 1;
+        for (String topic : topics == null ? new String[0] : topics) {
+            int requested = environment.getProperty("ecom.kafka.listener.concurrency." + topic, Integer.class, listenerConcurrency);
+            int partitions = topicPartitions(topic);
+            if (requested > partitions)
+                log.warn("Topic {} has {} partitions, its listener runs {} consumer threads instead of {}", topic, partitions, partitions, requested);
+            concurrency = Math.max(concurrency, Math.min(requested, partitions));
+        }
+        return concurrency;
+    }
+
+    int topicPartitions(String topic) {
+        return environment.getProperty("ecom.kafka.topic.partitions." + topic, Integer.class, topicPartitions);
+    }
+
+    private NewTopic newTopic(String topic) {
+        return TopicBuilder.name(topic).partitions(topicPartitions(topic)).build();
+    }
 }
@@ -9,21 +9,27 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "order_details")
+// Indexes back the per User listings and the first unpaid order lookup
+@Table(name = "order_details", indexes = {
+        @Index(name = "idx_order_user_product_payment", columnList = "userName, productName, paymentStatus"),
+        @Index(name = "idx_order_user_order", columnList = "userName, orderId")
+})
 public class OrderDetails {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Not IDENTITY, which needs a round trip per insert to learn the id and rules out JDBC batching
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_details_seq")
+    @SequenceGenerator(name = "order_details_seq", sequenceName = "order_details_seq", allocationSize = 50)
     private int orderId;
     private String userName;
     private String productName;
-    private String orderStatus;
-    private String paymentStatus;
+    private OrderStatus orderStatus;
+    private PaymentStatus paymentStatus;
 
-    public OrderDetails(int orderId, String userName, String productName, String orderStatus) {
+    public OrderDetails(int orderId, String userName, String productName, OrderStatus orderStatus) {
         this.orderId = orderId;
         this.userName = userName;
         this.productName = productName;
         this.orderStatus = orderStatus;
-        this.paymentStatus = "Unpaid";
+        this.paymentStatus = PaymentStatus.UNPAID;
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.pcProject.ecomOrderService.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of a User's orders, nextOrderId is the cursor for the following page and null on the last one
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDetailsPage {
+    private List<OrderDetails> orders;
+    private Integer nextOrderId;
+}
@@ -0,0 +1,56 @@
+package com.pcProject.ecomOrderService.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stored as a one byte code, the label keeps the JSON the same as the old free-form column
+public enum OrderStatus {
+    WAITING_TO_PLACE(0, "Waiting_to_Place"),
+    PLACED(1, "Placed"),
+    SHIPPED(2, "Shipped"),
+    DELIVERED(3, "Delivered");
+
+    private final byte code;
+    private final String label;
+
+    OrderStatus(int code, String label) {
+        this.code = (byte) code;
+        this.label = label;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    @JsonCreator
+    public static OrderStatus fromLabel(String label) {
+        if (label == null)
+            return null;
+        for (OrderStatus status : values())
+            if (status.label.equalsIgnoreCase(label) || status.name().equalsIgnoreCase(label))
+                return status;
+        throw new IllegalArgumentException("Unknown order status : " + label);
+    }
+
+    // Explicit codes instead of ordinals, so reordering the constants never changes stored rows
+    @Converter(autoApply = true)
+    public static class DbConverter implements AttributeConverter<OrderStatus, Byte> {
+        @Override
+        public Byte convertToDatabaseColumn(OrderStatus status) {
+            return status == null ? null : status.code;
+        }
+
+        @Override
+        public OrderStatus convertToEntityAttribute(Byte code) {
+            if (code == null)
+                return null;
+            for (OrderStatus status : values())
+                if (status.code == code)
+                    return status;
+            throw new IllegalArgumentException("Unknown order status code : " + code);
+        }
+    }
+}
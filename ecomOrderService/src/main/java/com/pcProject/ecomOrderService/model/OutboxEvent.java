@@ -0,0 +1,49 @@
+package com.pcProject.ecomOrderService.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+// An order event waiting to be published, written in the same transaction as the order change it describes
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "outbox_event")
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long outboxEventId;
+    private String topic;
+    private int orderId;
+    private String userName;
+    private String productName;
+    // Fixed when the event is written, a send retried by the relay carries the same id
+    @Column(length = 36)
+    private String eventId;
+    // The relay publishing the event and until when, the event is left to that relay while the lease lasts
+    @Column(length = 36)
+    private String leasedBy;
+    private Long leasedUntil;
+
+    // The id is always generated here, an eventId that came in with a request body is never trusted
+    public OutboxEvent(String topic, OrderDetailsWrapper orderDetails) {
+        this(topic, orderDetails, UUID.randomUUID().toString());
+    }
+
+    // For an event that is the same however often it's written, its id is chosen by this service
+    public OutboxEvent(String topic, OrderDetailsWrapper orderDetails, String eventId) {
+        this.topic = topic;
+        this.orderId = orderDetails.getOrderId();
+        this.userName = orderDetails.getUserName();
+        this.productName = orderDetails.getProductName();
+        this.eventId = eventId;
+    }
+
+    public OrderDetailsWrapper toOrderDetailsWrapper() {
+        return new OrderDetailsWrapper(orderId, userName, productName, eventId);
+    }
+}
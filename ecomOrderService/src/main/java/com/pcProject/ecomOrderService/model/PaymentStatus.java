@@ -0,0 +1,52 @@
+package com.pcProject.ecomOrderService.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+public enum PaymentStatus {
+    UNPAID(0, "Unpaid"),
+    PAID(1, "Paid");
+
+    private final byte code;
+    private final String label;
+
+    PaymentStatus(int code, String label) {
+        this.code = (byte) code;
+        this.label = label;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    @JsonCreator
+    public static PaymentStatus fromLabel(String label) {
+        if (label == null)
+            return null;
+        for (PaymentStatus status : values())
+            if (status.label.equalsIgnoreCase(label) || status.name().equalsIgnoreCase(label))
+                return status;
+        throw new IllegalArgumentException("Unknown payment status : " + label);
+    }
+
+    @Converter(autoApply = true)
+    public static class DbConverter implements AttributeConverter<PaymentStatus, Byte> {
+        @Override
+        public Byte convertToDatabaseColumn(PaymentStatus status) {
+            return status == null ? null : status.code;
+        }
+
+        @Override
+        public PaymentStatus convertToEntityAttribute(Byte code) {
+            if (code == null)
+                return null;
+            for (PaymentStatus status : values())
+                if (status.code == code)
+                    return status;
+            throw new IllegalArgumentException("Unknown payment status code : " + code);
+        }
+    }
+}
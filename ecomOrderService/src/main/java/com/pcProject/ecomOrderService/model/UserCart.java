@@ -0,0 +1,15 @@
+package com.pcProject.ecomOrderService.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserCart {
+    private String userName;
+    private List<ProductQuantity> products;
+}
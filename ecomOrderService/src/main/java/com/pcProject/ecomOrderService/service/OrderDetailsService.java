@@ -1,24 +1,30 @@
 package com.pcProject.ecomOrderService.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pcProject.ecomOrderService.Repository.OrderRepository;
-import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
 import com.pcProject.ecomOrderService.feignRepository.EcomUserService;
+import com.pcProject.ecomOrderService.feignRepository.FeignResilienceFactory;
+import com.pcProject.ecomOrderService.feignRepository.InstanceLatencyTracker;
 import com.pcProject.ecomOrderService.model.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Slf4j
 @Service
@@ -27,42 +33,73 @@ public class OrderDetailsService {
     @Autowired
     private EcomUserService ecomUserService;
     @Autowired
-    private EcomProductService ecomProductService;
-    @Autowired
     private OrderRepository orderRepo;
 
     @Autowired
-    @Qualifier("userProductKafkaTemplate")
-    private KafkaTemplate<String,Object> userProductKafkaTemplate;
+    private OrderEventOutbox orderEventOutbox;
+    @Autowired
+    private UserExistenceCache userExistenceCache;
+    @Autowired
+    private OrderPlacementSaga orderPlacementSaga;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private InstanceLatencyTracker instanceLatencyTracker;
+    @Autowired
+    private FeignResilienceFactory feignResilienceFactory;
 
-    public OrderDetailsService(KafkaTemplate<String,Object> template){
-        this.userProductKafkaTemplate = template;
-    }
+    @Value("${ecom.orders.page.max-size:1000}")
+    private int maxPageSize;
+    @Value("${ecom.orders.stream.page-size:500}")
+    private int streamPageSize;
 
     public ResponseEntity<UserProductsResponse<List<OrderDetails>>> getAllOrderDetails(String userName){
-        UserProductsResponse<List<String>> response = ecomUserService.getAllUserProducts(userName).getBody();
-        List<OrderDetails> orderList = new ArrayList<>();
+        ResponseEntity<UserProductsResponse<List<OrderDetails>>> userError = validateUserExists(userName, new ArrayList<>());
+        if(userError != null)
+            return userError;
 
-        if(response == null){
-            log.error("Error : The response from ecomUserService is null");
-            return new ResponseEntity<>(new UserProductsResponse<>(null,HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong !"),HttpStatus.BAD_REQUEST);
+        List<OrderDetails> orderList = new ArrayList<>(orderRepo.findAllByUserName(userName));
+        return new ResponseEntity<>(new UserProductsResponse<>(orderList,HttpStatus.OK.value(), "Details retrieved successfully"),HttpStatus.OK);
+    }
+
+    // Keyset pagination on orderId, every page is one index range scan however deep the client has paged
+    public ResponseEntity<UserProductsResponse<OrderDetailsPage>> getOrderDetailsPage(String userName, int afterOrderId, int limit){
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        // One extra row tells whether there is a next page
+        List<OrderDetails> orders = orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(userName, afterOrderId, Limit.of(pageSize + 1));
+
+        // A User with orders exists, ecomUserService is only asked when the first page is empty
+        if(orders.isEmpty() && afterOrderId <= 0){
+            ResponseEntity<UserProductsResponse<OrderDetailsPage>> userError = validateUserExists(userName, null);
+            if(userError != null)
+                return userError;
         }
-        if(response.getStatus() == 200){
-            orderList.addAll(orderRepo.findAllByUserName(userName));
-            log.info("User Validation : {}",response);
-            return new ResponseEntity<>(new UserProductsResponse<>(orderList,HttpStatus.OK.value(), "Details retrieved successfully"),HttpStatus.OK);
+
+        Integer nextOrderId = null;
+        if(orders.size() > pageSize){
+            orders = new ArrayList<>(orders.subList(0, pageSize));
+            nextOrderId = orders.get(pageSize - 1).getOrderId();
+        }
+        return new ResponseEntity<>(new UserProductsResponse<>(new OrderDetailsPage(orders, nextOrderId),HttpStatus.OK.value(), "Details retrieved successfully"),HttpStatus.OK);
+    }
+
+    // All orders of a User as NDJSON, written page by page so only one page is ever held in memory
+    public ResponseEntity<StreamingResponseBody> streamOrderDetails(String userName){
+        List<OrderDetails> firstPage = orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(userName, 0, Limit.of(streamPageSize));
+        if(firstPage.isEmpty()){
+            ResponseEntity<UserProductsResponse<Object>> userError = validateUserExists(userName, null);
+            if(userError != null)
+                return ResponseEntity.status(userError.getStatusCode()).build();
         }
 
-        return new ResponseEntity<>(new UserProductsResponse<>(orderList,HttpStatus.BAD_REQUEST.value(), "Something went wrong!"),HttpStatus.BAD_REQUEST);
+        StreamingResponseBody body = outputStream -> writeOrderDetails(userName, firstPage, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @Transactional
     @KafkaListener(topics = "ecomUserService_addUserProduct")
-    public ResponseEntity<UserProductsResponse<OrderDetails>> addOrderDetailsConsumer(String userProductResponse) throws JsonProcessingException {
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        log.info("Fetching the order Details from ecomUserService : {}",userProductResponse);
-        UserProductsResponse<OrderDetailsWrapper> ecomUserServiceResponse = objectMapper.readValue(userProductResponse, new TypeReference<UserProductsResponse<OrderDetailsWrapper>>() {});
+    public ResponseEntity<UserProductsResponse<OrderDetails>> addOrderDetailsConsumer(UserProductsResponse<OrderDetailsWrapper> ecomUserServiceResponse) {
+        log.info("Fetching the order Details from ecomUserService : {}",ecomUserServiceResponse);
 
         OrderDetailsWrapper orderDetails = ecomUserServiceResponse.getData();
         UserProductsResponse<OrderDetails> orderResponse = new UserProductsResponse<OrderDetails>();
@@ -70,7 +107,15 @@ public class OrderDetailsService {
         // Placing the order in OrderRepo
         log.info("Placing the Order");
         OrderDetails existingOrderDetails = orderRepo.findByOrderId(orderDetails.getOrderId());
-        existingOrderDetails.setOrderStatus("Placed");
+        // Orders placed by OrderPlacementSaga are Placed already, only orders still waiting for ecomUsers are confirmed here
+        if(existingOrderDetails == null || existingOrderDetails.getOrderStatus() != OrderStatus.WAITING_TO_PLACE){
+            log.info("Order {} doesn't wait for a confirmation",orderDetails.getOrderId());
+            orderResponse.setData(existingOrderDetails);
+            orderResponse.setStatus(HttpStatus.OK.value());
+            orderResponse.setMessage("Order already processed");
+            return new ResponseEntity<>(orderResponse,HttpStatus.OK);
+        }
+        existingOrderDetails.setOrderStatus(OrderStatus.PLACED);
         orderRepo.save(existingOrderDetails);
         log.info("Order placed successfully : {}",existingOrderDetails);
 
@@ -81,72 +126,25 @@ public class OrderDetailsService {
         return new ResponseEntity<>(orderResponse,HttpStatus.OK);
     }
 
-    @Transactional
     public ResponseEntity<UserProductsResponse<OrderDetails>> addOrderDetails(UserProducts product){
-        // To check if Product exists
-        log.info("Sending to ecomProductService to consume the product : {}",product);
-        UserProductsResponse<ProductWrapper> validateProduct = ecomProductService.consumeProduct(new ProductWrapper(product.getProductName())).getBody();
-
-        UserProductsResponse<OrderDetails> orderResponse = new UserProductsResponse<OrderDetails>();
-        UserProductsResponse<UserProducts> serviceResponse ;
-
-        // Validate Product
-        if(validateProduct == null){
-            log.error("Error : product is not valid from ecomProductService");
-            orderResponse.setData(null);
-            orderResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
-            orderResponse.setMessage("product is not valid from ecomProductService");
-            return new ResponseEntity<>(orderResponse, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-        if(validateProduct.getStatus() != 200){
-            OrderDetails newOrder = new OrderDetails(-1,null,null,null);
-            newOrder.setPaymentStatus(null);
-            orderResponse.setData(newOrder);
-            orderResponse.setStatus(validateProduct.getStatus());
-            orderResponse.setMessage(validateProduct.getMessage());
-            return new ResponseEntity<>(orderResponse, HttpStatus.BAD_REQUEST);
-        }
-        log.info("Successfully Consumed the Product from ecomProductService {}",validateProduct);
-
-        //Validate User
-        log.info("Sending to ecomUserService to validate the user : {}",product.getUserName());
-        serviceResponse = ecomUserService.validateUser(product).getBody();
-        // Case if User doesn't exist
-        if(serviceResponse == null){
-            log.error("Something went wrong while adding Product to user");
-            orderResponse.setData(null);
-            orderResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
-            orderResponse.setMessage("Something went wrong while adding Product to user");
-            return new ResponseEntity<>(orderResponse, HttpStatus.BAD_REQUEST);
-        }
-        if(serviceResponse.getData() == null){
-            orderResponse.setData(new OrderDetails(-1,null,null,null));
-            orderResponse.setMessage("User doesn't exists");
-            orderResponse.setStatus(HttpStatus.BAD_REQUEST.value());
-            return new ResponseEntity<>(orderResponse,HttpStatus.BAD_REQUEST);
-        }
-
-        log.info("User Validation Successful : {}", product.getUserName());
+        return orderPlacementSaga.place(product);
+    }
 
-        log.info("Processing order Details ");
-        // Add order Details to OrderRepo
-        OrderDetails newOrder = new OrderDetails();
-        newOrder.setUserName(serviceResponse.getData().getUserName());
-        newOrder.setProductName(product.getProductName());
-        newOrder.setOrderStatus("Waiting_to_Place");
-        newOrder.setPaymentStatus("UnPaid");
-        orderRepo.save(newOrder);
+    // Places one order per unit in the cart with a single stock reservation in ecomProducts
+    public ResponseEntity<UserProductsResponse<List<OrderDetails>>> checkoutCart(UserCart cart){
+        return orderPlacementSaga.placeCart(cart);
+    }
 
-        log.info("Order processes successfully");
-        log.info("Sending to ecomUserService append to userList : {}",newOrder);
-        //Sending to ecomUserService to append to user products
-        userProductKafkaTemplate.send("ecomOrderService_addUserProduct",new OrderDetailsWrapper(newOrder.getOrderId(), newOrder.getUserName(), newOrder.getProductName()));
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getLoadBalancerStats(){
+        return new ResponseEntity<>(new UserProductsResponse<>(instanceLatencyTracker.stats(),HttpStatus.OK.value(),"Returning the load balancer statistics"),HttpStatus.OK);
+    }
 
-        orderResponse.setData(newOrder);
-        orderResponse.setStatus(HttpStatus.OK.value());
-        orderResponse.setMessage("Order received");
-        return new ResponseEntity<>(orderResponse, HttpStatus.OK);
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getResilienceStats(){
+        return new ResponseEntity<>(new UserProductsResponse<>(feignResilienceFactory.stats(),HttpStatus.OK.value(),"Returning the Feign resilience statistics"),HttpStatus.OK);
+    }
 
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getPlacementStats(){
+        return new ResponseEntity<>(new UserProductsResponse<>(orderPlacementSaga.stats(),HttpStatus.OK.value(),"Returning the order placement statistics"),HttpStatus.OK);
     }
 
     @Transactional
@@ -163,7 +161,7 @@ public class OrderDetailsService {
             response.setMessage("Details doesn't match");
             return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
         }
-        else if(!orderDetails.getOrderStatus().equals("Placed")){
+        else if(orderDetails.getOrderStatus() != OrderStatus.PLACED){
             response.setStatus(HttpStatus.BAD_REQUEST.value());
             response.setMessage("Order already processed");
             return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
@@ -171,24 +169,23 @@ public class OrderDetailsService {
 
         log.info("Validated the details successfully {}", orderDetailsWrapper);
 
-        // Validate User Product
-        UserProductsResponse<UserProducts> userResponse = ecomUserService.validateUserProduct(new UserProducts(orderDetailsWrapper.getUserName(), orderDetailsWrapper.getProductName())).getBody();
-        if(userResponse == null){
-            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
-            response.setMessage("Something went wrong !");
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-        if(userResponse.getStatus() != 200){
-            response.setStatus(HttpStatus.BAD_REQUEST.value());
-            response.setMessage("Details doesn't match");
-            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        // Validate User Product, a placed order of a User known to exist already shows the Product is in the User's list
+        Boolean userExists = userExistenceCache.lookup(orderDetailsWrapper.getUserName());
+        if(!Boolean.TRUE.equals(userExists) || !isOrderOf(orderDetails, orderDetailsWrapper)){
+            ResponseEntity<UserProductsResponse<OrderDetails>> userError = validateUserProduct(new UserProducts(orderDetailsWrapper.getUserName(), orderDetailsWrapper.getProductName()), userExists);
+            if(userError != null){
+                boolean serviceError = userError.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR;
+                response.setStatus(userError.getStatusCode().value());
+                response.setMessage(serviceError ? "Something went wrong !" : "Details doesn't match");
+                return new ResponseEntity<>(response, userError.getStatusCode());
+            }
         }
 
         log.info("Sending to ecomUserService to remove from userList {}",orderDetailsWrapper);
-        userProductKafkaTemplate.send("ecomOrderService_removeUserProduct", orderDetailsWrapper);
+        orderEventOutbox.append("ecomOrderService_removeUserProduct", orderDetailsWrapper);
 
         log.info("Sending to ecomProductService to Preserve the product {}",orderDetailsWrapper);
-        userProductKafkaTemplate.send("ecomOrderService_addToProductQuantity", orderDetailsWrapper);
+        orderEventOutbox.append("ecomOrderService_addToProductQuantity", orderDetailsWrapper);
 
         orderRepo.deleteById(orderDetailsWrapper.getOrderId());
         log.info("Order details successfully deleted");
@@ -200,28 +197,19 @@ public class OrderDetailsService {
     public ResponseEntity<UserProductsResponse<OrderDetails>> getOneOrderDetails(UserProducts userProduct){
         UserProductsResponse<OrderDetails> response = new UserProductsResponse<>();
 
-        UserProductsResponse<UserProducts> userResponse = ecomUserService.validateUserProduct(userProduct).getBody();
-        if(userResponse == null){
-            response.setData(null);
-            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
-            response.setMessage("Something went wrong !");
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-        if(userResponse.getStatus() != 200){
-            response.setData(new OrderDetails(-1,null,null,null,null));
-            response.setStatus(HttpStatus.BAD_REQUEST.value());
-            response.setMessage("User doesn't exists");
-            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        // Get First Unpaid Order, when the User is known to exist the order itself shows the Product is in the User's list
+        Boolean userExists = userExistenceCache.lookup(userProduct.getUserName());
+        OrderDetails order = findUnpaidOrderOfUserProduct(userProduct);
+        if(order == null || !Boolean.TRUE.equals(userExists)){
+            ResponseEntity<UserProductsResponse<OrderDetails>> userError = validateUserProduct(userProduct, userExists);
+            if(userError != null)
+                return userError;
         }
-
-        // Get First Unpaid Order
-        for(OrderDetails order : orderRepo.findAllByUserNameAndProductName(userProduct.getUserName(), userProduct.getProductName())){
-            if(order.getPaymentStatus().equals("Unpaid")) {
-                response.setData(order);
-                response.setMessage("Successfully retrieved User product details");
-                response.setStatus(HttpStatus.OK.value());
-                return new ResponseEntity<>(response,HttpStatus.OK);
-            }
+        if(order != null) {
+            response.setData(order);
+            response.setMessage("Successfully retrieved User product details");
+            response.setStatus(HttpStatus.OK.value());
+            return new ResponseEntity<>(response,HttpStatus.OK);
         }
 
         response.setMessage("No Such Order is available");
@@ -234,28 +222,19 @@ public class OrderDetailsService {
     public ResponseEntity<UserProductsResponse<OrderDetails>> updatePaymentStatus(UserProducts userProduct){
         UserProductsResponse<OrderDetails> response = new UserProductsResponse<>();
 
-        UserProductsResponse<UserProducts> userResponse = ecomUserService.validateUserProduct(userProduct).getBody();
-        if(userResponse == null){
-            response.setData(null);
-            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
-            response.setMessage("Something went wrong !");
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        Boolean userExists = userExistenceCache.lookup(userProduct.getUserName());
+        OrderDetails order = findUnpaidOrderOfUserProduct(userProduct);
+        if(order == null || !Boolean.TRUE.equals(userExists)){
+            ResponseEntity<UserProductsResponse<OrderDetails>> userError = validateUserProduct(userProduct, userExists);
+            if(userError != null)
+                return userError;
         }
-        if(userResponse.getStatus() != 200){
-            response.setData(new OrderDetails(-1,null,null,null,null));
-            response.setStatus(HttpStatus.BAD_REQUEST.value());
-            response.setMessage("User doesn't exists");
-            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        if (order != null) {
+            order.setPaymentStatus(PaymentStatus.PAID);
+            orderRepo.save(order);
+            response.setData(order);
         }
 
-        for(OrderDetails order : orderRepo.findAllByUserNameAndProductName(userProduct.getUserName(), userProduct.getProductName()))
-            if (order.getPaymentStatus().equals("Unpaid")) {
-                order.setPaymentStatus("Paid");
-                orderRepo.save(order);
-                response.setData(order);
-                break;
-            }
-
         response.setMessage("Successfully updated Product payment status");
         response.setStatus(HttpStatus.OK.value());
         return new ResponseEntity<>(response,HttpStatus.OK);
@@ -266,18 +245,18 @@ public class OrderDetailsService {
         OrderDetails userOrder = orderRepo.findById(orderId).get();
         UserProductsResponse<OrderDetails> response = new UserProductsResponse<>();
 
-        if(userOrder.getOrderStatus().equals("Delivered")){
+        if(userOrder.getOrderStatus() == OrderStatus.DELIVERED){
             UserProducts products = new UserProducts(userOrder.getUserName(), userOrder.getProductName());
             orderRepo.delete(userOrder);
             OrderDetailsWrapper orderDetailsWrapper = new OrderDetailsWrapper(userOrder.getOrderId(), userOrder.getUserName(), userOrder.getProductName());
 
             log.info("Sending to ecomUserService to remove from userList {}",orderDetailsWrapper);
-            userProductKafkaTemplate.send("ecomOrderService_removeUserProduct", orderDetailsWrapper);
+            orderEventOutbox.append("ecomOrderService_removeUserProduct", orderDetailsWrapper);
 
         }
-        else if(userOrder.getOrderStatus().equals("Placed")) {
-            if(userOrder.getPaymentStatus().equals("Paid")){
-                userOrder.setOrderStatus("Shipped");
+        else if(userOrder.getOrderStatus() == OrderStatus.PLACED) {
+            if(userOrder.getPaymentStatus() == PaymentStatus.PAID){
+                userOrder.setOrderStatus(OrderStatus.SHIPPED);
                 orderRepo.save(userOrder);
                 response.setData(userOrder);
                 response.setStatus(200);
@@ -291,7 +270,7 @@ public class OrderDetailsService {
             }
         }
         else{
-            userOrder.setOrderStatus("Delivered");
+            userOrder.setOrderStatus(OrderStatus.DELIVERED);
             orderRepo.save(userOrder);
             response.setData(userOrder);
             response.setStatus(200);
@@ -300,4 +279,68 @@ public class OrderDetailsService {
 
         return new ResponseEntity<>(response,HttpStatus.OK);
     }
-}
\ No newline at end of file
+
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getUserCacheStats(){
+        return new ResponseEntity<>(new UserProductsResponse<>(userExistenceCache.stats(),HttpStatus.OK.value(),"Returning the user cache statistics"),HttpStatus.OK);
+    }
+
+    // Returns the error response if ecomUserService doesn't confirm the User, null if the User exists
+    private <T> ResponseEntity<UserProductsResponse<T>> validateUserExists(String userName, T emptyData){
+        Boolean userExists = userExistenceCache.lookup(userName);
+        if(Boolean.TRUE.equals(userExists))
+            return null;
+        if(Boolean.FALSE.equals(userExists))
+            return new ResponseEntity<>(new UserProductsResponse<>(emptyData,HttpStatus.BAD_REQUEST.value(), "Something went wrong!"),HttpStatus.BAD_REQUEST);
+
+        UserProductsResponse<List<String>> response = ecomUserService.getAllUserProducts(userName).getBody();
+
+        if(response == null){
+            log.error("Error : The response from ecomUserService is null");
+            return new ResponseEntity<>(new UserProductsResponse<>(null,HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong !"),HttpStatus.BAD_REQUEST);
+        }
+        userExistenceCache.record(userName, response.getStatus() == 200);
+        if(response.getStatus() != 200)
+            return new ResponseEntity<>(new UserProductsResponse<>(emptyData,HttpStatus.BAD_REQUEST.value(), "Something went wrong!"),HttpStatus.BAD_REQUEST);
+
+        log.info("User Validation : {}",response);
+        return null;
+    }
+
+    // Returns the error response if ecomUserService doesn't find the Product in the User's list, null if it does
+    private ResponseEntity<UserProductsResponse<OrderDetails>> validateUserProduct(UserProducts userProduct, Boolean userExists){
+        if(Boolean.FALSE.equals(userExists))
+            return new ResponseEntity<>(new UserProductsResponse<>(new OrderDetails(-1,null,null,null,null),HttpStatus.BAD_REQUEST.value(), "User doesn't exists"),HttpStatus.BAD_REQUEST);
+
+        UserProductsResponse<UserProducts> userResponse = ecomUserService.validateUserProduct(userProduct).getBody();
+        if(userResponse == null)
+            return new ResponseEntity<>(new UserProductsResponse<>(null,HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong !"),HttpStatus.INTERNAL_SERVER_ERROR);
+        if(userResponse.getStatus() != 200)
+            return new ResponseEntity<>(new UserProductsResponse<>(new OrderDetails(-1,null,null,null,null),HttpStatus.BAD_REQUEST.value(), "User doesn't exists"),HttpStatus.BAD_REQUEST);
+
+        userExistenceCache.record(userProduct.getUserName(), true);
+        return null;
+    }
+
+    private OrderDetails findUnpaidOrderOfUserProduct(UserProducts userProduct){
+        return orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(userProduct.getUserName(), userProduct.getProductName(), PaymentStatus.UNPAID);
+    }
+
+    private static boolean isOrderOf(OrderDetails order, OrderDetailsWrapper orderDetailsWrapper){
+        return Objects.equals(order.getUserName(), orderDetailsWrapper.getUserName())
+                && Objects.equals(order.getProductName(), orderDetailsWrapper.getProductName());
+    }
+
+    private void writeOrderDetails(String userName, List<OrderDetails> page, OutputStream outputStream) throws IOException {
+        ObjectWriter orderWriter = objectMapper.writerFor(OrderDetails.class);
+        while(!page.isEmpty()){
+            for(OrderDetails order : page){
+                outputStream.write(orderWriter.writeValueAsBytes(order));
+                outputStream.write('\n');
+            }
+            outputStream.flush();
+            if(page.size() < streamPageSize)
+                return;
+            page = orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(userName, page.get(page.size() - 1).getOrderId(), Limit.of(streamPageSize));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.OutboxEventRepository;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Replaces direct Kafka sends from transactional service methods, the event is only published if the transaction commits
+@Slf4j
+@Component
+public class OrderEventOutbox {
+
+    @Autowired
+    private OutboxEventRepository outboxRepo;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String topic, OrderDetailsWrapper orderDetails) {
+        outboxRepo.save(new OutboxEvent(topic, orderDetails));
+        log.info("Queued {} for {}", orderDetails, topic);
+    }
+
+    // Only for events built here, with an id this service derived, never one taken from a request
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String topic, OrderDetailsWrapper orderDetails, String eventId) {
+        outboxRepo.save(new OutboxEvent(topic, orderDetails, eventId));
+        log.info("Queued {} for {} as {}", orderDetails, topic, eventId);
+    }
+
+    // One batch of inserts for all the events, they are published in the order given
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(String topic, List<OrderDetailsWrapper> orderDetails) {
+        List<OutboxEvent> events = new ArrayList<>(orderDetails.size());
+        for (OrderDetailsWrapper order : orderDetails)
+            events.add(new OutboxEvent(topic, order));
+        outboxRepo.saveAll(events);
+        log.info("Queued {} events for {}", events.size(), topic);
+    }
+}
@@ -0,0 +1,323 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.OrderRepository;
+import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
+import com.pcProject.ecomOrderService.feignRepository.EcomUserService;
+import com.pcProject.ecomOrderService.feignRepository.FeignCallExecutor;
+import com.pcProject.ecomOrderService.model.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Places an order, or all orders of a cart, in one call. The Products are reserved and the User validated concurrently,
+// then the orders are stored as Placed in the same transaction that queues them for the User's list, so Placed no longer
+// waits for ecomUsers to confirm over Kafka. When a later step fails, or the consume call failed and may still have
+// taken the stock, the placement is released through ecomOrderService_releaseReservation : ecomProducts gives back
+// whatever it took for that placement, once, however often the release is delivered.
+@Slf4j
+@Component
+public class OrderPlacementSaga {
+
+    public enum State {
+        STARTED,
+        RESERVING,
+        RESERVED,
+        PLACED,
+        COMPENSATING,
+        // Terminal states of a failed placement
+        COMPENSATED,
+        REJECTED,
+        FAILED
+    }
+
+    private final EcomProductService ecomProductService;
+    private final EcomUserService ecomUserService;
+    private final OrderRepository orderRepo;
+    private final OrderEventOutbox orderEventOutbox;
+    private final FeignCallExecutor feignCallExecutor;
+    private final UserExistenceCache userExistenceCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxCartUnits;
+
+    private final Map<State, LongAdder> outcomes = new EnumMap<>(State.class);
+    private final LongAdder placedNanos = new LongAdder();
+    private final AtomicLong maxPlacedNanos = new AtomicLong();
+
+    @Autowired
+    public OrderPlacementSaga(EcomProductService ecomProductService,
+                              EcomUserService ecomUserService,
+                              OrderRepository orderRepo,
+                              OrderEventOutbox orderEventOutbox,
+                              FeignCallExecutor feignCallExecutor,
+                              UserExistenceCache userExistenceCache,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${ecom.orders.cart.max-units:100}") int maxCartUnits) {
+        this.ecomProductService = ecomProductService;
+        this.ecomUserService = ecomUserService;
+        this.orderRepo = orderRepo;
+        this.orderEventOutbox = orderEventOutbox;
+        this.feignCallExecutor = feignCallExecutor;
+        this.userExistenceCache = userExistenceCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxCartUnits = maxCartUnits;
+        for (State state : State.values())
+            outcomes.put(state, new LongAdder());
+    }
+
+    // Runs outside of any transaction, a database connection isn't held while the other services answer
+    public ResponseEntity<UserProductsResponse<OrderDetails>> place(UserProducts product) {
+        long start = System.nanoTime();
+        Placement placement = new Placement(product);
+        ResponseEntity<UserProductsResponse<OrderDetails>> response = run(placement, product);
+        finish(placement, start);
+        return response;
+    }
+
+    // One order per unit, the User is validated once and the whole cart is reserved in one call
+    public ResponseEntity<UserProductsResponse<List<OrderDetails>>> placeCart(UserCart cart) {
+        long start = System.nanoTime();
+        Placement placement = new Placement(cart);
+        ResponseEntity<UserProductsResponse<List<OrderDetails>>> response = runCart(placement, cart);
+        finish(placement, start);
+        return response;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (State state : new State[]{State.PLACED, State.COMPENSATED, State.REJECTED, State.FAILED})
+            metrics.put(state.name().toLowerCase() + "Count", outcomes.get(state).sum());
+        long placed = outcomes.get(State.PLACED).sum();
+        metrics.put("averageMillisToPlaced", placed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(placedNanos.sum() / placed));
+        metrics.put("maxMillisToPlaced", TimeUnit.NANOSECONDS.toMillis(maxPlacedNanos.get()));
+        return metrics;
+    }
+
+    private ResponseEntity<UserProductsResponse<OrderDetails>> run(Placement placement, UserProducts product) {
+        // A User known to be missing is refused before any stock is reserved
+        Boolean userExists = userExistenceCache.lookup(product.getUserName());
+        if (Boolean.FALSE.equals(userExists)) {
+            placement.transition(State.REJECTED);
+            return new ResponseEntity<>(new UserProductsResponse<>(new OrderDetails(-1, null, null, null), HttpStatus.BAD_REQUEST.value(), "User doesn't exists"), HttpStatus.BAD_REQUEST);
+        }
+
+        // Reserve the Product and validate the User concurrently
+        placement.transition(State.RESERVING);
+        log.info("Sending to ecomProductService to consume the product : {}", product);
+        CompletableFuture<ResponseEntity<UserProductsResponse<ProductWrapper>>> consumeProductCall =
+                feignCallExecutor.submit(() -> ecomProductService.consumeProduct(new ProductWrapper(product.getProductName()), placement.placementId), false);
+        CompletableFuture<ResponseEntity<UserProductsResponse<UserProducts>>> validateUserCall = null;
+        if (userExists == null) {
+            log.info("Sending to ecomUserService to validate the user : {}", product.getUserName());
+            validateUserCall = feignCallExecutor.submit(() -> ecomUserService.validateUser(product));
+            feignCallExecutor.awaitAll(consumeProductCall, validateUserCall);
+        } else {
+            feignCallExecutor.awaitAll(consumeProductCall);
+        }
+
+        // A failed call may still have taken the unit, ecomProducts releases whatever the placement took
+        UserProductsResponse<ProductWrapper> validateProduct = FeignCallExecutor.bodyOf(consumeProductCall);
+        if (validateProduct == null) {
+            log.error("Error : product is not valid from ecomProductService");
+            release(placement, product.getUserName());
+            return new ResponseEntity<>(new UserProductsResponse<>(null, HttpStatus.INTERNAL_SERVER_ERROR.value(), "product is not valid from ecomProductService"), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if (validateProduct.getStatus() != 200) {
+            placement.transition(State.REJECTED);
+            OrderDetails rejectedOrder = new OrderDetails(-1, null, null, null);
+            rejectedOrder.setPaymentStatus(null);
+            return new ResponseEntity<>(new UserProductsResponse<>(rejectedOrder, validateProduct.getStatus(), validateProduct.getMessage()), HttpStatus.BAD_REQUEST);
+        }
+        placement.transition(State.RESERVED);
+        log.info("Successfully Consumed the Product from ecomProductService {}", validateProduct);
+        Map<String, Integer> quantities = Collections.singletonMap(product.getProductName(), 1);
+
+        if (validateUserCall != null) {
+            UserProductsResponse<UserProducts> serviceResponse = FeignCallExecutor.bodyOf(validateUserCall);
+            if (serviceResponse == null) {
+                log.error("Something went wrong while adding Product to user");
+                release(placement, product.getUserName());
+                return new ResponseEntity<>(new UserProductsResponse<>(null, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong while adding Product to user"), HttpStatus.BAD_REQUEST);
+            }
+            userExistenceCache.record(product.getUserName(), serviceResponse.getData() != null);
+            if (serviceResponse.getData() == null) {
+                release(placement, product.getUserName());
+                return new ResponseEntity<>(new UserProductsResponse<>(new OrderDetails(-1, null, null, null), HttpStatus.BAD_REQUEST.value(), "User doesn't exists"), HttpStatus.BAD_REQUEST);
+            }
+        }
+        log.info("User Validation Successful : {}", product.getUserName());
+
+        OrderDetails newOrder;
+        try {
+            newOrder = transactionTemplate.execute(status -> savePlacedOrders(product.getUserName(), quantities).get(0));
+        } catch (RuntimeException e) {
+            log.error("Could not store the order of {}", product, e);
+            release(placement, product.getUserName());
+            return new ResponseEntity<>(new UserProductsResponse<>(null, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong while placing the order"), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        placement.transition(State.PLACED);
+        return new ResponseEntity<>(new UserProductsResponse<>(newOrder, HttpStatus.OK.value(), "Order placed"), HttpStatus.OK);
+    }
+
+    private ResponseEntity<UserProductsResponse<List<OrderDetails>>> runCart(Placement placement, UserCart cart) {
+        String userName = cart.getUserName();
+        Map<String, Integer> quantities = quantitiesOf(cart);
+        if (userName == null || quantities == null) {
+            placement.transition(State.REJECTED);
+            return new ResponseEntity<>(new UserProductsResponse<>(new ArrayList<>(), HttpStatus.BAD_REQUEST.value(), "Invalid cart, at most " + maxCartUnits + " units with a positive quantity each"), HttpStatus.BAD_REQUEST);
+        }
+
+        Boolean userExists = userExistenceCache.lookup(userName);
+        if (Boolean.FALSE.equals(userExists)) {
+            placement.transition(State.REJECTED);
+            return new ResponseEntity<>(new UserProductsResponse<>(new ArrayList<>(), HttpStatus.BAD_REQUEST.value(), "User doesn't exists"), HttpStatus.BAD_REQUEST);
+        }
+
+        placement.transition(State.RESERVING);
+        List<ProductQuantity> lines = new ArrayList<>();
+        quantities.forEach((productName, quantity) -> lines.add(new ProductQuantity(productName, quantity)));
+        log.info("Sending to ecomProductService to consume the cart of {} : {}", userName, lines);
+        CompletableFuture<ResponseEntity<UserProductsResponse<List<ProductQuantity>>>> consumeProductsCall =
+                feignCallExecutor.submit(() -> ecomProductService.consumeProducts(lines, placement.placementId), false);
+        CompletableFuture<ResponseEntity<UserProductsResponse<UserProducts>>> validateUserCall = null;
+        if (userExists == null) {
+            log.info("Sending to ecomUserService to validate the user : {}", userName);
+            validateUserCall = feignCallExecutor.submit(() -> ecomUserService.validateUser(new UserProducts(userName, null)));
+            feignCallExecutor.awaitAll(consumeProductsCall, validateUserCall);
+        } else {
+            feignCallExecutor.awaitAll(consumeProductsCall);
+        }
+
+        UserProductsResponse<List<ProductQuantity>> consumedProducts = FeignCallExecutor.bodyOf(consumeProductsCall);
+        if (consumedProducts == null) {
+            log.error("Error : products are not valid from ecomProductService");
+            release(placement, userName);
+            return new ResponseEntity<>(new UserProductsResponse<>(null, HttpStatus.INTERNAL_SERVER_ERROR.value(), "products are not valid from ecomProductService"), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        // ecomProducts takes all lines or none, nothing is reserved when it refuses the cart
+        if (consumedProducts.getStatus() != 200) {
+            placement.transition(State.REJECTED);
+            return new ResponseEntity<>(new UserProductsResponse<>(new ArrayList<>(), consumedProducts.getStatus(), consumedProducts.getMessage()), HttpStatus.BAD_REQUEST);
+        }
+        placement.transition(State.RESERVED);
+
+        if (validateUserCall != null) {
+            UserProductsResponse<UserProducts> serviceResponse = FeignCallExecutor.bodyOf(validateUserCall);
+            if (serviceResponse == null) {
+                log.error("Something went wrong while adding Products to user");
+                release(placement, userName);
+                return new ResponseEntity<>(new UserProductsResponse<>(null, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong while adding Products to user"), HttpStatus.BAD_REQUEST);
+            }
+            userExistenceCache.record(userName, serviceResponse.getData() != null);
+            if (serviceResponse.getData() == null) {
+                release(placement, userName);
+                return new ResponseEntity<>(new UserProductsResponse<>(new ArrayList<>(), HttpStatus.BAD_REQUEST.value(), "User doesn't exists"), HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        List<OrderDetails> newOrders;
+        try {
+            newOrders = transactionTemplate.execute(status -> savePlacedOrders(userName, quantities));
+        } catch (RuntimeException e) {
+            log.error("Could not store the orders of {}", cart, e);
+            release(placement, userName);
+            return new ResponseEntity<>(new UserProductsResponse<>(null, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong while placing the orders"), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        placement.transition(State.PLACED);
+        return new ResponseEntity<>(new UserProductsResponse<>(newOrders, HttpStatus.OK.value(), "Orders placed"), HttpStatus.OK);
+    }
+
+    // Units per Product in the order they were added to the cart, null if a line is invalid or the cart is too big
+    private Map<String, Integer> quantitiesOf(UserCart cart) {
+        if (cart.getProducts() == null || cart.getProducts().isEmpty())
+            return null;
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        int units = 0;
+        for (ProductQuantity line : cart.getProducts()) {
+            if (line == null || line.getProductName() == null || line.getProductQuantity() <= 0)
+                return null;
+            units += line.getProductQuantity();
+            if (units > maxCartUnits)
+                return null;
+            quantities.merge(line.getProductName(), line.getProductQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    // ecomUsers adds the Products to the User's list from the outbox events, its confirmation is no longer waited for
+    private List<OrderDetails> savePlacedOrders(String userName, Map<String, Integer> quantities) {
+        List<OrderDetails> newOrders = new ArrayList<>();
+        quantities.forEach((productName, quantity) -> {
+            for (int i = 0; i < quantity; i++) {
+                OrderDetails newOrder = new OrderDetails();
+                newOrder.setUserName(userName);
+                newOrder.setProductName(productName);
+                newOrder.setOrderStatus(OrderStatus.PLACED);
+                newOrder.setPaymentStatus(PaymentStatus.UNPAID);
+                newOrders.add(newOrder);
+            }
+        });
+        orderRepo.saveAll(newOrders);
+
+        List<OrderDetailsWrapper> userProducts = new ArrayList<>(newOrders.size());
+        for (OrderDetails newOrder : newOrders)
+            userProducts.add(new OrderDetailsWrapper(newOrder.getOrderId(), newOrder.getUserName(), newOrder.getProductName()));
+        log.info("Sending to ecomUserService append {} orders to userList of {}", userProducts.size(), userName);
+        orderEventOutbox.appendAll("ecomOrderService_addUserProduct", userProducts);
+        return newOrders;
+    }
+
+    private void finish(Placement placement, long start) {
+        outcomes.get(placement.state).increment();
+        if (placement.state == State.PLACED) {
+            long elapsedNanos = System.nanoTime() - start;
+            placedNanos.add(elapsedNanos);
+            maxPlacedNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+    }
+
+    // Returns what ecomProducts took for the placement, nothing if it took nothing, through the outbox so it survives
+    // ecomProducts being down. The placement id is the event's id, so the release is the same event however often it's sent
+    private void release(Placement placement, String userName) {
+        placement.transition(State.COMPENSATING);
+        try {
+            transactionTemplate.executeWithoutResult(status -> orderEventOutbox.append("ecomOrderService_releaseReservation",
+                    new OrderDetailsWrapper(0, userName, null), placement.placementId));
+            placement.transition(State.COMPENSATED);
+        } catch (RuntimeException e) {
+            log.error("Could not release the placement {} of {}", placement.placementId, placement.order, e);
+            placement.transition(State.FAILED);
+        }
+    }
+
+    private static final class Placement {
+        private final String placementId = UUID.randomUUID().toString();
+        private final Object order;
+        private State state = State.STARTED;
+
+        private Placement(Object order) {
+            this.order = order;
+        }
+
+        private void transition(State next) {
+            log.debug("Order placement of {} : {} -> {}", order, state, next);
+            state = next;
+        }
+    }
+}
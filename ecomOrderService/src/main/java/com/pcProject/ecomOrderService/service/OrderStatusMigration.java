@@ -0,0 +1,101 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+// The statuses of order_details used to be free-form labels in varchar columns. ddl-auto=update doesn't change a
+// column's type, so the labels are rewritten to the enums' codes and the columns turned into tinyint once at startup,
+// before anything reads an order. Safe to repeat : codes are left as they are and a tinyint column is skipped.
+@Slf4j
+@Component
+public class OrderStatusMigration {
+
+    static final String TABLE = "order_details";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public OrderStatusMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrateLegacyStatuses() {
+        migrateColumn("order_status", codesByLabel(OrderStatus.values(), OrderStatus::getLabel, new OrderStatus.DbConverter()::convertToDatabaseColumn));
+        migrateColumn("payment_status", codesByLabel(PaymentStatus.values(), PaymentStatus::getLabel, new PaymentStatus.DbConverter()::convertToDatabaseColumn));
+    }
+
+    private void migrateColumn(String column, Map<String, Byte> codesByLabel) {
+        if (!isTextColumn(column))
+            return;
+        // Case-insensitive, the old code wrote both "Unpaid" and "UnPaid"
+        StringJoiner labelsToCodes = new StringJoiner(" ", "case lower(" + column + ") ", " else " + column + " end");
+        StringJoiner codes = new StringJoiner(", ", "(", ")");
+        codesByLabel.forEach((label, code) -> {
+            labelsToCodes.add("when '" + label.toLowerCase() + "' then '" + code + "'");
+            codes.add("'" + code + "'");
+        });
+
+        // The labels are rewritten and checked in one transaction, MySQL commits on its own before an ALTER TABLE
+        Integer rewritten = transactionTemplate.execute(status -> {
+            int rows = jdbcTemplate.update("Update " + TABLE + " set " + column + " = " + labelsToCodes + " where " + column + " is not null");
+            Integer unknown = jdbcTemplate.queryForObject("Select count(*) from " + TABLE + " where " + column + " not in " + codes, Integer.class);
+            if (unknown != null && unknown > 0)
+                throw new IllegalStateException(unknown + " rows of " + TABLE + " have an unknown " + column + ", fix them before starting");
+            return rows;
+        });
+        jdbcTemplate.execute(alterToTinyint(column));
+        log.info("Migrated {} of {} rows of {} from labels to codes", column, rewritten, TABLE);
+    }
+
+    // H2 upper-cases unquoted names, MySQL keeps them as created
+    private boolean isTextColumn(String column) {
+        Integer dataType = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Integer type = columnType(metaData, connection.getCatalog(), TABLE, column);
+            return type != null ? type : columnType(metaData, connection.getCatalog(), TABLE.toUpperCase(), column.toUpperCase());
+        });
+        return dataType != null && Set.of(Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR).contains(dataType);
+    }
+
+    private static Integer columnType(DatabaseMetaData metaData, String catalog, String table, String column) throws SQLException {
+        try (ResultSet columns = metaData.getColumns(catalog, null, table, column)) {
+            return columns.next() ? columns.getInt("DATA_TYPE") : null;
+        }
+    }
+
+    // MySQL has no ALTER COLUMN for the type
+    private String alterToTinyint(String column) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (product != null && product.toLowerCase().contains("mysql"))
+            return "Alter table " + TABLE + " modify " + column + " tinyint null";
+        return "Alter table " + TABLE + " alter column " + column + " tinyint null";
+    }
+
+    private static <T> Map<String, Byte> codesByLabel(T[] statuses, Function<T, String> label, Function<T, Byte> code) {
+        Map<String, Byte> codes = new LinkedHashMap<>();
+        for (T status : statuses)
+            codes.put(label.apply(status), code.apply(status));
+        return codes;
+    }
+}
@@ -0,0 +1,140 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.OutboxEventRepository;
+import com.pcProject.ecomOrderService.model.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Publishes the outbox in id order. A batch is sent asynchronously and flushed once, then only the events up to the
+// first failed send are deleted, so nothing is lost or reordered for a User; a retried event may be delivered twice.
+// Events are keyed by userName so all events of a User land on the same partition in order, stock changes by
+// productName since ecomProducts updates the Product row, so no two consumer threads change the same Product.
+// A batch is claimed in a short transaction that leases it to this relay, published with no transaction or row lock
+// held, and the published events are deleted in a second short transaction. The oldest events stay leased while they
+// are published, so with several replicas only one publishes at a time. Skipping the leased rows instead would let
+// another replica publish a User's later events ahead of the earlier ones. A relay that dies keeps the lease until it
+// runs out, it's longer than the send timeout so a live relay is done with its batch before then.
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    static final String PRODUCT_QUANTITY_TOPIC = "ecomOrderService_addToProductQuantity";
+
+    private final OutboxEventRepository outboxRepo;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long sendTimeoutMillis;
+    private final long leaseMillis;
+    private final String relayId = UUID.randomUUID().toString();
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxRepo,
+                       @Qualifier("userProductKafkaTemplate") KafkaTemplate<String, Object> kafkaTemplate,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${ecom.outbox.batch-size:500}") int batchSize,
+                       @Value("${ecom.outbox.send-timeout-ms:10000}") long sendTimeoutMillis,
+                       @Value("${ecom.outbox.lease-ms:30000}") long leaseMillis) {
+        this.outboxRepo = outboxRepo;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.leaseMillis = leaseMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${ecom.outbox.poll-interval-ms:200}")
+    public void publishPending() {
+        int published;
+        do {
+            published = publishBatch();
+        } while (published == batchSize);
+    }
+
+    // Returns the number of events published and removed from the outbox, 0 while another replica holds the batch
+    public int publishBatch() {
+        List<OutboxEvent> events = claimBatch();
+        if (events.isEmpty())
+            return 0;
+
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(events.size());
+        for (OutboxEvent event : events)
+            sends.add(kafkaTemplate.send(event.getTopic(), partitionKey(event), event.toOrderDetailsWrapper()));
+        kafkaTemplate.flush();
+
+        List<Long> publishedIds = new ArrayList<>(events.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        for (int i = 0; i < events.size(); i++) {
+            if (!awaitSend(sends.get(i), events.get(i), deadline))
+                break;
+            publishedIds.add(events.get(i).getOutboxEventId());
+        }
+
+        // The events left after a failed send are released, the next poll of any replica retries them in order
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!publishedIds.isEmpty())
+                outboxRepo.deleteAllByIdInBatch(publishedIds);
+            outboxRepo.releaseLease(relayId);
+        });
+        log.info("Published {} of {} outbox events", publishedIds.size(), events.size());
+        return publishedIds.size();
+    }
+
+    // The oldest events, leased to this relay unless another one's lease on them still runs
+    private List<OutboxEvent> claimBatch() {
+        try {
+            List<OutboxEvent> events = transactionTemplate.execute(status -> {
+                List<OutboxEvent> oldest = outboxRepo.findBatchToPublish(PageRequest.of(0, batchSize));
+                long now = System.currentTimeMillis();
+                if (oldest.isEmpty() || oldest.stream().anyMatch(event -> isLeasedToAnother(event, now)))
+                    return List.of();
+                outboxRepo.lease(oldest.stream().map(OutboxEvent::getOutboxEventId).toList(), relayId, now + leaseMillis);
+                return oldest;
+            });
+            return events == null ? List.of() : events;
+        } catch (PessimisticLockingFailureException e) {
+            log.debug("Outbox batch is being claimed by another instance");
+            return List.of();
+        }
+    }
+
+    private boolean isLeasedToAnother(OutboxEvent event, long now) {
+        return event.getLeasedBy() != null && !relayId.equals(event.getLeasedBy())
+                && event.getLeasedUntil() != null && event.getLeasedUntil() > now;
+    }
+
+    static String partitionKey(OutboxEvent event) {
+        return PRODUCT_QUANTITY_TOPIC.equals(event.getTopic()) ? event.getProductName() : event.getUserName();
+    }
+
+    private boolean awaitSend(CompletableFuture<SendResult<String, Object>> send, OutboxEvent event, long deadline) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("Could not publish outbox event {} to {}, retrying later : {}", event.getOutboxEventId(), event.getTopic(), e.toString());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package com.pcProject.ecomOrderService.service;
 
-import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
 import com.pcProject.ecomOrderService.feignRepository.EcomUserService;
+import com.pcProject.ecomOrderService.feignRepository.FeignCallExecutor;
 import com.pcProject.ecomOrderService.model.OrderDetails;
-import com.pcProject.ecomOrderService.model.ProductWrapper;
 import com.pcProject.ecomOrderService.model.UserProducts;
 import com.pcProject.ecomOrderService.model.UserProductsResponse;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,7 +10,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class PaymentDetailsService {
@@ -19,9 +21,11 @@ public class PaymentDetailsService {
     @Autowired
     private EcomUserService ecomUserService;
     @Autowired
-    private EcomProductService ecomProductService;
-    @Autowired
     private OrderDetailsService orderDetailsService;
+    @Autowired
+    private FeignCallExecutor feignCallExecutor;
+    @Autowired
+    private ProductPriceCache productPriceCache;
 
     public ResponseEntity<UserProductsResponse<String>> getAllPayment(String userName){
         UserProductsResponse<List<String>> response = ecomUserService.getAllUserProducts(userName).getBody();
@@ -33,15 +37,9 @@ public class PaymentDetailsService {
             return new ResponseEntity<>(new UserProductsResponse<String>(null,response.getStatus(),response.getMessage()),HttpStatus.BAD_REQUEST);
         }
 
-        int totalPayment = 0;
-
-        // To count all Product values
-        for(String productName : response.getData()){
-            ResponseEntity<UserProductsResponse<String>> productValueResponse = ecomProductService.getProductValue(new ProductWrapper(productName));
-            if(productValueResponse != null && productValueResponse.getBody() != null){
-                totalPayment += Integer.parseInt(productValueResponse.getBody().getData());
-            }
-        }
+        // To count all Product values, served from the price cache in the common case
+        Map<String,Integer> productValues = productPriceCache.getProductValues(response.getData());
+        int totalPayment = productValues == null ? 0 : getTotalPayment(response.getData(), productValues);
 
         return new ResponseEntity<>(new UserProductsResponse<String>(Integer.toString(totalPayment),response.getStatus(),response.getMessage()),HttpStatus.OK);
     }
@@ -93,22 +91,41 @@ public class PaymentDetailsService {
             return new ResponseEntity<>(new UserProductsResponse<String>(null,response.getStatus(),response.getMessage()),HttpStatus.BAD_REQUEST);
         }
 
-        int totalPayment = 0;
-        for(String productName : response.getData()){
-            ResponseEntity<UserProductsResponse<String>> productValueResponse = ecomProductService.getProductValue(new ProductWrapper(productName));
-            ecomUserService.removeUserProduct(new UserProducts(userName,productName));
-
-            if(productValueResponse == null || productValueResponse.getBody() == null){
-                response.setData(null);
-                response.setStatus(500);
-                response.setMessage("Something went wrong !");
-                return new ResponseEntity<>(new UserProductsResponse<String>(null,response.getStatus(),response.getMessage()),HttpStatus.BAD_REQUEST);
-            }
-            totalPayment += Integer.parseInt(productValueResponse.getBody().getData());
+        Map<String,Integer> productValues = productPriceCache.getProductValues(response.getData());
+        if(productValues == null){
+            return new ResponseEntity<>(new UserProductsResponse<String>(null,500,"Something went wrong !"),HttpStatus.BAD_REQUEST);
         }
 
+        int totalPayment = getTotalPayment(response.getData(), productValues);
+        List<CompletableFuture<ResponseEntity<UserProductsResponse<UserProducts>>>> removeUserProductCalls = new ArrayList<>();
+        for(String productName : response.getData())
+            removeUserProductCalls.add(feignCallExecutor.submit(() -> ecomUserService.removeUserProduct(new UserProducts(userName,productName)), false));
+        feignCallExecutor.awaitAll(removeUserProductCalls.toArray(new CompletableFuture<?>[0]));
+
+        // The payment isn't settled while a Product is still on the User's list
+        List<String> notRemoved = new ArrayList<>();
+        for(int i = 0; i < removeUserProductCalls.size(); i++){
+            UserProductsResponse<UserProducts> removed = FeignCallExecutor.bodyOf(removeUserProductCalls.get(i));
+            if(removed == null || removed.getStatus() != 200)
+                notRemoved.add(response.getData().get(i));
+        }
+        if(!notRemoved.isEmpty())
+            return new ResponseEntity<>(new UserProductsResponse<String>(null,500,"Payment not settled, could not remove the Products : "+String.join(", ", notRemoved)),HttpStatus.BAD_REQUEST);
+
         response.setMessage("Payment settled");
 
         return new ResponseEntity<>(new UserProductsResponse<String>(Integer.toString(totalPayment),response.getStatus(),response.getMessage()),HttpStatus.OK);
     }
+
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getPriceCacheStats(){
+        return new ResponseEntity<>(new UserProductsResponse<>(productPriceCache.stats(),HttpStatus.OK.value(),"Returning the price cache statistics"),HttpStatus.OK);
+    }
+
+    // A Product ordered multiple times is counted once per order, unknown Products are skipped
+    static int getTotalPayment(List<String> productNames, Map<String,Integer> productValues){
+        int totalPayment = 0;
+        for(String productName : productNames)
+            totalPayment += productValues.getOrDefault(productName, 0);
+        return totalPayment;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
+import com.pcProject.ecomOrderService.model.ProductPrice;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Product values for the payment paths. Misses are fetched from ecomProductService in one call, ecomProducts
+// pushes every price change on ecomProducts_productPriceChanged and the TTL bounds how stale a price can get
+// if one of those events is lost.
+@Slf4j
+@Component
+public class ProductPriceCache {
+
+    public static final String PRICE_CHANGED_TOPIC = "ecomProducts_productPriceChanged";
+
+    private final EcomProductService ecomProductService;
+    private final Cache<String, Integer> productValues;
+
+    @Autowired
+    public ProductPriceCache(EcomProductService ecomProductService,
+                             @Value("${ecom.prices.cache.max-size:10000}") long maxSize,
+                             @Value("${ecom.prices.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.ecomProductService = ecomProductService;
+        this.productValues = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    // Values of the given Products, unknown Products are left out. Null if the missing values couldn't be fetched
+    public Map<String, Integer> getProductValues(List<String> productNames) {
+        Map<String, Integer> values = new HashMap<>();
+        List<String> missingNames = lookup(productNames, values);
+        if (missingNames.isEmpty())
+            return values;
+
+        ResponseEntity<UserProductsResponse<Map<String, Integer>>> response = ecomProductService.getProductValues(missingNames);
+        if (response == null || response.getBody() == null || response.getBody().getData() == null)
+            return null;
+        return record(response.getBody().getData(), values);
+    }
+
+    // Same as getProductValues for the reactive paths, fetchMissing is the non-blocking call to ecomProductService.
+    // Empty if the missing values couldn't be fetched
+    public Mono<Map<String, Integer>> getProductValues(List<String> productNames, Function<List<String>, Mono<Map<String, Integer>>> fetchMissing) {
+        Map<String, Integer> values = new HashMap<>();
+        List<String> missingNames = lookup(productNames, values);
+        if (missingNames.isEmpty())
+            return Mono.just(values);
+        return fetchMissing.apply(missingNames).map(fetched -> record(fetched, values));
+    }
+
+    // Puts the cached values into values, returns the Products that weren't cached
+    private List<String> lookup(List<String> productNames, Map<String, Integer> values) {
+        LinkedHashSet<String> distinctNames = new LinkedHashSet<>(productNames);
+        values.putAll(productValues.getAllPresent(distinctNames));
+        List<String> missingNames = new ArrayList<>();
+        for (String productName : distinctNames)
+            if (!values.containsKey(productName))
+                missingNames.add(productName);
+        return missingNames;
+    }
+
+    // A price change received while the call was in flight is newer than the fetched value, keep it
+    private Map<String, Integer> record(Map<String, Integer> fetched, Map<String, Integer> values) {
+        fetched.forEach((productName, productValue) ->
+                values.put(productName, productValues.asMap().merge(productName, productValue, (cached, fetchedValue) -> cached)));
+        return values;
+    }
+
+    @KafkaListener(topics = PRICE_CHANGED_TOPIC, containerFactory = "productPriceListenerContainerFactory")
+    public void kafkaConsumer_productPriceChanged(ProductPrice productPrice) {
+        if (productPrice == null || productPrice.getProductName() == null)
+            return;
+        log.info("Received price change {}", productPrice);
+        if (productPrice.getProductValue() == null)
+            productValues.invalidate(productPrice.getProductName());
+        else
+            productValues.put(productPrice.getProductName(), productPrice.getProductValue());
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = productValues.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hitCount", stats.hitCount());
+        metrics.put("missCount", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictionCount", stats.evictionCount());
+        metrics.put("estimatedSize", productValues.estimatedSize());
+        return metrics;
+    }
+}
@@ -0,0 +1,131 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.ReactiveOrderRepository;
+import com.pcProject.ecomOrderService.feignRepository.ReactiveEcomProductService;
+import com.pcProject.ecomOrderService.feignRepository.ReactiveEcomUserService;
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import com.pcProject.ecomOrderService.model.UserProducts;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Non-blocking versions of the read paths of OrderDetailsService and PaymentDetailsService. The answers are the same,
+// no thread is held while ecomUserService, ecomProductService or the database answer
+@Slf4j
+@Service
+public class ReactiveQueryService {
+
+    @Autowired
+    private ReactiveEcomUserService reactiveEcomUserService;
+    @Autowired
+    private ReactiveEcomProductService reactiveEcomProductService;
+    @Autowired
+    private ReactiveOrderRepository reactiveOrderRepo;
+    @Autowired
+    private UserExistenceCache userExistenceCache;
+    @Autowired
+    private ProductPriceCache productPriceCache;
+
+    @Value("${ecom.orders.stream.page-size:500}")
+    private int streamPageSize;
+
+    public Mono<ResponseEntity<UserProductsResponse<List<OrderDetails>>>> getAllOrderDetails(String userName){
+        return this.<List<OrderDetails>>validateUserExists(userName, new ArrayList<>())
+                .flatMap(userError -> userError.isPresent() ? Mono.just(userError.get())
+                        : reactiveOrderRepo.findAllByUserName(userName).collectList()
+                                .map(orderList -> new ResponseEntity<>(new UserProductsResponse<>(orderList,HttpStatus.OK.value(), "Details retrieved successfully"),HttpStatus.OK)));
+    }
+
+    // All orders of a User, the next page is only read once the client has taken the previous one.
+    // A User with orders exists, ecomUserService is only asked when there are none
+    public Flux<OrderDetails> streamOrderDetails(String userName){
+        return reactiveOrderRepo.streamAllByUserName(userName, streamPageSize)
+                .switchIfEmpty(Mono.defer(() -> validateUserExists(userName, null)).flatMapMany(userError -> userError.isPresent()
+                        ? Flux.<OrderDetails>error(new ResponseStatusException(userError.get().getStatusCode(), userError.get().getBody().getMessage()))
+                        : Flux.<OrderDetails>empty()));
+    }
+
+    // Get First Unpaid Order of User Product
+    public Mono<ResponseEntity<UserProductsResponse<OrderDetails>>> getOneOrderDetails(UserProducts userProduct){
+        // When the User is known to exist the order itself shows the Product is in the User's list
+        Boolean userExists = userExistenceCache.lookup(userProduct.getUserName());
+        return reactiveOrderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(userProduct.getUserName(), userProduct.getProductName(), PaymentStatus.UNPAID)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(order -> {
+                    Mono<Optional<ResponseEntity<UserProductsResponse<OrderDetails>>>> userError = order.isEmpty() || !Boolean.TRUE.equals(userExists)
+                            ? validateUserProduct(userProduct, userExists) : Mono.just(Optional.empty());
+                    return userError.map(error -> error.orElseGet(() -> unpaidOrderResponse(order.orElse(null))));
+                });
+    }
+
+    public Mono<ResponseEntity<UserProductsResponse<String>>> getAllPayment(String userName){
+        return reactiveEcomUserService.getAllUserProducts(userName)
+                .flatMap(response -> {
+                    if(response.getStatus() != 200)
+                        return Mono.just(new ResponseEntity<>(new UserProductsResponse<String>(null,response.getStatus(),response.getMessage()),HttpStatus.BAD_REQUEST));
+
+                    // To count all Product values, served from the price cache in the common case
+                    return productPriceCache.getProductValues(response.getData(), missingNames -> reactiveEcomProductService.getProductValues(missingNames).mapNotNull(UserProductsResponse::getData))
+                            .map(productValues -> PaymentDetailsService.getTotalPayment(response.getData(), productValues))
+                            .defaultIfEmpty(0)
+                            .map(totalPayment -> new ResponseEntity<>(new UserProductsResponse<>(Integer.toString(totalPayment),response.getStatus(),response.getMessage()),HttpStatus.OK));
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> new ResponseEntity<>(new UserProductsResponse<>(null,500,"Something went wrong !"),HttpStatus.BAD_REQUEST)));
+    }
+
+    private static ResponseEntity<UserProductsResponse<OrderDetails>> unpaidOrderResponse(OrderDetails order){
+        if(order != null)
+            return new ResponseEntity<>(new UserProductsResponse<>(order,HttpStatus.OK.value(), "Successfully retrieved User product details"),HttpStatus.OK);
+        return new ResponseEntity<>(new UserProductsResponse<>(null,HttpStatus.BAD_REQUEST.value(), "No Such Order is available"),HttpStatus.BAD_REQUEST);
+    }
+
+    // The error response if ecomUserService doesn't confirm the User, an empty Optional if the User exists
+    private <T> Mono<Optional<ResponseEntity<UserProductsResponse<T>>>> validateUserExists(String userName, T emptyData){
+        Boolean userExists = userExistenceCache.lookup(userName);
+        if(Boolean.TRUE.equals(userExists))
+            return Mono.just(Optional.empty());
+        if(Boolean.FALSE.equals(userExists))
+            return Mono.just(Optional.of(new ResponseEntity<>(new UserProductsResponse<>(emptyData,HttpStatus.BAD_REQUEST.value(), "Something went wrong!"),HttpStatus.BAD_REQUEST)));
+
+        return reactiveEcomUserService.getAllUserProducts(userName)
+                .map(response -> {
+                    userExistenceCache.record(userName, response.getStatus() == 200);
+                    if(response.getStatus() != 200)
+                        return Optional.of(new ResponseEntity<>(new UserProductsResponse<>(emptyData,HttpStatus.BAD_REQUEST.value(), "Something went wrong!"),HttpStatus.BAD_REQUEST));
+                    log.info("User Validation : {}",response);
+                    return Optional.<ResponseEntity<UserProductsResponse<T>>>empty();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.error("Error : The response from ecomUserService is null");
+                    return Optional.of(new ResponseEntity<>(new UserProductsResponse<>(null,HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong !"),HttpStatus.BAD_REQUEST));
+                }));
+    }
+
+    // The error response if ecomUserService doesn't find the Product in the User's list, an empty Optional if it does
+    private Mono<Optional<ResponseEntity<UserProductsResponse<OrderDetails>>>> validateUserProduct(UserProducts userProduct, Boolean userExists){
+        if(Boolean.FALSE.equals(userExists))
+            return Mono.just(Optional.of(new ResponseEntity<>(new UserProductsResponse<>(new OrderDetails(-1,null,null,null,null),HttpStatus.BAD_REQUEST.value(), "User doesn't exists"),HttpStatus.BAD_REQUEST)));
+
+        return reactiveEcomUserService.validateUserProduct(userProduct)
+                .map(userResponse -> {
+                    if(userResponse.getStatus() != 200)
+                        return Optional.of(new ResponseEntity<>(new UserProductsResponse<>(new OrderDetails(-1,null,null,null,null),HttpStatus.BAD_REQUEST.value(), "User doesn't exists"),HttpStatus.BAD_REQUEST));
+                    userExistenceCache.record(userProduct.getUserName(), true);
+                    return Optional.<ResponseEntity<UserProductsResponse<OrderDetails>>>empty();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> Optional.of(new ResponseEntity<>(new UserProductsResponse<OrderDetails>(null,HttpStatus.INTERNAL_SERVER_ERROR.value(), "Something went wrong !"),HttpStatus.INTERNAL_SERVER_ERROR))));
+    }
+}
@@ -0,0 +1,119 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pcProject.ecomOrderService.model.UserExistence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Whether a User exists, for the order paths that only need to know the User is there. Missing Users are cached
+// for a shorter time than existing ones, a sign up is the common way the answer changes. ecomUsers pushes every
+// profile creation and deletion on ecomUsers_userChanged, the TTLs bound staleness if one of those events is lost.
+@Slf4j
+@Component
+public class UserExistenceCache {
+
+    public static final String USER_CHANGED_TOPIC = "ecomUsers_userChanged";
+
+    private final Cache<String, VerifiedUser> users;
+    private final LongAdder existingHits = new LongAdder();
+    private final LongAdder missingHits = new LongAdder();
+    private final LongAdder hitAgeNanos = new LongAdder();
+    private final AtomicLong maxHitAgeNanos = new AtomicLong();
+    private final LongAdder eventCount = new LongAdder();
+    private volatile long lastEventNanos;
+
+    @Autowired
+    public UserExistenceCache(@Value("${ecom.users.cache.max-size:100000}") long maxSize,
+                              @Value("${ecom.users.cache.ttl-seconds:300}") long ttlSeconds,
+                              @Value("${ecom.users.cache.missing-ttl-seconds:30}") long missingTtlSeconds) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        long missingTtlNanos = TimeUnit.SECONDS.toNanos(missingTtlSeconds);
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedUser>() {
+                    @Override
+                    public long expireAfterCreate(String userName, VerifiedUser user, long currentTime) {
+                        return user.exists() ? ttlNanos : missingTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String userName, VerifiedUser user, long currentTime, long currentDuration) {
+                        return user.exists() ? ttlNanos : missingTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String userName, VerifiedUser user, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    // True or false when the answer is cached, null when ecomUserService has to be asked
+    public Boolean lookup(String userName) {
+        if (userName == null)
+            return null;
+        VerifiedUser user = users.getIfPresent(userName);
+        if (user == null)
+            return null;
+
+        long ageNanos = System.nanoTime() - user.verifiedAtNanos();
+        hitAgeNanos.add(ageNanos);
+        maxHitAgeNanos.accumulateAndGet(ageNanos, Math::max);
+        (user.exists() ? existingHits : missingHits).increment();
+        return user.exists();
+    }
+
+    // Answer from ecomUserService, a lifecycle event received while the call was in flight is newer and is kept
+    public void record(String userName, boolean userExists) {
+        if (userName == null)
+            return;
+        users.asMap().putIfAbsent(userName, new VerifiedUser(userExists, System.nanoTime()));
+    }
+
+    @KafkaListener(topics = USER_CHANGED_TOPIC, containerFactory = "userExistenceListenerContainerFactory")
+    public void kafkaConsumer_userChanged(UserExistence userExistence) {
+        if (userExistence == null || userExistence.getUserName() == null)
+            return;
+        log.info("Received user change {}", userExistence);
+        long now = System.nanoTime();
+        users.put(userExistence.getUserName(), new VerifiedUser(userExistence.isUserExists(), now));
+        eventCount.increment();
+        lastEventNanos = now;
+    }
+
+    // Staleness is the age of the answers served from the cache, and how long ago the last lifecycle event arrived
+    public Map<String, Object> stats() {
+        CacheStats stats = users.stats();
+        long hits = existingHits.sum() + missingHits.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hitCount", stats.hitCount());
+        metrics.put("missCount", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("existingUserHitCount", existingHits.sum());
+        metrics.put("missingUserHitCount", missingHits.sum());
+        metrics.put("averageHitAgeMillis", hits == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(hitAgeNanos.sum() / hits));
+        metrics.put("maxHitAgeMillis", TimeUnit.NANOSECONDS.toMillis(maxHitAgeNanos.get()));
+        metrics.put("eventCount", eventCount.sum());
+        metrics.put("millisSinceLastEvent", eventCount.sum() == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastEventNanos));
+        metrics.put("evictionCount", stats.evictionCount());
+        metrics.put("estimatedSize", users.estimatedSize());
+        return metrics;
+    }
+
+    private record VerifiedUser(boolean exists, long verifiedAtNanos) {
+    }
+}
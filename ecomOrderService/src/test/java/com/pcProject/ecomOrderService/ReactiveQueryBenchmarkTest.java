@@ -0,0 +1,160 @@
+package com.pcProject.ecomOrderService;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// getAllOrderDetails on the blocking and on the reactive path, with every client connection keeping one request in
+// flight. Each request is for a new User, so each one waits for the ecomUsers stub before reading order_details.
+// Set -Decom.benchmark.connections (10000 by default) and -Decom.benchmark.rounds (requests per connection).
+// Two sockets per connection live in this JVM, the count is capped to fit the open file limit
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "eureka.client.enabled=false",
+        // Threading models are compared here, not the bulkheads that would reject most blocking calls
+        "spring.cloud.openfeign.circuitbreaker.enabled=false",
+        "server.tomcat.accept-count=10000",
+        "spring.mvc.async.request-timeout=60000",
+        // Requests queue instead of being shed or timed out, for both paths, latency under load is what's measured
+        "ecom.reactive.client.pending-acquire-timeout-ms=60000",
+        "spring.cloud.openfeign.client.config.default.read-timeout=60000"
+})
+@ActiveProfiles("test")
+@Tag("benchmark")
+class ReactiveQueryBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveQueryBenchmarkTest.class);
+    private static final long USERS_LATENCY_MILLIS = 50;
+
+    private static DisposableServer usersStub;
+
+    @LocalServerPort
+    private int port;
+
+    // Answers after the latency without holding a thread, whatever the number of calls waiting
+    @DynamicPropertySource
+    static void usersStub(DynamicPropertyRegistry registry) {
+        String userProducts = "{\"data\":[],\"status\":200,\"message\":\"Returning all the products of the user\"}";
+        usersStub = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.get("/users/getAllUserProducts/{userName}", (request, response) -> response
+                        .header("Content-Type", "application/json")
+                        .sendString(Mono.just(userProducts).delayElement(Duration.ofMillis(USERS_LATENCY_MILLIS)))))
+                .bindNow();
+        registry.add("spring.cloud.discovery.client.simple.instances.ECOMUSERS[0].uri", () -> "http://localhost:" + usersStub.port());
+    }
+
+    @AfterAll
+    static void stopStub() {
+        usersStub.disposeNow();
+    }
+
+    @Test
+    void getAllOrderDetails_Benchmark_BlockingAgainstReactive() {
+        int connections = Math.min(Integer.getInteger("ecom.benchmark.connections", 10_000), connectionsWithinFileLimit());
+        int rounds = Integer.getInteger("ecom.benchmark.rounds", 1);
+
+        LoopResources loops = LoopResources.create("benchmark-client", 1, true);
+        ConnectionProvider clientConnections = ConnectionProvider.builder("benchmark-client")
+                .maxConnections(connections)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofSeconds(60))
+                .build();
+        HttpClient client = HttpClient.create(clientConnections)
+                .runOn(loops)
+                .baseUrl("http://localhost:" + port)
+                .responseTimeout(Duration.ofSeconds(60));
+        try {
+            // Both paths compiled by the JIT first, warm up takes most of the CPU otherwise
+            run(client, "/order/getAllOrderDetails/", "blocking-warmup", 200, 10);
+            run(client, "/reactive/order/getAllOrderDetails/", "reactive-warmup", 200, 10);
+
+            Result blocking = run(client, "/order/getAllOrderDetails/", "blocking", connections, rounds);
+            Result reactive = run(client, "/reactive/order/getAllOrderDetails/", "reactive", connections, rounds);
+
+            log.info("{} concurrent connections, {} requests each, ecomUsers answering in {} ms", connections, rounds, USERS_LATENCY_MILLIS);
+            log.info("Blocking : {}", blocking);
+            log.info("Reactive : {}", reactive);
+            assertEquals(0, reactive.failed);
+            assertEquals((long) connections * rounds, reactive.succeeded);
+        } finally {
+            // Every connection closed before the context shuts down
+            clientConnections.disposeLater().block(Duration.ofSeconds(30));
+            loops.disposeLater().block(Duration.ofSeconds(30));
+        }
+    }
+
+    private record Result(long succeeded, long failed, long requestsPerSecond, long p50Millis, long p99Millis) {
+    }
+
+    private Result run(HttpClient client, String path, String usersPrefix, int connections, int rounds) {
+        int requests = connections * rounds;
+        AtomicInteger nextUser = new AtomicInteger();
+        AtomicLong failed = new AtomicLong();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        long start = System.nanoTime();
+        Flux.range(0, requests)
+                .flatMap(request -> {
+                    long requestStart = System.nanoTime();
+                    return client.get()
+                            .uri(path + usersPrefix + "-" + nextUser.incrementAndGet())
+                            .responseSingle((response, body) -> body.asString().defaultIfEmpty("").thenReturn(response.status().code()))
+                            .doOnNext(status -> {
+                                if (status == 200)
+                                    latencies.add(System.nanoTime() - requestStart);
+                                else if (failed.incrementAndGet() == 1)
+                                    log.warn("First failed request answered {}", status);
+                            })
+                            .onErrorResume(e -> {
+                                if (failed.incrementAndGet() == 1)
+                                    log.warn("First failed request", e);
+                                return Mono.empty();
+                            });
+                }, connections)
+                .blockLast(Duration.ofMinutes(5));
+        long elapsedNanos = System.nanoTime() - start;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(sorted.length, failed.get(), requests * 1_000_000_000L / elapsedNanos,
+                percentileMillis(sorted, 50), percentileMillis(sorted, 99));
+    }
+
+    private static long percentileMillis(long[] sorted, int percentile) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1_000_000;
+    }
+
+    // Client and server end of every connection, plus the sockets to the stub and what's open already
+    private static int connectionsWithinFileLimit() {
+        if (!(ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean os))
+            return Integer.MAX_VALUE;
+        long available = os.getMaxFileDescriptorCount() - os.getOpenFileDescriptorCount() - 2_000;
+        int connections = (int) Math.max(100, available / 2);
+        if (connections < 10_000)
+            log.warn("Open file limit {} allows {} connections, raise ulimit -n for 10000", os.getMaxFileDescriptorCount(), connections);
+        return connections;
+    }
+}
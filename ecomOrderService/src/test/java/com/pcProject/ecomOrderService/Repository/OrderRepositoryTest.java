@@ -0,0 +1,173 @@
+package com.pcProject.ecomOrderService.Repository;
+
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:orderdb")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderRepositoryTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderRepositoryTest.class);
+    private static final String TEST_USER = "test-userName";
+    private static final String TEST_PRODUCT = "test-productName";
+
+    @Autowired
+    private OrderRepository orderRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE order_details");
+    }
+
+    @Test
+    void findFirstUnpaid_ShouldSkipPaidOrdersAndReturnTheOldest() {
+        orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED, PaymentStatus.PAID));
+        OrderDetails firstUnpaid = orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED));
+        orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.WAITING_TO_PLACE));
+        orderRepo.save(new OrderDetails(0, "other-user", TEST_PRODUCT, OrderStatus.PLACED));
+
+        OrderDetails found = orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID);
+
+        assertEquals(firstUnpaid.getOrderId(), found.getOrderId());
+        assertEquals(OrderStatus.PLACED, found.getOrderStatus());
+        assertNull(orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId("other-user", TEST_PRODUCT, PaymentStatus.PAID));
+    }
+
+    @Test
+    void orderDetailsTable_ShouldStoreStatusesAsCodesAndDeclareIndexes() {
+        orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.SHIPPED, PaymentStatus.PAID));
+
+        assertEquals(List.of(2, 1), jdbcTemplate.queryForObject("SELECT order_status, payment_status FROM order_details",
+                (row, rowNum) -> List.of(row.getInt(1), row.getInt(2))));
+        assertEquals("TINYINT", jdbcTemplate.queryForObject(
+                "SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'ORDER_DETAILS' AND COLUMN_NAME = 'PAYMENT_STATUS'", String.class));
+        List<String> indexes = jdbcTemplate.queryForList("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = 'ORDER_DETAILS'", String.class);
+        assertTrue(indexes.containsAll(List.of("IDX_ORDER_USER_PRODUCT_PAYMENT", "IDX_ORDER_USER_ORDER")), indexes.toString());
+    }
+
+    // Synthetic load, set -Decom.benchmark.orders to change the row count
+    @Test
+    @Tag("benchmark")
+    void firstUnpaidAndUserListing_ComparedWithoutIndexes() {
+        int orderCount = Integer.getInteger("ecom.benchmark.orders", 1_000_000);
+        int userCount = orderCount / 20;
+        String userName = "user-" + (userCount / 2);
+
+        // Loading without the indexes is much faster, they are built once the rows are in
+        dropIndexes();
+        insertSyntheticOrders(orderCount, userCount);
+        // Warm up the query path so the first measurement isn't paying for it
+        timeQueries(userName);
+        long[] withoutIndexes = timeQueries(userName);
+        OrderDetails firstUnpaid = orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(userName, "product-1", PaymentStatus.UNPAID);
+
+        jdbcTemplate.execute("CREATE INDEX idx_order_user_product_payment ON order_details (user_name, product_name, payment_status)");
+        jdbcTemplate.execute("CREATE INDEX idx_order_user_order ON order_details (user_name, order_id)");
+        long[] withIndexes = timeQueries(userName);
+
+        assertEquals(firstUnpaid, orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(userName, "product-1", PaymentStatus.UNPAID));
+        log.info("{} orders, first unpaid lookup {} us -> {} us, user listing {} us -> {} us",
+                orderCount, withoutIndexes[0] / 1000, withIndexes[0] / 1000, withoutIndexes[1] / 1000, withIndexes[1] / 1000);
+    }
+
+    // Order creation, set -Decom.benchmark.orders.bulk to change the row count. One save per order committing on
+    // its own is the earlier addOrderDetails path, the bulk path is the saga's saveAll with and without JDBC batching
+    @Test
+    @Tag("benchmark")
+    void saveAll_ComparedWithOneSavePerOrder() {
+        int orderCount = Integer.getInteger("ecom.benchmark.orders.bulk", 100_000);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < orderCount; i++)
+            orderRepo.save(new OrderDetails(0, "user-" + (i % 5000), TEST_PRODUCT, OrderStatus.PLACED));
+        long singleMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+            saveInChunks(orderCount);
+        });
+        long unbatchedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> saveInChunks(orderCount));
+        long batchedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(3L * orderCount, orderRepo.count());
+        log.info("{} orders, one save each {} ms, bulk without batching {} ms, bulk with batching {} ms ({}x over one save each)",
+                orderCount, singleMillis, unbatchedMillis, batchedMillis, String.format("%.1f", (double) singleMillis / batchedMillis));
+    }
+
+    private void saveInChunks(int orderCount) {
+        for (int from = 0; from < orderCount; from += 1000) {
+            List<OrderDetails> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + 1000, orderCount); i++)
+                chunk.add(new OrderDetails(0, "user-" + (i % 5000), TEST_PRODUCT, OrderStatus.PLACED));
+            orderRepo.saveAll(chunk);
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+
+    // Average nanos of the first unpaid lookup and the user listing
+    private long[] timeQueries(String userName) {
+        int rounds = 20;
+        long firstUnpaid = 0;
+        long listing = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(userName, "product-" + (round % 5), PaymentStatus.UNPAID);
+            long middle = System.nanoTime();
+            orderRepo.findAllByUserName(userName);
+            listing += System.nanoTime() - middle;
+            firstUnpaid += middle - start;
+        }
+        return new long[]{firstUnpaid / rounds, listing / rounds};
+    }
+
+    // Generated inside H2, 20 orders per User spread over 7 Products with every third order unpaid
+    private void insertSyntheticOrders(int orderCount, int userCount) {
+        jdbcTemplate.update("INSERT INTO order_details (order_id, user_name, product_name, order_status, payment_status) " +
+                "SELECT X + 1, CONCAT('user-', MOD(X, ?)), CONCAT('product-', MOD(X, 7)), 1, CASE WHEN MOD(X, 3) = 0 THEN 0 ELSE 1 END " +
+                "FROM SYSTEM_RANGE(0, ?)", userCount, orderCount - 1);
+    }
+
+    private void dropIndexes() {
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_order_user_product_payment");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_order_user_order");
+    }
+}
@@ -0,0 +1,86 @@
+package com.pcProject.ecomOrderService.Repository;
+
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Rows written through JPA and read back through R2DBC, so both agree on the schema Hibernate generates
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:reactiveorderdb", "ecom.orders.r2dbc.url=r2dbc:h2:mem:///reactiveorderdb"})
+@Import(ReactiveOrderRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReactiveOrderRepositoryTest {
+
+    private static final String TEST_USER = "test-userName";
+    private static final String TEST_PRODUCT = "test-productName";
+
+    @Autowired
+    private OrderRepository orderRepo;
+    @Autowired
+    private ReactiveOrderRepository reactiveOrderRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE order_details");
+    }
+
+    @Test
+    void findAllByUserName_ShouldMapColumnsAndStatusCodes() {
+        OrderDetails saved = orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.SHIPPED, PaymentStatus.PAID));
+        orderRepo.save(new OrderDetails(0, "other-user", TEST_PRODUCT, OrderStatus.PLACED));
+
+        StepVerifier.create(reactiveOrderRepo.findAllByUserName(TEST_USER))
+                .expectNext(saved)
+                .verifyComplete();
+    }
+
+    @Test
+    void findFirstUnpaid_ShouldSkipPaidOrdersAndReturnTheOldest() {
+        orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED, PaymentStatus.PAID));
+        OrderDetails firstUnpaid = orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED));
+        orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT, OrderStatus.WAITING_TO_PLACE));
+
+        StepVerifier.create(reactiveOrderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID))
+                .expectNext(firstUnpaid)
+                .verifyComplete();
+        StepVerifier.create(reactiveOrderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId("other-user", TEST_PRODUCT, PaymentStatus.UNPAID))
+                .verifyComplete();
+    }
+
+    @Test
+    void streamAllByUserName_ShouldReadThePagesOnDemandInOrderIdOrder() {
+        List<OrderDetails> saved = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            saved.add(orderRepo.save(new OrderDetails(0, TEST_USER, TEST_PRODUCT + i, OrderStatus.PLACED)));
+
+        // Pages of 2, the first request only gets the first page read
+        StepVerifier.create(reactiveOrderRepo.streamAllByUserName(TEST_USER, 2), 1)
+                .expectNext(saved.get(0))
+                .thenRequest(4)
+                .expectNextSequence(saved.subList(1, 5))
+                .verifyComplete();
+        StepVerifier.create(reactiveOrderRepo.streamAllByUserName("other-user", 2))
+                .verifyComplete();
+    }
+}
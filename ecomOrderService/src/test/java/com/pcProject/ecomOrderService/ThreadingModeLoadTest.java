@@ -0,0 +1,194 @@
+package com.pcProject.ecomOrderService;
+
+import com.sun.net.httpserver.HttpServer;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Orders placed the blocking way, a call to a stub of ecomUsers then an insert through a Hikari pool sized like the
+// services, all submitted at once. Platform mode runs them on a pool the size of Tomcat's default, virtual mode on one
+// virtual thread each (Java 21 and later only). Set -Decom.benchmark.orders to change the number of orders
+class ThreadingModeLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadingModeLoadTest.class);
+    private static final long USERS_LATENCY_MILLIS = 100;
+
+    private HttpServer usersStub;
+    private ExecutorService stubExecutor;
+    private ScheduledExecutorService stubResponder;
+    private HikariDataSource dataSource;
+
+    @BeforeAll
+    static void disableNagle() {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Answers from a scheduler, so the stub doesn't need a thread per waiting order in the JVM being measured
+        stubResponder = Executors.newScheduledThreadPool(2);
+        usersStub = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        usersStub.createContext("/users/validateUser", exchange -> stubResponder.schedule(() -> {
+            byte[] body = "{\"status\":200}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+            return null;
+        }, USERS_LATENCY_MILLIS, TimeUnit.MILLISECONDS));
+        stubExecutor = Executors.newFixedThreadPool(4);
+        usersStub.setExecutor(stubExecutor);
+        usersStub.start();
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:threading;DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(20);
+        config.setMinimumIdle(20);
+        config.setConnectionTimeout(30000);
+        dataSource = new HikariDataSource(config);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists order_details(order_id bigint auto_increment primary key, user_name varchar(64), product_name varchar(64))");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        usersStub.stop(0);
+        stubExecutor.shutdownNow();
+        stubResponder.shutdownNow();
+        dataSource.close();
+    }
+
+    @Test
+    void enabled_WhenRuntimeHasNoVirtualThreads_ShouldKeepPlatformThreads() {
+        assertEquals(VirtualThreads.supported(), VirtualThreads.enabled(true));
+        assertFalse(VirtualThreads.enabled(false));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void placeOrders_Benchmark_PlatformAgainstVirtualThreads() throws Exception {
+        // Virtual mode falls back to platform threads before Java 21, there would be nothing to compare
+        assumeTrue(VirtualThreads.supported(), "Java " + Runtime.version().feature() + " has no virtual threads");
+        int orders = Integer.getInteger("ecom.benchmark.orders", 2000);
+
+        ExecutorService tomcatPool = Executors.newFixedThreadPool(200);
+        LoadResult platform = place(tomcatPool, orders);
+        log.info("Platform threads : {}", platform);
+        // The pool caps the orders in flight, the rest wait in the queue
+        assertTrue(platform.maxInFlight <= 200);
+
+        AtomicInteger pinnedEvents = new AtomicInteger();
+        LoadResult virtual;
+        try (RecordingStream pinning = new RecordingStream()) {
+            pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            pinning.onEvent("jdk.VirtualThreadPinned", event -> {
+                pinnedEvents.incrementAndGet();
+                log.warn("Virtual thread pinned for {} : {}", event.getDuration(), event.getStackTrace());
+            });
+            pinning.startAsync();
+            virtual = place(VirtualThreads.newThreadPerTaskExecutor("order-"), orders);
+        }
+        log.info("Virtual threads : {}, {} pinning events", virtual, pinnedEvents.get());
+        // Not capped by a pool, how much sooner they finish is only logged
+        assertTrue(virtual.maxInFlight > platform.maxInFlight);
+    }
+
+    private record LoadResult(int orders, int maxInFlight, long millis, long ordersPerSecond, int peakThreads,
+                              long heapPerInFlightOrderBytes) {
+    }
+
+    private LoadResult place(ExecutorService executor, int orders) throws Exception {
+        String validateUserUrl = "http://localhost:" + usersStub.getAddress().getPort() + "/users/validateUser";
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        long heapBefore = usedHeapAfterGc();
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        AtomicLong peakHeap = new AtomicLong(heapBefore);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(usedHeap(), Math::max), 0, 10, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> placed = new ArrayList<>(orders);
+            for (int i = 0; i < orders; i++) {
+                String userName = "user-" + i;
+                placed.add(executor.submit(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        validateUser(validateUserUrl);
+                        insertOrder(userName);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> order : placed)
+                order.get();
+        } finally {
+            sampler.shutdownNow();
+            executor.shutdown();
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        return new LoadResult(orders, maxInFlight.get(), millis, orders * 1000L / millis,
+                ManagementFactory.getThreadMXBean().getPeakThreadCount(), (peakHeap.get() - heapBefore) / maxInFlight.get());
+    }
+
+    private static void validateUser(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            try (InputStream body = connection.getInputStream()) {
+                body.readAllBytes();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void insertOrder(String userName) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("insert into order_details(user_name, product_name) values (?, ?)")) {
+            insert.setString(1, userName);
+            insert.setString(2, "Laptop");
+            insert.executeUpdate();
+        }
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        System.gc();
+        Thread.sleep(100);
+        return usedHeap();
+    }
+}
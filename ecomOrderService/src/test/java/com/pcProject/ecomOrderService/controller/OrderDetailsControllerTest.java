@@ -2,7 +2,12 @@ package com.pcProject.ecomOrderService.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderDetailsPage;
 import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import com.pcProject.ecomOrderService.model.ProductQuantity;
+import com.pcProject.ecomOrderService.model.UserCart;
 import com.pcProject.ecomOrderService.model.UserProducts;
 import com.pcProject.ecomOrderService.model.UserProductsResponse;
 import com.pcProject.ecomOrderService.service.OrderDetailsService;
@@ -17,18 +22,23 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -54,7 +64,7 @@ class OrderDetailsControllerTest {
     @BeforeAll
     static void setUp(){
         testProduct = new UserProducts(TEST_USER, TEST_PRODUCT);
-        orderDetails = new OrderDetails(101,TEST_USER,TEST_PRODUCT,"Unpaid");
+        orderDetails = new OrderDetails(101,TEST_USER,TEST_PRODUCT,OrderStatus.PLACED);
     }
 
     @Test
@@ -95,6 +105,36 @@ class OrderDetailsControllerTest {
 
     }
 
+    @Test
+    void getOrderDetailsPage_ShouldPassCursorAndReturnPage() throws Exception {
+        UserProductsResponse<OrderDetailsPage> testPageResponse = new UserProductsResponse<>(new OrderDetailsPage(List.of(orderDetails), 101),200,"Details retrieved successfully");
+        String expectedJsonResponse = objectMapper.writeValueAsString(testPageResponse);
+
+        when(orderService.getOrderDetailsPage(TEST_USER, 100, 1)).thenReturn(ResponseEntity.ok(testPageResponse));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BASE_URL+"getOrderDetailsPage/{userName}",TEST_USER)
+                        .param("afterOrderId","100")
+                        .param("limit","1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(expectedJsonResponse,true));
+    }
+
+    @Test
+    void streamOrderDetails_ShouldWriteNdjson() throws Exception {
+        String orderLine = objectMapper.writeValueAsString(orderDetails) + "\n";
+        StreamingResponseBody body = outputStream -> outputStream.write(orderLine.getBytes(StandardCharsets.UTF_8));
+
+        when(orderService.streamOrderDetails(TEST_USER)).thenReturn(ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get(BASE_URL+"streamOrderDetails/{userName}",TEST_USER))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(orderLine));
+    }
+
     @Test
     void getOneOrderDetails_ShouldReturnOrder() throws Exception {
 //        OrderDetails order = new OrderDetails(101, TEST_USER, TEST_PRODUCT, "Placed", "Unpaid");
@@ -115,7 +155,7 @@ class OrderDetailsControllerTest {
 
     @Test
     void addOrderDetails_ShouldReturnCreatedOrder() throws Exception {
-        OrderDetails newOrder = new OrderDetails(102, TEST_USER, TEST_PRODUCT, "Waiting_to_Place", "UnPaid");
+        OrderDetails newOrder = new OrderDetails(102, TEST_USER, TEST_PRODUCT, OrderStatus.WAITING_TO_PLACE, PaymentStatus.UNPAID);
         UserProductsResponse<OrderDetails> serviceResponse = new UserProductsResponse<>(newOrder, 200, "Order received");
 
         when(orderService.addOrderDetails(any(UserProducts.class)))
@@ -131,6 +171,23 @@ class OrderDetailsControllerTest {
                 .andExpect(content().json(expectedJson, true));
     }
 
+    @Test
+    void checkoutCart_ShouldReturnThePlacedOrders() throws Exception {
+        UserCart cart = new UserCart(TEST_USER, List.of(new ProductQuantity(TEST_PRODUCT, 2)));
+        List<OrderDetails> newOrders = List.of(
+                new OrderDetails(102, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED, PaymentStatus.UNPAID),
+                new OrderDetails(103, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED, PaymentStatus.UNPAID));
+        UserProductsResponse<List<OrderDetails>> serviceResponse = new UserProductsResponse<>(newOrders, 200, "Orders placed");
+
+        when(orderService.checkoutCart(any(UserCart.class))).thenReturn(ResponseEntity.ok(serviceResponse));
+
+        mockMvc.perform(post(BASE_URL+"checkoutCart")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(cart)))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+
     @Test
     void deleteOrderDetails_ShouldReturnOkStatus() throws Exception {
         OrderDetailsWrapper wrapper = new OrderDetailsWrapper(101, TEST_USER, TEST_PRODUCT);
@@ -151,7 +208,7 @@ class OrderDetailsControllerTest {
 
     @Test
     void updateOrderStatus_ShouldUpdateViaPathVariable() throws Exception {
-        OrderDetails updatedOrder = new OrderDetails(101, TEST_USER, TEST_PRODUCT, "Shipped", "Paid");
+        OrderDetails updatedOrder = new OrderDetails(101, TEST_USER, TEST_PRODUCT, OrderStatus.SHIPPED, PaymentStatus.PAID);
         UserProductsResponse<OrderDetails> serviceResponse = new UserProductsResponse<>(updatedOrder, 200, "Successfully updated the order Status");
 
         when(orderService.updateOrderStatus(anyInt()))
@@ -164,4 +221,52 @@ class OrderDetailsControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson, true));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getUserCacheStats_ShouldReturnStats() throws Exception {
+        UserProductsResponse<Map<String, Object>> serviceResponse = new UserProductsResponse<>(Map.of("hitCount", 9, "missCount", 1), 200, "Returning the user cache statistics");
+
+        when(orderService.getUserCacheStats()).thenReturn(ResponseEntity.ok(serviceResponse));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BASE_URL+"getUserCacheStats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+
+    @Test
+    void getPlacementStats_ShouldReturnStats() throws Exception {
+        UserProductsResponse<Map<String, Object>> serviceResponse = new UserProductsResponse<>(Map.of("placedCount", 9, "compensatedCount", 1), 200, "Returning the order placement statistics");
+
+        when(orderService.getPlacementStats()).thenReturn(ResponseEntity.ok(serviceResponse));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BASE_URL+"getPlacementStats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+
+    @Test
+    void getLoadBalancerStats_ShouldReturnStats() throws Exception {
+        UserProductsResponse<Map<String, Object>> serviceResponse = new UserProductsResponse<>(
+                Map.of("ECOMPRODUCTS localhost:8081", Map.of("ewmaMillis", 12, "inFlight", 1, "requestCount", 40, "failureCount", 0)),
+                200, "Returning the load balancer statistics");
+
+        when(orderService.getLoadBalancerStats()).thenReturn(ResponseEntity.ok(serviceResponse));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BASE_URL+"getLoadBalancerStats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+
+    @Test
+    void getResilienceStats_ShouldReturnStats() throws Exception {
+        UserProductsResponse<Map<String, Object>> serviceResponse = new UserProductsResponse<>(
+                Map.of("EcomUserService#getAllUserProducts", Map.of("state", "CLOSED", "timeoutMillis", 40, "hedges", 3)),
+                200, "Returning the Feign resilience statistics");
+
+        when(orderService.getResilienceStats()).thenReturn(ResponseEntity.ok(serviceResponse));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BASE_URL+"getResilienceStats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+}
@@ -23,6 +23,8 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.Map;
+
 @WebMvcTest(PaymentDetailsController.class)
 public class PaymentDetailsControllerTest {
 
@@ -90,4 +92,15 @@ public class PaymentDetailsControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson, true));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPriceCacheStats_ShouldReturnStats() throws Exception {
+        UserProductsResponse<Map<String, Object>> serviceResponse = new UserProductsResponse<>(Map.of("hitCount", 9, "missCount", 1), 200, "Returning the price cache statistics");
+
+        when(paymentService.getPriceCacheStats()).thenReturn(ResponseEntity.ok(serviceResponse));
+
+        mockMvc.perform(get(BASE_URL + "/getPriceCacheStats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+}
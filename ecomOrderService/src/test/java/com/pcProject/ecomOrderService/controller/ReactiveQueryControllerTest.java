@@ -0,0 +1,114 @@
+package com.pcProject.ecomOrderService.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import com.pcProject.ecomOrderService.model.UserProducts;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import com.pcProject.ecomOrderService.service.ReactiveQueryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ReactiveQueryController.class)
+class ReactiveQueryControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ReactiveQueryService reactiveQueryService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String TEST_USER = "test-userName";
+    private static final String TEST_PRODUCT = "test-productName";
+    private static final String BASE_URL = "/reactive/";
+
+    private final OrderDetails orderDetails = new OrderDetails(101, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED);
+
+    @Test
+    void getAllOrderDetails_ShouldReturnOrdersAsynchronously() throws Exception {
+        UserProductsResponse<List<OrderDetails>> serviceResponse = new UserProductsResponse<>(List.of(orderDetails), 200, "Details retrieved successfully");
+        when(reactiveQueryService.getAllOrderDetails(TEST_USER)).thenReturn(Mono.just(new ResponseEntity<>(serviceResponse, HttpStatus.OK)));
+
+        MvcResult result = mockMvc.perform(get(BASE_URL + "order/getAllOrderDetails/{userName}", TEST_USER))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+
+    @Test
+    void streamOrderDetails_ShouldWriteOneOrderPerLine() throws Exception {
+        OrderDetails secondOrder = new OrderDetails(102, TEST_USER, TEST_PRODUCT, OrderStatus.SHIPPED);
+        when(reactiveQueryService.streamOrderDetails(TEST_USER)).thenReturn(Flux.just(orderDetails, secondOrder));
+
+        MvcResult result = mockMvc.perform(get(BASE_URL + "order/streamOrderDetails/{userName}", TEST_USER))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(objectMapper.writeValueAsString(orderDetails) + "\n" + objectMapper.writeValueAsString(secondOrder) + "\n"));
+    }
+
+    @Test
+    void streamOrderDetails_WhenUserIsUnknown_ShouldReturnBadRequest() throws Exception {
+        when(reactiveQueryService.streamOrderDetails(TEST_USER)).thenReturn(Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Something went wrong!")));
+
+        MvcResult result = mockMvc.perform(get(BASE_URL + "order/streamOrderDetails/{userName}", TEST_USER))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getOneOrderDetails_ShouldReturnOrder() throws Exception {
+        UserProductsResponse<OrderDetails> serviceResponse = new UserProductsResponse<>(orderDetails, 200, "Successfully retrieved User product details");
+        when(reactiveQueryService.getOneOrderDetails(any(UserProducts.class))).thenReturn(Mono.just(new ResponseEntity<>(serviceResponse, HttpStatus.OK)));
+
+        MvcResult result = mockMvc.perform(post(BASE_URL + "order/getOneOrderDetails")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserProducts(TEST_USER, TEST_PRODUCT))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+
+    @Test
+    void getAllPayment_ShouldReturnTotalAmount() throws Exception {
+        UserProductsResponse<String> serviceResponse = new UserProductsResponse<>("500", 200, "Success");
+        when(reactiveQueryService.getAllPayment(TEST_USER)).thenReturn(Mono.just(new ResponseEntity<>(serviceResponse, HttpStatus.OK)));
+
+        MvcResult result = mockMvc.perform(get(BASE_URL + "payment/totalPayment/{userName}", TEST_USER))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+}
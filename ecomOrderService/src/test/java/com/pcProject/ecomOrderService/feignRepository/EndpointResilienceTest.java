@@ -0,0 +1,296 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import com.sun.net.httpserver.HttpServer;
+import feign.FeignException;
+import feign.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.NoFallbackAvailableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointResilienceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointResilienceTest.class);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<HttpServer> stubs = new ArrayList<>();
+
+    @BeforeAll
+    static void disableNagle() {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubs.forEach(stub -> stub.stop(0));
+        executor.shutdownNow();
+    }
+
+    @Test
+    void run_WhenMostCallsFail_ShouldOpenThenCloseAfterASuccessfulProbe() throws InterruptedException {
+        EndpointResilience resilience = new EndpointResilience("EcomUserService#getAllUserProducts", policy(100, 2, false), executor);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Opens once 5 calls, the minimum, were seen and half of them failed
+        for (int i = 0; i < 5; i++)
+            assertThrows(NoFallbackAvailableException.class, () -> resilience.run(() -> {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("ecomUsers is down");
+            }));
+        NoFallbackAvailableException rejected = assertThrows(NoFallbackAvailableException.class, () -> resilience.run(attempts::incrementAndGet));
+
+        assertEquals(EndpointResilience.State.OPEN, resilience.state());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+        assertEquals(5, attempts.get());
+
+        Thread.sleep(150);
+        assertEquals("ok", resilience.run(() -> "ok"));
+        assertEquals(EndpointResilience.State.CLOSED, resilience.state());
+    }
+
+    @Test
+    void run_WhenDependencyAnswers4xx_ShouldKeepTheCircuitClosed() {
+        EndpointResilience resilience = new EndpointResilience("EcomUserService#validateUser", policy(100, 2, false), executor);
+        Request request = Request.create(Request.HttpMethod.POST, "/users/validateUser", Map.of(), null, StandardCharsets.UTF_8, null);
+
+        for (int i = 0; i < 20; i++)
+            assertThrows(NoFallbackAvailableException.class, () -> resilience.run(() -> {
+                throw new FeignException.BadRequest("User doesn't exists", request, null, null);
+            }));
+
+        assertEquals(EndpointResilience.State.CLOSED, resilience.state());
+    }
+
+    @Test
+    void run_WhenBulkheadIsFull_ShouldRejectWithoutCallingTheDependency() throws Exception {
+        EndpointResilience resilience = new EndpointResilience("EcomProductService#getProductValue", policy(100, 2, false), executor);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> blocked = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+            blocked.add(executor.submit(() -> resilience.run(() -> {
+                awaitQuietly(release);
+                return "slow";
+            })));
+        while ((int) resilience.stats().get("inFlight") < 2)
+            Thread.sleep(5);
+
+        NoFallbackAvailableException rejected = assertThrows(NoFallbackAvailableException.class, () -> resilience.run(() -> "fast"));
+        release.countDown();
+
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+        for (Future<String> call : blocked)
+            assertEquals("slow", call.get());
+        assertEquals(1L, resilience.stats().get("rejectedByBulkhead"));
+    }
+
+    @Test
+    void run_WhenCallIsMuchSlowerThanUsual_ShouldTimeOutAtTheAdaptiveTimeout() {
+        EndpointResilience resilience = new EndpointResilience("EcomUserService#getAllUserProducts", policy(100, 2, false), executor);
+        for (int i = 0; i < 20; i++)
+            resilience.run(() -> sleepAndReturn(2, "fast"));
+
+        long start = System.nanoTime();
+        NoFallbackAvailableException timedOut = assertThrows(NoFallbackAvailableException.class, () -> resilience.run(() -> sleepAndReturn(1000, "slow")));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertInstanceOf(TimeoutException.class, timedOut.getCause());
+        // The minimum timeout of the policy, far below the 3 s maximum
+        assertEquals(50, resilience.timeoutMillis());
+        assertTrue(elapsedMillis < 500, "Waited " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void run_WhenHedgedCallIsSlow_ShouldReturnTheSecondAttempt() {
+        EndpointResilience resilience = new EndpointResilience("EcomUserService#getAllUserProducts", policy(100, 2, true), executor);
+        for (int i = 0; i < 20; i++)
+            resilience.run(() -> sleepAndReturn(2, "warm"));
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = resilience.run(() -> attempts.incrementAndGet() == 1 ? sleepAndReturn(1000, "first") : "hedge");
+
+        assertEquals("hedge", result);
+        assertEquals(1L, resilience.stats().get("hedges"));
+        assertEquals(1L, resilience.stats().get("hedgeWins"));
+    }
+
+    @Test
+    void create_ShouldShareOneEndpointPerFeignMethodAndHedgeOnlyTheConfiguredOnes() {
+        FeignResilienceFactory factory = new FeignResilienceFactory(50, 20, 10, 5000, 20, 99, 2, 200, 3000,
+                Set.of("EcomUserService#getAllUserProducts"), 95, Set.of("EcomProductService#consumeProduct"), false);
+        CircuitBreaker first = factory.create("EcomUserService#getAllUserProducts(String)");
+        CircuitBreaker second = factory.create("EcomUserService#getAllUserProducts(String)");
+        factory.create("EcomUserService#validateUser(UserProducts)");
+
+        assertSame(first, second);
+        assertEquals(Set.of("EcomUserService#getAllUserProducts", "EcomUserService#validateUser"), factory.stats().keySet());
+        factory.shutdown();
+    }
+
+    @Test
+    void run_WhenConsumeProductTakesLongerThanTheAdaptiveTimeout_ShouldWaitForTheStockChange() {
+        FeignResilienceFactory factory = new FeignResilienceFactory(50, 20, 10, 5000, 20, 99, 2, 50, 3000,
+                Set.of(), 95, Set.of("EcomProductService#consumeProduct"), false);
+        CircuitBreaker consumeProduct = factory.create("EcomProductService#consumeProduct(ProductWrapper)");
+        for (int i = 0; i < 20; i++)
+            consumeProduct.run(() -> sleepAndReturn(2, "consumed"));
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Far past the 50 ms a read with the same latencies would wait, ecomProducts consumed the stock all the same
+        assertEquals("consumed", consumeProduct.run(() -> {
+            attempts.incrementAndGet();
+            return sleepAndReturn(300, "consumed");
+        }));
+
+        Map<String, Object> stats = factory.stats();
+        assertEquals(1, attempts.get());
+        assertEquals(0L, ((Map<?, ?>) stats.get("EcomProductService#consumeProduct")).get("timeouts"));
+        assertEquals(0L, ((Map<?, ?>) stats.get("EcomProductService#consumeProduct")).get("hedges"));
+        factory.shutdown();
+    }
+
+    @Test
+    void create_WhenAMutatingEndpointIsHedged_ShouldRefuseTheConfiguration() {
+        IllegalArgumentException refused = assertThrows(IllegalArgumentException.class, () -> new FeignResilienceFactory(
+                50, 20, 10, 5000, 20, 99, 2, 200, 3000, Set.of("EcomUserService#getAllUserProducts", "EcomProductService#consumeProduct"),
+                95, Set.of("EcomProductService#consumeProduct", "EcomUserService#removeUserProduct"), false));
+
+        assertTrue(refused.getMessage().contains("EcomProductService#consumeProduct"));
+    }
+
+    // A request thread pool the size of a small Tomcat serves payment reads that need ecomUsers and product reads
+    // that only need ecomProducts. ecomUsers then slows down to 1.5 s per call: unprotected, every thread ends up
+    // stuck on it and the product reads stop too, behind the resilience layer they keep their throughput
+    @Test
+    @Tag("benchmark")
+    void faultInjection_WhenEcomUsersDegrades_ShouldPreserveThroughput() throws Exception {
+        AtomicLong usersLatency = new AtomicLong(5);
+        int usersPort = stub(usersLatency);
+        int productsPort = stub(new AtomicLong(5));
+
+        Throughput unprotected = serve(usersPort, productsPort, usersLatency, Supplier::get, Supplier::get);
+        usersLatency.set(5);
+        EndpointResilience users = new EndpointResilience("EcomUserService#getAllUserProducts", policy(5000, 4, true), executor);
+        EndpointResilience products = new EndpointResilience("EcomProductService#getProductValue", policy(5000, 16, true), executor);
+        Throughput resilient = serve(usersPort, productsPort, usersLatency, users::run, products::run);
+
+        log.info("Product reads/sec healthy -> ecomUsers degraded : unprotected {} -> {}, resilient {} -> {}",
+                unprotected.healthy, unprotected.degraded, resilient.healthy, resilient.degraded);
+        log.info("ecomUsers endpoint : {}", users.stats());
+        assertTrue(unprotected.degraded * 5 < unprotected.healthy);
+        assertTrue(resilient.degraded * 2 > resilient.healthy);
+        assertEquals(EndpointResilience.State.OPEN, users.state());
+    }
+
+    private interface Guard {
+        String run(Supplier<String> call);
+    }
+
+    private record Throughput(long healthy, long degraded) {
+    }
+
+    private Throughput serve(int usersPort, int productsPort, AtomicLong usersLatency, Guard usersGuard, Guard productsGuard) throws Exception {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(16);
+        LongAdder productReads = new LongAdder();
+        long phaseMillis = 2000;
+        long end = System.currentTimeMillis() + 2 * phaseMillis;
+        try {
+            for (int i = 0; i < 16; i++) {
+                requestThreads.submit(() -> {
+                    for (int request = 0; System.currentTimeMillis() < end; request++) {
+                        try {
+                            if (request % 2 == 0) {
+                                usersGuard.run(() -> get(usersPort));
+                            } else {
+                                productsGuard.run(() -> get(productsPort));
+                                productReads.increment();
+                            }
+                        } catch (RuntimeException e) {
+                            // The request fails, the thread takes the next one
+                        }
+                    }
+                });
+            }
+            Thread.sleep(phaseMillis);
+            long healthy = productReads.sumThenReset();
+            usersLatency.set(1500);
+            Thread.sleep(phaseMillis);
+            long degraded = productReads.sum();
+            return new Throughput(healthy * 1000 / phaseMillis, degraded * 1000 / phaseMillis);
+        } finally {
+            requestThreads.shutdownNow();
+            requestThreads.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static String get(int port) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + port + "/").toURL().openConnection();
+            // Same as spring.cloud.openfeign.client.config.default.read-timeout
+            connection.setReadTimeout(3000);
+            try (InputStream body = connection.getInputStream()) {
+                return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int stub(AtomicLong latencyMillis) throws IOException {
+        HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/", exchange -> {
+            sleepAndReturn(latencyMillis.get(), null);
+            byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.start();
+        stubs.add(stub);
+        return stub.getAddress().getPort();
+    }
+
+    private static EndpointResilience.Policy policy(long openMillis, int maxConcurrentCalls, boolean hedged) {
+        return new EndpointResilience.Policy(50, 10, 5, openMillis, maxConcurrentCalls, 99, 2, 50, 3000, hedged, 90, false);
+    }
+
+    private static <T> T sleepAndReturn(long millis, T value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeignCallExecutorTest {
+
+    private ExecutorService executor;
+    private FeignCallExecutor feignCallExecutor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        feignCallExecutor = new FeignCallExecutor(executor, 500, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void awaitAll_WhenCallsAreIndependent_ShouldTakeAboutTheSlowestCall() {
+        long start = System.nanoTime();
+        CompletableFuture<String> first = feignCallExecutor.submit(() -> sleepAndReturn(200, "first"));
+        CompletableFuture<String> second = feignCallExecutor.submit(() -> sleepAndReturn(200, "second"));
+        feignCallExecutor.awaitAll(first, second);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("first", FeignCallExecutor.resultOf(first));
+        assertEquals("second", FeignCallExecutor.resultOf(second));
+        assertTrue(elapsedMillis < 380, "Calls were not run concurrently, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void resultOf_WhenCallExceedsItsDeadline_ShouldReturnNull() {
+        CompletableFuture<String> slow = feignCallExecutor.submit(() -> sleepAndReturn(800, "slow"));
+        CompletableFuture<String> fast = feignCallExecutor.submit(() -> "fast");
+        feignCallExecutor.awaitAll(slow, fast);
+
+        assertNull(FeignCallExecutor.resultOf(slow));
+        assertEquals("fast", FeignCallExecutor.resultOf(fast));
+    }
+
+    @Test
+    void awaitAll_WhenCombinedTimeoutExpires_ShouldCancelRemainingCalls() {
+        FeignCallExecutor shortTotal = new FeignCallExecutor(executor, 5000, 100);
+        CompletableFuture<String> slow = shortTotal.submit(() -> sleepAndReturn(1000, "slow"));
+        shortTotal.awaitAll(slow);
+
+        assertTrue(slow.isCancelled());
+        assertNull(FeignCallExecutor.resultOf(slow));
+    }
+
+    @Test
+    void awaitAll_WhenCombinedTimeoutExpires_ShouldInterruptTheWorkerThread() throws Exception {
+        FeignCallExecutor shortTotal = new FeignCallExecutor(executor, 5000, 100);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<String> slow = shortTotal.submit(() -> {
+            try {
+                Thread.sleep(5000);
+                return "slow";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return null;
+            }
+        });
+        shortTotal.awaitAll(slow);
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void awaitAll_WhenAnUntimedCallOutlastsTheTimeouts_ShouldWaitForItWithoutInterrupting() {
+        FeignCallExecutor shortTimeouts = new FeignCallExecutor(executor, 100, 200);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<String> mutating = shortTimeouts.submit(() -> {
+            try {
+                Thread.sleep(500);
+                return "consumed";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return null;
+            }
+        }, false);
+        CompletableFuture<String> read = shortTimeouts.submit(() -> sleepAndReturn(1000, "read"));
+        shortTimeouts.awaitAll(mutating, read);
+
+        assertEquals("consumed", FeignCallExecutor.resultOf(mutating));
+        assertEquals(1, interrupted.getCount());
+        assertNull(FeignCallExecutor.resultOf(read));
+    }
+
+    @Test
+    void bodyOf_WhenCallFails_ShouldReturnNull() {
+        CompletableFuture<ResponseEntity<String>> failing = feignCallExecutor.submit(() -> {
+            throw new IllegalStateException("Service unavailable");
+        });
+        CompletableFuture<ResponseEntity<String>> succeeding = feignCallExecutor.submit(() -> ResponseEntity.ok("body"));
+        feignCallExecutor.awaitAll(failing, succeeding);
+
+        assertNull(FeignCallExecutor.bodyOf(failing));
+        assertEquals("body", FeignCallExecutor.bodyOf(succeeding));
+    }
+
+    private static String sleepAndReturn(long millis, String value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
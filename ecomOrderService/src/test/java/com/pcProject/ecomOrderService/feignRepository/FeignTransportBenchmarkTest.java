@@ -0,0 +1,210 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.hc5.ApacheHttp5Client;
+import feign.http2client.Http2Client;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Feign transports against a local Tomcat answering like ecomUsers' getAllUserProducts, with the same gzip and h2c
+// settings as the services. Set -Decom.benchmark.transportCalls to change the number of calls per transport
+class FeignTransportBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FeignTransportBenchmarkTest.class);
+    private static final int CLIENTS = 16;
+    private static final String PATH = "/users/getAllUserProducts/benchmark";
+
+    private static Tomcat tomcat;
+    private static String baseUrl;
+    private static byte[] userProducts;
+    // Remote ports seen by the stub, one per connection the client opened
+    private static final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+    private static final Set<String> acceptEncodings = ConcurrentHashMap.newKeySet();
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        StringBuilder json = new StringBuilder("{\"response\":[");
+        for (int i = 0; i < 200; i++)
+            json.append(i == 0 ? "" : ",").append("\"product-").append(i).append('"');
+        userProducts = json.append("],\"status\":200,\"message\":\"Returning all the products of the user\"}").toString().getBytes(StandardCharsets.UTF_8);
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+        Connector connector = new Connector();
+        connector.setPort(0);
+        connector.addUpgradeProtocol(new Http2Protocol());
+        connector.setProperty("compression", "2048");
+        connector.setProperty("compressibleMimeType", "application/json");
+        connector.setProperty("maxKeepAliveRequests", "-1");
+        tomcat.setConnector(connector);
+        Context context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "userProducts", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                connections.add(request.getRemotePort());
+                if (request.getHeader("Accept-Encoding") != null)
+                    acceptEncodings.add(request.getHeader("Accept-Encoding"));
+                response.setContentType("application/json");
+                response.getOutputStream().write(userProducts);
+            }
+        });
+        context.addServletMappingDecoded("/*", "userProducts");
+        tomcat.start();
+        baseUrl = "http://localhost:" + tomcat.getConnector().getLocalPort();
+    }
+
+    @AfterAll
+    static void stopStub() throws Exception {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @BeforeEach
+    void clearConnections() {
+        connections.clear();
+        acceptEncodings.clear();
+    }
+
+    @Test
+    void pooledClient_ShouldAskForGzipAndReturnTheDecodedBody() throws Exception {
+        try (CloseableHttpClient httpClient = pooledHttpClient()) {
+            byte[] body = call(new ApacheHttp5Client(httpClient));
+
+            assertArrayEquals(userProducts, body);
+            assertTrue(acceptEncodings.stream().anyMatch(encoding -> encoding.contains("gzip")));
+        }
+    }
+
+    @Test
+    void http2Client_ShouldMultiplexCallsOnOneConnection() throws Exception {
+        Client http2Client = new Http2Client(HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build());
+        call(http2Client);
+        connections.clear();
+
+        run(http2Client, 200);
+
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    void pooledClient_ShouldReuseItsConnections() throws Exception {
+        try (CloseableHttpClient httpClient = pooledHttpClient()) {
+            Client pooledClient = new ApacheHttp5Client(httpClient);
+            call(pooledClient);
+            connections.clear();
+
+            run(pooledClient, 200);
+
+            // At most one per concurrent caller, each call opening its own would show 200
+            assertTrue(connections.size() <= CLIENTS);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void transports_Benchmark_ShouldReuseConnections() throws Exception {
+        int calls = Integer.getInteger("ecom.benchmark.transportCalls", 10_000);
+        Map<String, Result> results = new LinkedHashMap<>();
+
+        results.put("HttpURLConnection", measure(new Client.Default(null, null), calls));
+        try (CloseableHttpClient httpClient = pooledHttpClient()) {
+            results.put("Apache HttpClient 5 pool", measure(new ApacheHttp5Client(httpClient), calls));
+        }
+        results.put("JDK HttpClient HTTP/2", measure(new Http2Client(HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build()), calls));
+
+        log.info("{} calls per transport, {} clients, {} byte answer ({} bytes gzipped)", calls, CLIENTS, userProducts.length, gzip(userProducts).length);
+        results.forEach((transport, result) -> log.info("{} : {} requests/sec, p50 {} us, p99 {} us, {} connections",
+                transport, result.requestsPerSecond, result.p50Micros, result.p99Micros, result.connections));
+        // The JDK only keeps 5 idle connections per host, how many more it opens depends on how the callers overlap
+        assertTrue(results.get("Apache HttpClient 5 pool").connections <= CLIENTS);
+        assertEquals(1, results.get("JDK HttpClient HTTP/2").connections);
+    }
+
+    private static CloseableHttpClient pooledHttpClient() {
+        // What spring.cloud.openfeign.httpclient.* builds in the service
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(200)
+                        .setMaxConnPerRoute(50)
+                        .build())
+                .build();
+    }
+
+    private Result measure(Client client, int calls) throws Exception {
+        run(client, CLIENTS * 50);
+        connections.clear();
+        long start = System.nanoTime();
+        long[] latencies = run(client, calls);
+        long elapsedNanos = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(calls * 1_000_000_000L / elapsedNanos, latencies[latencies.length / 2] / 1000,
+                latencies[latencies.length * 99 / 100] / 1000, connections.size());
+    }
+
+    private static long[] run(Client client, int calls) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<Long>> results = new ArrayList<>(calls);
+            for (int i = 0; i < calls; i++) {
+                results.add(callers.submit(() -> {
+                    long start = System.nanoTime();
+                    assertEquals(userProducts.length, call(client).length);
+                    return System.nanoTime() - start;
+                }));
+            }
+            long[] latencies = new long[calls];
+            for (int i = 0; i < calls; i++)
+                latencies[i] = results.get(i).get();
+            return latencies;
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static byte[] call(Client client) throws IOException {
+        Request request = Request.create(Request.HttpMethod.GET, baseUrl + PATH, Map.of(), null, StandardCharsets.UTF_8, null);
+        try (Response response = client.execute(request, new Request.Options())) {
+            assertEquals(200, response.status());
+            return response.body().asInputStream().readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private record Result(long requestsPerSecond, long p50Micros, long p99Micros, int connections) {
+    }
+}
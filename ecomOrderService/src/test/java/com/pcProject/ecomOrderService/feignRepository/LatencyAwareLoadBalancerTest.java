@@ -0,0 +1,244 @@
+package com.pcProject.ecomOrderService.feignRepository;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.*;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+import org.springframework.http.HttpStatus;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyAwareLoadBalancerTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LatencyAwareLoadBalancerTest.class);
+    private static final String SERVICE_ID = "ECOMPRODUCTS";
+
+    private final InstanceLatencyTracker tracker = new InstanceLatencyTracker(0.3, 10000, 1000);
+    private final List<HttpServer> stubs = new ArrayList<>();
+
+    @BeforeAll
+    static void disableNagle() {
+        // Otherwise the stubs answer after the 40 ms delayed ack instead of their own latency
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @AfterEach
+    void stopStubs() {
+        stubs.forEach(stub -> stub.stop(0));
+    }
+
+    @Test
+    void choose_WhenOneInstanceIsSlower_ShouldPickTheFasterOne() {
+        ServiceInstance fast = instance(8001);
+        ServiceInstance slow = instance(8002);
+        call(fast, 5);
+        call(slow, 80);
+
+        Response<ServiceInstance> response = balancer(fast, slow).choose().block();
+
+        assertEquals(fast, response.getServer());
+    }
+
+    @Test
+    void choose_WhenFastInstanceIsBusy_ShouldPickTheIdleOne() {
+        ServiceInstance busy = instance(8001);
+        ServiceInstance idle = instance(8002);
+        call(busy, 10);
+        call(idle, 20);
+        for (int i = 0; i < 3; i++)
+            tracker.onStartRequest(request(), new DefaultResponse(busy));
+
+        // 10 ms with three calls ahead is a longer wait than 20 ms with none
+        assertEquals(idle, balancer(busy, idle).choose().block().getServer());
+    }
+
+    @Test
+    void choose_WhenNoInstanceIsRegistered_ShouldReturnAnEmptyResponse() {
+        Response<ServiceInstance> response = balancer().choose().block();
+
+        assertFalse(response.hasServer());
+    }
+
+    @Test
+    void choose_WhenInstancesAreUntracked_ShouldSpreadTheCalls() {
+        ServiceInstance first = instance(8001);
+        ServiceInstance second = instance(8002);
+        LatencyAwareLoadBalancer balancer = balancer(first, second);
+        Set<ServiceInstance> chosen = new HashSet<>();
+
+        // Untracked instances cost nothing, the pick only depends on which two were drawn
+        for (int i = 0; i < 100; i++)
+            chosen.add(balancer.choose(List.of(first, second)).getServer());
+
+        assertEquals(Set.of(first, second), chosen);
+    }
+
+    @Test
+    void onComplete_WhenCallFailsFast_ShouldCountAtLeastThePenalty() {
+        ServiceInstance failing = instance(8001);
+        Request<Object> request = request();
+        tracker.onStartRequest(request, new DefaultResponse(failing));
+        ResponseData serverError = new ResponseData(HttpStatus.SERVICE_UNAVAILABLE, null, null, null);
+        tracker.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, request, new DefaultResponse(failing), serverError));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) tracker.stats().get(SERVICE_ID + " localhost:8001");
+        assertEquals(0, stats.get("inFlight"));
+        assertEquals(1L, stats.get("requestCount"));
+        assertEquals(1L, stats.get("failureCount"));
+        assertTrue((long) stats.get("ewmaMillis") >= 990);
+    }
+
+    @Test
+    void cost_WhenInstanceGetsNoCalls_ShouldDecay() throws InterruptedException {
+        InstanceLatencyTracker shortDecay = new InstanceLatencyTracker(0.3, 50, 1000);
+        ServiceInstance slow = instance(8001);
+        Request<Object> request = request();
+        shortDecay.onStartRequest(request, new DefaultResponse(slow));
+        ((TimedRequestContext) request.getContext()).setRequestStartTime(System.nanoTime() - 100_000_000);
+        shortDecay.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, request, new DefaultResponse(slow)));
+        double costAfterCall = shortDecay.cost(slow);
+
+        Thread.sleep(200);
+
+        assertTrue(shortDecay.cost(slow) < costAfterCall / 10);
+    }
+
+    // Three local stubs of ECOMPRODUCTS, one of them 12 times slower, called by 8 concurrent clients through round
+    // robin then through the latency aware balancer, which starts with what the tracker saw during the first run. Set -Decom.benchmark.lbCalls to change the number of calls
+    @Test
+    @Tag("benchmark")
+    void harness_WhenOneInstanceIsSlow_ShouldCutTheTailLatency() throws Exception {
+        int calls = Integer.getInteger("ecom.benchmark.lbCalls", 1600);
+        ServiceInstance[] instances = {stub(5), stub(5), stub(60)};
+
+        LatencyStats roundRobin = drive(new RoundRobinLoadBalancer(supplierOf(instances), SERVICE_ID), instances, calls);
+        LatencyStats latencyAware = drive(balancer(instances), instances, calls);
+
+        log.info("{} calls, 8 clients, stubs of 5/5/60 ms : round robin p50 {} ms p99 {} ms slow share {}%, latency aware p50 {} ms p99 {} ms slow share {}%",
+                calls, roundRobin.percentile(50), roundRobin.percentile(99), roundRobin.slowSharePercent(),
+                latencyAware.percentile(50), latencyAware.percentile(99), latencyAware.slowSharePercent());
+        log.info("Load balancer stats : {}", tracker.stats());
+        assertTrue(roundRobin.percentile(99) >= 60);
+        assertTrue(latencyAware.percentile(99) * 2 < roundRobin.percentile(99));
+        assertTrue(latencyAware.slowSharePercent() < 5);
+    }
+
+    // Every call goes through the same lifecycle hooks the Feign load balancer client runs
+    private LatencyStats drive(ReactorServiceInstanceLoadBalancer balancer, ServiceInstance[] instances, int calls) throws Exception {
+        ServiceInstance slow = instances[instances.length - 1];
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                results.add(clients.submit(() -> {
+                    Request<Object> request = request();
+                    Response<ServiceInstance> response = balancer.choose(request).block();
+                    tracker.onStartRequest(request, response);
+                    long start = System.nanoTime();
+                    int status = get(response.getServer());
+                    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                    tracker.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, request, response,
+                            new ResponseData(HttpStatus.valueOf(status), null, null, null)));
+                    return new long[]{elapsedMillis, response.getServer().equals(slow) ? 1 : 0};
+                }));
+            }
+            LatencyStats stats = new LatencyStats();
+            for (Future<long[]> result : results)
+                stats.add(result.get());
+            return stats;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static int get(ServiceInstance instance) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + instance.getPort() + "/product").toURL().openConnection();
+        try (InputStream body = connection.getInputStream()) {
+            body.readAllBytes();
+            return connection.getResponseCode();
+        }
+    }
+
+    private ServiceInstance stub(long latencyMillis) throws Exception {
+        HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/product", exchange -> {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.setExecutor(Executors.newFixedThreadPool(16));
+        stub.start();
+        stubs.add(stub);
+        return instance(stub.getAddress().getPort());
+    }
+
+    private void call(ServiceInstance instance, long elapsedMillis) {
+        Request<Object> request = request();
+        tracker.onStartRequest(request, new DefaultResponse(instance));
+        ((TimedRequestContext) request.getContext()).setRequestStartTime(System.nanoTime() - elapsedMillis * 1_000_000);
+        tracker.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, request, new DefaultResponse(instance)));
+    }
+
+    private LatencyAwareLoadBalancer balancer(ServiceInstance... instances) {
+        return new LatencyAwareLoadBalancer(supplierOf(instances), SERVICE_ID, tracker);
+    }
+
+    private static ObjectProvider<ServiceInstanceListSupplier> supplierOf(ServiceInstance... instances) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("serviceInstanceListSupplier", ServiceInstanceListSuppliers.from(SERVICE_ID, instances));
+        return beanFactory.getBeanProvider(ServiceInstanceListSupplier.class);
+    }
+
+    private static ServiceInstance instance(int port) {
+        return new DefaultServiceInstance(SERVICE_ID + "-" + port, SERVICE_ID, "localhost", port, false);
+    }
+
+    private static Request<Object> request() {
+        return new DefaultRequest<>(new DefaultRequestContext());
+    }
+
+    private static final class LatencyStats {
+        private final List<Long> latencies = new ArrayList<>();
+        private int slowCalls;
+
+        private void add(long[] result) {
+            latencies.add(result[0]);
+            slowCalls += (int) result[1];
+        }
+
+        private long percentile(int percentile) {
+            List<Long> sorted = latencies.stream().sorted().toList();
+            return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+        }
+
+        private long slowSharePercent() {
+            return slowCalls * 100L / latencies.size();
+        }
+    }
+}
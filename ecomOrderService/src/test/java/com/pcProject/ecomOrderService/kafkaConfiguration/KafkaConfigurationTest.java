@@ -0,0 +1,111 @@
+package com.pcProject.ecomOrderService.kafkaConfiguration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaConfigurationTest {
+
+    private static final String TOPIC = "ecomUserService_addUserProduct";
+
+    private KafkaConfiguration kafkaConfiguration;
+    private MockEnvironment environment;
+    private Deserializer<UserProductsResponse<OrderDetailsWrapper>> valueDeserializer;
+
+    @BeforeEach
+    void setUp() {
+        kafkaConfiguration = new KafkaConfiguration();
+        environment = new MockEnvironment();
+        ReflectionTestUtils.setField(kafkaConfiguration, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(kafkaConfiguration, "environment", environment);
+        ReflectionTestUtils.setField(kafkaConfiguration, "listenerConcurrency", 2);
+        ReflectionTestUtils.setField(kafkaConfiguration, "topicPartitions", 6);
+        valueDeserializer = ((DefaultKafkaConsumerFactory<String, UserProductsResponse<OrderDetailsWrapper>>) kafkaConfiguration.consumerFactory())
+                .getValueDeserializer();
+    }
+
+    @Test
+    void consumerFactory_WhenRecordIsProperJSON_ShouldReturnTypedResponse() {
+        // ecomUsers adds a type header naming its own UserProductsResponse class
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("__TypeId__", "com.pcProject.ecomUsers.model.UserProductsResponse".getBytes(StandardCharsets.UTF_8));
+        String userProductResponse = "{\"data\": {\"orderId\": 101, \"userName\":\"test-user\",\"productName\":\"test-product\"}," +
+                "\"status\": 200," +
+                "\"message\":\"Successfully added userProducts\"}";
+
+        UserProductsResponse<OrderDetailsWrapper> response = valueDeserializer.deserialize(TOPIC, headers, userProductResponse.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(new OrderDetailsWrapper(101, "test-user", "test-product"), response.getData());
+    }
+
+    @Test
+    void consumerFactory_WhenRecordIsImproperJSON_ShouldReturnNullAndRecordTheFailure() {
+        RecordHeaders headers = new RecordHeaders();
+        String userProductResponse = "{\"data\": {\"orderId\": 101, \"userName\":\"test-user\",\"productName\":\"test-product\"}, " +
+                "\"status\": 200" +
+                "\"message\":\"Successfully added userProducts\"}";
+
+        assertNull(valueDeserializer.deserialize(TOPIC, headers, userProductResponse.getBytes(StandardCharsets.UTF_8)));
+        assertNotNull(headers.lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER));
+    }
+
+    @Test
+    void consumerFactory_WhenRecordIsBinary_ShouldDecodeItWithoutJson() {
+        UserProductsResponse<OrderDetailsWrapper> userProductResponse =
+                new UserProductsResponse<>(new OrderDetailsWrapper(101, "test-user", "test-product"), 200, "Successfully added userProducts");
+
+        UserProductsResponse<OrderDetailsWrapper> response = valueDeserializer.deserialize(TOPIC, new RecordHeaders(), OrderEventCodec.encode(userProductResponse));
+
+        assertEquals(userProductResponse, response);
+    }
+
+    @Test
+    void consumerFactory_WhenBinaryRecordHasTheWrongEventType_ShouldReturnNullAndRecordTheFailure() {
+        RecordHeaders headers = new RecordHeaders();
+
+        assertNull(valueDeserializer.deserialize(TOPIC, headers, OrderEventCodec.encode(new OrderDetailsWrapper(101, "test-user", "test-product"))));
+        assertNotNull(headers.lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER));
+    }
+
+    @Test
+    void listenerConcurrency_WhenTopicHasNoOverride_ShouldUseTheDefault() {
+        assertEquals(2, kafkaConfiguration.listenerConcurrency(TOPIC));
+    }
+
+    @Test
+    void listenerConcurrency_WhenTopicIsOverridden_ShouldUseItsOwnConcurrency() {
+        environment.setProperty("ecom.kafka.listener.concurrency." + TOPIC, "4");
+
+        assertEquals(4, kafkaConfiguration.listenerConcurrency(TOPIC));
+        assertEquals(2, kafkaConfiguration.listenerConcurrency("ecomUsers_userChanged"));
+    }
+
+    @Test
+    void listenerConcurrency_WhenMoreThreadsThanPartitions_ShouldStopAtThePartitionCount() {
+        environment.setProperty("ecom.kafka.listener.concurrency." + TOPIC, "12");
+        environment.setProperty("ecom.kafka.topic.partitions." + TOPIC, "3");
+
+        assertEquals(3, kafkaConfiguration.listenerConcurrency(TOPIC));
+    }
+
+    @Test
+    void topicPartitions_WhenTopicIsOverridden_ShouldUseItsOwnCount() {
+        environment.setProperty("ecom.kafka.topic.partitions.ecomOrderService_addToProductQuantity", "12");
+
+        assertEquals(12, kafkaConfiguration.topicPartitions("ecomOrderService_addToProductQuantity"));
+        assertEquals(6, kafkaConfiguration.topicPartitions("ecomOrderService_addUserProduct"));
+    }
+}
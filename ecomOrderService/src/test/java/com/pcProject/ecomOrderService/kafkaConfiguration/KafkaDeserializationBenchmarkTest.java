@@ -0,0 +1,81 @@
+package com.pcProject.ecomOrderService.kafkaConfiguration;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Per-record cost of reading an ecomUserService_addUserProduct record. The old listener took the record as a String
+// and parsed it with a new ObjectMapper each time, the consumer factory now parses the bytes once with the shared
+// mapper into the typed payload. Rough figures, the repo has no JMH setup : each path is warmed up first and timed
+// over the same records on one thread
+@Tag("benchmark")
+class KafkaDeserializationBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaDeserializationBenchmarkTest.class);
+    private static final String TOPIC = "ecomUserService_addUserProduct";
+    private static final int WARM_UP_RECORDS = 50_000;
+    private static final int RECORDS = 200_000;
+
+    @Test
+    void deserialize_Benchmark_PerRecordMapperAgainstTheSharedTypedReader() {
+        KafkaConfiguration kafkaConfiguration = new KafkaConfiguration();
+        ReflectionTestUtils.setField(kafkaConfiguration, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(kafkaConfiguration, "environment", new MockEnvironment());
+        Deserializer<UserProductsResponse<OrderDetailsWrapper>> typedDeserializer =
+                ((DefaultKafkaConsumerFactory<String, UserProductsResponse<OrderDetailsWrapper>>) kafkaConfiguration.consumerFactory())
+                        .getValueDeserializer();
+        StringDeserializer stringDeserializer = new StringDeserializer();
+
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("__TypeId__", "com.pcProject.ecomUsers.model.UserProductsResponse".getBytes(StandardCharsets.UTF_8));
+        byte[] record = ("{\"data\":{\"orderId\":101,\"userName\":\"test-user\",\"productName\":\"test-product\"," +
+                "\"eventId\":\"0b6f5bb4-6a3e-4a8e-9d7c-3c1f2f1b8e21\"},\"status\":200,\"message\":\"Successfully added userProducts\"}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        PerRecord oldPath = () -> {
+            try {
+                String json = stringDeserializer.deserialize(TOPIC, headers, record);
+                return new ObjectMapper().readValue(json, new TypeReference<UserProductsResponse<OrderDetailsWrapper>>() {});
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        PerRecord newPath = () -> typedDeserializer.deserialize(TOPIC, headers, record);
+
+        time(WARM_UP_RECORDS, oldPath);
+        time(WARM_UP_RECORDS, newPath);
+        long oldNanos = time(RECORDS, oldPath);
+        long newNanos = time(RECORDS, newPath);
+
+        log.info("{} records : new ObjectMapper + readValue from String {} ns/record ({} records/s), shared typed reader {} ns/record ({} records/s)",
+                RECORDS, oldNanos, 1_000_000_000L / Math.max(1, oldNanos), newNanos, 1_000_000_000L / Math.max(1, newNanos));
+        assertTrue(newNanos < oldNanos);
+    }
+
+    private interface PerRecord {
+        UserProductsResponse<OrderDetailsWrapper> read();
+    }
+
+    // Nanoseconds per record, every result is checked so the parsing can't be optimized away
+    private static long time(int records, PerRecord perRecord) {
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++)
+            assertEquals(101, perRecord.read().getData().getOrderId());
+        return (System.nanoTime() - start) / records;
+    }
+}
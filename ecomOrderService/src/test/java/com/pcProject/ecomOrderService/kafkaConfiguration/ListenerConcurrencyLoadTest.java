@@ -0,0 +1,192 @@
+package com.pcProject.ecomOrderService.kafkaConfiguration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ecomUsers' order confirmations, keyed by userName, read by the kafkaListenerContainerFactory with 1 up to one consumer
+// thread per partition. Each record takes a few milliseconds like the database update of the real listener.
+// Set -Decom.benchmark.records to change the number of records per run
+class ListenerConcurrencyLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ListenerConcurrencyLoadTest.class);
+    private static final String TOPIC = "ecomUserService_addUserProduct";
+    private static final int PARTITIONS = 6;
+    private static final int USERS = 60;
+    private static final long RECORD_WORK_MILLIS = 2;
+
+    private static EmbeddedKafkaKraftBroker broker;
+    private static DefaultKafkaProducerFactory<String, Object> producerFactory;
+    private static KafkaTemplate<String, Object> kafkaTemplate;
+
+    private KafkaConfiguration kafkaConfiguration;
+    private MockEnvironment environment;
+
+    @BeforeAll
+    static void startBroker() {
+        broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, TOPIC);
+        broker.afterPropertiesSet();
+        producerFactory = new DefaultKafkaProducerFactory<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class,
+                ProducerConfig.LINGER_MS_CONFIG, 5));
+        kafkaTemplate = new KafkaTemplate<>(producerFactory);
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        // The factory holds the shared producer, left open it keeps reconnecting to the stopped broker
+        producerFactory.destroy();
+        broker.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        kafkaConfiguration = new KafkaConfiguration();
+        environment = new MockEnvironment();
+        ReflectionTestUtils.setField(kafkaConfiguration, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(kafkaConfiguration, "environment", environment);
+        ReflectionTestUtils.setField(kafkaConfiguration, "listenerConcurrency", 1);
+        ReflectionTestUtils.setField(kafkaConfiguration, "topicPartitions", PARTITIONS);
+    }
+
+    @Test
+    void kafkaListenerContainerFactory_WhenEveryPartitionHasAThread_ShouldKeepEachUsersOrder() throws Exception {
+        RunResult result = consume(PARTITIONS, 600);
+
+        assertEquals(PARTITIONS, result.concurrency);
+        assertEquals(0, result.outOfOrder);
+        assertEquals(0, result.usersOnSeveralPartitions);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void kafkaListenerContainerFactory_Benchmark_ConsumerThreadsAgainstThroughput() throws Exception {
+        int records = Integer.getInteger("ecom.benchmark.records", 3000);
+
+        RunResult single = consume(1, records);
+        log.info("1 consumer thread : {}", single);
+        RunResult result = single;
+        for (int concurrency : new int[]{2, 3, PARTITIONS}) {
+            result = consume(concurrency, records);
+            log.info("{} consumer threads : {}", concurrency, result);
+            // Every User's orders come from one partition and in the order they were sent, whatever the threads
+            assertEquals(0, result.outOfOrder);
+            assertEquals(0, result.usersOnSeveralPartitions);
+        }
+        assertEquals(0, single.outOfOrder);
+        assertTrue(result.recordsPerSecond > 2 * single.recordsPerSecond);
+    }
+
+    private record RunResult(int concurrency, int records, long millis, long recordsPerSecond, int outOfOrder,
+                             int usersOnSeveralPartitions) {
+    }
+
+    private RunResult consume(int concurrency, int records) throws Exception {
+        environment.setProperty("ecom.kafka.listener.concurrency." + TOPIC, Integer.toString(concurrency));
+        ConcurrentKafkaListenerContainerFactory<String, UserProductsResponse<OrderDetailsWrapper>> factory = kafkaConfiguration.kafkaListenerContainerFactory();
+        // The service's deserializers against the in-process broker, in a new group that starts at the end of the topic
+        String groupId = "ecomOrderService-load-" + concurrency;
+        commitEndOffsets(groupId);
+        ConsumerFactory<String, UserProductsResponse<OrderDetailsWrapper>> consumerFactory = kafkaConfiguration.consumerFactory();
+        consumerFactory.updateConfigs(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, groupId));
+        factory.setConsumerFactory(consumerFactory);
+
+        Map<String, Integer> lastOrderIds = new ConcurrentHashMap<>();
+        Map<String, Set<Integer>> partitions = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch consumed = new CountDownLatch(records);
+        ConcurrentMessageListenerContainer<String, UserProductsResponse<OrderDetailsWrapper>> container = factory.createContainer(TOPIC);
+        container.getContainerProperties().setMessageListener((MessageListener<String, UserProductsResponse<OrderDetailsWrapper>>) record -> {
+            OrderDetailsWrapper order = record.value().getData();
+            partitions.computeIfAbsent(order.getUserName(), userName -> ConcurrentHashMap.newKeySet()).add(record.partition());
+            lastOrderIds.merge(order.getUserName(), order.getOrderId(), (last, next) -> {
+                if (next <= last)
+                    outOfOrder.incrementAndGet();
+                return Math.max(last, next);
+            });
+            sleep(RECORD_WORK_MILLIS);
+            consumed.countDown();
+        });
+        assertEquals(concurrency, container.getConcurrency());
+
+        container.start();
+        try {
+            ContainerTestUtils.waitForAssignment(container, PARTITIONS);
+            long start = System.nanoTime();
+            // Orders numbered in the order they're sent, each User's orders must be read in increasing order
+            for (int orderId = 1; orderId <= records; orderId++) {
+                String userName = "load-user-" + orderId % USERS;
+                kafkaTemplate.send(TOPIC, userName, new UserProductsResponse<>(new OrderDetailsWrapper(orderId, userName, "Laptop"), 200, "Successfully Added " + userName + " details"));
+            }
+            kafkaTemplate.flush();
+            assertTrue(consumed.await(2, TimeUnit.MINUTES));
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            int usersOnSeveralPartitions = (int) partitions.values().stream().filter(userPartitions -> userPartitions.size() > 1).count();
+            return new RunResult(concurrency, records, millis, records * 1000L / millis, outOfOrder.get(), usersOnSeveralPartitions);
+        } finally {
+            container.stop();
+        }
+    }
+
+    // Committed before the consumers start, with auto.offset.reset=latest a consumer that fetches its first position
+    // after the sends began would skip records
+    private static void commitEndOffsets(String groupId) throws Exception {
+        try (Admin admin = Admin.create(Map.<String, Object>of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()))) {
+            Map<TopicPartition, OffsetSpec> latest = IntStream.range(0, PARTITIONS).boxed()
+                    .collect(Collectors.toMap(partition -> new TopicPartition(TOPIC, partition), partition -> OffsetSpec.latest()));
+            Map<TopicPartition, OffsetAndMetadata> endOffsets = new HashMap<>();
+            admin.listOffsets(latest).all().get().forEach((partition, offset) -> endOffsets.put(partition, new OffsetAndMetadata(offset.offset())));
+            admin.alterConsumerGroupOffsets(groupId, endOffsets).all().get();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
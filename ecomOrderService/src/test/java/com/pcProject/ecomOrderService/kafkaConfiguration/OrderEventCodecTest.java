@@ -0,0 +1,124 @@
+package com.pcProject.ecomOrderService.kafkaConfiguration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderEventCodecTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventCodecTest.class);
+    private static final String TOPIC = "ecomOrderService_addUserProduct";
+
+    private final OrderDetailsWrapper orderDetails = new OrderDetailsWrapper(101, "test-userName", "test-productName");
+
+    @Test
+    void decode_WhenOrderDetailsWereEncoded_ShouldReturnEqualEvent() {
+        assertEquals(orderDetails, OrderEventCodec.decode(OrderEventCodec.encode(orderDetails)));
+    }
+
+    @Test
+    void decode_WhenFieldsAreNullNegativeOrNonAscii_ShouldRoundTrip() {
+        OrderDetailsWrapper unusual = new OrderDetailsWrapper(-7, null, "Café ☕ ürün");
+        UserProductsResponse<OrderDetailsWrapper> response = new UserProductsResponse<>(unusual, -1, null);
+        UserProductsResponse<OrderDetailsWrapper> withoutData = new UserProductsResponse<>(null, 400, "Could not find the User");
+
+        assertEquals(unusual, OrderEventCodec.decode(OrderEventCodec.encode(unusual)));
+        assertEquals(response, OrderEventCodec.decode(OrderEventCodec.encode(response)));
+        assertEquals(withoutData, OrderEventCodec.decode(OrderEventCodec.encode(withoutData)));
+        assertEquals(new OrderDetailsWrapper(Integer.MAX_VALUE, "", ""),
+                OrderEventCodec.decode(OrderEventCodec.encode(new OrderDetailsWrapper(Integer.MAX_VALUE, "", ""))));
+    }
+
+    @Test
+    void decode_WhenEventHasAnId_ShouldKeepIt() {
+        OrderDetailsWrapper withEventId = new OrderDetailsWrapper(101, "test-userName", "test-productName", "5f0c6a2e-8d2b-4c1e-9a57-3b8e1f6d2c40");
+
+        assertEquals(withEventId, OrderEventCodec.decode(OrderEventCodec.encode(withEventId)));
+        assertEquals(new UserProductsResponse<>(withEventId, 200, "Success"),
+                OrderEventCodec.decode(OrderEventCodec.encode(new UserProductsResponse<>(withEventId, 200, "Success"))));
+    }
+
+    @Test
+    void decode_WhenRecordIsFromVersionOne_ShouldReadItWithoutEventId() {
+        // Version 1 had no eventId after productName, a null eventId is its last byte
+        byte[] encoded = OrderEventCodec.encode(orderDetails);
+        byte[] versionOne = Arrays.copyOf(encoded, encoded.length - 1);
+        versionOne[0] = 1;
+
+        assertEquals(orderDetails, OrderEventCodec.decode(versionOne));
+    }
+
+    @Test
+    void isBinary_ShouldTellVersionedRecordsFromJson() {
+        assertTrue(OrderEventCodec.isBinary(OrderEventCodec.encode(orderDetails)));
+        assertFalse(OrderEventCodec.isBinary("{\"orderId\":101}".getBytes()));
+        assertFalse(OrderEventCodec.isBinary("\n {\"orderId\":101}".getBytes()));
+        assertFalse(OrderEventCodec.isBinary(new byte[0]));
+        assertFalse(OrderEventCodec.isBinary(null));
+    }
+
+    @Test
+    void decode_WhenRecordIsTruncatedOrFromUnknownVersion_ShouldThrowSerializationException() {
+        byte[] encoded = OrderEventCodec.encode(orderDetails);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+        byte[] futureVersion = encoded.clone();
+        futureVersion[0] = OrderEventCodec.VERSION + 1;
+
+        assertThrows(SerializationException.class, () -> OrderEventCodec.decode(truncated));
+        assertThrows(SerializationException.class, () -> OrderEventCodec.decode(futureVersion));
+    }
+
+    @Test
+    void serialize_WhenPayloadIsNotAnOrderEvent_ShouldFallBackToJson() {
+        OrderEventSerializer serializer = new OrderEventSerializer(new JsonSerializer<>(new ObjectMapper()));
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] json = serializer.serialize(TOPIC, headers, new UserProductsResponse<>("not an order", 200, "Success"));
+
+        assertFalse(OrderEventCodec.isBinary(json));
+        assertNotNull(headers.lastHeader("__TypeId__"));
+        assertTrue(OrderEventCodec.isBinary(serializer.serialize(TOPIC, new RecordHeaders(), orderDetails)));
+    }
+
+    @Test
+    void encode_ShouldBeSmallerThanJson() {
+        JsonSerializer<Object> jsonSerializer = new JsonSerializer<>(new ObjectMapper());
+        UserProductsResponse<OrderDetailsWrapper> response =
+                new UserProductsResponse<>(orderDetails, 200, "Successfully Added test-userName details");
+
+        int jsonOrderBytes = jsonSerializer.serialize(TOPIC, orderDetails).length;
+        int binaryOrderBytes = OrderEventCodec.encode(orderDetails).length;
+        int jsonResponseBytes = jsonSerializer.serialize(TOPIC, response).length;
+        int binaryResponseBytes = OrderEventCodec.encode(response).length;
+
+        // Rough per-record cost, the repo has no benchmark harness so this only gives an indication
+        int iterations = 200_000;
+        long jsonNanos = time(iterations, () -> jsonSerializer.serialize(TOPIC, orderDetails));
+        long binaryNanos = time(iterations, () -> OrderEventCodec.encode(orderDetails));
+        log.info("OrderDetailsWrapper : json {} bytes {} ns/op, binary {} bytes {} ns/op", jsonOrderBytes,
+                jsonNanos / iterations, binaryOrderBytes, binaryNanos / iterations);
+        log.info("UserProductsResponse : json {} bytes, binary {} bytes", jsonResponseBytes, binaryResponseBytes);
+
+        assertTrue(binaryOrderBytes < jsonOrderBytes / 2);
+        assertTrue(binaryResponseBytes < jsonResponseBytes);
+    }
+
+    private static long time(int iterations, Runnable serialization) {
+        for (int i = 0; i < iterations; i++)
+            serialization.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            serialization.run();
+        return System.nanoTime() - start;
+    }
+}
@@ -1,5 +1,6 @@
 package com.pcProject.ecomOrderService.model;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -15,10 +16,24 @@ class OrderDetailsTest {
         int orderId = 101;
         String userName = "test-userName";
         String productName = "test-productName";
-        String paymentStatus = "Paid";
+        OrderStatus orderStatus = OrderStatus.PLACED;
 
-        OrderDetails testOrderDetailsObj = new OrderDetails(orderId,userName,productName,paymentStatus);
-        assertEquals("Unpaid",testOrderDetailsObj.getPaymentStatus());
+        OrderDetails testOrderDetailsObj = new OrderDetails(orderId,userName,productName,orderStatus);
+        assertEquals(PaymentStatus.UNPAID,testOrderDetailsObj.getPaymentStatus());
     }
 
-}
\ No newline at end of file
+    @Test
+    void orderDetailsJson_ShouldKeepTheStatusLabels() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        OrderDetails order = new OrderDetails(101, "test-userName", "test-productName", OrderStatus.WAITING_TO_PLACE);
+
+        String json = objectMapper.writeValueAsString(order);
+
+        assertTrue(json.contains("\"orderStatus\":\"Waiting_to_Place\""), json);
+        assertTrue(json.contains("\"paymentStatus\":\"Unpaid\""), json);
+        assertEquals(order, objectMapper.readValue(json, OrderDetails.class));
+        // The old free-form column also used the UnPaid spelling
+        assertEquals(PaymentStatus.UNPAID, PaymentStatus.fromLabel("UnPaid"));
+    }
+
+}
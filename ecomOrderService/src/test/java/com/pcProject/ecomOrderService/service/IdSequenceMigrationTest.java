@@ -0,0 +1,64 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.OrderRepository;
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Orders stored with IDENTITY ids before the sequence existed, on a database of its own so no id block is held yet
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:sequencedb")
+@Import(IdSequenceMigration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdSequenceMigrationTest {
+
+    private static final int LEGACY_ORDERS = 120;
+
+    @Autowired
+    private IdSequenceMigration idSequenceMigration;
+    @Autowired
+    private OrderRepository orderRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("Truncate table order_details");
+    }
+
+    @Test
+    void seedSequences_WhenTheTableHasIdentityIds_ShouldInsertPastThem() {
+        for (int orderId = 1; orderId <= LEGACY_ORDERS; orderId++)
+            jdbcTemplate.update("Insert into order_details (order_id, user_name, product_name, order_status, payment_status) values (?, 'legacy-user', 'legacy-product', 1, 0)", orderId);
+
+        idSequenceMigration.seedSequences();
+        // Run again by a second replica, the sequence isn't moved back
+        idSequenceMigration.seedSequences();
+
+        // More than one block, so a second value is read from the sequence
+        List<OrderDetails> newOrders = new ArrayList<>();
+        for (int i = 0; i < 2 * IdSequenceMigration.ALLOCATION_SIZE; i++)
+            newOrders.add(new OrderDetails(0, "new-user", "new-product", OrderStatus.PLACED));
+        orderRepo.saveAll(newOrders);
+
+        assertEquals(LEGACY_ORDERS + newOrders.size(), orderRepo.count());
+        assertTrue(newOrders.stream().allMatch(order -> order.getOrderId() > LEGACY_ORDERS));
+    }
+}
@@ -1,9 +1,10 @@
 package com.pcProject.ecomOrderService.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.pcProject.ecomOrderService.Repository.OrderRepository;
 import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
 import com.pcProject.ecomOrderService.feignRepository.EcomUserService;
+import com.pcProject.ecomOrderService.feignRepository.FeignCallExecutor;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pcProject.ecomOrderService.model.*;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,17 +16,24 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,7 +49,7 @@ class OrderDetailsServiceTest {
     @Mock
     private OrderDetails existingOrderDetails;
     @Mock
-    private KafkaTemplate<String, OrderDetailsWrapper> userProductKafkaTemplate;
+    private OrderEventOutbox orderEventOutbox;
     @InjectMocks
     private OrderDetailsService orderDetailsService;
 
@@ -50,11 +58,16 @@ class OrderDetailsServiceTest {
     private OrderDetailsWrapper sampleWrapper;
     private OrderDetails sampleOrder;
     private UserProducts sampleProduct;
+    private UserExistenceCache userExistenceCache;
 
     @Test
     @BeforeEach
     void configureMockObjects(){
         MockitoAnnotations.openMocks(this);
+        userExistenceCache = new UserExistenceCache(100, 300, 30);
+        ReflectionTestUtils.setField(orderDetailsService, "userExistenceCache", userExistenceCache);
+        ReflectionTestUtils.setField(orderDetailsService, "orderPlacementSaga", new OrderPlacementSaga(ecomProductService, ecomUserService, orderRepo, orderEventOutbox,
+                new FeignCallExecutor(Executors.newFixedThreadPool(2), 1000, 2000), userExistenceCache, mock(PlatformTransactionManager.class), 100));
         sampleProduct = new UserProducts();
         sampleProduct.setProductName(TEST_PRODUCT);
         sampleProduct.setUserName(TEST_USER);
@@ -64,8 +77,8 @@ class OrderDetailsServiceTest {
         sampleOrder.setOrderId(101);
         sampleOrder.setUserName(TEST_USER);
         sampleOrder.setProductName(TEST_PRODUCT);
-        sampleOrder.setOrderStatus("Placed");
-        sampleOrder.setPaymentStatus("Unpaid");
+        sampleOrder.setOrderStatus(OrderStatus.PLACED);
+        sampleOrder.setPaymentStatus(PaymentStatus.UNPAID);
     }
 
     // getAllOrderDetails
@@ -114,26 +127,91 @@ class OrderDetailsServiceTest {
 
         // 2. Response status is 200
     }
-//-------------------------------------
-    //addOrderDetailsConsumer
+
+    // getOrderDetailsPage / streamOrderDetails
     @Test
-    void addOrderDetailsConsumer_WhenUserProductStringIsImproperJSON_ShouldThrowJsonProcessingException(){
-        String userProductResponse = "{\"data\": {\"orderId\": 101, \"userName\":\"test-user\",\"productName\":\"test-product\"}, " +
-                "\"status\": 200" +
-                "\"message\":\"Successfully added userProducts\"}";
-        int orderId = 101;
-        OrderDetails orderDetails = new OrderDetails(101,"test-user","test-product","Placed","Unpaid");
+    void getOrderDetailsPage_WhenMoreOrdersRemain_ShouldReturnNextOrderId() {
+        ReflectionTestUtils.setField(orderDetailsService, "maxPageSize", 1000);
+        when(orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(TEST_USER, 0, Limit.of(3)))
+                .thenReturn(List.of(order(101), order(102), order(103)));
+
+        ResponseEntity<UserProductsResponse<OrderDetailsPage>> methodResponse = orderDetailsService.getOrderDetailsPage(TEST_USER, 0, 2);
+
+        OrderDetailsPage page = Objects.requireNonNull(methodResponse.getBody()).getData();
+        assertEquals(HttpStatus.OK, methodResponse.getStatusCode());
+        assertEquals(List.of(101, 102), page.getOrders().stream().map(OrderDetails::getOrderId).toList());
+        assertEquals(102, page.getNextOrderId());
+        verifyNoInteractions(ecomUserService);
+    }
+
+    @Test
+    void getOrderDetailsPage_WhenLastPage_ShouldReturnNullNextOrderId() {
+        ReflectionTestUtils.setField(orderDetailsService, "maxPageSize", 2);
+        // Limit is clamped to the max page size
+        when(orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(TEST_USER, 102, Limit.of(3)))
+                .thenReturn(List.of(order(103)));
+
+        ResponseEntity<UserProductsResponse<OrderDetailsPage>> methodResponse = orderDetailsService.getOrderDetailsPage(TEST_USER, 102, 50);
 
-        JsonProcessingException exception = assertThrows(JsonProcessingException.class, ()->orderDetailsService.addOrderDetailsConsumer(userProductResponse));
-        assertEquals("Unexpected character ('\"' (code 34)): was expecting comma to separate Object entries", exception.getOriginalMessage());
+        OrderDetailsPage page = Objects.requireNonNull(methodResponse.getBody()).getData();
+        assertEquals(1, page.getOrders().size());
+        assertNull(page.getNextOrderId());
     }
+
+    @Test
+    void getOrderDetailsPage_WhenFirstPageIsEmptyAndUserDoesNotExist_ShouldReturnBadRequest() {
+        ReflectionTestUtils.setField(orderDetailsService, "maxPageSize", 1000);
+        when(orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(eq(TEST_USER), eq(0), any(Limit.class))).thenReturn(List.of());
+        when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(new UserProductsResponse<>(null, 400, "Could not find the User")));
+
+        ResponseEntity<UserProductsResponse<OrderDetailsPage>> methodResponse = orderDetailsService.getOrderDetailsPage(TEST_USER, 0, 100);
+
+        assertEquals(HttpStatus.BAD_REQUEST, methodResponse.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST.value(), Objects.requireNonNull(methodResponse.getBody()).getStatus());
+    }
+
+    @Test
+    void streamOrderDetails_WhenOrdersSpanPages_ShouldWriteOneJsonLinePerOrder() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ReflectionTestUtils.setField(orderDetailsService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(orderDetailsService, "streamPageSize", 2);
+        when(orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(TEST_USER, 0, Limit.of(2))).thenReturn(List.of(order(101), order(102)));
+        when(orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(TEST_USER, 102, Limit.of(2))).thenReturn(List.of(order(103)));
+
+        ResponseEntity<StreamingResponseBody> methodResponse = orderDetailsService.streamOrderDetails(TEST_USER);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Objects.requireNonNull(methodResponse.getBody()).writeTo(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(MediaType.APPLICATION_NDJSON, methodResponse.getHeaders().getContentType());
+        assertEquals(3, lines.length);
+        assertEquals(103, objectMapper.readValue(lines[2], OrderDetails.class).getOrderId());
+        verifyNoInteractions(ecomUserService);
+    }
+
     @Test
-    void addOrderDetailsConsumer_WhenUserProductStringIsProperJSON_ShouldReturn200() throws JsonProcessingException {
-        String userProductResponse = "{\"data\": {\"orderId\": 101, \"userName\":\"test-user\",\"productName\":\"test-product\"},"+
-	"\"status\": 200,"+
-    "\"message\":\"Successfully added userProducts\"}";
+    void streamOrderDetails_WhenUserServiceResponseIsNull_ShouldReturnBadRequestWithoutBody() {
+        ReflectionTestUtils.setField(orderDetailsService, "streamPageSize", 500);
+        when(orderRepo.findAllByUserNameAndOrderIdGreaterThanOrderByOrderId(eq(TEST_USER), eq(0), any(Limit.class))).thenReturn(List.of());
+        when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(null));
+
+        ResponseEntity<StreamingResponseBody> methodResponse = orderDetailsService.streamOrderDetails(TEST_USER);
+
+        assertEquals(HttpStatus.BAD_REQUEST, methodResponse.getStatusCode());
+        assertNull(methodResponse.getBody());
+    }
+
+    private OrderDetails order(int orderId) {
+        return new OrderDetails(orderId, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED);
+    }
+//-------------------------------------
+    //addOrderDetailsConsumer
+    @Test
+    void addOrderDetailsConsumer_WhenOrderIsConfirmed_ShouldPlaceOrderAndReturn200() {
+        UserProductsResponse<OrderDetailsWrapper> userProductResponse =
+                new UserProductsResponse<>(new OrderDetailsWrapper(101, "test-user", "test-product"), 200, "Successfully added userProducts");
         int orderId = 101;
-        OrderDetails existingOrderDetails = new OrderDetails(101,"test-user","test-product","Placed","Unpaid");
+        OrderDetails existingOrderDetails = new OrderDetails(101,"test-user","test-product",OrderStatus.WAITING_TO_PLACE,PaymentStatus.UNPAID);
 
 
         when(orderRepo.findByOrderId(orderId)).thenReturn(existingOrderDetails);
@@ -141,6 +219,20 @@ class OrderDetailsServiceTest {
 
         ResponseEntity<?> response  = orderDetailsService.addOrderDetailsConsumer(userProductResponse);
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(OrderStatus.PLACED, existingOrderDetails.getOrderStatus());
+    }
+    @Test
+    void addOrderDetailsConsumer_WhenOrderWasPlacedBySaga_ShouldLeaveItUnchanged() {
+        UserProductsResponse<OrderDetailsWrapper> userProductResponse =
+                new UserProductsResponse<>(new OrderDetailsWrapper(101, TEST_USER, TEST_PRODUCT), 200, "Successfully added userProducts");
+        sampleOrder.setOrderStatus(OrderStatus.SHIPPED);
+        when(orderRepo.findByOrderId(101)).thenReturn(sampleOrder);
+
+        ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.addOrderDetailsConsumer(userProductResponse);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(OrderStatus.SHIPPED, sampleOrder.getOrderStatus());
+        verify(orderRepo, never()).save(any());
     }
 //-------------------------------------
     //addOrderDetails
@@ -149,7 +241,7 @@ class OrderDetailsServiceTest {
         // Mocking body() to return null
         ResponseEntity<UserProductsResponse<ProductWrapper>> mockResp = mock(ResponseEntity.class);
         when(mockResp.getBody()).thenReturn(null);
-        when(ecomProductService.consumeProduct(any())).thenReturn(mockResp);
+        when(ecomProductService.consumeProduct(any(), any())).thenReturn(mockResp);
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.addOrderDetails(sampleProduct);
 
@@ -164,7 +256,7 @@ class OrderDetailsServiceTest {
         mockBody.setMessage("Product not found");
 
         ResponseEntity<UserProductsResponse<ProductWrapper>> mockResp = ResponseEntity.ok(mockBody);
-        when(ecomProductService.consumeProduct(any())).thenReturn(mockResp);
+        when(ecomProductService.consumeProduct(any(), any())).thenReturn(mockResp);
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.addOrderDetails(sampleProduct);
 
@@ -177,7 +269,7 @@ class OrderDetailsServiceTest {
         // Setup Product Pass
         UserProductsResponse<ProductWrapper> pBody = new UserProductsResponse<>();
         pBody.setStatus(200);
-        when(ecomProductService.consumeProduct(any())).thenReturn(ResponseEntity.ok(pBody));
+        when(ecomProductService.consumeProduct(any(), any())).thenReturn(ResponseEntity.ok(pBody));
 
         // Setup User Null
         ResponseEntity<UserProductsResponse<UserProducts>> uResp = mock(ResponseEntity.class);
@@ -194,7 +286,7 @@ class OrderDetailsServiceTest {
         // Setup Product Pass
         UserProductsResponse<ProductWrapper> pBody = new UserProductsResponse<>();
         pBody.setStatus(200);
-        when(ecomProductService.consumeProduct(any())).thenReturn(ResponseEntity.ok(pBody));
+        when(ecomProductService.consumeProduct(any(), any())).thenReturn(ResponseEntity.ok(pBody));
 
         // Setup User Data Null
         UserProductsResponse<UserProducts> uBody = new UserProductsResponse<>();
@@ -205,13 +297,16 @@ class OrderDetailsServiceTest {
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("User doesn't exists", Objects.requireNonNull(response.getBody()).getMessage());
+        // The placement is released, ecomProducts returns the consumed Product to stock
+        verify(orderEventOutbox).append(eq("ecomOrderService_releaseReservation"), any(), anyString());
+        verify(orderRepo, never()).saveAll(anyList());
     }
     @Test
-    void addOrderDetails_WhenSuccess_ShouldSaveAndSendKafkaMessage() {
+    void addOrderDetails_WhenSuccess_ShouldSaveAndQueueOrderEvent() {
         // Setup Product Pass
         UserProductsResponse<ProductWrapper> pBody = new UserProductsResponse<>();
         pBody.setStatus(200);
-        when(ecomProductService.consumeProduct(any())).thenReturn(ResponseEntity.ok(pBody));
+        when(ecomProductService.consumeProduct(any(), any())).thenReturn(ResponseEntity.ok(pBody));
 
         // Setup User Pass
         UserProducts user = new UserProducts();
@@ -221,16 +316,17 @@ class OrderDetailsServiceTest {
 
         when(ecomUserService.validateUser(any())).thenReturn(ResponseEntity.ok(uBody));
         // Mock Repo Save
-        when(orderRepo.save(any())).thenAnswer(i -> i.getArguments()[0]);
+        when(orderRepo.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.addOrderDetails(sampleProduct);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("Order received", response.getBody().getMessage());
+        assertEquals("Order placed", response.getBody().getMessage());
+        assertEquals(OrderStatus.PLACED, response.getBody().getData().getOrderStatus());
 
         // Verify Interactions
-        verify(orderRepo, times(1)).save(any(OrderDetails.class));
-        verify(userProductKafkaTemplate, times(1)).send(eq("ecomOrderService_addUserProduct"), any());
+        verify(orderRepo, times(1)).saveAll(anyList());
+        verify(orderEventOutbox, times(1)).appendAll(eq("ecomOrderService_addUserProduct"), anyList());
     }
 //-------------------------------------
     //deleteOrderDetails
@@ -245,7 +341,7 @@ class OrderDetailsServiceTest {
 }
     @Test
     void deleteOrderDetails_WhenOrderNotPlaced_ShouldReturnBadRequest() {
-        sampleOrder.setOrderStatus("Shipped");
+        sampleOrder.setOrderStatus(OrderStatus.SHIPPED);
         when(orderRepo.findByOrderId(101)).thenReturn(sampleOrder);
 
         ResponseEntity<UserProductsResponse<OrderDetailsWrapper>> response = orderDetailsService.deleteOrderDetails(sampleWrapper);
@@ -254,7 +350,7 @@ class OrderDetailsServiceTest {
         assertEquals("Order already processed", response.getBody().getMessage());
     }
     @Test
-    void deleteOrderDetails_WhenSuccess_ShouldSendKafkaAndReturnOk() {
+    void deleteOrderDetails_WhenSuccess_ShouldQueueEventsAndReturnOk() {
         when(orderRepo.findByOrderId(101)).thenReturn(sampleOrder);
 
         UserProductsResponse<UserProducts> uBody = new UserProductsResponse<>();
@@ -264,7 +360,7 @@ class OrderDetailsServiceTest {
         ResponseEntity<UserProductsResponse<OrderDetailsWrapper>> response = orderDetailsService.deleteOrderDetails(sampleWrapper);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(userProductKafkaTemplate, times(2)).send(anyString(), any(OrderDetailsWrapper.class));
+        verify(orderEventOutbox, times(2)).append(anyString(), any(OrderDetailsWrapper.class));
         verify(orderRepo).deleteById(101);
     }
     @Test
@@ -333,24 +429,24 @@ class OrderDetailsServiceTest {
         uBody.setStatus(200);
         when(ecomUserService.validateUserProduct(any())).thenReturn(ResponseEntity.ok(uBody));
 
-        when(orderRepo.findAllByUserNameAndProductName(TEST_USER, TEST_PRODUCT))
-                .thenReturn(Arrays.asList(sampleOrder));
+        when(orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID))
+                .thenReturn(sampleOrder);
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.getOneOrderDetails(up);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("Unpaid", response.getBody().getData().getPaymentStatus());
+        assertEquals(PaymentStatus.UNPAID, response.getBody().getData().getPaymentStatus());
     }
     @Test
     void getOneOrderDetails_WhenUnpaidOrderNotExists_ShouldReturnBadRequset() {
         UserProducts up = new UserProducts(TEST_USER, TEST_PRODUCT);
         UserProductsResponse<UserProducts> uBody = new UserProductsResponse<>();
         uBody.setStatus(200);
-        sampleOrder.setPaymentStatus("Paid");
+        sampleOrder.setPaymentStatus(PaymentStatus.PAID);
 
         when(ecomUserService.validateUserProduct(any())).thenReturn(ResponseEntity.ok(uBody));
-        when(orderRepo.findAllByUserNameAndProductName(TEST_USER, TEST_PRODUCT))
-                .thenReturn(List.of(sampleOrder));
+        when(orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID))
+                .thenReturn(null);
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.getOneOrderDetails(up);
 
@@ -362,11 +458,9 @@ class OrderDetailsServiceTest {
         UserProducts up = new UserProducts(TEST_USER, TEST_PRODUCT);
         UserProductsResponse<UserProducts> uBody = new UserProductsResponse<>();
         uBody.setStatus(200);
-        sampleOrder.setPaymentStatus("Paid");
+        sampleOrder.setPaymentStatus(PaymentStatus.PAID);
 
         when(ecomUserService.validateUserProduct(any())).thenReturn(ResponseEntity.ok(uBody));
-        when(orderRepo.findAllByUserNameAndProductName(TEST_USER, TEST_PRODUCT))
-                .thenReturn(Collections.emptyList());
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.getOneOrderDetails(up);
 
@@ -410,28 +504,29 @@ class OrderDetailsServiceTest {
         uBody.setStatus(200);
 
         when(ecomUserService.validateUserProduct(any())).thenReturn(ResponseEntity.ok(uBody));
-        when(orderRepo.findAllByUserNameAndProductName(TEST_USER, TEST_PRODUCT))
-            .thenReturn(List.of(sampleOrder));
+        when(orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID))
+            .thenReturn(sampleOrder);
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.updatePaymentStatus(up);
 
-        assertEquals("Paid", sampleOrder.getPaymentStatus());
+        assertEquals(PaymentStatus.PAID, sampleOrder.getPaymentStatus());
         verify(orderRepo,times(1)).save(sampleOrder);
     }
     @Test
     void updatePaymentStatus_WhenOrderFoundAndPaymentStatusIsPaid_ShouldReturn200() {
-        OrderDetails paidOrder = new OrderDetails(1, TEST_USER, TEST_PRODUCT, "Placed", "Paid");
+        OrderDetails paidOrder = new OrderDetails(1, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED, PaymentStatus.PAID);
         UserProducts up = new UserProducts(TEST_USER, TEST_PRODUCT);
         UserProductsResponse<UserProducts> uBody = new UserProductsResponse<>();
         uBody.setStatus(200);
 
         when(ecomUserService.validateUserProduct(any())).thenReturn(ResponseEntity.ok(uBody));
-        when(orderRepo.findAllByUserNameAndProductName(TEST_USER, TEST_PRODUCT))
-                .thenReturn(List.of(paidOrder));
+        // Paid orders are filtered out by the query
+        when(orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID))
+                .thenReturn(null);
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.updatePaymentStatus(up);
 
-        assertEquals("Paid", paidOrder.getPaymentStatus());
+        assertEquals(PaymentStatus.PAID, paidOrder.getPaymentStatus());
         verify(orderRepo,never()).save(paidOrder);
     }
     @Test
@@ -440,7 +535,6 @@ class OrderDetailsServiceTest {
         uBody.setStatus(200);
 
         when(ecomUserService.validateUserProduct(any())).thenReturn(ResponseEntity.ok(uBody));
-        when(orderRepo.findAllByUserNameAndProductName(TEST_USER,TEST_PRODUCT)).thenReturn(Collections.emptyList());
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response =
                 orderDetailsService.updatePaymentStatus(new UserProducts(TEST_USER, TEST_PRODUCT));
@@ -452,40 +546,40 @@ class OrderDetailsServiceTest {
     //updateOrderStatus
     @Test
     void updateOrderStatus_WhenShipped_ShouldSetToDelivered() {
-        sampleOrder.setOrderStatus("Shipped");
-        sampleOrder.setPaymentStatus("Paid");
+        sampleOrder.setOrderStatus(OrderStatus.SHIPPED);
+        sampleOrder.setPaymentStatus(PaymentStatus.PAID);
         when(orderRepo.findById(101)).thenReturn(Optional.of(sampleOrder));
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.updateOrderStatus(101);
 
-        assertEquals("Delivered", Objects.requireNonNull(response.getBody()).getData().getOrderStatus());
+        assertEquals(OrderStatus.DELIVERED, Objects.requireNonNull(response.getBody()).getData().getOrderStatus());
         verify(orderRepo).save(sampleOrder);
 }
     @Test
-    void updateOrderStatus_WhenDelivered_ShouldDeleteAndSendKafka() {
-        sampleOrder.setOrderStatus("Delivered");
+    void updateOrderStatus_WhenDelivered_ShouldDeleteAndQueueOrderEvent() {
+        sampleOrder.setOrderStatus(OrderStatus.DELIVERED);
         when(orderRepo.findById(101)).thenReturn(Optional.of(sampleOrder));
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.updateOrderStatus(101);
 
         verify(orderRepo).delete(sampleOrder);
-        verify(userProductKafkaTemplate).send(eq("ecomOrderService_removeUserProduct"), any());
+        verify(orderEventOutbox).append(eq("ecomOrderService_removeUserProduct"), any());
     }
     @Test
     void updateOrderStatus_WhenPlacedAndPaid_ShouldSetToShipped() {
-        sampleOrder.setOrderStatus("Placed");
-        sampleOrder.setPaymentStatus("Paid");
+        sampleOrder.setOrderStatus(OrderStatus.PLACED);
+        sampleOrder.setPaymentStatus(PaymentStatus.PAID);
         when(orderRepo.findById(101)).thenReturn(Optional.of(sampleOrder));
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.updateOrderStatus(101);
 
-        assertEquals("Shipped", response.getBody().getData().getOrderStatus());
+        assertEquals(OrderStatus.SHIPPED, response.getBody().getData().getOrderStatus());
         verify(orderRepo).save(sampleOrder);
     }
     @Test
     void updateOrderStatus_WhenPlacedButUnpaid_ShouldReturn402() {
-        sampleOrder.setOrderStatus("Placed");
-        sampleOrder.setPaymentStatus("Unpaid");
+        sampleOrder.setOrderStatus(OrderStatus.PLACED);
+        sampleOrder.setPaymentStatus(PaymentStatus.UNPAID);
         when(orderRepo.findById(101)).thenReturn(Optional.of(sampleOrder));
 
         ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.updateOrderStatus(101);
@@ -494,4 +588,79 @@ class OrderDetailsServiceTest {
         assertEquals("Payment is due !", response.getBody().getMessage());
     }
 //-------------------------------------
-}
\ No newline at end of file
+
+    // User existence cache
+    @Test
+    void getAllOrderDetails_WhenUserWasConfirmedBefore_ShouldNotAskUserServiceAgain() {
+        when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(new UserProductsResponse<>(List.of(TEST_PRODUCT), 200, "Success")));
+
+        orderDetailsService.getAllOrderDetails(TEST_USER);
+        ResponseEntity<UserProductsResponse<List<OrderDetails>>> response = orderDetailsService.getAllOrderDetails(TEST_USER);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(ecomUserService, times(1)).getAllUserProducts(TEST_USER);
+    }
+
+    @Test
+    void addOrderDetails_WhenUserIsKnownToExist_ShouldOnlyConsumeTheProduct() {
+        userExistenceCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, true));
+        UserProductsResponse<ProductWrapper> pBody = new UserProductsResponse<>();
+        pBody.setStatus(200);
+        when(ecomProductService.consumeProduct(any(), any())).thenReturn(ResponseEntity.ok(pBody));
+
+        ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.addOrderDetails(sampleProduct);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(TEST_USER, response.getBody().getData().getUserName());
+        verify(ecomUserService, never()).validateUser(any());
+        verify(orderRepo).saveAll(anyList());
+    }
+
+    @Test
+    void addOrderDetails_WhenUserIsKnownToBeDeleted_ShouldNotConsumeTheProduct() {
+        userExistenceCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, false));
+
+        ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.addOrderDetails(sampleProduct);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("User doesn't exists", response.getBody().getMessage());
+        verify(ecomProductService, never()).consumeProduct(any(), any());
+        verify(ecomUserService, never()).validateUser(any());
+    }
+
+    @Test
+    void deleteOrderDetails_WhenUserIsKnownToExist_ShouldTrustThePlacedOrder() {
+        userExistenceCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, true));
+        when(orderRepo.findByOrderId(101)).thenReturn(sampleOrder);
+
+        ResponseEntity<UserProductsResponse<OrderDetailsWrapper>> response = orderDetailsService.deleteOrderDetails(sampleWrapper);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(ecomUserService, never()).validateUserProduct(any());
+        verify(orderRepo).deleteById(101);
+    }
+
+    @Test
+    void updatePaymentStatus_WhenUserIsKnownToExistButHasNoUnpaidOrder_ShouldAskUserService() {
+        userExistenceCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, true));
+        when(orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID)).thenReturn(null);
+        when(ecomUserService.validateUserProduct(sampleProduct)).thenReturn(ResponseEntity.ok(new UserProductsResponse<>(null, 400, "Could not find the Product in User Order list")));
+
+        ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.updatePaymentStatus(sampleProduct);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(ecomUserService).validateUserProduct(sampleProduct);
+    }
+
+    @Test
+    void getOneOrderDetails_WhenUserIsKnownToExist_ShouldServeTheOrderWithoutUserService() {
+        userExistenceCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, true));
+        when(orderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID)).thenReturn(sampleOrder);
+
+        ResponseEntity<UserProductsResponse<OrderDetails>> response = orderDetailsService.getOneOrderDetails(sampleProduct);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(sampleOrder, response.getBody().getData());
+        verify(ecomUserService, never()).validateUserProduct(any());
+    }
+}
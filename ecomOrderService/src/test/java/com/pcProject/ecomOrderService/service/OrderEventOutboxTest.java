@@ -0,0 +1,177 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.OutboxEventRepository;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.OutboxEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderEventOutbox.class)
+// Own database, the OutboxRelay of a cached application context would publish these events otherwise
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:outboxdb")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderEventOutboxTest {
+
+    private static final String TOPIC = "ecomOrderService_addUserProduct";
+
+    @Autowired
+    private OrderEventOutbox orderEventOutbox;
+    @Autowired
+    private OutboxEventRepository outboxRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepo.deleteAll();
+    }
+
+    @Test
+    void append_WhenTransactionCommits_ShouldKeepEventsInOrder() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(1, "test-user", "test-product"));
+            orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(2, "test-user", "test-product"));
+        });
+
+        assertEquals(List.of(1, 2), outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10))
+                .stream().map(OutboxEvent::getOrderId).toList());
+    }
+
+    @Test
+    void appendAll_ShouldQueueTheEventsAfterEarlierOnes() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(1, "test-user", "test-product"));
+            orderEventOutbox.appendAll(TOPIC, List.of(new OrderDetailsWrapper(2, "test-user", "test-product"),
+                    new OrderDetailsWrapper(3, "test-user", "test-product")));
+        });
+
+        assertEquals(List.of(1, 2, 3), outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10))
+                .stream().map(OutboxEvent::getOrderId).toList());
+    }
+
+    @Test
+    void appendAll_ShouldGiveEveryEventItsOwnEventId() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                orderEventOutbox.appendAll(TOPIC, List.of(new OrderDetailsWrapper(1, "test-user", "test-product"),
+                        new OrderDetailsWrapper(1, "test-user", "test-product"))));
+
+        List<OutboxEvent> events = outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10));
+        assertNotNull(events.get(0).getEventId());
+        assertNotEquals(events.get(0).getEventId(), events.get(1).getEventId());
+        assertEquals(events.get(1).getEventId(), events.get(1).toOrderDetailsWrapper().getEventId());
+    }
+
+    @Test
+    void append_WhenTheRequestCarriesAnEventId_ShouldGenerateItsOwn() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(1, "test-user", "test-product", "chosen-by-client")));
+
+        String eventId = outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10)).get(0).getEventId();
+        assertNotNull(eventId);
+        assertNotEquals("chosen-by-client", eventId);
+    }
+
+    @Test
+    void append_WithAnEventIdOfTheService_ShouldKeepIt() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(0, "test-user", null), "placement-id"));
+
+        assertEquals("placement-id", outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10)).get(0).getEventId());
+    }
+
+    @Test
+    void append_WhenTransactionRollsBack_ShouldLeaveNothingToPublish() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(1, "test-user", "test-product"));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, outboxRepo.count());
+    }
+
+    @Test
+    void append_WhenCalledOutsideATransaction_ShouldFail() {
+        assertThrows(IllegalTransactionStateException.class,
+                () -> orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(1, "test-user", "test-product")));
+    }
+
+    @Test
+    void lease_ShouldMarkTheEventsForTheRelayUntilReleased() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(1, "user-a", "product-a"));
+            orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(2, "user-a", "product-a"));
+        });
+        List<OutboxEvent> events = outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10));
+
+        assertEquals(1, outboxRepo.lease(List.of(events.get(0).getOutboxEventId()), "relay-a", 1000L));
+
+        List<OutboxEvent> leased = outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10));
+        assertEquals("relay-a", leased.get(0).getLeasedBy());
+        assertEquals(1000L, leased.get(0).getLeasedUntil());
+        assertNull(leased.get(1).getLeasedBy());
+
+        assertEquals(0, outboxRepo.releaseLease("relay-b"));
+        assertEquals(1, outboxRepo.releaseLease("relay-a"));
+        assertNull(outboxRepo.findAllByOrderByOutboxEventId(PageRequest.of(0, 10)).get(0).getLeasedBy());
+    }
+
+    @Test
+    void findBatchToPublish_WhenAnotherRelayHoldsTheBatch_ShouldRefuseIt() throws Exception {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                orderEventOutbox.append(TOPIC, new OrderDetailsWrapper(1, "user-a", "product-a")));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> firstRelay = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                assertEquals(1, outboxRepo.findBatchToPublish(PageRequest.of(0, 10)).size());
+                locked.countDown();
+                awaitQuietly(done);
+            }));
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            // MySQL answers NOWAIT at once, H2 ignores it and fails after its own lock timeout
+            assertThrows(PessimisticLockingFailureException.class, () -> new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> outboxRepo.findBatchToPublish(PageRequest.of(0, 10))));
+
+            done.countDown();
+            firstRelay.get(5, TimeUnit.SECONDS);
+        } finally {
+            done.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
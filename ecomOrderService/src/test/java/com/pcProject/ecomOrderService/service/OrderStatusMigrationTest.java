@@ -0,0 +1,104 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.OrderRepository;
+import com.pcProject.ecomOrderService.model.OrderDetails;
+import com.pcProject.ecomOrderService.model.OrderStatus;
+import com.pcProject.ecomOrderService.model.PaymentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// order_details as ddl-auto=update left it on databases created before the status codes, varchar columns of labels
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:statusdb")
+@Import(OrderStatusMigration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderStatusMigrationTest {
+
+    @Autowired
+    private OrderStatusMigration orderStatusMigration;
+    @Autowired
+    private OrderRepository orderRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("Alter table order_details alter column order_status varchar(255)");
+        jdbcTemplate.execute("Alter table order_details alter column payment_status varchar(255)");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("Truncate table order_details");
+        jdbcTemplate.execute("Alter table order_details alter column order_status tinyint");
+        jdbcTemplate.execute("Alter table order_details alter column payment_status tinyint");
+    }
+
+    @Test
+    void migrateLegacyStatuses_ShouldRewriteTheLabelsToCodes() {
+        insertLegacyOrder(1, "Waiting_to_Place", "UnPaid");
+        insertLegacyOrder(2, "Placed", "Unpaid");
+        insertLegacyOrder(3, "Shipped", "Paid");
+        insertLegacyOrder(4, "Delivered", null);
+
+        orderStatusMigration.migrateLegacyStatuses();
+
+        assertEquals("TINYINT", columnType("ORDER_STATUS"));
+        assertEquals("TINYINT", columnType("PAYMENT_STATUS"));
+        assertOrder(1, OrderStatus.WAITING_TO_PLACE, PaymentStatus.UNPAID);
+        assertOrder(2, OrderStatus.PLACED, PaymentStatus.UNPAID);
+        assertOrder(3, OrderStatus.SHIPPED, PaymentStatus.PAID);
+        assertOrder(4, OrderStatus.DELIVERED, null);
+    }
+
+    @Test
+    void migrateLegacyStatuses_WhenRunAgain_ShouldLeaveTheCodesAsTheyAre() {
+        insertLegacyOrder(1, "Placed", "Paid");
+
+        orderStatusMigration.migrateLegacyStatuses();
+        orderStatusMigration.migrateLegacyStatuses();
+
+        assertOrder(1, OrderStatus.PLACED, PaymentStatus.PAID);
+    }
+
+    @Test
+    void migrateLegacyStatuses_WhenALabelIsUnknown_ShouldChangeNothing() {
+        insertLegacyOrder(1, "Placed", "Paid");
+        insertLegacyOrder(2, "Lost", "Paid");
+
+        assertThrows(IllegalStateException.class, () -> orderStatusMigration.migrateLegacyStatuses());
+
+        assertEquals("CHARACTER VARYING", columnType("ORDER_STATUS"));
+        assertEquals("Placed", jdbcTemplate.queryForObject("Select order_status from order_details where order_id = 1", String.class));
+    }
+
+    private void insertLegacyOrder(int orderId, String orderStatus, String paymentStatus) {
+        jdbcTemplate.update("Insert into order_details (order_id, user_name, product_name, order_status, payment_status) values (?, ?, ?, ?, ?)",
+                orderId, "legacy-user", "legacy-product", orderStatus, paymentStatus);
+    }
+
+    private void assertOrder(int orderId, OrderStatus orderStatus, PaymentStatus paymentStatus) {
+        OrderDetails order = orderRepo.findById(orderId).orElseThrow();
+        assertEquals(orderStatus, order.getOrderStatus());
+        assertEquals(paymentStatus, order.getPaymentStatus());
+    }
+
+    private String columnType(String column) {
+        return jdbcTemplate.queryForObject("Select data_type from information_schema.columns where table_name = 'ORDER_DETAILS' and column_name = ?",
+                String.class, column);
+    }
+}
@@ -0,0 +1,198 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.OutboxEventRepository;
+import com.pcProject.ecomOrderService.model.OrderDetailsWrapper;
+import com.pcProject.ecomOrderService.model.OutboxEvent;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxRepo;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MockProducer<String, Object> producer;
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        // Local stub producer, sends only complete when the test says so. MockProducer's flush would complete them
+        // all successfully, a real flush only waits for them
+        producer = new MockProducer<>(false, new StringSerializer(), (topic, data) -> new byte[0]) {
+            @Override
+            public synchronized void flush() {
+            }
+        };
+        KafkaTemplate<String, Object> kafkaTemplate = new KafkaTemplate<>(new MockProducerFactory<>(() -> producer));
+        outboxRelay = new OutboxRelay(outboxRepo, kafkaTemplate, transactionManager, 3, 2000, 30000);
+    }
+
+    @Test
+    void publishBatch_WhenOutboxIsEmpty_ShouldSendNothing() {
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, outboxRelay.publishBatch());
+
+        assertTrue(producer.history().isEmpty());
+        verify(outboxRepo, never()).deleteAllByIdInBatch(anyList());
+    }
+
+    @Test
+    void publishBatch_WhenAnotherInstanceHoldsTheBatch_ShouldSendNothing() {
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenThrow(new PessimisticLockingFailureException("Row is locked"));
+
+        assertEquals(0, outboxRelay.publishBatch());
+
+        assertTrue(producer.history().isEmpty());
+        verify(outboxRepo, never()).deleteAllByIdInBatch(anyList());
+    }
+
+    @Test
+    void publishBatch_WhenAllSendsSucceed_ShouldPublishInOrderKeyedByUserAndDeleteThem() throws Exception {
+        List<OutboxEvent> events = List.of(
+                event(1, "ecomOrderService_addUserProduct", 101, "user-a"),
+                event(2, "ecomOrderService_addUserProduct", 102, "user-b"),
+                event(3, "ecomOrderService_removeUserProduct", 101, "user-a"));
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenReturn(events);
+
+        int published = runCompletingSends(3, 0);
+
+        assertEquals(3, published);
+        List<ProducerRecord<String, Object>> records = producer.history();
+        assertEquals(List.of("user-a", "user-b", "user-a"), records.stream().map(ProducerRecord::key).toList());
+        assertEquals("ecomOrderService_removeUserProduct", records.get(2).topic());
+        assertEquals(new OrderDetailsWrapper(102, "user-b", "test-product", "event-2"), records.get(1).value());
+        verify(outboxRepo).lease(eq(List.of(1L, 2L, 3L)), anyString(), anyLong());
+        verify(outboxRepo).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(outboxRepo).releaseLease(anyString());
+    }
+
+    @Test
+    void publishBatch_WhileSending_ShouldHoldNoTransaction() throws Exception {
+        List<OutboxEvent> events = List.of(
+                event(1, "ecomOrderService_addUserProduct", 101, "user-a"),
+                event(2, "ecomOrderService_addUserProduct", 102, "user-b"));
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenReturn(events);
+
+        int published = runCompletingSends(2, 0, () -> {
+            // The claim is committed before anything is sent, the delete waits for the sends
+            verify(transactionManager, times(1)).commit(any());
+            verify(outboxRepo, never()).deleteAllByIdInBatch(anyList());
+        });
+
+        assertEquals(2, published);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void publishBatch_WhenAnotherRelayLeasedTheBatch_ShouldSendNothing() {
+        OutboxEvent leased = event(1, "ecomOrderService_addUserProduct", 101, "user-a");
+        leased.setLeasedBy("another-relay");
+        leased.setLeasedUntil(System.currentTimeMillis() + 60000);
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenReturn(List.of(leased, event(2, "ecomOrderService_addUserProduct", 102, "user-a")));
+
+        assertEquals(0, outboxRelay.publishBatch());
+
+        assertTrue(producer.history().isEmpty());
+        verify(outboxRepo, never()).lease(anyList(), anyString(), anyLong());
+    }
+
+    @Test
+    void publishBatch_WhenTheLeaseRanOut_ShouldTakeOverTheBatch() throws Exception {
+        OutboxEvent abandoned = event(1, "ecomOrderService_addUserProduct", 101, "user-a");
+        abandoned.setLeasedBy("dead-relay");
+        abandoned.setLeasedUntil(System.currentTimeMillis() - 1000);
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenReturn(List.of(abandoned));
+
+        assertEquals(1, runCompletingSends(1, 0));
+
+        verify(outboxRepo).deleteAllByIdInBatch(List.of(1L));
+    }
+
+    @Test
+    void publishBatch_WhenASendFails_ShouldOnlyDeleteEventsBeforeIt() throws Exception {
+        List<OutboxEvent> events = List.of(
+                event(1, "ecomOrderService_addUserProduct", 101, "user-a"),
+                event(2, "ecomOrderService_addUserProduct", 102, "user-b"),
+                event(3, "ecomOrderService_addUserProduct", 103, "user-a"));
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenReturn(events);
+
+        // Second send fails, the third succeeds but must stay queued so it isn't published ahead of the retry
+        int published = runCompletingSends(3, 2);
+
+        assertEquals(1, published);
+        verify(outboxRepo).deleteAllByIdInBatch(List.of(1L));
+        verify(outboxRepo).releaseLease(anyString());
+    }
+
+    @Test
+    void publishBatch_WhenEventChangesStock_ShouldKeyItByProduct() throws Exception {
+        List<OutboxEvent> events = List.of(
+                event(1, "ecomOrderService_addUserProduct", 101, "user-a"),
+                event(2, OutboxRelay.PRODUCT_QUANTITY_TOPIC, 101, "user-a"));
+        when(outboxRepo.findBatchToPublish(any(Pageable.class))).thenReturn(events);
+
+        assertEquals(2, runCompletingSends(2, 0));
+
+        assertEquals(List.of("user-a", "test-product"), producer.history().stream().map(ProducerRecord::key).toList());
+    }
+
+    private int runCompletingSends(int sends, int failingSend) throws Exception {
+        return runCompletingSends(sends, failingSend, () -> {
+        });
+    }
+
+    // Runs one batch on another thread while this one completes the stubbed sends, failing the given send (1 based).
+    // whileSending runs once all sends are out and none has completed
+    private int runCompletingSends(int sends, int failingSend, Runnable whileSending) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> batch = executor.submit(outboxRelay::publishBatch);
+            // The whole batch is sent before the relay waits on any result
+            while (producer.history().size() < sends && !batch.isDone())
+                Thread.sleep(5);
+            whileSending.run();
+            for (int completed = 1; completed <= sends; completed++) {
+                if (completed == failingSend)
+                    producer.errorNext(new RuntimeException("Broker unavailable"));
+                else
+                    producer.completeNext();
+            }
+            return batch.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static OutboxEvent event(long outboxEventId, String topic, int orderId, String userName) {
+        return new OutboxEvent(outboxEventId, topic, orderId, userName, "test-product", "event-" + outboxEventId, null, null);
+    }
+}
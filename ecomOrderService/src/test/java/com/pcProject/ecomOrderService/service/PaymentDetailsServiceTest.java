@@ -2,6 +2,7 @@ package com.pcProject.ecomOrderService.service;
 
 import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
 import com.pcProject.ecomOrderService.feignRepository.EcomUserService;
+import com.pcProject.ecomOrderService.feignRepository.FeignCallExecutor;
 import com.pcProject.ecomOrderService.model.OrderDetails;
 import com.pcProject.ecomOrderService.model.ProductWrapper;
 import com.pcProject.ecomOrderService.model.UserProducts;
@@ -17,11 +18,14 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -47,6 +51,8 @@ class PaymentDetailsServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(paymentDetailsService, "feignCallExecutor", new FeignCallExecutor(Executors.newFixedThreadPool(2), 1000, 2000));
+        ReflectionTestUtils.setField(paymentDetailsService, "productPriceCache", new ProductPriceCache(ecomProductService, 100, 300));
         userProduct = new UserProducts(TEST_USER, TEST_PRODUCT);
         successUserProductResponse = new UserProductsResponse<>(Arrays.asList(TEST_PRODUCT), 200, "Success");
 
@@ -72,37 +78,65 @@ class PaymentDetailsServiceTest {
     }
 
     @Test
-    void getAllPayment_WhenProductValueResponseIsNull_ShouldNotIncrementTotal() {
-        // Case 1: productValueResponse is null
+    void getAllPayment_WhenProductValuesResponseIsNull_ShouldNotIncrementTotal() {
+        // Case 1: productValuesResponse is null
         when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(successUserProductResponse));
-        when(ecomProductService.getProductValue(any())).thenReturn(null);
+        when(ecomProductService.getProductValues(any())).thenReturn(null);
 
         ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.getAllPayment(TEST_USER);
         assertEquals("0", result.getBody().getData());
     }
 
     @Test
-    void getAllPayment_WhenProductValueBodyIsNull_ShouldNotIncrementTotal() {
-        // Case 2: productValueResponse is not null + getBody is null
+    void getAllPayment_WhenProductValuesBodyIsNull_ShouldNotIncrementTotal() {
+        // Case 2: productValuesResponse is not null + getBody is null
         when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(successUserProductResponse));
-        when(ecomProductService.getProductValue(any())).thenReturn(ResponseEntity.ok(null));
+        when(ecomProductService.getProductValues(any())).thenReturn(ResponseEntity.ok(null));
 
         ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.getAllPayment(TEST_USER);
         assertEquals("0", result.getBody().getData());
     }
 
     @Test
-    void getAllPayment_WhenProductValueIsValid_ShouldReturnTotal() {
-        // Case 3: productValueResponse is not null + getBody is not null
+    void getAllPayment_WhenProductValuesAreValid_ShouldReturnTotal() {
+        // Case 3: productValuesResponse is not null + getBody is not null
         when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(successUserProductResponse));
-        UserProductsResponse<String> val = new UserProductsResponse<>("100", 200, "OK");
-        when(ecomProductService.getProductValue(any())).thenReturn(ResponseEntity.ok(val));
+        UserProductsResponse<Map<String, Integer>> val = new UserProductsResponse<>(Map.of(TEST_PRODUCT, 100), 200, "OK");
+        when(ecomProductService.getProductValues(any())).thenReturn(ResponseEntity.ok(val));
 
         ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.getAllPayment(TEST_USER);
         assertEquals("100", result.getBody().getData());
         assertEquals(HttpStatus.OK, result.getStatusCode());
     }
 
+    @Test
+    void getAllPayment_WhenCartHasRepeatedAndUnknownProducts_ShouldUseSingleCall() {
+        UserProductsResponse<List<String>> cart = new UserProductsResponse<>(Arrays.asList(TEST_PRODUCT, "unknown", TEST_PRODUCT), 200, "Success");
+        when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(cart));
+        UserProductsResponse<Map<String, Integer>> val = new UserProductsResponse<>(Map.of(TEST_PRODUCT, 100), 200, "OK");
+        when(ecomProductService.getProductValues(any())).thenReturn(ResponseEntity.ok(val));
+
+        ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.getAllPayment(TEST_USER);
+
+        assertEquals("200", result.getBody().getData());
+        verify(ecomProductService, times(1)).getProductValues(List.of(TEST_PRODUCT, "unknown"));
+        verify(ecomProductService, never()).getProductValue(any());
+    }
+
+    @Test
+    void getAllPayment_WhenPricesAreCached_ShouldNotCallProductService() {
+        when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(successUserProductResponse));
+        UserProductsResponse<Map<String, Integer>> val = new UserProductsResponse<>(Map.of(TEST_PRODUCT, 100), 200, "OK");
+        when(ecomProductService.getProductValues(any())).thenReturn(ResponseEntity.ok(val));
+
+        paymentDetailsService.getAllPayment(TEST_USER);
+        ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.getAllPayment(TEST_USER);
+
+        assertEquals("100", result.getBody().getData());
+        verify(ecomProductService, times(1)).getProductValues(any());
+        assertEquals(1L, paymentDetailsService.getPriceCacheStats().getBody().getData().get("hitCount"));
+    }
+
     // --- OneProductPayment Branch Coverage ---
 
     @Test
@@ -198,8 +232,9 @@ class PaymentDetailsServiceTest {
     @Test
     void settleAllPayment_WhenSuccessful_ShouldReturnOkAndRemoveProducts() {
         when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(successUserProductResponse));
-        UserProductsResponse<String> val = new UserProductsResponse<>("250", 200, "OK");
-        when(ecomProductService.getProductValue(any())).thenReturn(ResponseEntity.ok(val));
+        UserProductsResponse<Map<String, Integer>> val = new UserProductsResponse<>(Map.of(TEST_PRODUCT, 250), 200, "OK");
+        when(ecomProductService.getProductValues(any())).thenReturn(ResponseEntity.ok(val));
+        when(ecomUserService.removeUserProduct(any())).thenReturn(ResponseEntity.ok(new UserProductsResponse<>(null, 200, "Removed the Product")));
 
         ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.settleAllPayment(TEST_USER);
 
@@ -207,30 +242,43 @@ class PaymentDetailsServiceTest {
         assertEquals("Payment settled", result.getBody().getMessage());
         verify(ecomUserService).removeUserProduct(any());
     }
+
+    @Test
+    void settleAllPayment_WhenAProductIsNotRemoved_ShouldNameItInTheError() {
+        UserProductsResponse<List<String>> userProducts = new UserProductsResponse<>(List.of(TEST_PRODUCT, "other-product"), 200, "OK");
+        when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(userProducts));
+        when(ecomProductService.getProductValues(any())).thenReturn(ResponseEntity.ok(new UserProductsResponse<>(Map.of(TEST_PRODUCT, 250, "other-product", 100), 200, "OK")));
+        when(ecomUserService.removeUserProduct(new UserProducts(TEST_USER, TEST_PRODUCT))).thenReturn(ResponseEntity.ok(new UserProductsResponse<>(null, 200, "Removed the Product")));
+        when(ecomUserService.removeUserProduct(new UserProducts(TEST_USER, "other-product"))).thenThrow(new IllegalStateException("Read timed out"));
+
+        ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.settleAllPayment(TEST_USER);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        assertEquals(500, result.getBody().getStatus());
+        assertEquals("Payment not settled, could not remove the Products : other-product", result.getBody().getMessage());
+    }
     @Test
-    void settleAllPayment_WhenProductValueResponseIsNull_ShouldReturnBadRequest() {
+    void settleAllPayment_WhenProductValuesResponseIsNull_ShouldReturnBadRequest() {
         when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(successUserProductResponse));
-        UserProductsResponse<String> val = new UserProductsResponse<>("250", 200, "OK");
-        when(ecomProductService.getProductValue(any())).thenReturn(null);
+        when(ecomProductService.getProductValues(any())).thenReturn(null);
 
         ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.settleAllPayment(TEST_USER);
 
 
         assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
         assertEquals("Something went wrong !", result.getBody().getMessage());
-        verify(ecomUserService, times(1)).removeUserProduct(any());
+        verify(ecomUserService, never()).removeUserProduct(any());
     }
     @Test
-    void settleAllPayment_WhenProductValueResponseBodyIsNull_ShouldReturnBadRequest() {
+    void settleAllPayment_WhenProductValuesResponseBodyIsNull_ShouldReturnBadRequest() {
         when(ecomUserService.getAllUserProducts(TEST_USER)).thenReturn(ResponseEntity.ok(successUserProductResponse));
-        UserProductsResponse<String> val = new UserProductsResponse<>("250", 200, "OK");
-        when(ecomProductService.getProductValue(any())).thenReturn(ResponseEntity.ok(null));
+        when(ecomProductService.getProductValues(any())).thenReturn(ResponseEntity.ok(null));
 
         ResponseEntity<UserProductsResponse<String>> result = paymentDetailsService.settleAllPayment(TEST_USER);
 
 
         assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
         assertEquals("Something went wrong !", result.getBody().getMessage());
-        verify(ecomUserService, times(1)).removeUserProduct(any());
+        verify(ecomUserService, never()).removeUserProduct(any());
     }
 }
\ No newline at end of file
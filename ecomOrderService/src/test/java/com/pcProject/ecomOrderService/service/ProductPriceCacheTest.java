@@ -0,0 +1,116 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
+import com.pcProject.ecomOrderService.model.ProductPrice;
+import com.pcProject.ecomOrderService.model.UserProductsResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductPriceCacheTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductPriceCacheTest.class);
+
+    @Mock
+    private EcomProductService ecomProductService;
+
+    private ProductPriceCache priceCache;
+
+    @BeforeEach
+    void setUp() {
+        priceCache = new ProductPriceCache(ecomProductService, 100, 300);
+    }
+
+    @Test
+    void getProductValues_WhenSomeAreCached_ShouldOnlyFetchTheMissingOnes() {
+        priceCache.kafkaConsumer_productPriceChanged(new ProductPrice("cached", 10));
+        when(ecomProductService.getProductValues(List.of("missing"))).thenReturn(values(Map.of("missing", 20)));
+
+        assertEquals(Map.of("cached", 10, "missing", 20), priceCache.getProductValues(List.of("cached", "missing", "cached")));
+        assertEquals(Map.of("cached", 10, "missing", 20), priceCache.getProductValues(List.of("missing", "cached")));
+
+        verify(ecomProductService, times(1)).getProductValues(anyList());
+    }
+
+    @Test
+    void getProductValues_WhenFetchFails_ShouldReturnNullAndCacheNothing() {
+        when(ecomProductService.getProductValues(List.of("missing"))).thenReturn(ResponseEntity.ok(null));
+
+        assertNull(priceCache.getProductValues(List.of("missing")));
+        assertEquals(0L, priceCache.stats().get("estimatedSize"));
+    }
+
+    @Test
+    void kafkaConsumer_productPriceChanged_ShouldUpdateOrDropThePrice() {
+        priceCache.kafkaConsumer_productPriceChanged(new ProductPrice("product", 10));
+        priceCache.kafkaConsumer_productPriceChanged(new ProductPrice("product", 15));
+        assertEquals(Map.of("product", 15), priceCache.getProductValues(List.of("product")));
+
+        // Deleted Product, the next payment asks ecomProductService again
+        priceCache.kafkaConsumer_productPriceChanged(new ProductPrice("product", null));
+        when(ecomProductService.getProductValues(List.of("product"))).thenReturn(values(Map.of()));
+        assertEquals(Map.of(), priceCache.getProductValues(List.of("product")));
+    }
+
+    @Test
+    void getProductValues_WhenPriceChangesDuringTheFetch_ShouldKeepTheNewPrice() {
+        when(ecomProductService.getProductValues(List.of("product"))).thenAnswer(invocation -> {
+            priceCache.kafkaConsumer_productPriceChanged(new ProductPrice("product", 12));
+            return values(Map.of("product", 10));
+        });
+
+        assertEquals(Map.of("product", 12), priceCache.getProductValues(List.of("product")));
+    }
+
+    // Many payments over a small catalog, only the first read of each Product should leave the service
+    @Test
+    void getProductValues_UnderConcurrentLoad_ShouldServeAlmostEverythingFromCache() throws Exception {
+        when(ecomProductService.getProductValues(anyList())).thenAnswer(invocation -> {
+            Map<String, Integer> fetched = new HashMap<>();
+            for (String productName : invocation.<List<String>>getArgument(0))
+                fetched.put(productName, productName.length());
+            return values(fetched);
+        });
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int worker = 0; worker < threads; worker++) {
+            int seed = worker;
+            workers.add(executor.submit(() -> {
+                for (int payment = 0; payment < 2_000; payment++)
+                    priceCache.getProductValues(List.of("product-" + (payment + seed) % 50, "product-" + (payment * 7 + seed) % 50));
+            }));
+        }
+        for (Future<?> worker : workers)
+            worker.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Map<String, Object> stats = priceCache.stats();
+        log.info("Price cache after {} payments : {}", threads * 2_000, stats);
+        assertTrue((double) stats.get("hitRate") > 0.99, stats.toString());
+    }
+
+    private static ResponseEntity<UserProductsResponse<Map<String, Integer>>> values(Map<String, Integer> productValues) {
+        return ResponseEntity.ok(new UserProductsResponse<>(productValues, 200, "Returning the Product values"));
+    }
+}
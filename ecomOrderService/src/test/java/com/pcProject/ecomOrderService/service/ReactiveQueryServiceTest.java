@@ -0,0 +1,198 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.Repository.ReactiveOrderRepository;
+import com.pcProject.ecomOrderService.feignRepository.EcomProductService;
+import com.pcProject.ecomOrderService.feignRepository.ReactiveEcomProductService;
+import com.pcProject.ecomOrderService.feignRepository.ReactiveEcomUserService;
+import com.pcProject.ecomOrderService.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveQueryServiceTest {
+    @Mock
+    private ReactiveEcomUserService reactiveEcomUserService;
+    @Mock
+    private ReactiveEcomProductService reactiveEcomProductService;
+    @Mock
+    private ReactiveOrderRepository reactiveOrderRepo;
+    @Mock
+    private EcomProductService ecomProductService;
+    @InjectMocks
+    private ReactiveQueryService reactiveQueryService;
+
+    private UserExistenceCache userExistenceCache;
+    private ProductPriceCache productPriceCache;
+
+    private static final String TEST_USER = "test-userName";
+    private static final String TEST_PRODUCT = "test-productName";
+    private final OrderDetails orderDetails = new OrderDetails(101, TEST_USER, TEST_PRODUCT, OrderStatus.PLACED);
+
+    @BeforeEach
+    void setUp() {
+        userExistenceCache = new UserExistenceCache(100, 300, 30);
+        productPriceCache = new ProductPriceCache(ecomProductService, 100, 300);
+        ReflectionTestUtils.setField(reactiveQueryService, "userExistenceCache", userExistenceCache);
+        ReflectionTestUtils.setField(reactiveQueryService, "productPriceCache", productPriceCache);
+        ReflectionTestUtils.setField(reactiveQueryService, "streamPageSize", 500);
+    }
+
+    @Test
+    void getAllOrderDetails_WhenUserExists_ShouldReturnOrdersAndCacheTheUser() {
+        when(reactiveEcomUserService.getAllUserProducts(TEST_USER)).thenReturn(Mono.just(new UserProductsResponse<>(List.of(TEST_PRODUCT), 200, "Success")));
+        when(reactiveOrderRepo.findAllByUserName(TEST_USER)).thenReturn(Flux.just(orderDetails));
+
+        for (int i = 0; i < 2; i++)
+            StepVerifier.create(reactiveQueryService.getAllOrderDetails(TEST_USER))
+                    .assertNext(response -> {
+                        assertEquals(HttpStatus.OK, response.getStatusCode());
+                        assertEquals(List.of(orderDetails), response.getBody().getData());
+                    })
+                    .verifyComplete();
+
+        verify(reactiveEcomUserService, times(1)).getAllUserProducts(TEST_USER);
+        assertTrue(userExistenceCache.lookup(TEST_USER));
+    }
+
+    @Test
+    void getAllOrderDetails_WhenUserIsUnknown_ShouldReturnBadRequestWithoutReadingOrders() {
+        when(reactiveEcomUserService.getAllUserProducts(TEST_USER)).thenReturn(Mono.just(new UserProductsResponse<>(null, 404, "User doesn't exists")));
+
+        StepVerifier.create(reactiveQueryService.getAllOrderDetails(TEST_USER))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+                    assertEquals(List.of(), response.getBody().getData());
+                })
+                .verifyComplete();
+
+        verifyNoInteractions(reactiveOrderRepo);
+        assertFalse(userExistenceCache.lookup(TEST_USER));
+    }
+
+    @Test
+    void getAllOrderDetails_WhenEcomUserServiceReturnsNoBody_ShouldReturnBadRequest() {
+        when(reactiveEcomUserService.getAllUserProducts(TEST_USER)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveQueryService.getAllOrderDetails(TEST_USER))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+                    assertEquals(500, response.getBody().getStatus());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void streamOrderDetails_WhenUserHasOrders_ShouldNotAskEcomUserService() {
+        when(reactiveOrderRepo.streamAllByUserName(TEST_USER, 500)).thenReturn(Flux.just(orderDetails));
+
+        StepVerifier.create(reactiveQueryService.streamOrderDetails(TEST_USER))
+                .expectNext(orderDetails)
+                .verifyComplete();
+
+        verifyNoInteractions(reactiveEcomUserService);
+    }
+
+    @Test
+    void streamOrderDetails_WhenUserIsUnknown_ShouldFailWithBadRequest() {
+        when(reactiveOrderRepo.streamAllByUserName(TEST_USER, 500)).thenReturn(Flux.empty());
+        when(reactiveEcomUserService.getAllUserProducts(TEST_USER)).thenReturn(Mono.just(new UserProductsResponse<>(null, 404, "User doesn't exists")));
+
+        StepVerifier.create(reactiveQueryService.streamOrderDetails(TEST_USER))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.BAD_REQUEST, ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+    }
+
+    @Test
+    void getOneOrderDetails_WhenUserIsCachedAndOrderFound_ShouldNotAskEcomUserService() {
+        userExistenceCache.record(TEST_USER, true);
+        when(reactiveOrderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID)).thenReturn(Mono.just(orderDetails));
+
+        StepVerifier.create(reactiveQueryService.getOneOrderDetails(new UserProducts(TEST_USER, TEST_PRODUCT)))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.getStatusCode());
+                    assertEquals(orderDetails, response.getBody().getData());
+                })
+                .verifyComplete();
+
+        verifyNoInteractions(reactiveEcomUserService);
+    }
+
+    @Test
+    void getOneOrderDetails_WhenNoUnpaidOrder_ShouldValidateAndReturnBadRequest() {
+        when(reactiveOrderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID)).thenReturn(Mono.empty());
+        when(reactiveEcomUserService.validateUserProduct(any(UserProducts.class))).thenReturn(Mono.just(new UserProductsResponse<>(null, 200, "Success")));
+
+        StepVerifier.create(reactiveQueryService.getOneOrderDetails(new UserProducts(TEST_USER, TEST_PRODUCT)))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+                    assertEquals("No Such Order is available", response.getBody().getMessage());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getOneOrderDetails_WhenProductIsNotInTheUsersList_ShouldReturnBadRequest() {
+        when(reactiveOrderRepo.findFirstByUserNameAndProductNameAndPaymentStatusOrderByOrderId(TEST_USER, TEST_PRODUCT, PaymentStatus.UNPAID)).thenReturn(Mono.just(orderDetails));
+        when(reactiveEcomUserService.validateUserProduct(any(UserProducts.class))).thenReturn(Mono.just(new UserProductsResponse<>(null, 400, "Product not found")));
+
+        StepVerifier.create(reactiveQueryService.getOneOrderDetails(new UserProducts(TEST_USER, TEST_PRODUCT)))
+                .assertNext(response -> assertEquals("User doesn't exists", response.getBody().getMessage()))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAllPayment_ShouldSumCachedAndFetchedValues() {
+        productPriceCache.kafkaConsumer_productPriceChanged(new ProductPrice("Laptop", 1000));
+        when(reactiveEcomUserService.getAllUserProducts(TEST_USER)).thenReturn(Mono.just(new UserProductsResponse<>(List.of("Laptop", "Mouse", "Laptop"), 200, "Success")));
+        when(reactiveEcomProductService.getProductValues(List.of("Mouse"))).thenReturn(Mono.just(new UserProductsResponse<>(Map.of("Mouse", 50), 200, "Success")));
+
+        StepVerifier.create(reactiveQueryService.getAllPayment(TEST_USER))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.getStatusCode());
+                    assertEquals("2050", response.getBody().getData());
+                })
+                .verifyComplete();
+
+        verifyNoInteractions(ecomProductService);
+    }
+
+    @Test
+    void getAllPayment_WhenProductValuesCannotBeFetched_ShouldReturnZero() {
+        when(reactiveEcomUserService.getAllUserProducts(TEST_USER)).thenReturn(Mono.just(new UserProductsResponse<>(List.of("Mouse"), 200, "Success")));
+        when(reactiveEcomProductService.getProductValues(List.of("Mouse"))).thenReturn(Mono.just(new UserProductsResponse<>(null, 500, "Error")));
+
+        StepVerifier.create(reactiveQueryService.getAllPayment(TEST_USER))
+                .assertNext(response -> assertEquals("0", response.getBody().getData()))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAllPayment_WhenStatusNot200_ShouldReturnBadRequest() {
+        when(reactiveEcomUserService.getAllUserProducts(TEST_USER)).thenReturn(Mono.just(new UserProductsResponse<>(null, 404, "Not Found")));
+
+        StepVerifier.create(reactiveQueryService.getAllPayment(TEST_USER))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+                    assertEquals(404, response.getBody().getStatus());
+                })
+                .verifyComplete();
+        verifyNoInteractions(reactiveEcomProductService);
+    }
+}
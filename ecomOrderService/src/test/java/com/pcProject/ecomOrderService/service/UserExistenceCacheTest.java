@@ -0,0 +1,85 @@
+package com.pcProject.ecomOrderService.service;
+
+import com.pcProject.ecomOrderService.model.UserExistence;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserExistenceCacheTest {
+
+    private static final String TEST_USER = "test-userName";
+
+    private UserExistenceCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        userCache = new UserExistenceCache(100, 300, 30);
+    }
+
+    @Test
+    void lookup_WhenUserWasNeverSeen_ShouldReturnNull() {
+        assertNull(userCache.lookup(TEST_USER));
+        assertNull(userCache.lookup(null));
+    }
+
+    @Test
+    void record_ShouldCacheExistingAndMissingUsers() {
+        userCache.record(TEST_USER, true);
+        userCache.record("unknown-user", false);
+
+        assertEquals(Boolean.TRUE, userCache.lookup(TEST_USER));
+        assertEquals(Boolean.FALSE, userCache.lookup("unknown-user"));
+    }
+
+    @Test
+    void record_WhenAnEventArrivedDuringTheCall_ShouldKeepTheEvent() {
+        // The User was deleted while ecomUserService was still answering that it exists
+        userCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, false));
+        userCache.record(TEST_USER, true);
+
+        assertEquals(Boolean.FALSE, userCache.lookup(TEST_USER));
+    }
+
+    @Test
+    void kafkaConsumer_userChanged_ShouldOverwriteTheCachedAnswer() {
+        userCache.record(TEST_USER, false);
+
+        userCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, true));
+        assertEquals(Boolean.TRUE, userCache.lookup(TEST_USER));
+
+        userCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, false));
+        assertEquals(Boolean.FALSE, userCache.lookup(TEST_USER));
+    }
+
+    @Test
+    void kafkaConsumer_userChanged_WhenEventIsMalformed_ShouldIgnoreIt() {
+        userCache.kafkaConsumer_userChanged(null);
+        userCache.kafkaConsumer_userChanged(new UserExistence(null, true));
+
+        assertEquals(0L, userCache.stats().get("eventCount"));
+    }
+
+    @Test
+    void stats_ShouldReportHitRateAndStaleness() {
+        assertEquals(-1L, userCache.stats().get("millisSinceLastEvent"));
+        userCache.kafkaConsumer_userChanged(new UserExistence(TEST_USER, true));
+        userCache.record("unknown-user", false);
+
+        for (int i = 0; i < 9; i++)
+            userCache.lookup(TEST_USER);
+        userCache.lookup("unknown-user");
+        userCache.lookup("never-seen");
+
+        Map<String, Object> stats = userCache.stats();
+        assertEquals(10L, stats.get("hitCount"));
+        assertEquals(1L, stats.get("missCount"));
+        assertEquals(9L, stats.get("existingUserHitCount"));
+        assertEquals(1L, stats.get("missingUserHitCount"));
+        assertEquals(1L, stats.get("eventCount"));
+        assertTrue((Long) stats.get("millisSinceLastEvent") >= 0);
+        assertTrue((Long) stats.get("maxHitAgeMillis") >= (Long) stats.get("averageHitAgeMillis"));
+    }
+}
@@ -1,13 +1,21 @@
 package com.pcProject.ecomProducts.controller;
 
 import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductQuantity;
 import com.pcProject.ecomProducts.model.ProductWrapper;
 import com.pcProject.ecomProducts.model.UserProductsResponse;
+import com.pcProject.ecomProducts.service.ProductCatalogTransfer;
 import com.pcProject.ecomProducts.service.ProductDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,8 +27,13 @@ public class ProductDetailsController {
     //    -----------------------------------------
     // Exposed to OrderService
     @PostMapping("consumeProduct")
-    public ResponseEntity<UserProductsResponse<ProductWrapper>> consumeProduct(@RequestBody ProductWrapper product){
-        return productService.consumeProduct(product);
+    public ResponseEntity<UserProductsResponse<ProductWrapper>> consumeProduct(@RequestBody ProductWrapper product, @RequestParam(value = "placementId", required = false) String placementId){
+        return productService.consumeProduct(product, placementId);
+    }
+
+    @PostMapping("consumeProducts")
+    public ResponseEntity<UserProductsResponse<List<ProductQuantity>>> consumeProducts(@RequestBody List<ProductQuantity> products, @RequestParam(value = "placementId", required = false) String placementId){
+        return productService.consumeProducts(products, placementId);
     }
 
     @PostMapping("getProductValue")
@@ -28,6 +41,11 @@ public class ProductDetailsController {
         return productService.getProductValue(product);
     }
 
+    @PostMapping("getProductValues")
+    public ResponseEntity<UserProductsResponse<Map<String,Integer>>> getProductValues(@RequestBody List<String> productNames){
+        return productService.getProductValues(productNames);
+    }
+
     @PostMapping("validateProduct")
     public ResponseEntity<UserProductsResponse<ProductWrapper>> validateProduct(@RequestBody ProductWrapper product){
         return productService.validateProduct(product);
@@ -46,11 +64,40 @@ public class ProductDetailsController {
         return productService.getAllProducts();
     }
 
+    // Whole catalog streamed from the database, format is ndjson or csv
+    @GetMapping("exportProducts")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "ndjson") String format){
+        ProductCatalogTransfer.Format catalogFormat = formatOf(format);
+        if(catalogFormat == null)
+            return ResponseEntity.badRequest().build();
+        return productService.exportProducts(catalogFormat);
+    }
+
+    // Catalog upload as NDJSON or CSV (productName,productValue,productQuantity), new Products are added and
+    // existing ones overwritten
+    @PostMapping(value = "importProducts", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                                                   InputStream catalog) throws IOException {
+        ProductCatalogTransfer.Format format = ProductDetailsService.CSV.isCompatibleWith(contentType) ? ProductCatalogTransfer.Format.CSV : ProductCatalogTransfer.Format.NDJSON;
+        return productService.importProducts(catalog, format);
+    }
+
+    @GetMapping("getCatalogCacheStats")
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getCatalogCacheStats(){
+        return productService.getCatalogCacheStats();
+    }
+
     @PostMapping("addProductDetails")
     public Object addProductDetails(@RequestBody ProductDetails product){
         return productService.addProductDetails(product);
     }
 
+    // Load many Products at once, e.g. a new catalog
+    @PostMapping("addProductDetailsList")
+    public ResponseEntity<UserProductsResponse<Integer>> addProductDetailsList(@RequestBody List<ProductDetails> products){
+        return productService.addProductDetailsList(products);
+    }
+
     @PostMapping("addToProductQuantity")
     public Object addToProductQuantity(@RequestBody Map<String,String> productDetails){
         return productService.addToProductQuantity(productDetails);
@@ -66,4 +113,11 @@ public class ProductDetailsController {
         return productService.deleteProductDetails(productName);
     }
 
-}
\ No newline at end of file
+
+    private static ProductCatalogTransfer.Format formatOf(String format){
+        for(ProductCatalogTransfer.Format catalogFormat : ProductCatalogTransfer.Format.values())
+            if(catalogFormat.name().equalsIgnoreCase(format))
+                return catalogFormat;
+        return null;
+    }
+}
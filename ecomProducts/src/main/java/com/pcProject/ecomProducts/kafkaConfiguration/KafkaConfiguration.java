@@ -1,12 +1,22 @@
 package com.pcProject.ecomProducts.kafkaConfiguration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomProducts.VirtualThreads;
+import com.pcProject.ecomProducts.model.OrderDetailsWrapper;
+import com.pcProject.ecomProducts.model.ProductWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
@@ -15,11 +25,35 @@ import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
+@Slf4j
 @Configuration
 @EnableKafka
 public class KafkaConfiguration {
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    // Spring Boot only runs the listener containers it builds itself on virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // json or binary, consumers read both so producers can be switched one service at a time
+    @Value("${ecom.kafka.wire-format:json}")
+    private String wireFormat;
+
+    // Consumer threads per listener, ecom.kafka.listener.concurrency.<topic> overrides it for one topic
+    @Value("${ecom.kafka.listener.concurrency:1}")
+    private int listenerConcurrency;
+
+    // ecom.kafka.topic.partitions.<topic> overrides it for one topic, the services sharing a topic must agree on it
+    @Value("${ecom.kafka.topic.partitions:6}")
+    private int topicPartitions;
+
     @Bean
     public ProducerFactory<String,Object> producerFactory(){
         Map<String,Object> configParams = new HashMap<>();
@@ -29,6 +63,9 @@ public class KafkaConfiguration {
         configParams.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         configParams.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, true);
 
+        if ("binary".equalsIgnoreCase(wireFormat))
+            return new DefaultKafkaProducerFactory<>(configParams, new StringSerializer(),
+                    new OrderEventSerializer(new JsonSerializer<>(objectMapper)));
         return new DefaultKafkaProducerFactory<>(configParams);
     }
 
@@ -38,30 +75,80 @@ public class KafkaConfiguration {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    // The topics this service publishes to, keyed by productName so the changes of a Product stay in order
+    @Bean
+    public KafkaAdmin.NewTopics productEventTopics() {
+        return new KafkaAdmin.NewTopics(newTopic("ecomProducts_productPriceChanged"),
+                newTopic("ecomProducts_productChanged"));
+    }
+
     // --- CONSUMER CONFIG (Add this now) ---
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, OrderDetailsWrapper> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "ecomOrderService");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-//        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-//        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
-        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
 
         // This ensures the consumer reads old messages if it's the first time joining the group
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
-        return new DefaultKafkaConsumerFactory<>(props);
+        // Each record is parsed once by the shared ObjectMapper, the producer's type header is ignored since
+        // it names the other service's class. A malformed record goes to the error handler instead of the listener
+        JsonDeserializer<OrderDetailsWrapper> valueDeserializer = new JsonDeserializer<>(OrderDetailsWrapper.class, objectMapper, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new OrderEventDeserializer<>(OrderDetailsWrapper.class, valueDeserializer)));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, OrderDetailsWrapper> kafkaListenerContainerFactory() {
+        return listenerContainerFactory(consumerFactory());
+    }
+
+    // Catalog invalidations must reach every replica, so each instance reads them in its own consumer group
+    // and only from the moment it started, its cache is empty before that
+    @Bean
+    public ConsumerFactory<String, ProductWrapper> productChangedConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "ecomProducts-catalogCache-" + UUID.randomUUID());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+
+        JsonDeserializer<ProductWrapper> valueDeserializer = new JsonDeserializer<>(ProductWrapper.class, objectMapper, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ErrorHandlingDeserializer<>(valueDeserializer));
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory =
-                new ConcurrentKafkaListenerContainerFactory<>();
-        factory.setConsumerFactory(consumerFactory());
+    public ConcurrentKafkaListenerContainerFactory<String, ProductWrapper> productChangedListenerContainerFactory() {
+        return listenerContainerFactory(productChangedConsumerFactory());
+    }
+
+    private <K, V> ConcurrentKafkaListenerContainerFactory<K, V> listenerContainerFactory(ConsumerFactory<K, V> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<K, V> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        if (VirtualThreads.enabled(virtualThreads))
+            factory.getContainerProperties().setListenerTaskExecutor(VirtualThreads.taskExecutor("kafka-listener-"));
+        factory.setContainerCustomizer(container -> container.setConcurrency(listenerConcurrency(container.getContainerProperties().getTopics())));
         return factory;
     }
-}
\ No newline at end of file
+
+    // A partition is read by one consumer thread at a time, threads beyond the partition count would stay idle
+    int listenerConcurrency(String... topics) {
+        int concurrency = 1;
+        for (String topic : topics == null ? new String[0] : topics) {
+            int requested = environment.getProperty("ecom.kafka.listener.concurrency." + topic, Integer.class, listenerConcurrency);
+            int partitions = topicPartitions(topic);
+            if (requested > partitions)
+                log.warn("Topic {} has {} partitions, its listener runs {} consumer threads instead of {}", topic, partitions, partitions, requested);
+            concurrency = Math.max(concurrency, Math.min(requested, partitions));
+        }
+        return concurrency;
+    }
+
+    int topicPartitions(String topic) {
+        return environment.getProperty("ecom.kafka.topic.partitions." + topic, Integer.class, topicPartitions);
+    }
+
+    private NewTopic newTopic(String topic) {
+        return TopicBuilder.name(topic).partitions(topicPartitions(topic)).build();
+    }
+}
@@ -0,0 +1,29 @@
+package com.pcProject.ecomProducts.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Units of a hot Product taken from the database and held in memory by one instance, written in the transaction that
+// claims them and refreshed by every flush. Deleted once the units are sold or returned, a row still there when the
+// instance starts is the most it can have lost in a crash
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "hot_product_claim", uniqueConstraints = @UniqueConstraint(name = "uk_hot_product_claim", columnNames = {"instanceId", "productName"}))
+public class HotProductClaim {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long claimId;
+    private String instanceId;
+    private String productName;
+    private int quantity;
+    private long updatedAt;
+
+    public HotProductClaim(String instanceId, String productName) {
+        this.instanceId = instanceId;
+        this.productName = productName;
+    }
+}
@@ -15,7 +15,9 @@ import java.util.List;
 @NoArgsConstructor
 public class ProductDetails {
     @Id
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    // Pooled sequence, ids are handed out 50 at a time before the insert so Hibernate can batch the inserts
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator = "product_details_seq")
+    @SequenceGenerator(name = "product_details_seq", sequenceName = "product_details_seq", allocationSize = 50)
     private int productId;
     @Column(unique = true)
     private String productName;
@@ -0,0 +1,14 @@
+package com.pcProject.ecomProducts.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Price change event, a null productValue means the Product was deleted
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPrice {
+    private String productName;
+    private Integer productValue;
+}
@@ -0,0 +1,14 @@
+package com.pcProject.ecomProducts.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One line of a cart, productQuantity units of the Product
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductQuantity {
+    private String productName;
+    private int productQuantity;
+}
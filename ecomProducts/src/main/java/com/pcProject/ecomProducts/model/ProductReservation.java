@@ -0,0 +1,56 @@
+package com.pcProject.ecomProducts.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The units an order placement took, written in the same transaction as the stock change. A released reservation
+// has given its units back, or is a marker refusing a placement whose consume call hadn't arrived yet
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "product_reservation", indexes = @Index(name = "idx_product_reservation_reserved_at", columnList = "reservedAt"))
+public class ProductReservation implements Persistable<String> {
+    @Id
+    @Column(length = 36)
+    private String placementId;
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "product_reservation_line", joinColumns = @JoinColumn(name = "placement_id"))
+    @MapKeyColumn(name = "product_name")
+    @Column(name = "quantity")
+    private Map<String, Integer> quantities = new HashMap<>();
+    private boolean released;
+    private long reservedAt;
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean stored;
+
+    public ProductReservation(String placementId, Map<String, Integer> quantities, boolean released, long reservedAt) {
+        this.placementId = placementId;
+        this.quantities = new HashMap<>(quantities);
+        this.released = released;
+        this.reservedAt = reservedAt;
+    }
+
+    @Override
+    public String getId() {
+        return placementId;
+    }
+
+    // Always inserted, a second reservation for the same placement fails on the key instead of overwriting the first
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.pcProject.ecomProducts.repository;
+
+import com.pcProject.ecomProducts.model.HotProductClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface HotProductClaimRepository extends JpaRepository<HotProductClaim,Long> {
+    HotProductClaim findByInstanceIdAndProductName(String instanceId, String productName);
+    List<HotProductClaim> findAllByInstanceId(String instanceId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Delete from HotProductClaim where instanceId = :instanceId and productName = :productName")
+    int deleteByInstanceIdAndProductName(String instanceId, String productName);
+}
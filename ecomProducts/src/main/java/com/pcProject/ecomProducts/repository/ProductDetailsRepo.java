@@ -1,15 +1,43 @@
 package com.pcProject.ecomProducts.repository;
 
 import com.pcProject.ecomProducts.model.ProductDetails;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface ProductDetailsRepo extends JpaRepository<ProductDetails,Integer> {
     ProductDetails findByProductName(String productName);
+    List<ProductDetails> findAllByProductNameIn(Collection<String> productNames);
+
+    // The stock alone, it isn't kept in the catalog cache
+    @Query("Select p.productQuantity from ProductDetails p where p.productName = :productName")
+    Integer findProductQuantity(String productName);
+
+    // Rows are read from a cursor as the stream is consumed, which has to happen inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("Select p from ProductDetails p")
+    Stream<ProductDetails> streamAll();
+
+    // Takes the quantity only if enough stock is left, returns the number of updated rows (0 or 1)
+    @Modifying
+    @Transactional
+    @Query("Update ProductDetails set productQuantity = productQuantity - :quantity where productName = :productName and productQuantity >= :quantity")
+    int consumeProductQuantity(String productName, int quantity);
+
+    @Modifying
+    @Transactional
+    @Query("Update ProductDetails set productQuantity = productQuantity + :quantity where productName = :productName")
+    int addProductQuantity(String productName, int quantity);
 
     @Modifying
     @Transactional
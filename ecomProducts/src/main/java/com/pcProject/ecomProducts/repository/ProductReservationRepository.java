@@ -0,0 +1,37 @@
+package com.pcProject.ecomProducts.repository;
+
+import com.pcProject.ecomProducts.model.ProductReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProductReservationRepository extends JpaRepository<ProductReservation,String> {
+
+    // Held until the caller's transaction ends, so a reservation is released once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "Select r from ProductReservation r where r.placementId = :placementId")
+    Optional<ProductReservation> findForUpdate(String placementId);
+
+    @Query(value = "Select r.placementId from ProductReservation r where r.placementId in :placementIds")
+    List<String> findPlacementIdsIn(Collection<String> placementIds);
+
+    // The lines go first, a bulk delete doesn't cascade to the element collection
+    @Modifying
+    @Transactional
+    @Query(value = "Delete from product_reservation_line where placement_id in (Select r.placement_id from product_reservation r where r.reserved_at < :reservedAt)", nativeQuery = true)
+    int deleteAllLinesReservedBefore(long reservedAt);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Delete from product_reservation where reserved_at < :reservedAt", nativeQuery = true)
+    int deleteAllReservedBefore(long reservedAt);
+}
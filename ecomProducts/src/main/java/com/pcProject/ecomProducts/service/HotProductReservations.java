@@ -0,0 +1,291 @@
+package com.pcProject.ecomProducts.service;
+
+import com.pcProject.ecomProducts.model.HotProductClaim;
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.repository.HotProductClaimRepository;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Serves consumeProduct for configured hot Products from in-memory stock, so every order doesn't update the same row.
+// Stock is claimed from the database in blocks before it is sold: a crash can never oversell,
+// it can only leave at most one unsold block per hot Product out of the database quantity. The units held are recorded
+// in hot_product_claim with each claim and flush, what a crash left behind is logged at the next start.
+@Slf4j
+@Component
+public class HotProductReservations {
+
+    private final ProductDetailsRepo productRepo;
+    private final HotProductClaimRepository claimRepo;
+    // Claims commit on their own, an order rolled back later must not put the claimed units back in the database
+    private final TransactionTemplate transactionTemplate;
+    private final String instanceId;
+    private final int stripeCount;
+    private final int claimSize;
+    private final Map<String, HotProduct> hotProducts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HotProductReservations(ProductDetailsRepo productRepo,
+                                  HotProductClaimRepository claimRepo,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${ecom.products.hot.names:}") List<String> hotProductNames,
+                                  @Value("${ecom.products.hot.instance-id:}") String instanceId,
+                                  @Value("${ecom.products.hot.stripes:8}") int stripeCount,
+                                  @Value("${ecom.products.hot.claim-size:64}") int claimSize) {
+        this.productRepo = productRepo;
+        this.claimRepo = claimRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.instanceId = instanceId == null || instanceId.isBlank() ? hostName() : instanceId.trim();
+        this.stripeCount = stripeCount;
+        this.claimSize = claimSize;
+        for (String productName : hotProductNames) {
+            if (!productName.isBlank())
+                hotProducts.put(productName.trim(), new HotProduct(stripeCount));
+        }
+        if (!hotProducts.isEmpty())
+            log.info("Serving hot Products from memory : {}", hotProducts.keySet());
+    }
+
+    public boolean isHot(String productName) {
+        return productName != null && hotProducts.containsKey(productName);
+    }
+
+    // Takes one unit of a hot Product, false if the Product isn't hot or has no stock left
+    public boolean tryConsume(String productName) {
+        HotProduct hotProduct = productName == null ? null : hotProducts.get(productName);
+        if (hotProduct == null)
+            return false;
+
+        int home = (int) (Thread.currentThread().getId() % stripeCount);
+        if (hotProduct.takeOne(home))
+            return true;
+
+        // Every stripe is empty, only one thread claims the next block from the database
+        hotProduct.claimLock.lock();
+        try {
+            if (hotProduct.takeOne(home))
+                return true;
+            int claimed = claim(productName, hotProduct);
+            if (claimed == 0)
+                return false;
+            hotProduct.stripes[home].addAndGet(claimed - 1);
+            hotProduct.consumedSinceFlush.increment();
+            return true;
+        } finally {
+            hotProduct.claimLock.unlock();
+        }
+    }
+
+    // Returns the unsold units of Products that had no orders since the last flush,
+    // so the database quantity stays accurate for admins and other replicas. The others have their held units recorded
+    @Scheduled(fixedDelayString = "${ecom.products.hot.flush-interval-ms:1000}")
+    public void flush() {
+        hotProducts.forEach((productName, hotProduct) -> {
+            if (hotProduct.consumedSinceFlush.sumThenReset() == 0)
+                release(productName, hotProduct);
+            else
+                recordHeld(productName, hotProduct);
+        });
+    }
+
+    // Rows of this instance found at startup were left by a run that didn't shut down. At most that many units were
+    // unsold, they aren't returned since some may have been sold after the last flush, so they are logged for manual
+    // reconciliation and dropped
+    @PostConstruct
+    public void reconcileAbandonedClaims() {
+        List<HotProductClaim> abandoned = claimRepo.findAllByInstanceId(instanceId);
+        for (HotProductClaim claim : abandoned)
+            log.warn("A previous run of {} held up to {} units of {} when it stopped, they are missing from stock (recorded at {})",
+                    instanceId, claim.getQuantity(), claim.getProductName(), claim.getUpdatedAt());
+        if (!abandoned.isEmpty())
+            claimRepo.deleteAll(abandoned);
+    }
+
+    // Puts back units taken by tryConsume for an order that was rolled back, they are sold again or flushed like the others
+    public void giveBack(String productName, int quantity) {
+        HotProduct hotProduct = productName == null ? null : hotProducts.get(productName);
+        if (hotProduct == null || quantity <= 0)
+            return;
+        int home = (int) (Thread.currentThread().getId() % stripeCount);
+        hotProduct.stripes[home].addAndGet(quantity);
+    }
+
+    // Drops the in-memory stock without returning it, used when an admin overwrites the Product quantity
+    public void discard(String productName) {
+        HotProduct hotProduct = productName == null ? null : hotProducts.get(productName);
+        if (hotProduct == null)
+            return;
+        hotProduct.claimLock.lock();
+        try {
+            int dropped = hotProduct.drain();
+            if (hotProduct.recorded) {
+                claimRepo.deleteByInstanceIdAndProductName(instanceId, productName);
+                hotProduct.recorded = false;
+            }
+            if (dropped > 0)
+                log.info("Discarded {} reserved units of {}", dropped, productName);
+        } finally {
+            hotProduct.claimLock.unlock();
+        }
+    }
+
+    public int getReservedQuantity(String productName) {
+        HotProduct hotProduct = hotProducts.get(productName);
+        if (hotProduct == null)
+            return 0;
+        return hotProduct.reserved();
+    }
+
+    @PreDestroy
+    public void releaseAll() {
+        hotProducts.forEach(this::release);
+    }
+
+    private void release(String productName, HotProduct hotProduct) {
+        hotProduct.claimLock.lock();
+        try {
+            int unsold = hotProduct.drain();
+            if (unsold == 0 && !hotProduct.recorded)
+                return;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (unsold > 0)
+                        productRepo.addProductQuantity(productName, unsold);
+                    claimRepo.deleteByInstanceIdAndProductName(instanceId, productName);
+                });
+            } catch (RuntimeException e) {
+                // Still held and still recorded, the next flush tries again
+                hotProduct.stripes[0].addAndGet(unsold);
+                log.error("Could not return {} reserved units of {} to stock", unsold, productName, e);
+                return;
+            }
+            hotProduct.recorded = false;
+            if (unsold > 0)
+                log.info("Returned {} reserved units of {} to stock", unsold, productName);
+        } finally {
+            hotProduct.claimLock.unlock();
+        }
+    }
+
+    // Sales only lower the units held, so the recorded quantity stays an upper bound until the next write
+    private void recordHeld(String productName, HotProduct hotProduct) {
+        hotProduct.claimLock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeHeld(productName, hotProduct.reserved()));
+            hotProduct.recorded = true;
+        } catch (RuntimeException e) {
+            log.error("Could not record the reserved units of {}", productName, e);
+        } finally {
+            hotProduct.claimLock.unlock();
+        }
+    }
+
+    private void writeHeld(String productName, int quantity) {
+        HotProductClaim claim = claimRepo.findByInstanceIdAndProductName(instanceId, productName);
+        if (claim == null)
+            claim = new HotProductClaim(instanceId, productName);
+        claim.setQuantity(quantity);
+        claim.setUpdatedAt(System.currentTimeMillis());
+        claimRepo.save(claim);
+    }
+
+    // The block is recorded as held in the transaction that takes it from the database, called with the claim lock held
+    private int claim(String productName, HotProduct hotProduct) {
+        Integer claimed = transactionTemplate.execute(status -> {
+            int quantity = claimFromDatabase(productName);
+            if (quantity > 0)
+                writeHeld(productName, hotProduct.reserved() + quantity);
+            return quantity;
+        });
+        if (claimed == null || claimed == 0)
+            return 0;
+        hotProduct.recorded = true;
+        return claimed;
+    }
+
+    // Claims a full block, or whatever is left when less than a block remains
+    private int claimFromDatabase(String productName) {
+        if (productRepo.consumeProductQuantity(productName, claimSize) == 1)
+            return claimSize;
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            ProductDetails existingProduct = productRepo.findByProductName(productName);
+            if (existingProduct == null || existingProduct.getProductQuantity() <= 0)
+                return 0;
+            int remaining = Math.min(existingProduct.getProductQuantity(), claimSize);
+            if (productRepo.consumeProductQuantity(productName, remaining) == 1)
+                return remaining;
+        }
+        return 0;
+    }
+
+    private static final class HotProduct {
+        private final AtomicInteger[] stripes;
+        private final LongAdder consumedSinceFlush = new LongAdder();
+        private final ReentrantLock claimLock = new ReentrantLock();
+        // A hot_product_claim row exists for the Product, only read and written with the claim lock held
+        private boolean recorded;
+
+        private HotProduct(int stripeCount) {
+            stripes = new AtomicInteger[stripeCount];
+            for (int i = 0; i < stripeCount; i++)
+                stripes[i] = new AtomicInteger();
+        }
+
+        // Tries the thread's home stripe first, then steals from the others
+        private boolean takeOne(int home) {
+            for (int i = 0; i < stripes.length; i++) {
+                AtomicInteger stripe = stripes[(home + i) % stripes.length];
+                int available = stripe.get();
+                while (available > 0) {
+                    if (stripe.compareAndSet(available, available - 1)) {
+                        consumedSinceFlush.increment();
+                        return true;
+                    }
+                    available = stripe.get();
+                }
+            }
+            return false;
+        }
+
+        private int reserved() {
+            int reserved = 0;
+            for (AtomicInteger stripe : stripes)
+                reserved += stripe.get();
+            return reserved;
+        }
+
+        private int drain() {
+            int drained = 0;
+            for (AtomicInteger stripe : stripes)
+                drained += stripe.getAndSet(0);
+            return drained;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.pcProject.ecomProducts.service;
+
+import com.pcProject.ecomProducts.model.ProcessedEvent;
+import com.pcProject.ecomProducts.repository.ProcessedEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Kafka delivers at least once, a record is read again after a rebalance or a failed commit. Listeners claim the
+// eventIds of their records here, in the transaction that applies them, and skip the ones already processed.
+// The processed_event table is the record, the ids committed last are also kept in memory so a replay of
+// recent records doesn't reach the database. Rows older than the topics' retention can't be replayed and are purged.
+@Slf4j
+@Component
+public class ProcessedEventStore {
+
+    private final ProcessedEventRepository processedEventRepo;
+    private final long retentionMillis;
+    private final Map<String, Boolean> recentEventIds;
+
+    @Autowired
+    public ProcessedEventStore(ProcessedEventRepository processedEventRepo,
+                               @Value("${ecom.kafka.dedup.recent-size:100000}") int recentSize,
+                               @Value("${ecom.kafka.dedup.retention-hours:168}") long retentionHours) {
+        this.processedEventRepo = processedEventRepo;
+        this.retentionMillis = Duration.ofHours(retentionHours).toMillis();
+        // Least recently seen ids are dropped first, the table still has them
+        this.recentEventIds = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentSize;
+            }
+        });
+    }
+
+    // The events not processed yet, in their order. Events without an eventId, from producers older than the ids,
+    // can't be told apart and are always kept. The others are recorded as processed in the caller's transaction
+    public <T> List<T> claim(List<T> events, Function<T, String> eventIdOf) {
+        List<String> unknownIds = new ArrayList<>();
+        for (T event : events) {
+            String eventId = event == null ? null : eventIdOf.apply(event);
+            if (eventId != null && !isRecent(eventId))
+                unknownIds.add(eventId);
+        }
+        Set<String> processedIds = unknownIds.isEmpty() ? Set.of() : new HashSet<>(processedEventRepo.findProcessedEventIds(unknownIds));
+
+        List<T> newEvents = new ArrayList<>(events.size());
+        Set<String> claimedIds = new LinkedHashSet<>();
+        for (T event : events) {
+            String eventId = event == null ? null : eventIdOf.apply(event);
+            if (eventId == null)
+                newEvents.add(event);
+            else if (!isRecent(eventId) && !processedIds.contains(eventId) && claimedIds.add(eventId))
+                newEvents.add(event);
+        }
+        if (newEvents.size() < events.size())
+            log.info("Skipping {} of {} events already processed", events.size() - newEvents.size(), events.size());
+
+        record(claimedIds);
+        return newEvents;
+    }
+
+    // True if the event is new, it's then recorded as processed in the caller's transaction
+    public boolean claim(String eventId) {
+        return eventId == null || !claim(List.of(eventId), Function.identity()).isEmpty();
+    }
+
+    public boolean isRecent(String eventId) {
+        return recentEventIds.get(eventId) != null;
+    }
+
+    @Scheduled(fixedDelayString = "${ecom.kafka.dedup.purge-interval-ms:3600000}", initialDelayString = "${ecom.kafka.dedup.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int purged = processedEventRepo.deleteAllProcessedBefore(System.currentTimeMillis() - retentionMillis);
+        if (purged > 0)
+            log.info("Purged {} processed events older than the retention", purged);
+    }
+
+    private void record(Set<String> eventIds) {
+        if (eventIds.isEmpty())
+            return;
+        long now = System.currentTimeMillis();
+        processedEventRepo.saveAll(eventIds.stream().map(eventId -> new ProcessedEvent(eventId, now)).toList());
+
+        // Remembered in memory only once committed, a rolled back event must be applied again when it's redelivered
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventIds.forEach(eventId -> recentEventIds.put(eventId, Boolean.TRUE));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eventIds.forEach(eventId -> recentEventIds.put(eventId, Boolean.TRUE));
+            }
+        });
+    }
+}
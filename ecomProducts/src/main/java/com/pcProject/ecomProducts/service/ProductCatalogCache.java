@@ -0,0 +1,133 @@
+package com.pcProject.ecomProducts.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductWrapper;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Near-cache of the catalog for the read paths, keyed by productName. Unknown names are cached too so
+// repeated lookups of a missing Product don't reach the database. Every replica drops its entry when a
+// Product is created, repriced or deleted anywhere, the TTL bounds staleness if an invalidation event is lost.
+// The quantity isn't cached, every order changes it, so stock changes neither evict nor publish anything and
+// callers that need the stock read it from productRepo.
+@Slf4j
+@Component
+public class ProductCatalogCache {
+
+    public static final String PRODUCT_CHANGED_TOPIC = "ecomProducts_productChanged";
+
+    private final ProductDetailsRepo productRepo;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Cache<String, Optional<ProductDetails>> products;
+
+    @Autowired
+    public ProductCatalogCache(ProductDetailsRepo productRepo,
+                               @Qualifier("userProductKafkaTemplate") KafkaTemplate<String, Object> kafkaTemplate,
+                               @Value("${ecom.products.cache.max-size:10000}") long maxSize,
+                               @Value("${ecom.products.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.productRepo = productRepo;
+        this.kafkaTemplate = kafkaTemplate;
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    // The returned Product is shared and has no quantity, callers that modify a Product read it from productRepo instead
+    public ProductDetails get(String productName) {
+        if (productName == null)
+            return null;
+        return products.get(productName, this::load).orElse(null);
+    }
+
+    // Drops the Product here and on the other replicas, after the commit when called inside a transaction
+    // so a concurrent read can't cache the old row again
+    public void evict(String productName) {
+        afterCommit(() -> evictAndPublish(productName));
+    }
+
+    // Drops every Product with a single event, used by bulk loads instead of one event per Product
+    public void evictAll() {
+        afterCommit(() -> {
+            products.invalidateAll();
+            kafkaTemplate.send(PRODUCT_CHANGED_TOPIC, new ProductWrapper(null))
+                    .whenComplete((result, exception) -> {
+                        if (exception != null)
+                            log.error("Could not publish the invalidation of the catalog, other replicas catch up within the TTL", exception);
+                    });
+        });
+    }
+
+    // Invalidations from every replica, including this one. A null productName clears the whole cache
+    @KafkaListener(topics = PRODUCT_CHANGED_TOPIC, containerFactory = "productChangedListenerContainerFactory")
+    public void kafkaConsumer_productChanged(ProductWrapper product) {
+        if (product == null || product.getProductName() == null)
+            products.invalidateAll();
+        else
+            products.invalidate(product.getProductName());
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = products.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hitCount", stats.hitCount());
+        metrics.put("missCount", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictionCount", stats.evictionCount());
+        metrics.put("loadCount", stats.loadCount());
+        metrics.put("averageLoadPenaltyNanos", (long) stats.averageLoadPenalty());
+        metrics.put("estimatedSize", products.estimatedSize());
+        return metrics;
+    }
+
+    private Optional<ProductDetails> load(String productName) {
+        ProductDetails existingProduct = productRepo.findByProductName(productName);
+        if (existingProduct == null)
+            return Optional.empty();
+        // Own copy, the loaded entity may still be attached to a caller's persistence context. The quantity is
+        // left at 0, the consume paths change it without invalidating
+        return Optional.of(new ProductDetails(existingProduct.getProductId(), existingProduct.getProductName(),
+                existingProduct.getProductValue(), 0));
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private void evictAndPublish(String productName) {
+        if (productName == null)
+            return;
+        products.invalidate(productName);
+        kafkaTemplate.send(PRODUCT_CHANGED_TOPIC, productName, new ProductWrapper(productName))
+                .whenComplete((result, exception) -> {
+                    if (exception != null)
+                        log.error("Could not publish the invalidation of {}, other replicas catch up within the TTL", productName, exception);
+                });
+    }
+}
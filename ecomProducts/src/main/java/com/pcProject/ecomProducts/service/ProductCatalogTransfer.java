@@ -0,0 +1,226 @@
+package com.pcProject.ecomProducts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductPrice;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Catalog import and export that never hold the whole catalog. The import reads one line at a time and upserts
+// every batch in its own transaction, the export writes rows from a database cursor and detaches them as it goes.
+@Slf4j
+@Component
+public class ProductCatalogTransfer {
+
+    public enum Format {NDJSON, CSV}
+
+    private static final String CSV_HEADER = "productName,productValue,productQuantity";
+
+    private final ProductDetailsRepo productRepo;
+    private final ProductCatalogCache productCatalogCache;
+    private final HotProductReservations hotProductReservations;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter productWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public ProductCatalogTransfer(ProductDetailsRepo productRepo,
+                                  ProductCatalogCache productCatalogCache,
+                                  HotProductReservations hotProductReservations,
+                                  @Qualifier("userProductKafkaTemplate") KafkaTemplate<String, Object> kafkaTemplate,
+                                  EntityManager entityManager,
+                                  ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${ecom.products.import.batch-size:1000}") int batchSize) {
+        this.productRepo = productRepo;
+        this.productCatalogCache = productCatalogCache;
+        this.hotProductReservations = hotProductReservations;
+        this.kafkaTemplate = kafkaTemplate;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.productWriter = objectMapper.writerFor(ProductDetails.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
+    }
+
+    // Adds new Products and overwrites the value and quantity of existing ones. Batches already imported stay
+    // when a later one fails, lines that can't be parsed are skipped and counted
+    public Map<String, Object> importProducts(InputStream catalog, Format format) throws IOException {
+        long start = System.nanoTime();
+        ImportCounts counts = new ImportCounts();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(catalog, StandardCharsets.UTF_8));
+        // Same name twice in a batch, the last line wins
+        Map<String, ProductDetails> batch = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            counts.lines++;
+            if (line.isBlank() || (format == Format.CSV && counts.lines == 1 && line.trim().equalsIgnoreCase(CSV_HEADER)))
+                continue;
+            ProductDetails product = parse(line, format);
+            if (product == null) {
+                if (counts.rejected++ < 10)
+                    log.warn("Skipping line {} of the catalog : {}", counts.lines, line);
+                continue;
+            }
+            batch.put(product.getProductName(), product);
+            if (batch.size() == batchSize) {
+                upsert(batch.values(), counts);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            upsert(batch.values(), counts);
+
+        productCatalogCache.evictAll();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("inserted", counts.inserted);
+        summary.put("updated", counts.updated);
+        summary.put("rejected", counts.rejected);
+        summary.put("millis", elapsedMillis);
+        summary.put("rowsPerSecond", (counts.inserted + counts.updated) * 1000 / elapsedMillis);
+        log.info("Imported the catalog : {}", summary);
+        return summary;
+    }
+
+    // Must be called inside the response, the cursor stays open until the last row is written
+    public void exportProducts(OutputStream outputStream, Format format) {
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try (Stream<ProductDetails> products = productRepo.streamAll()) {
+                if (format == Format.CSV)
+                    writer.write(CSV_HEADER + "\n");
+                int written = 0;
+                for (Iterator<ProductDetails> iterator = products.iterator(); iterator.hasNext(); ) {
+                    ProductDetails product = iterator.next();
+                    writer.write(format == Format.CSV ? toCsv(product) : productWriter.writeValueAsString(product));
+                    writer.write('\n');
+                    entityManager.detach(product);
+                    if (++written % batchSize == 0)
+                        writer.flush();
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void upsert(Collection<ProductDetails> batch, ImportCounts counts) {
+        List<ProductPrice> priceChanges = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, ProductDetails> existingProducts = new HashMap<>();
+            for (ProductDetails existingProduct : productRepo.findAllByProductNameIn(namesOf(batch)))
+                existingProducts.put(existingProduct.getProductName(), existingProduct);
+
+            List<ProductDetails> newProducts = new ArrayList<>();
+            for (ProductDetails product : batch) {
+                ProductDetails existingProduct = existingProducts.get(product.getProductName());
+                if (existingProduct == null) {
+                    newProducts.add(new ProductDetails(0, product.getProductName(), product.getProductValue(), product.getProductQuantity()));
+                    continue;
+                }
+                // Like updateProductDetails, in-memory stock of a hot Product would otherwise be sold on top
+                hotProductReservations.discard(product.getProductName());
+                if (existingProduct.getProductValue() != product.getProductValue())
+                    priceChanges.add(new ProductPrice(product.getProductName(), product.getProductValue()));
+                existingProduct.setProductValue(product.getProductValue());
+                existingProduct.setProductQuantity(product.getProductQuantity());
+            }
+            productRepo.saveAll(newProducts);
+            entityManager.flush();
+            entityManager.clear();
+            counts.inserted += newProducts.size();
+            counts.updated += batch.size() - newProducts.size();
+        });
+        // New Products aren't in any price cache yet, the other services fetch them on first use
+        for (ProductPrice priceChange : priceChanges)
+            kafkaTemplate.send(ProductDetailsService.PRICE_CHANGED_TOPIC, priceChange.getProductName(), priceChange);
+    }
+
+    private static List<String> namesOf(Collection<ProductDetails> batch) {
+        List<String> productNames = new ArrayList<>(batch.size());
+        for (ProductDetails product : batch)
+            productNames.add(product.getProductName());
+        return productNames;
+    }
+
+    // Null when the line isn't a valid Product
+    private ProductDetails parse(String line, Format format) {
+        ProductDetails product;
+        try {
+            product = format == Format.CSV ? fromCsv(line) : objectMapper.readValue(line, ProductDetails.class);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        if (product == null || product.getProductName() == null || product.getProductName().isBlank()
+                || product.getProductValue() < 0 || product.getProductQuantity() < 0)
+            return null;
+        return product;
+    }
+
+    // One Product per line, the name may be quoted with "" for a quote inside it
+    private static ProductDetails fromCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        if (quoted || fields.size() != 3)
+            return null;
+        return new ProductDetails(0, fields.get(0).trim(), Integer.parseInt(fields.get(1).trim()), Integer.parseInt(fields.get(2).trim()));
+    }
+
+    private static String toCsv(ProductDetails product) {
+        String productName = product.getProductName();
+        if (productName.indexOf(',') >= 0 || productName.indexOf('"') >= 0)
+            productName = '"' + productName.replace("\"", "\"\"") + '"';
+        return productName + ',' + product.getProductValue() + ',' + product.getProductQuantity();
+    }
+
+    private static final class ImportCounts {
+        private long lines;
+        private long inserted;
+        private long updated;
+        private long rejected;
+    }
+}
@@ -1,61 +1,110 @@
 package com.pcProject.ecomProducts.service;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pcProject.ecomProducts.model.OrderDetailsWrapper;
 import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductPrice;
+import com.pcProject.ecomProducts.model.ProductQuantity;
+import com.pcProject.ecomProducts.model.ProductReservation;
 import com.pcProject.ecomProducts.model.ProductWrapper;
 import com.pcProject.ecomProducts.model.UserProductsResponse;
 import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.DataInput;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Slf4j
 @Service
 public class ProductDetailsService {
+    // Price changes for the price caches of the other services, keyed by Product so they stay in order
+    public static final String PRICE_CHANGED_TOPIC = "ecomProducts_productPriceChanged";
+    public static final MediaType CSV = MediaType.parseMediaType("text/csv");
+    // Products saved per flush by bulk loads, a multiple of hibernate.jdbc.batch_size
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     @Autowired
     private ProductDetailsRepo productRepo;
     @Autowired
-    private ObjectMapper objectMapper;
+    private HotProductReservations hotProductReservations;
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+    @Autowired
+    private KafkaTemplate<String,Object> kafkaTemplate;
+    @Autowired
+    private ProductCatalogTransfer productCatalogTransfer;
+    @Autowired
+    private ProcessedEventStore processedEventStore;
+    @Autowired
+    private ProductReservations productReservations;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @PersistenceContext
+    private EntityManager entityManager;
 
     // To get the Product Details
     public Object getProductDetails(ProductWrapper product){
-        ProductDetails existingProduct = productRepo.findByProductName(product.getProductName());
+        ProductDetails existingProduct = productCatalogCache.get(product.getProductName());
         if(existingProduct == null)
             return new ResponseEntity<>("Could not find the Product with given name",HttpStatus.BAD_REQUEST);
 
-        return new ResponseEntity<>(existingProduct, HttpStatus.OK);
+        // The cache has no quantity, the stock is read from the row
+        Integer productQuantity = productRepo.findProductQuantity(existingProduct.getProductName());
+        if(productQuantity == null)
+            return new ResponseEntity<>("Could not find the Product with given name",HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(new ProductDetails(existingProduct.getProductId(), existingProduct.getProductName(),
+                existingProduct.getProductValue(), productQuantity), HttpStatus.OK);
     }
 
     @Transactional
     @KafkaListener(topics = "ecomOrderService_addToProductQuantity")
-    public void kafkaConsumer_preserveProduct(String orderDetails) throws JsonProcessingException {
-        OrderDetailsWrapper orderDetailsWrapper = objectMapper.readValue(orderDetails,OrderDetailsWrapper.class);
+    public void kafkaConsumer_preserveProduct(OrderDetailsWrapper orderDetailsWrapper) {
         log.info("Received preserve product request from ecomOrderDetails {}",orderDetailsWrapper);
+        // A redelivered cancellation must not give the stock back twice
+        if(!processedEventStore.claim(orderDetailsWrapper.getEventId())){
+            log.info("Already preserved the quantity for order {}",orderDetailsWrapper.getOrderId());
+            return;
+        }
 
-        ProductDetails productDetails = productRepo.findByProductName(orderDetailsWrapper.getProductName());
-        productDetails.setProductQuantity(productDetails.getProductQuantity()+1);
-        productRepo.save(productDetails);
+        // One conditional statement, an order taking the same Product meanwhile can't overwrite it
+        if(productRepo.addProductQuantity(orderDetailsWrapper.getProductName(), 1) == 0){
+            log.warn("Could not preserve the quantity of {}, the Product no longer exists",orderDetailsWrapper.getProductName());
+            return;
+        }
+        // The catalog cache holds no quantity, nothing to invalidate
         log.info("Successfully preserved the {} quantity",orderDetailsWrapper.getProductName());
     }
 
+    // ecomOrderService never got an answer to the consume call of this placement, the eventId is the placement's id
+    @Transactional
+    @KafkaListener(topics = "ecomOrderService_releaseReservation")
+    public void kafkaConsumer_releaseReservation(OrderDetailsWrapper orderDetailsWrapper) {
+        log.info("Received release reservation request from ecomOrderDetails {}",orderDetailsWrapper);
+        productReservations.release(orderDetailsWrapper.getEventId());
+    }
+
     // To get the Product value using ProductWrapper
     public ResponseEntity<UserProductsResponse<String>> getProductValue(ProductWrapper product){
-        ProductDetails existingProduct = productRepo.findByProductName(product.getProductName());
+        ProductDetails existingProduct = productCatalogCache.get(product.getProductName());
         UserProductsResponse<String> response = new UserProductsResponse<>();
 
         if(existingProduct == null){
@@ -70,19 +119,74 @@ public class ProductDetailsService {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    // To get the values of several Products with a single query
+    public ResponseEntity<UserProductsResponse<Map<String,Integer>>> getProductValues(List<String> productNames){
+        Map<String,Integer> productValues = new HashMap<>();
+        UserProductsResponse<Map<String,Integer>> response = new UserProductsResponse<>();
+
+        if(productNames != null && !productNames.isEmpty()){
+            for(ProductDetails existingProduct : productRepo.findAllByProductNameIn(new HashSet<>(productNames)))
+                productValues.put(existingProduct.getProductName(), existingProduct.getProductValue());
+        }
+
+        response.setData(productValues);
+        response.setStatus(HttpStatus.OK.value());
+        response.setMessage("Returning the Product values");
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
 
     // Admin Actions
     public Object getAllProducts() {
         return new ResponseEntity<>(productRepo.findAll(),HttpStatus.OK);
     }
 
+    // Whole catalog as NDJSON or CSV, written row by row
+    public ResponseEntity<StreamingResponseBody> exportProducts(ProductCatalogTransfer.Format format){
+        StreamingResponseBody body = outputStream -> productCatalogTransfer.exportProducts(outputStream, format);
+        MediaType contentType = format == ProductCatalogTransfer.Format.CSV ? CSV : MediaType.APPLICATION_NDJSON;
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> importProducts(InputStream catalog, ProductCatalogTransfer.Format format) throws IOException {
+        Map<String,Object> summary = productCatalogTransfer.importProducts(catalog, format);
+        return new ResponseEntity<>(new UserProductsResponse<>(summary,HttpStatus.OK.value(),"Imported the catalog"),HttpStatus.OK);
+    }
+
+    public ResponseEntity<UserProductsResponse<Map<String,Object>>> getCatalogCacheStats(){
+        return new ResponseEntity<>(new UserProductsResponse<>(productCatalogCache.stats(), HttpStatus.OK.value(), "Returning the catalog cache statistics"), HttpStatus.OK);
+    }
+
 
     // To add a Product
     public Object addProductDetails(ProductDetails product){
         productRepo.save(product);
+        // An earlier lookup may have cached the name as unknown
+        productCatalogCache.evict(product.getProductName());
+        publishPriceChange(product.getProductName(), product.getProductValue());
         return new ResponseEntity<>(product,HttpStatus.CREATED);
     }
 
+    // Admin catalog load in JDBC batches. The whole list is checked first, nothing is stored when a Product
+    // is invalid or already exists
+    @Transactional
+    public ResponseEntity<UserProductsResponse<Integer>> addProductDetailsList(List<ProductDetails> products){
+        String invalidProduct = findInvalidProduct(products);
+        if(invalidProduct != null)
+            return new ResponseEntity<>(new UserProductsResponse<>(0,HttpStatus.BAD_REQUEST.value(),invalidProduct),HttpStatus.BAD_REQUEST);
+
+        for(int from = 0; from < products.size(); from += BULK_CHUNK_SIZE){
+            productRepo.saveAll(products.subList(from, Math.min(from + BULK_CHUNK_SIZE, products.size())));
+            // Sends the chunk's inserts and detaches it, so a large load doesn't pile up in the persistence context
+            entityManager.flush();
+            entityManager.clear();
+        }
+        log.info("Added {} Products", products.size());
+        // The cache may hold some of the names as unknown. No price event is sent, every Product is new and the
+        // price caches of the other services only keep values they fetched for existing Products
+        productCatalogCache.evictAll();
+        return new ResponseEntity<>(new UserProductsResponse<>(products.size(),HttpStatus.CREATED.value(),"Added the Products"),HttpStatus.CREATED);
+    }
+
     // To add into Product quantity
     public Object addToProductQuantity(Map<String,String> productDetails){
         ProductDetails existingProduct = productRepo.findByProductName(productDetails.get("productName"));
@@ -93,8 +197,9 @@ public class ProductDetailsService {
             response.setMessage("Invalid Product");
         }
         else{
-            existingProduct.setProductQuantity(existingProduct.getProductQuantity()+Integer.parseInt(productDetails.get("productQuantity")));
-            productRepo.save(existingProduct);
+            // Added in the database, a read-modify-save would lose the orders taken in between
+            productRepo.addProductQuantity(existingProduct.getProductName(), Integer.parseInt(productDetails.get("productQuantity")));
+            existingProduct = productRepo.findByProductName(existingProduct.getProductName());
             response.setStatus(HttpStatus.OK.value());
             response.setMessage("Added to existing Product quantity");
         }
@@ -109,9 +214,12 @@ public class ProductDetailsService {
         if(existingProduct == null)
             return new ResponseEntity<>("Could not find the Product with given name",HttpStatus.BAD_REQUEST);
 
+        hotProductReservations.discard(product.getProductName());
         existingProduct.setProductValue(product.getProductValue());
         existingProduct.setProductQuantity(product.getProductQuantity());
         productRepo.save(existingProduct);
+        productCatalogCache.evict(existingProduct.getProductName());
+        publishPriceChange(existingProduct.getProductName(), existingProduct.getProductValue());
         return new ResponseEntity<>(existingProduct,HttpStatus.OK);
     }
 
@@ -121,14 +229,17 @@ public class ProductDetailsService {
         if(existingProduct == null)
             return new ResponseEntity<>("Could not find the Product with given name",HttpStatus.BAD_REQUEST);
 
+        hotProductReservations.discard(productName);
         productRepo.deleteByProductName(productName);
+        productCatalogCache.evict(productName);
+        publishPriceChange(productName, null);
         return new ResponseEntity<>("Deleted the Product Details successfully", HttpStatus.OK);
     }
 
     //    -----------------------------------------
     // Exposed to OrderService
     public ResponseEntity<UserProductsResponse<ProductWrapper>> validateProduct(ProductWrapper product) {
-        ProductDetails existingProduct = productRepo.findByProductName(product.getProductName());
+        ProductDetails existingProduct = productCatalogCache.get(product.getProductName());
         UserProductsResponse<ProductWrapper> response = new UserProductsResponse<>();
         response.setData(product);
 
@@ -144,26 +255,173 @@ public class ProductDetailsService {
         return new ResponseEntity<>(response,HttpStatus.OK);
     }
 
-    public ResponseEntity<UserProductsResponse<ProductWrapper>> consumeProduct(ProductWrapper product) {
-        ProductDetails existingProduct = productRepo.findByProductName(product.getProductName());
+    // The placement id is optional, the units taken are recorded under it so ecomOrderService can release them
+    public ResponseEntity<UserProductsResponse<ProductWrapper>> consumeProduct(ProductWrapper product, String placementId) {
         UserProductsResponse<ProductWrapper> response = new UserProductsResponse<>();
         response.setData(product);
+        if(placementId != null){
+            ProductReservation reservation = productReservations.find(placementId).orElse(null);
+            if(reservation != null)
+                return repeatedPlacement(response, reservation, "Returning the Product");
+        }
 
-        if(existingProduct == null ){
-            response.setStatus(HttpStatus.BAD_REQUEST.value());
-            response.setMessage("Invalid Product");
+        // Hot Products are served from memory with their reservation written in the next batch, a row per order
+        // would cost as much as the decrement. The others check and decrement the stock in a single statement so
+        // concurrent orders can't oversell
+        boolean taken = hotProductReservations.tryConsume(product.getProductName());
+        if(taken && placementId != null && !productReservations.recordHot(placementId, Map.of(product.getProductName(), 1)))
+            // The same placement is already waiting for its row
+            hotProductReservations.giveBack(product.getProductName(), 1);
+        if(!taken){
+            taken = Boolean.TRUE.equals(new TransactionTemplate(transactionManager).execute(status -> {
+                if(placementId != null)
+                    productReservations.record(placementId, Map.of(product.getProductName(), 1));
+                if(productRepo.consumeProductQuantity(product.getProductName(), 1) == 1)
+                    return true;
+                if(placementId != null)
+                    productReservations.forget(placementId);
+                return false;
+            }));
+        }
+        if(taken){
+            response.setStatus(HttpStatus.OK.value());
+            response.setMessage("Returning the Product");
             return new ResponseEntity<>(response,HttpStatus.OK);
-        }else if(existingProduct.getProductQuantity() == 0){
-            response.setStatus(HttpStatus.BAD_REQUEST.value());
+        }
+
+        // Only tells an unknown Product from an empty one, the cached quantity isn't used
+        ProductDetails existingProduct = productCatalogCache.get(product.getProductName());
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        if(existingProduct == null )
+            response.setMessage("Invalid Product");
+        else
             response.setMessage("Product is not available at the movement");
+        return new ResponseEntity<>(response,HttpStatus.OK);
+    }
+
+    // All or nothing, either every line of the cart is taken or the stock is left as it was
+    public ResponseEntity<UserProductsResponse<List<ProductQuantity>>> consumeProducts(List<ProductQuantity> products, String placementId) {
+        UserProductsResponse<List<ProductQuantity>> response = new UserProductsResponse<>();
+        response.setData(products);
+
+        // Rows are updated in name order, so two carts with the same Products can't deadlock
+        Map<String, Integer> quantities = new TreeMap<>();
+        for(ProductQuantity product : products){
+            if(product == null || product.getProductName() == null || product.getProductQuantity() <= 0){
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+                response.setMessage("Invalid Product quantity : "+product);
+                return new ResponseEntity<>(response,HttpStatus.OK);
+            }
+            quantities.merge(product.getProductName(), product.getProductQuantity(), Integer::sum);
+        }
+        if(placementId != null){
+            ProductReservation reservation = productReservations.find(placementId).orElse(null);
+            if(reservation != null)
+                return repeatedPlacement(response, reservation, "Returning the Products");
+        }
+
+        // Hot Products are taken from memory before the transaction, a claim commits on its own
+        Map<String, Integer> consumedFromMemory = new HashMap<>();
+        for(Map.Entry<String, Integer> product : quantities.entrySet()){
+            int fromMemory = 0;
+            while(fromMemory < product.getValue() && hotProductReservations.tryConsume(product.getKey()))
+                fromMemory++;
+            if(fromMemory > 0)
+                consumedFromMemory.put(product.getKey(), fromMemory);
+        }
+
+        // Served from memory alone, the reservation is written in the next batch like consumeProduct's
+        if(consumedFromMemory.equals(quantities)){
+            if(placementId != null && !productReservations.recordHot(placementId, quantities))
+                consumedFromMemory.forEach(hotProductReservations::giveBack);
+            response.setStatus(HttpStatus.OK.value());
+            response.setMessage("Returning the Products");
             return new ResponseEntity<>(response,HttpStatus.OK);
         }
 
-        existingProduct.setProductQuantity(existingProduct.getProductQuantity()-1);
-        productRepo.save(existingProduct);
-        response.setStatus(HttpStatus.OK.value());
-        response.setMessage("Returning the Product");
+        String refusedProduct;
+        try{
+            refusedProduct = new TransactionTemplate(transactionManager).execute(status -> consumeFromDatabase(quantities, consumedFromMemory, placementId));
+        }
+        catch(RuntimeException e){
+            consumedFromMemory.forEach(hotProductReservations::giveBack);
+            throw e;
+        }
+        if(refusedProduct == null){
+            response.setStatus(HttpStatus.OK.value());
+            response.setMessage("Returning the Products");
+            return new ResponseEntity<>(response,HttpStatus.OK);
+        }
+
+        consumedFromMemory.forEach(hotProductReservations::giveBack);
+        ProductDetails existingProduct = productCatalogCache.get(refusedProduct);
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        if(existingProduct == null)
+            response.setMessage("Invalid Product : "+refusedProduct);
+        else
+            response.setMessage("Product is not available at the movement : "+refusedProduct);
         return new ResponseEntity<>(response,HttpStatus.OK);
     }
 
-}
\ No newline at end of file
+    // Takes what memory didn't cover, returns the first Product without enough stock or null when every line was taken
+    private String consumeFromDatabase(Map<String, Integer> quantities, Map<String, Integer> consumedFromMemory, String placementId){
+        if(placementId != null)
+            productReservations.record(placementId, quantities);
+        Map<String, Integer> consumedFromDatabase = new HashMap<>();
+        for(Map.Entry<String, Integer> product : quantities.entrySet()){
+            String productName = product.getKey();
+            int fromDatabase = product.getValue() - consumedFromMemory.getOrDefault(productName, 0);
+            if(fromDatabase == 0 || productRepo.consumeProductQuantity(productName, fromDatabase) == 1){
+                if(fromDatabase > 0)
+                    consumedFromDatabase.put(productName, fromDatabase);
+                continue;
+            }
+
+            // Put back the lines already taken, within the same transaction so other orders never see them sold
+            consumedFromDatabase.forEach(productRepo::addProductQuantity);
+            if(placementId != null)
+                productReservations.forget(placementId);
+            return productName;
+        }
+        return null;
+    }
+
+    // A placement sent again is answered from its reservation, a released one was given up by ecomOrderService
+    private <T> ResponseEntity<UserProductsResponse<T>> repeatedPlacement(UserProductsResponse<T> response, ProductReservation reservation, String takenMessage){
+        if(reservation.isReleased()){
+            response.setStatus(HttpStatus.CONFLICT.value());
+            response.setMessage("Order placement was cancelled");
+        }
+        else{
+            response.setStatus(HttpStatus.OK.value());
+            response.setMessage(takenMessage);
+        }
+        return new ResponseEntity<>(response,HttpStatus.OK);
+    }
+
+    // Message for the first Product that can't be added, null when all of them can
+    private String findInvalidProduct(List<ProductDetails> products){
+        if(products == null || products.isEmpty())
+            return "No Products to add";
+        Set<String> productNames = new HashSet<>();
+        for(ProductDetails product : products){
+            if(product == null || product.getProductName() == null || product.getProductName().isBlank()
+                    || product.getProductValue() < 0 || product.getProductQuantity() < 0)
+                return "Invalid Product : " + product;
+            if(!productNames.add(product.getProductName()))
+                return "Duplicate Product : " + product.getProductName();
+        }
+        List<String> names = new ArrayList<>(productNames);
+        for(int from = 0; from < names.size(); from += BULK_CHUNK_SIZE){
+            List<ProductDetails> existingProducts = productRepo.findAllByProductNameIn(names.subList(from, Math.min(from + BULK_CHUNK_SIZE, names.size())));
+            if(!existingProducts.isEmpty())
+                return "Product already exists : " + existingProducts.get(0).getProductName();
+        }
+        return null;
+    }
+
+    private void publishPriceChange(String productName, Integer productValue){
+        log.info("Publishing the price of {} : {}", productName, productValue);
+        kafkaTemplate.send(PRICE_CHANGED_TOPIC, productName, new ProductPrice(productName, productValue));
+    }
+}
@@ -0,0 +1,156 @@
+package com.pcProject.ecomProducts.service;
+
+import com.pcProject.ecomProducts.model.ProductReservation;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import com.pcProject.ecomProducts.repository.ProductReservationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ecomOrderService can give up on a consume call without knowing whether the stock was taken. Each call names its
+// placement and the units it takes are recorded under that id, in the same transaction. Releasing the placement gives
+// the units back if they were taken, otherwise it leaves a released marker that refuses the call if it arrives later.
+// Placements served entirely from hot in-memory stock don't wait for their row, the rows are written in batches.
+@Slf4j
+@Component
+public class ProductReservations {
+
+    // Hot reservations written per transaction, a multiple of hibernate.jdbc.batch_size
+    private static final int HOT_BATCH_SIZE = 500;
+
+    private final ProductReservationRepository reservationRepo;
+    private final ProductDetailsRepo productRepo;
+    private final HotProductReservations hotProductReservations;
+    private final TransactionTemplate transactionTemplate;
+    private final long retentionMillis;
+    // Hot placements whose row isn't written yet
+    private final Map<String, Map<String, Integer>> pendingHot = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProductReservations(ProductReservationRepository reservationRepo,
+                               ProductDetailsRepo productRepo,
+                               HotProductReservations hotProductReservations,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${ecom.products.reservations.retention-hours:168}") long retentionHours) {
+        this.reservationRepo = reservationRepo;
+        this.productRepo = productRepo;
+        this.hotProductReservations = hotProductReservations;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionMillis = Duration.ofHours(retentionHours).toMillis();
+    }
+
+    public Optional<ProductReservation> find(String placementId) {
+        Map<String, Integer> pending = pendingHot.get(placementId);
+        if (pending != null)
+            return Optional.of(new ProductReservation(placementId, pending, false, System.currentTimeMillis()));
+        return reservationRepo.findById(placementId);
+    }
+
+    // The units were taken from hot in-memory stock, the row is written by the next flushHotReservations. Until then a
+    // crash loses the units like the rest of the in-memory stock, it never oversells. False if the placement is
+    // already waiting for its row, the caller gives its units back
+    public boolean recordHot(String placementId, Map<String, Integer> quantities) {
+        return pendingHot.putIfAbsent(placementId, Map.copyOf(quantities)) == null;
+    }
+
+    // A placement that already has a row was released before its row was written, or was sent twice. Its units go
+    // back to the in-memory stock once the batch is committed
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${ecom.products.reservations.hot-flush-interval-ms:100}")
+    public void flushHotReservations() {
+        List<String> placementIds = new ArrayList<>(pendingHot.keySet());
+        for (int from = 0; from < placementIds.size(); from += HOT_BATCH_SIZE)
+            flushHotReservations(placementIds.subList(from, Math.min(from + HOT_BATCH_SIZE, placementIds.size())));
+    }
+
+    private void flushHotReservations(List<String> placementIds) {
+        Map<String, Map<String, Integer>> batch = new HashMap<>();
+        placementIds.forEach(placementId -> batch.put(placementId, pendingHot.get(placementId)));
+        Set<String> alreadyStored;
+        try {
+            alreadyStored = transactionTemplate.execute(status -> {
+                Set<String> storedIds = new HashSet<>(reservationRepo.findPlacementIdsIn(placementIds));
+                long reservedAt = System.currentTimeMillis();
+                List<ProductReservation> reservations = new ArrayList<>();
+                batch.forEach((placementId, quantities) -> {
+                    if (!storedIds.contains(placementId))
+                        reservations.add(new ProductReservation(placementId, quantities, false, reservedAt));
+                });
+                reservationRepo.saveAll(reservations);
+                return storedIds;
+            });
+        } catch (RuntimeException e) {
+            // A release inserted one of the placements meanwhile, the next flush finds its row
+            log.warn("Could not write {} hot reservations, retrying with the next flush", batch.size(), e);
+            return;
+        }
+        placementIds.forEach(pendingHot::remove);
+        if (alreadyStored == null)
+            return;
+        for (String placementId : alreadyStored) {
+            batch.get(placementId).forEach(hotProductReservations::giveBack);
+            log.info("Placement {} was released before its reservation was written, returned {} to memory", placementId, batch.get(placementId));
+        }
+    }
+
+    // Inserted before any stock is taken, a release committed meanwhile makes the insert fail and the consume roll back
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String placementId, Map<String, Integer> quantities) {
+        reservationRepo.saveAndFlush(new ProductReservation(placementId, quantities, false, System.currentTimeMillis()));
+    }
+
+    // The placement was refused, nothing was taken
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void forget(String placementId) {
+        reservationRepo.deleteById(placementId);
+    }
+
+    // Safe to repeat, a released reservation is left as it is
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String placementId) {
+        ProductReservation reservation = reservationRepo.findForUpdate(placementId).orElse(null);
+        if (reservation == null) {
+            // A consume call still running holds the key, this insert then fails and the release is retried
+            reservationRepo.saveAndFlush(new ProductReservation(placementId, Map.of(), true, System.currentTimeMillis()));
+            log.info("Placement {} took no stock, it is refused if it arrives", placementId);
+            return;
+        }
+        if (reservation.isReleased()) {
+            log.info("Placement {} was already released", placementId);
+            return;
+        }
+        // The catalog cache holds no quantity, returned stock leaves it as it is
+        reservation.getQuantities().forEach(productRepo::addProductQuantity);
+        reservation.setReleased(true);
+        reservationRepo.save(reservation);
+        log.info("Returned {} of placement {} to stock", reservation.getQuantities(), placementId);
+    }
+
+    // Kept for as long as a release can take to come through ecomOrderService's outbox
+    @Transactional
+    @Scheduled(fixedDelayString = "${ecom.products.reservations.purge-interval-ms:3600000}", initialDelayString = "${ecom.products.reservations.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        long reservedBefore = System.currentTimeMillis() - retentionMillis;
+        reservationRepo.deleteAllLinesReservedBefore(reservedBefore);
+        int purged = reservationRepo.deleteAllReservedBefore(reservedBefore);
+        if (purged > 0)
+            log.info("Purged {} reservations older than the retention", purged);
+    }
+}
@@ -2,19 +2,25 @@ package com.pcProject.ecomProducts.controller;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductQuantity;
 import com.pcProject.ecomProducts.model.ProductWrapper;
 import com.pcProject.ecomProducts.model.UserProductsResponse;
+import com.pcProject.ecomProducts.service.ProductCatalogTransfer;
 import com.pcProject.ecomProducts.service.ProductDetailsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -58,7 +64,7 @@ class ProductDetailsControllerTest {
     @Test
     void consumeProduct_WhenValidRequest_ShouldReturnOk() throws Exception {
         UserProductsResponse<ProductWrapper> response = new UserProductsResponse<>(productWrapper, 200, "Consumed");
-        when(productService.consumeProduct(any())).thenReturn(new ResponseEntity<>(response, HttpStatus.OK));
+        when(productService.consumeProduct(any(), any())).thenReturn(new ResponseEntity<>(response, HttpStatus.OK));
 
         mockMvc.perform(post(BASE_URL + "consumeProduct")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -66,6 +72,19 @@ class ProductDetailsControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void consumeProducts_WhenValidRequest_ShouldReturnOk() throws Exception {
+        List<ProductQuantity> cart = List.of(new ProductQuantity("test-product", 2));
+        UserProductsResponse<List<ProductQuantity>> response = new UserProductsResponse<>(cart, 200, "Returning the Products");
+        when(productService.consumeProducts(cart, null)).thenReturn(new ResponseEntity<>(response, HttpStatus.OK));
+
+        mockMvc.perform(post(BASE_URL + "consumeProducts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(cart)))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(response), true));
+    }
+
     @Test
     void getProductValue_WhenValidRequest_ShouldReturnOk() throws Exception {
         UserProductsResponse<String> response = new UserProductsResponse<>("100", 200, "Success");
@@ -77,6 +96,17 @@ class ProductDetailsControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void getProductValues_WhenValidRequest_ShouldReturnOk() throws Exception {
+        UserProductsResponse<Map<String, Integer>> response = new UserProductsResponse<>(Map.of(TEST_PRODUCT, 100), 200, "Success");
+        when(productService.getProductValues(any())).thenReturn(new ResponseEntity<>(response, HttpStatus.OK));
+
+        mockMvc.perform(post(BASE_URL + "getProductValues")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(TEST_PRODUCT))))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void validateProduct_WhenValidRequest_ShouldReturnOk() throws Exception {
         UserProductsResponse<ProductWrapper> response = new UserProductsResponse<>(productWrapper, 200, "Valid");
@@ -106,6 +136,34 @@ class ProductDetailsControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void importProducts_WhenCsvIsPosted_ShouldPassTheBodyAsCsv() throws Exception {
+        UserProductsResponse<Map<String, Object>> serviceResponse = new UserProductsResponse<>(Map.of("inserted", 1), 200, "Imported the catalog");
+        when(productService.importProducts(any(), eq(ProductCatalogTransfer.Format.CSV))).thenReturn(ResponseEntity.ok(serviceResponse));
+
+        mockMvc.perform(post(BASE_URL + "importProducts")
+                        .contentType("text/csv")
+                        .content("productName,productValue,productQuantity\n" + TEST_PRODUCT + ",100,5\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.inserted").value(1));
+    }
+
+    @Test
+    void exportProducts_WhenFormatIsUnknown_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get(BASE_URL + "exportProducts").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCatalogCacheStats_WhenCalled_ShouldReturnStats() throws Exception {
+        Map<String, Object> stats = Map.of("hitCount", 3L, "missCount", 1L);
+        when(productService.getCatalogCacheStats()).thenReturn(ResponseEntity.ok(new UserProductsResponse<>(stats, 200, "Returning the catalog cache statistics")));
+
+        mockMvc.perform(get(BASE_URL + "getCatalogCacheStats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.hitCount").value(3));
+    }
+
     @Test
     void addProductDetails_WhenValidRequest_ShouldReturnSuccess() throws Exception {
         when(productService.addProductDetails(any())).thenReturn("Added Successfully");
@@ -116,6 +174,18 @@ class ProductDetailsControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void addProductDetailsList_WhenValidRequest_ShouldReturnCreated() throws Exception {
+        UserProductsResponse<Integer> serviceResponse = new UserProductsResponse<>(1, 201, "Added the Products");
+        when(productService.addProductDetailsList(any())).thenReturn(new ResponseEntity<>(serviceResponse, HttpStatus.CREATED));
+
+        mockMvc.perform(post(BASE_URL + "addProductDetailsList")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(productDetails))))
+                .andExpect(status().isCreated())
+                .andExpect(content().json(objectMapper.writeValueAsString(serviceResponse), true));
+    }
+
     @Test
     void addToProductQuantity_WhenValidRequest_ShouldReturnSuccess() throws Exception {
         Map<String, String> details = new HashMap<>();
@@ -0,0 +1,141 @@
+package com.pcProject.ecomProducts.repository;
+
+import com.pcProject.ecomProducts.model.ProductDetails;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stockdb;LOCK_TIMEOUT=10000",
+        "spring.datasource.hikari.maximum-pool-size=16"
+})
+// Each decrement has to commit on its own for the threads to really compete on the row
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductDetailsRepoTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductDetailsRepoTest.class);
+    private static final String TEST_PRODUCT = "flash-sale-product";
+
+    @Autowired
+    private ProductDetailsRepo productRepo;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        productRepo.deleteAll();
+    }
+
+    @Test
+    void consumeProductQuantity_WhenEnoughStock_ShouldDecrement() {
+        productRepo.save(new ProductDetails(0, TEST_PRODUCT, 100, 3));
+
+        assertEquals(1, productRepo.consumeProductQuantity(TEST_PRODUCT, 2));
+        assertEquals(0, productRepo.consumeProductQuantity(TEST_PRODUCT, 2));
+        assertEquals(1, productRepo.findByProductName(TEST_PRODUCT).getProductQuantity());
+    }
+
+    @Test
+    void consumeProductQuantity_WhenProductDoesNotExist_ShouldUpdateNothing() {
+        assertEquals(0, productRepo.consumeProductQuantity("unknown", 1));
+    }
+
+    @Test
+    void consumeProductQuantity_WhenManyThreadsCompete_ShouldNeverOversell() throws Exception {
+        int stock = 500;
+        int threads = 32;
+        int attemptsPerThread = 40;
+        productRepo.save(new ProductDetails(0, TEST_PRODUCT, 100, stock));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                startSignal.await();
+                for (int attempt = 0; attempt < attemptsPerThread; attempt++)
+                    sold.addAndGet(productRepo.consumeProductQuantity(TEST_PRODUCT, 1));
+                return null;
+            }));
+        }
+
+        long start = System.nanoTime();
+        startSignal.countDown();
+        for (Future<?> worker : workers)
+            worker.get(60, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        assertEquals(stock, sold.get());
+        assertEquals(0, productRepo.findByProductName(TEST_PRODUCT).getProductQuantity());
+        log.info("{} threads made {} consume attempts, sold {} of {} in {} ms ({} attempts/sec)",
+                threads, threads * attemptsPerThread, sold.get(), stock, elapsedNanos / 1_000_000,
+                (long) (threads * attemptsPerThread / (elapsedNanos / 1e9)));
+    }
+
+    // Catalog load, set -Decom.benchmark.products to change the row count. One save per Product committing on its
+    // own is the addProductDetails path, the bulk load is addProductDetailsList with and without JDBC batching
+    @Test
+    @Tag("benchmark")
+    void saveAll_ComparedWithOneSavePerProduct() {
+        int productCount = Integer.getInteger("ecom.benchmark.products", 100_000);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < productCount; i++)
+            productRepo.save(new ProductDetails(0, "single-" + i, 100, 10));
+        long singleMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+            saveInChunks("unbatched-", productCount);
+        });
+        long unbatchedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> saveInChunks("batched-", productCount));
+        long batchedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(3L * productCount, productRepo.count());
+        log.info("{} products, one save each {} ms, bulk without batching {} ms, bulk with batching {} ms ({}x over one save each)",
+                productCount, singleMillis, unbatchedMillis, batchedMillis, String.format("%.1f", (double) singleMillis / batchedMillis));
+    }
+
+    private void saveInChunks(String namePrefix, int productCount) {
+        for (int from = 0; from < productCount; from += 1000) {
+            List<ProductDetails> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + 1000, productCount); i++)
+                chunk.add(new ProductDetails(0, namePrefix + i, 100, 10));
+            productRepo.saveAll(chunk);
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+}
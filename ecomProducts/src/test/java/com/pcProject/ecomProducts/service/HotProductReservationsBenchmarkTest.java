@@ -0,0 +1,164 @@
+package com.pcProject.ecomProducts.service;
+
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.repository.HotProductClaimRepository;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import com.pcProject.ecomProducts.repository.ProductReservationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Orders of one hot Product per second at 1, 8 and 32 threads : one conditional UPDATE of the row per order, served
+// from the in-memory stripes, and served from the stripes with the product_reservation row of ecomOrderService's
+// placement id inserted per order or in batches. Rough figures on the H2 test database
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:hotstockdb;LOCK_TIMEOUT=10000",
+        "spring.datasource.hikari.maximum-pool-size=40"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("benchmark")
+class HotProductReservationsBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(HotProductReservationsBenchmarkTest.class);
+    private static final String HOT_PRODUCT = "hot-product";
+    private static final int ORDERS = 16_000;
+    private static final int[] THREADS = {1, 8, 32};
+
+    @Autowired
+    private ProductDetailsRepo productRepo;
+    @Autowired
+    private HotProductClaimRepository claimRepo;
+    @Autowired
+    private ProductReservationRepository reservationRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        reservationRepo.deleteAll();
+        claimRepo.deleteAll();
+        productRepo.deleteAll();
+    }
+
+    @Test
+    void tryConsume_ComparedWithOneUpdatePerOrder() throws Exception {
+        productRepo.save(new ProductDetails(0, HOT_PRODUCT, 100, 10 * ORDERS * THREADS.length));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        for (int threads : THREADS) {
+            HotProductReservations hotProducts = hotProducts("benchmark-" + threads);
+            HotProductReservations hotProductsWithRow = hotProducts("benchmark-row-" + threads);
+            HotProductReservations hotProductsBatched = hotProducts("benchmark-batched-" + threads);
+            ProductReservations reservationsWithRow = productReservations(hotProductsWithRow);
+            ProductReservations reservationsBatched = productReservations(hotProductsBatched);
+
+            long database = opsPerSecond(threads, () -> productRepo.consumeProductQuantity(HOT_PRODUCT, 1) == 1);
+            long memory = opsPerSecond(threads, () -> hotProducts.tryConsume(HOT_PRODUCT));
+            // A placement row inserted with every order, as for the other Products
+            long memoryWithRow = opsPerSecond(threads, () -> hotProductsWithRow.tryConsume(HOT_PRODUCT)
+                    && Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                        reservationsWithRow.record(UUID.randomUUID().toString(), Map.of(HOT_PRODUCT, 1));
+                        return true;
+                    })));
+            // The rows written by a flush every 100 ms, off the request path. Answered counts until the last order
+            // is answered, written until the last row is committed
+            ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+            flusher.scheduleWithFixedDelay(reservationsBatched::flushHotReservations, 100, 100, TimeUnit.MILLISECONDS);
+            long answeredNanos = elapsedNanos(threads, () -> hotProductsBatched.tryConsume(HOT_PRODUCT)
+                    && reservationsBatched.recordHot(UUID.randomUUID().toString(), Map.of(HOT_PRODUCT, 1)));
+            long drainStart = System.nanoTime();
+            flusher.shutdown();
+            assertTrue(flusher.awaitTermination(10, TimeUnit.SECONDS));
+            reservationsBatched.flushHotReservations();
+            long writtenNanos = answeredNanos + System.nanoTime() - drainStart;
+            long batchedAnswered = opsPerSecond(answeredNanos);
+            long batchedWritten = opsPerSecond(writtenNanos);
+
+            log.info("{} threads, {} orders : one UPDATE per order {} ops/s, in memory {} ops/s ({}x), in memory with a placement row per order {} ops/s ({}x), "
+                            + "in memory with batched placement rows {} ops/s answered ({}x) and {} ops/s written ({}x)",
+                    threads, ORDERS, database, memory, ratio(memory, database), memoryWithRow, ratio(memoryWithRow, database),
+                    batchedAnswered, ratio(batchedAnswered, database), batchedWritten, ratio(batchedWritten, database));
+            hotProducts.releaseAll();
+            hotProductsWithRow.releaseAll();
+            hotProductsBatched.releaseAll();
+        }
+        assertEquals(2L * ORDERS * THREADS.length, reservationRepo.count());
+    }
+
+    private HotProductReservations hotProducts(String instanceId) {
+        return new HotProductReservations(productRepo, claimRepo, transactionManager, List.of(HOT_PRODUCT), instanceId, 8, 64);
+    }
+
+    private ProductReservations productReservations(HotProductReservations hotProducts) {
+        return new ProductReservations(reservationRepo, productRepo, hotProducts, transactionManager, 168);
+    }
+
+    private static String ratio(long ops, long baseline) {
+        return String.format("%.1f", ops / (double) Math.max(baseline, 1));
+    }
+
+    private static long opsPerSecond(int threads, BooleanSupplier order) throws Exception {
+        return opsPerSecond(elapsedNanos(threads, order));
+    }
+
+    private static long opsPerSecond(long elapsedNanos) {
+        return (long) (ORDERS / (elapsedNanos / 1e9));
+    }
+
+    // Every order has to succeed, a refused one means the stock ran out and the figure is meaningless
+    private static long elapsedNanos(int threads, BooleanSupplier order) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                startSignal.await();
+                for (int j = 0; j < ORDERS / threads; j++)
+                    if (order.getAsBoolean())
+                        sold.incrementAndGet();
+                return null;
+            }));
+        }
+
+        long start = System.nanoTime();
+        startSignal.countDown();
+        for (Future<?> worker : workers)
+            worker.get(120, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        assertEquals(ORDERS, sold.get());
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,208 @@
+package com.pcProject.ecomProducts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pcProject.ecomProducts.model.HotProductClaim;
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.repository.HotProductClaimRepository;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+public class HotProductReservationsTest {
+
+    @Mock
+    private ProductDetailsRepo productRepo;
+
+    @Mock
+    private HotProductClaimRepository claimRepo;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HotProductReservations reservations;
+
+    private static final String HOT_PRODUCT = "hot-product";
+    private static final int CLAIM_SIZE = 10;
+    private static final String INSTANCE = "products-1";
+
+    @BeforeEach
+    void setUp() {
+        reservations = new HotProductReservations(productRepo, claimRepo, transactionManager, List.of(HOT_PRODUCT), INSTANCE, 4, CLAIM_SIZE);
+    }
+
+    @Test
+    void tryConsume_WhenProductIsNotHot_ShouldReturnFalse() {
+        assertFalse(reservations.tryConsume("cold-product"));
+        verify(productRepo, never()).consumeProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void tryConsume_WhenStockAvailable_ShouldClaimOneBlockForManyOrders() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(1);
+
+        for (int i = 0; i < CLAIM_SIZE; i++)
+            assertTrue(reservations.tryConsume(HOT_PRODUCT));
+
+        verify(productRepo, times(1)).consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE);
+        assertEquals(0, reservations.getReservedQuantity(HOT_PRODUCT));
+    }
+
+    @Test
+    void tryConsume_WhenLessThanABlockRemains_ShouldClaimTheRest() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(0);
+        when(productRepo.findByProductName(HOT_PRODUCT)).thenReturn(new ProductDetails(1, HOT_PRODUCT, 100, 3), new ProductDetails(1, HOT_PRODUCT, 100, 0));
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, 3)).thenReturn(1);
+
+        int sold = 0;
+        while (reservations.tryConsume(HOT_PRODUCT))
+            sold++;
+
+        assertEquals(3, sold);
+    }
+
+    @Test
+    void flush_WhenProductWasIdle_ShouldReturnUnsoldUnits() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(1);
+        reservations.tryConsume(HOT_PRODUCT);
+
+        // The first flush sees the order, the second one finds the Product idle
+        reservations.flush();
+        verify(productRepo, never()).addProductQuantity(anyString(), anyInt());
+        reservations.flush();
+
+        verify(productRepo, times(1)).addProductQuantity(HOT_PRODUCT, CLAIM_SIZE - 1);
+        assertEquals(0, reservations.getReservedQuantity(HOT_PRODUCT));
+    }
+
+    @Test
+    void tryConsume_WhenABlockIsClaimed_ShouldRecordTheUnitsHeld() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(1);
+
+        reservations.tryConsume(HOT_PRODUCT);
+
+        ArgumentCaptor<HotProductClaim> claim = ArgumentCaptor.forClass(HotProductClaim.class);
+        verify(claimRepo).save(claim.capture());
+        assertEquals(INSTANCE, claim.getValue().getInstanceId());
+        assertEquals(HOT_PRODUCT, claim.getValue().getProductName());
+        assertEquals(CLAIM_SIZE, claim.getValue().getQuantity());
+    }
+
+    @Test
+    void flush_WhenProductIsBusy_ShouldRecordWhatIsStillHeld() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(1);
+        HotProductClaim recorded = new HotProductClaim(INSTANCE, HOT_PRODUCT);
+        when(claimRepo.findByInstanceIdAndProductName(INSTANCE, HOT_PRODUCT)).thenReturn(null, recorded);
+        for (int i = 0; i < 4; i++)
+            reservations.tryConsume(HOT_PRODUCT);
+
+        reservations.flush();
+
+        assertEquals(CLAIM_SIZE - 4, recorded.getQuantity());
+        verify(productRepo, never()).addProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void flush_WhenReturningFails_ShouldKeepTheUnitsForTheNextFlush() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(1);
+        reservations.tryConsume(HOT_PRODUCT);
+        reservations.flush();
+        doThrow(new IllegalStateException("Database unavailable")).when(productRepo).addProductQuantity(HOT_PRODUCT, CLAIM_SIZE - 1);
+
+        reservations.flush();
+
+        assertEquals(CLAIM_SIZE - 1, reservations.getReservedQuantity(HOT_PRODUCT));
+        verify(claimRepo, never()).deleteByInstanceIdAndProductName(anyString(), anyString());
+    }
+
+    @Test
+    void releaseAll_WhenShuttingDown_ShouldReturnTheUnitsAndDropTheRecord() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(1);
+        reservations.tryConsume(HOT_PRODUCT);
+
+        reservations.releaseAll();
+
+        verify(productRepo).addProductQuantity(HOT_PRODUCT, CLAIM_SIZE - 1);
+        verify(claimRepo).deleteByInstanceIdAndProductName(INSTANCE, HOT_PRODUCT);
+    }
+
+    @Test
+    void reconcileAbandonedClaims_WhenAPreviousRunCrashed_ShouldDropItsRecordsWithoutRestocking() {
+        List<HotProductClaim> abandoned = List.of(new HotProductClaim(1, INSTANCE, HOT_PRODUCT, 7, 0));
+        when(claimRepo.findAllByInstanceId(INSTANCE)).thenReturn(abandoned);
+
+        reservations.reconcileAbandonedClaims();
+
+        verify(claimRepo).deleteAll(abandoned);
+        verify(productRepo, never()).addProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void discard_WhenQuantityIsOverwritten_ShouldDropReservedUnits() {
+        when(productRepo.consumeProductQuantity(HOT_PRODUCT, CLAIM_SIZE)).thenReturn(1);
+        reservations.tryConsume(HOT_PRODUCT);
+
+        reservations.discard(HOT_PRODUCT);
+
+        assertEquals(0, reservations.getReservedQuantity(HOT_PRODUCT));
+        verify(productRepo, never()).addProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void tryConsume_WhenManyThreadsCompete_ShouldNeverSellMoreThanClaimed() throws Exception {
+        int stock = 200;
+        AtomicInteger databaseStock = new AtomicInteger(stock);
+        when(productRepo.consumeProductQuantity(anyString(), anyInt())).thenAnswer(invocation -> {
+            int quantity = invocation.getArgument(1);
+            return databaseStock.getAndUpdate(left -> left >= quantity ? left - quantity : left) >= quantity ? 1 : 0;
+        });
+        when(productRepo.findByProductName(HOT_PRODUCT)).thenAnswer(invocation -> new ProductDetails(1, HOT_PRODUCT, 100, databaseStock.get()));
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                startSignal.await();
+                for (int attempt = 0; attempt < 50; attempt++)
+                    if (reservations.tryConsume(HOT_PRODUCT))
+                        sold.incrementAndGet();
+                return null;
+            }));
+        }
+        startSignal.countDown();
+        for (Future<?> worker : workers)
+            worker.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(stock, sold.get());
+        assertEquals(0, databaseStock.get());
+        assertEquals(0, reservations.getReservedQuantity(HOT_PRODUCT));
+    }
+}
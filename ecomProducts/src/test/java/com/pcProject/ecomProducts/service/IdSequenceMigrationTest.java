@@ -0,0 +1,63 @@
+package com.pcProject.ecomProducts.service;
+
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import com.pcProject.ecomProducts.model.ProductDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Products stored with IDENTITY ids before the sequence existed, on a database of its own so no id block is held yet
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:sequencedb")
+@Import(IdSequenceMigration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdSequenceMigrationTest {
+
+    private static final int LEGACY_PRODUCTS = 120;
+
+    @Autowired
+    private IdSequenceMigration idSequenceMigration;
+    @Autowired
+    private ProductDetailsRepo productRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("Truncate table product_details");
+    }
+
+    @Test
+    void seedSequences_WhenTheTableHasIdentityIds_ShouldInsertPastThem() {
+        for (int productId = 1; productId <= LEGACY_PRODUCTS; productId++)
+            jdbcTemplate.update("Insert into product_details (product_id, product_name, product_value, product_quantity) values (?, ?, 100, 5)", productId, "legacy-product-" + productId);
+
+        idSequenceMigration.seedSequences();
+        // Run again by a second replica, the sequence isn't moved back
+        idSequenceMigration.seedSequences();
+
+        // More than one block, so a second value is read from the sequence
+        List<ProductDetails> newProducts = new ArrayList<>();
+        for (int i = 0; i < 2 * IdSequenceMigration.ALLOCATION_SIZE; i++)
+            newProducts.add(new ProductDetails(0, "new-product-" + i, 100, 5));
+        productRepo.saveAll(newProducts);
+
+        assertEquals(LEGACY_PRODUCTS + newProducts.size(), productRepo.count());
+        assertTrue(newProducts.stream().allMatch(product -> product.getProductId() > LEGACY_PRODUCTS));
+    }
+}
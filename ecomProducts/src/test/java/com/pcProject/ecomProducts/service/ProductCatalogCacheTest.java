@@ -0,0 +1,175 @@
+package com.pcProject.ecomProducts.service;
+
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductWrapper;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductCatalogCacheTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogCacheTest.class);
+    private static final String TEST_PRODUCT = "test-product";
+
+    @Autowired
+    private ProductDetailsRepo productRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private MockProducer<String, Object> producer;
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    private ProductCatalogCache catalogCache;
+
+    @BeforeEach
+    void setUp() {
+        producer = new MockProducer<>(true, new StringSerializer(), (topic, data) -> new byte[0]);
+        kafkaTemplate = new KafkaTemplate<>(new MockProducerFactory<>(() -> producer));
+        catalogCache = new ProductCatalogCache(productRepo, kafkaTemplate, 1000, 60);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        productRepo.deleteAll();
+    }
+
+    @Test
+    void get_WhenProductIsUnknown_ShouldCacheTheMissUntilEvicted() {
+        assertNull(catalogCache.get(TEST_PRODUCT));
+        productRepo.save(new ProductDetails(0, TEST_PRODUCT, 100, 5));
+        assertNull(catalogCache.get(TEST_PRODUCT));
+
+        catalogCache.evict(TEST_PRODUCT);
+
+        assertEquals(100, catalogCache.get(TEST_PRODUCT).getProductValue());
+        assertEquals(1, producer.history().size());
+    }
+
+    @Test
+    void evict_WhenCalledInsideATransaction_ShouldWaitForTheCommit() {
+        productRepo.save(new ProductDetails(0, TEST_PRODUCT, 100, 5));
+        catalogCache.get(TEST_PRODUCT);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            changeValue(TEST_PRODUCT, 150);
+            catalogCache.evict(TEST_PRODUCT);
+            // A read before the commit must not reload and keep the old row
+            assertEquals(100, catalogCache.get(TEST_PRODUCT).getProductValue());
+            assertTrue(producer.history().isEmpty());
+        });
+
+        assertEquals(150, catalogCache.get(TEST_PRODUCT).getProductValue());
+        assertEquals(1, producer.history().size());
+    }
+
+    @Test
+    void kafkaConsumer_productChanged_ShouldEvictOneOrAllProducts() {
+        productRepo.save(new ProductDetails(0, TEST_PRODUCT, 100, 5));
+        productRepo.save(new ProductDetails(0, "other-product", 200, 5));
+        catalogCache.get(TEST_PRODUCT);
+        catalogCache.get("other-product");
+        changeValue(TEST_PRODUCT, 101);
+        changeValue("other-product", 201);
+
+        // Event from another replica
+        catalogCache.kafkaConsumer_productChanged(new ProductWrapper(TEST_PRODUCT));
+        assertEquals(101, catalogCache.get(TEST_PRODUCT).getProductValue());
+        assertEquals(200, catalogCache.get("other-product").getProductValue());
+
+        catalogCache.kafkaConsumer_productChanged(new ProductWrapper(null));
+        assertEquals(201, catalogCache.get("other-product").getProductValue());
+    }
+
+    @Test
+    void get_ShouldNotCacheTheQuantity() {
+        productRepo.save(new ProductDetails(0, TEST_PRODUCT, 100, 5));
+
+        assertEquals(0, catalogCache.get(TEST_PRODUCT).getProductQuantity());
+    }
+
+    @Test
+    void stats_WhenCacheIsFull_ShouldCountHitsMissesAndEvictions() {
+        ProductCatalogCache smallCache = new ProductCatalogCache(productRepo, kafkaTemplate, 2, 60);
+        for (int i = 0; i < 5; i++)
+            smallCache.get("product-" + i);
+        smallCache.get("product-4");
+
+        // Size based eviction runs asynchronously, wait for it to settle
+        long evictions = 0;
+        for (int attempt = 0; attempt < 100 && evictions < 3; attempt++) {
+            evictions = (long) smallCache.stats().get("evictionCount");
+            if (evictions < 3)
+                smallCache.get("product-4");
+        }
+
+        assertEquals(5L, smallCache.stats().get("missCount"));
+        assertTrue((long) smallCache.stats().get("hitCount") >= 1);
+        assertEquals(3L, evictions);
+    }
+
+    // Latency of a catalog read with and without the cache, the difference every read endpoint sees
+    @Test
+    @Tag("benchmark")
+    void get_ComparedWithRepositoryLookup_ShouldLowerP99() {
+        int productCount = 200;
+        for (int i = 0; i < productCount; i++)
+            productRepo.save(new ProductDetails(0, "product-" + i, 100 + i, 10));
+
+        int reads = 20_000;
+        long[] repository = time(reads, i -> productRepo.findByProductName("product-" + (i % productCount)));
+        long[] cached = time(reads, i -> catalogCache.get("product-" + (i % productCount)));
+
+        log.info("{} reads, repository p50 {} us p99 {} us, cache p50 {} us p99 {} us, stats {}", reads,
+                percentile(repository, 50) / 1000, percentile(repository, 99) / 1000,
+                percentile(cached, 50) / 1000, percentile(cached, 99) / 1000, catalogCache.stats());
+        assertTrue(percentile(cached, 99) < percentile(repository, 99));
+    }
+
+    private static long[] time(int reads, IntConsumer read) {
+        // Warm up before measuring
+        for (int i = 0; i < reads / 4; i++)
+            read.accept(i);
+        long[] nanos = new long[reads];
+        for (int i = 0; i < reads; i++) {
+            long start = System.nanoTime();
+            read.accept(i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static long percentile(long[] sortedNanos, int percentile) {
+        return sortedNanos[(int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1];
+    }
+
+    private void changeValue(String productName, int productValue) {
+        ProductDetails existingProduct = productRepo.findByProductName(productName);
+        existingProduct.setProductValue(productValue);
+        productRepo.save(existingProduct);
+    }
+}
@@ -0,0 +1,207 @@
+package com.pcProject.ecomProducts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductPrice;
+import com.pcProject.ecomProducts.model.ProductWrapper;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import jakarta.persistence.EntityManager;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// On disk with a small page cache, an in-memory database would keep the whole catalog on the heap being measured
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:file:./target/h2/catalogdb;CACHE_SIZE=8192")
+// Every import batch commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductCatalogTransferTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogTransferTest.class);
+
+    @Autowired
+    private ProductDetailsRepo productRepo;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private MockProducer<String, Object> producer;
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @BeforeEach
+    void setUp() {
+        producer = new MockProducer<>(true, new StringSerializer(), (topic, data) -> new byte[0]) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        kafkaTemplate = new KafkaTemplate<>(new MockProducerFactory<>(() -> producer));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        productRepo.deleteAllInBatch();
+    }
+
+    @Test
+    void importProducts_WhenNdjsonHasNewExistingAndInvalidLines_ShouldUpsertTheValidOnes() throws Exception {
+        ProductCatalogTransfer catalogTransfer = catalogTransfer(2);
+        productRepo.save(new ProductDetails(0, "existing", 100, 1));
+        String catalog = """
+                {"productName":"existing","productValue":150,"productQuantity":7}
+                {"productName":"new-a","productValue":10,"productQuantity":1}
+                not json
+
+                {"productName":"new-b","productValue":-1,"productQuantity":1}
+                {"productName":"new-c","productValue":30,"productQuantity":3}
+                {"productName":"new-a","productValue":20,"productQuantity":2}
+                """;
+
+        Map<String, Object> summary = catalogTransfer.importProducts(stream(catalog), ProductCatalogTransfer.Format.NDJSON);
+
+        // new-a is inserted by the first batch and updated by the second
+        assertEquals(2L, summary.get("inserted"));
+        assertEquals(2L, summary.get("updated"));
+        assertEquals(2L, summary.get("rejected"));
+        assertEquals(150, productRepo.findByProductName("existing").getProductValue());
+        assertEquals(7, productRepo.findByProductName("existing").getProductQuantity());
+        assertEquals(20, productRepo.findByProductName("new-a").getProductValue());
+        assertNull(productRepo.findByProductName("new-b"));
+        // Only price changes of stored Products are pushed, then one cache-wide invalidation
+        List<ProducerRecord<String, Object>> records = producer.history();
+        assertEquals(List.of(new ProductPrice("existing", 150), new ProductPrice("new-a", 20), new ProductWrapper(null)),
+                records.stream().map(ProducerRecord::value).toList());
+    }
+
+    @Test
+    void importThenExport_WhenCsvHasQuotedNames_ShouldRoundTrip() throws Exception {
+        ProductCatalogTransfer catalogTransfer = catalogTransfer(2);
+        String catalog = """
+                productName,productValue,productQuantity
+                "Desk, oak",250,4
+                "27"" monitor",300,2
+                plain,5,0
+                """;
+
+        Map<String, Object> summary = catalogTransfer.importProducts(stream(catalog), ProductCatalogTransfer.Format.CSV);
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        catalogTransfer.exportProducts(exported, ProductCatalogTransfer.Format.CSV);
+
+        assertEquals(3L, summary.get("inserted"));
+        assertEquals(250, productRepo.findByProductName("Desk, oak").getProductValue());
+        assertEquals(2, productRepo.findByProductName("27\" monitor").getProductQuantity());
+        assertEquals(catalog.lines().sorted().toList(), exported.toString(StandardCharsets.UTF_8).lines().sorted().toList());
+    }
+
+    // Million Product catalog generated on the fly, set -Decom.benchmark.catalog to change the row count.
+    // The heap still in use after a GC is compared before and after the import and the export
+    @Test
+    @Tag("benchmark")
+    void importAndExport_Benchmark_ShouldKeepTheHeapFlat() throws Exception {
+        int productCount = Integer.getInteger("ecom.benchmark.catalog", 1_000_000);
+        ProductCatalogTransfer catalogTransfer = catalogTransfer(1000);
+
+        long heapBefore = liveHeap();
+        Map<String, Object> summary = catalogTransfer.importProducts(new GeneratedCatalog(productCount), ProductCatalogTransfer.Format.NDJSON);
+        long heapAfterImport = liveHeap();
+
+        CountingOutputStream exported = new CountingOutputStream();
+        long start = System.nanoTime();
+        catalogTransfer.exportProducts(exported, ProductCatalogTransfer.Format.NDJSON);
+        long exportMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long heapAfterExport = liveHeap();
+
+        assertEquals((long) productCount, summary.get("inserted"));
+        assertEquals(productCount, exported.lines);
+        log.info("{} products, import {} ms ({} rows/sec), export {} ms ({} rows/sec), live heap {} MB -> {} MB after import -> {} MB after export",
+                productCount, summary.get("millis"), summary.get("rowsPerSecond"), exportMillis, productCount * 1000L / exportMillis,
+                heapBefore >> 20, heapAfterImport >> 20, heapAfterExport >> 20);
+        // A million ProductDetails held at once would take well over this
+        assertTrue(heapAfterImport - heapBefore < 64L << 20);
+        assertTrue(heapAfterExport - heapBefore < 64L << 20);
+    }
+
+    private ProductCatalogTransfer catalogTransfer(int batchSize) {
+        return new ProductCatalogTransfer(productRepo, new ProductCatalogCache(productRepo, kafkaTemplate, 100, 30),
+                mock(HotProductReservations.class), kafkaTemplate, entityManager, new ObjectMapper(), transactionManager, batchSize);
+    }
+
+    private static InputStream stream(String catalog) {
+        return new ByteArrayInputStream(catalog.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long liveHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // NDJSON catalog produced line by line as it is read
+    private static final class GeneratedCatalog extends InputStream {
+        private final int productCount;
+        private int nextProduct;
+        private byte[] line = new byte[0];
+        private int position;
+
+        private GeneratedCatalog(int productCount) {
+            this.productCount = productCount;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length) {
+                if (nextProduct == productCount)
+                    return -1;
+                line = ("{\"productName\":\"product-" + nextProduct + "\",\"productValue\":" + (nextProduct % 1000)
+                        + ",\"productQuantity\":100}\n").getBytes(StandardCharsets.UTF_8);
+                nextProduct++;
+                position = 0;
+            }
+            return line[position++];
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private int lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n')
+                lines++;
+        }
+    }
+}
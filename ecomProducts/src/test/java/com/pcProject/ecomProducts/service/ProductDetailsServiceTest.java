@@ -3,34 +3,51 @@ package com.pcProject.ecomProducts.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import com.pcProject.ecomProducts.model.OrderDetailsWrapper;
 import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductPrice;
+import com.pcProject.ecomProducts.model.ProductQuantity;
+import com.pcProject.ecomProducts.model.ProductReservation;
 import com.pcProject.ecomProducts.model.ProductWrapper;
 import com.pcProject.ecomProducts.model.UserProductsResponse;
 import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import jakarta.persistence.EntityManager;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @ExtendWith(MockitoExtension.class)
 public class ProductDetailsServiceTest {
@@ -39,17 +56,42 @@ public class ProductDetailsServiceTest {
     private ProductDetailsRepo productRepo;
 
     @Mock
-    private ObjectMapper objectMapper;
+    private HotProductReservations hotProductReservations;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ProcessedEventStore processedEventStore;
+
+    @Mock
+    private ProductReservations productReservations;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @InjectMocks
     private ProductDetailsService productService;
 
+    private MockProducer<String, Object> producer;
+
     private static final String TEST_PRODUCT = "test-product";
     private ProductWrapper productWrapper;
     private ProductDetails productDetails;
 
     @BeforeEach
     void setUp() {
+        // Real cache in front of the mocked repo, invalidation events go to a local stub producer
+        // KafkaTemplate closes the producer after every send, the real factory hands out a close-safe shared one
+        producer = new MockProducer<>(true, new StringSerializer(), (topic, data) -> new byte[0]) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        KafkaTemplate<String, Object> kafkaTemplate = new KafkaTemplate<>(new MockProducerFactory<>(() -> producer));
+        ReflectionTestUtils.setField(productService, "productCatalogCache", new ProductCatalogCache(productRepo, kafkaTemplate, 100, 30));
+        ReflectionTestUtils.setField(productService, "kafkaTemplate", kafkaTemplate);
+
         productWrapper = new ProductWrapper();
         productWrapper.setProductName(TEST_PRODUCT);
 
@@ -64,11 +106,25 @@ public class ProductDetailsServiceTest {
     @Test
     void getProductDetails_WhenProductExists_ShouldReturnOk() {
         when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+        when(productRepo.findProductQuantity(TEST_PRODUCT)).thenReturn(10);
         ResponseEntity<?> response = (ResponseEntity<?>) productService.getProductDetails(productWrapper);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(productDetails, response.getBody());
     }
 
+    @Test
+    void getProductDetails_WhenStockWasConsumedAfterCaching_ShouldReturnTheCurrentQuantity() {
+        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+        when(productRepo.findProductQuantity(TEST_PRODUCT)).thenReturn(10, 7);
+        productService.getProductDetails(productWrapper);
+
+        // consumeProduct doesn't invalidate the cache
+        ResponseEntity<?> response = (ResponseEntity<?>) productService.getProductDetails(productWrapper);
+
+        assertEquals(7, ((ProductDetails) response.getBody()).getProductQuantity());
+        verify(productRepo, times(1)).findByProductName(TEST_PRODUCT);
+    }
+
     @Test
     void getProductDetails_WhenProductDoesNotExist_ShouldReturnBadRequest() {
         when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(null);
@@ -80,18 +136,39 @@ public class ProductDetailsServiceTest {
     // --- kafkaConsumer_preserveProduct Branches ---
 
     @Test
-    void kafkaConsumer_preserveProduct_WhenValidJson_ShouldIncrementQuantity() throws JsonProcessingException {
-        String json = "{\"productName\":\"test-product\"}";
+    void kafkaConsumer_preserveProduct_WhenOrderIsCancelled_ShouldIncrementQuantity() {
         OrderDetailsWrapper wrapper = new OrderDetailsWrapper();
         wrapper.setProductName(TEST_PRODUCT);
 
-        when(objectMapper.readValue(eq(json), eq(OrderDetailsWrapper.class))).thenReturn(wrapper);
-        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+        when(processedEventStore.claim((String) null)).thenReturn(true);
+        when(productRepo.addProductQuantity(TEST_PRODUCT, 1)).thenReturn(1);
 
-        productService.kafkaConsumer_preserveProduct(json);
+        productService.kafkaConsumer_preserveProduct(wrapper);
 
-        assertEquals(11, productDetails.getProductQuantity());
-        verify(productRepo, times(1)).save(productDetails);
+        verify(productRepo, times(1)).addProductQuantity(TEST_PRODUCT, 1);
+        verify(productRepo, never()).save(any());
+        // A quantity-only change publishes no invalidation
+        assertTrue(producer.history().isEmpty());
+    }
+
+    @Test
+    void kafkaConsumer_preserveProduct_WhenProductWasDeleted_ShouldSkipTheEvent() {
+        when(processedEventStore.claim("event-2")).thenReturn(true);
+        when(productRepo.addProductQuantity(TEST_PRODUCT, 1)).thenReturn(0);
+
+        productService.kafkaConsumer_preserveProduct(new OrderDetailsWrapper(1, "test-user", TEST_PRODUCT, "event-2"));
+
+        verify(productRepo, never()).save(any());
+    }
+
+    @Test
+    void kafkaConsumer_preserveProduct_WhenCancellationIsRedelivered_ShouldNotIncrementAgain() {
+        when(processedEventStore.claim("event-1")).thenReturn(false);
+
+        productService.kafkaConsumer_preserveProduct(new OrderDetailsWrapper(1, "test-user", TEST_PRODUCT, "event-1"));
+
+        assertEquals(10, productDetails.getProductQuantity());
+        verify(productRepo, never()).addProductQuantity(anyString(), anyInt());
     }
 
     // --- getProductValue Branches ---
@@ -112,6 +189,68 @@ public class ProductDetailsServiceTest {
         assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
     }
 
+    // --- getProductValues Branches ---
+
+    @Test
+    void getProductValue_WhenCalledAgain_ShouldBeServedFromCache() {
+        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+
+        productService.getProductValue(productWrapper);
+        productService.validateProduct(productWrapper);
+        ResponseEntity<UserProductsResponse<String>> response = productService.getProductValue(productWrapper);
+
+        assertEquals("500", response.getBody().getData());
+        verify(productRepo, times(1)).findByProductName(TEST_PRODUCT);
+        assertEquals(2L, productService.getCatalogCacheStats().getBody().getData().get("hitCount"));
+    }
+
+    @Test
+    void updateProductDetails_WhenProductIsCached_ShouldEvictAndPublishInvalidation() {
+        ProductDetails updateReq = new ProductDetails(0, TEST_PRODUCT, 750, 10);
+        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+        productService.getProductValue(productWrapper);
+
+        productService.updateProductDetails(updateReq);
+
+        assertEquals("750", productService.getProductValue(productWrapper).getBody().getData());
+        List<ProducerRecord<String, Object>> records = producer.history();
+        assertEquals(2, records.size());
+        assertEquals(ProductCatalogCache.PRODUCT_CHANGED_TOPIC, records.get(0).topic());
+        assertEquals(new ProductWrapper(TEST_PRODUCT), records.get(0).value());
+        assertEquals(ProductDetailsService.PRICE_CHANGED_TOPIC, records.get(1).topic());
+        assertEquals(TEST_PRODUCT, records.get(1).key());
+        assertEquals(new ProductPrice(TEST_PRODUCT, 750), records.get(1).value());
+    }
+
+    @Test
+    void deleteProductDetails_WhenProductExists_ShouldPublishPriceRemoval() {
+        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+
+        productService.deleteProductDetails(TEST_PRODUCT);
+
+        assertEquals(new ProductPrice(TEST_PRODUCT, null), producer.history().get(1).value());
+    }
+
+    @Test
+    void getProductValues_WhenProductsExist_ShouldReturnValuesFromSingleQuery() {
+        when(productRepo.findAllByProductNameIn(Set.of(TEST_PRODUCT, "unknown"))).thenReturn(List.of(productDetails));
+        ResponseEntity<UserProductsResponse<Map<String, Integer>>> response =
+                productService.getProductValues(Arrays.asList(TEST_PRODUCT, "unknown", TEST_PRODUCT));
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        assertEquals(Map.of(TEST_PRODUCT, 500), response.getBody().getData());
+        verify(productRepo, times(1)).findAllByProductNameIn(any());
+        verify(productRepo, never()).findByProductName(anyString());
+    }
+
+    @Test
+    void getProductValues_WhenListIsEmpty_ShouldNotQuery() {
+        ResponseEntity<UserProductsResponse<Map<String, Integer>>> response = productService.getProductValues(Collections.emptyList());
+
+        assertEquals(0, response.getBody().getData().size());
+        verify(productRepo, never()).findAllByProductNameIn(any());
+    }
+
     // --- Admin Actions ---
 
     @Test
@@ -128,6 +267,51 @@ public class ProductDetailsServiceTest {
         verify(productRepo, times(1)).save(productDetails);
     }
 
+    @Test
+    void addProductDetailsList_WhenAllProductsAreNew_ShouldSaveInChunksAndPublishOneInvalidation() {
+        List<ProductDetails> products = new ArrayList<>();
+        for (int i = 0; i < 2500; i++)
+            products.add(new ProductDetails(0, "product-" + i, 100 + i, 5));
+
+        ResponseEntity<UserProductsResponse<Integer>> response = productService.addProductDetailsList(products);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(2500, response.getBody().getData());
+        verify(productRepo, times(3)).findAllByProductNameIn(any());
+        verify(productRepo, times(3)).saveAll(any());
+        verify(entityManager, times(3)).flush();
+        verify(entityManager, times(3)).clear();
+        // No price event, no price cache can hold a Product that didn't exist
+        List<ProducerRecord<String, Object>> records = producer.history();
+        assertEquals(1, records.size());
+        assertEquals(new ProductWrapper(null), records.get(0).value());
+    }
+
+    @Test
+    void addProductDetailsList_WhenAProductAlreadyExists_ShouldStoreNothing() {
+        when(productRepo.findAllByProductNameIn(any())).thenReturn(List.of(productDetails));
+
+        ResponseEntity<UserProductsResponse<Integer>> response = productService.addProductDetailsList(List.of(productDetails, new ProductDetails(0, "new-product", 10, 1)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Product already exists : " + TEST_PRODUCT, response.getBody().getMessage());
+        verify(productRepo, never()).saveAll(any());
+        assertTrue(producer.history().isEmpty());
+    }
+
+    @Test
+    void addProductDetailsList_WhenAProductIsRepeatedOrInvalid_ShouldNotQueryTheRepo() {
+        ResponseEntity<UserProductsResponse<Integer>> repeated = productService.addProductDetailsList(List.of(productDetails, productDetails));
+        ResponseEntity<UserProductsResponse<Integer>> invalid = productService.addProductDetailsList(List.of(new ProductDetails(0, " ", 10, 1)));
+        ResponseEntity<UserProductsResponse<Integer>> empty = productService.addProductDetailsList(List.of());
+
+        assertEquals("Duplicate Product : " + TEST_PRODUCT, repeated.getBody().getMessage());
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, empty.getStatusCode());
+        verify(productRepo, never()).findAllByProductNameIn(any());
+        verify(productRepo, never()).saveAll(any());
+    }
+
     // --- addToProductQuantity Branches ---
 
     @Test
@@ -136,12 +320,15 @@ public class ProductDetailsServiceTest {
         map.put("productName", TEST_PRODUCT);
         map.put("productQuantity", "5");
 
-        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails, new ProductDetails(1, TEST_PRODUCT, 500, 15));
 
         ResponseEntity<?> response = (ResponseEntity<?>) productService.addToProductQuantity(map);
 
-        assertEquals(15, productDetails.getProductQuantity());
-        verify(productRepo, times(1)).save(productDetails);
+        UserProductsResponse<?> body = (UserProductsResponse<?>) response.getBody();
+        assertEquals(15, ((ProductDetails) body.getData()).getProductQuantity());
+        verify(productRepo, times(1)).addProductQuantity(TEST_PRODUCT, 5);
+        verify(productRepo, never()).save(any());
+        assertTrue(producer.history().isEmpty());
     }
 
     @Test
@@ -220,18 +407,54 @@ public class ProductDetailsServiceTest {
 
     @Test
     void consumeProduct_WhenProductExistsAndHasStock_ShouldDecrement() {
-        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
-        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper);
+        when(productRepo.consumeProductQuantity(TEST_PRODUCT, 1)).thenReturn(1);
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, null);
 
-        assertEquals(9, productDetails.getProductQuantity());
         assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
-        verify(productRepo, times(1)).save(productDetails);
+        verify(productRepo, never()).findByProductName(anyString());
+        verify(productRepo, never()).save(any());
+    }
+
+    @Test
+    void consumeProduct_WhenHotProductHasReservedStock_ShouldNotTouchDatabase() {
+        when(hotProductReservations.tryConsume(TEST_PRODUCT)).thenReturn(true);
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, null);
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        verify(productRepo, never()).consumeProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void consumeProduct_WhenHotProductHasReservedStockWithAPlacementId_ShouldLeaveTheReservationToTheBatch() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.empty());
+        when(hotProductReservations.tryConsume(TEST_PRODUCT)).thenReturn(true);
+        when(productReservations.recordHot("placement-1", Map.of(TEST_PRODUCT, 1))).thenReturn(true);
+
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, "placement-1");
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        verify(productReservations, never()).record(anyString(), any());
+        verify(transactionManager, never()).getTransaction(any());
+        verify(hotProductReservations, never()).giveBack(anyString(), anyInt());
+    }
+
+    @Test
+    void consumeProduct_WhenTheHotPlacementIsAlreadyWaitingForItsRow_ShouldGiveTheUnitBack() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.empty());
+        when(hotProductReservations.tryConsume(TEST_PRODUCT)).thenReturn(true);
+        when(productReservations.recordHot("placement-1", Map.of(TEST_PRODUCT, 1))).thenReturn(false);
+
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, "placement-1");
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        verify(hotProductReservations).giveBack(TEST_PRODUCT, 1);
     }
 
     @Test
     void consumeProduct_WhenProductDoesNotExist_ShouldReturnInvalid() {
+        when(productRepo.consumeProductQuantity(TEST_PRODUCT, 1)).thenReturn(0);
         when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(null);
-        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper);
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, null);
         assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
         assertEquals("Invalid Product", response.getBody().getMessage());
     }
@@ -239,11 +462,150 @@ public class ProductDetailsServiceTest {
     @Test
     void consumeProduct_WhenStockIsZero_ShouldReturnNotAvailable() {
         productDetails.setProductQuantity(0);
+        when(productRepo.consumeProductQuantity(TEST_PRODUCT, 1)).thenReturn(0);
         when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
 
-        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper);
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, null);
         assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
         assertEquals("Product is not available at the movement", response.getBody().getMessage());
         verify(productRepo, never()).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void consumeProduct_WithAPlacementId_ShouldRecordTheUnitBeforeTakingIt() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.empty());
+        when(productRepo.consumeProductQuantity(TEST_PRODUCT, 1)).thenReturn(1);
+
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, "placement-1");
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        InOrder inOrder = inOrder(productReservations, productRepo);
+        inOrder.verify(productReservations).record("placement-1", Map.of(TEST_PRODUCT, 1));
+        inOrder.verify(productRepo).consumeProductQuantity(TEST_PRODUCT, 1);
+        verify(productReservations, never()).forget(anyString());
+    }
+
+    @Test
+    void consumeProduct_WhenThePlacementIsRefused_ShouldForgetItsReservation() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.empty());
+        when(productRepo.consumeProductQuantity(TEST_PRODUCT, 1)).thenReturn(0);
+
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, "placement-1");
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
+        verify(productReservations).forget("placement-1");
+    }
+
+    @Test
+    void consumeProduct_WhenThePlacementWasReleasedFirst_ShouldNotTakeTheUnit() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.of(new ProductReservation("placement-1", Map.of(), true, 0)));
+
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, "placement-1");
+
+        assertEquals(HttpStatus.CONFLICT.value(), response.getBody().getStatus());
+        verify(productRepo, never()).consumeProductQuantity(anyString(), anyInt());
+        verify(hotProductReservations, never()).tryConsume(anyString());
+        verify(productReservations, never()).record(anyString(), any());
+    }
+
+    @Test
+    void consumeProduct_WhenThePlacementIsSentAgain_ShouldNotTakeASecondUnit() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.of(new ProductReservation("placement-1", Map.of(TEST_PRODUCT, 1), false, 0)));
+
+        ResponseEntity<UserProductsResponse<ProductWrapper>> response = productService.consumeProduct(productWrapper, "placement-1");
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        verify(productRepo, never()).consumeProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void kafkaConsumer_releaseReservation_ShouldReleaseThePlacementNamedByTheEvent() {
+        productService.kafkaConsumer_releaseReservation(new OrderDetailsWrapper(0, "test-user", null, "placement-1"));
+
+        verify(productReservations).release("placement-1");
+    }
+
+    // --- consumeProducts Branches ---
+
+    @Test
+    void consumeProducts_WhenEveryLineHasStock_ShouldTakeEachProductInOneUpdate() {
+        when(productRepo.consumeProductQuantity(anyString(), anyInt())).thenReturn(1);
+        List<ProductQuantity> cart = List.of(new ProductQuantity("b-product", 2), new ProductQuantity("a-product", 1), new ProductQuantity("b-product", 3));
+
+        ResponseEntity<UserProductsResponse<List<ProductQuantity>>> response = productService.consumeProducts(cart, null);
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        InOrder inOrder = inOrder(productRepo);
+        inOrder.verify(productRepo).consumeProductQuantity("a-product", 1);
+        inOrder.verify(productRepo).consumeProductQuantity("b-product", 5);
+        verify(productRepo, never()).addProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void consumeProducts_WhenALineIsOutOfStock_ShouldPutBackTheLinesAlreadyTaken() {
+        productDetails.setProductQuantity(0);
+        when(hotProductReservations.tryConsume("a-product")).thenReturn(true, false);
+        when(productRepo.consumeProductQuantity("a-product", 2)).thenReturn(1);
+        when(productRepo.consumeProductQuantity(TEST_PRODUCT, 1)).thenReturn(0);
+        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+
+        ResponseEntity<UserProductsResponse<List<ProductQuantity>>> response =
+                productService.consumeProducts(List.of(new ProductQuantity("a-product", 3), new ProductQuantity(TEST_PRODUCT, 1)), null);
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
+        assertEquals("Product is not available at the movement : "+TEST_PRODUCT, response.getBody().getMessage());
+        verify(hotProductReservations).giveBack("a-product", 1);
+        verify(productRepo).addProductQuantity("a-product", 2);
+    }
+
+    @Test
+    void consumeProducts_WhenMemoryCoversTheCart_ShouldLeaveTheReservationToTheBatch() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.empty());
+        when(hotProductReservations.tryConsume("a-product")).thenReturn(true);
+        when(productReservations.recordHot("placement-1", Map.of("a-product", 2))).thenReturn(true);
+
+        ResponseEntity<UserProductsResponse<List<ProductQuantity>>> response =
+                productService.consumeProducts(List.of(new ProductQuantity("a-product", 2)), "placement-1");
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        verify(transactionManager, never()).getTransaction(any());
+        verify(productRepo, never()).consumeProductQuantity(anyString(), anyInt());
+    }
+
+    @Test
+    void consumeProducts_WithAPlacementId_ShouldRecordTheWholeCart() {
+        when(productReservations.find("placement-1")).thenReturn(Optional.empty());
+        when(productRepo.consumeProductQuantity(anyString(), anyInt())).thenReturn(1);
+
+        ResponseEntity<UserProductsResponse<List<ProductQuantity>>> response = productService.consumeProducts(
+                List.of(new ProductQuantity("b-product", 2), new ProductQuantity("a-product", 1), new ProductQuantity("b-product", 3)), "placement-1");
+
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        verify(productReservations).record("placement-1", Map.of("a-product", 1, "b-product", 5));
+    }
+
+    @Test
+    void consumeProducts_WhenALineIsOutOfStock_ShouldForgetThePlacement() {
+        productDetails.setProductQuantity(0);
+        when(productReservations.find("placement-1")).thenReturn(Optional.empty());
+        when(productRepo.consumeProductQuantity("a-product", 3)).thenReturn(1);
+        when(productRepo.consumeProductQuantity(TEST_PRODUCT, 1)).thenReturn(0);
+        when(productRepo.findByProductName(TEST_PRODUCT)).thenReturn(productDetails);
+
+        ResponseEntity<UserProductsResponse<List<ProductQuantity>>> response =
+                productService.consumeProducts(List.of(new ProductQuantity("a-product", 3), new ProductQuantity(TEST_PRODUCT, 1)), "placement-1");
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
+        verify(productRepo).addProductQuantity("a-product", 3);
+        verify(productReservations).forget("placement-1");
+    }
+
+    @Test
+    void consumeProducts_WhenAQuantityIsNotPositive_ShouldRejectTheCart() {
+        ResponseEntity<UserProductsResponse<List<ProductQuantity>>> response =
+                productService.consumeProducts(List.of(new ProductQuantity(TEST_PRODUCT, 0)), null);
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
+        verify(productRepo, never()).consumeProductQuantity(anyString(), anyInt());
+    }
+}
@@ -0,0 +1,145 @@
+package com.pcProject.ecomProducts.service;
+
+import com.pcProject.ecomProducts.model.ProductDetails;
+import com.pcProject.ecomProducts.model.ProductReservation;
+import com.pcProject.ecomProducts.repository.ProductDetailsRepo;
+import com.pcProject.ecomProducts.repository.ProductReservationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Placements released by ecomOrderService after a consume call it got no answer for, against the real tables
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ProductReservations.class)
+// The tests write the hot reservations themselves
+@TestPropertySource(properties = "ecom.products.reservations.hot-flush-interval-ms=3600000")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductReservationsTest {
+
+    private static final String TEST_PRODUCT = "reserved-product";
+
+    @Autowired
+    private ProductReservations productReservations;
+    @Autowired
+    private ProductReservationRepository reservationRepo;
+    @Autowired
+    private ProductDetailsRepo productRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private HotProductReservations hotProductReservations;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        productRepo.save(new ProductDetails(0, TEST_PRODUCT, 100, 5));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        reservationRepo.deleteAll();
+        productRepo.deleteAll();
+    }
+
+    @Test
+    void release_WhenThePlacementTookStock_ShouldReturnItOnce() {
+        transactionTemplate.executeWithoutResult(status -> {
+            productReservations.record("placement-1", Map.of(TEST_PRODUCT, 2));
+            productRepo.consumeProductQuantity(TEST_PRODUCT, 2);
+        });
+        assertEquals(3, productRepo.findByProductName(TEST_PRODUCT).getProductQuantity());
+
+        // Delivered twice, the second one finds the reservation released
+        transactionTemplate.executeWithoutResult(status -> productReservations.release("placement-1"));
+        transactionTemplate.executeWithoutResult(status -> productReservations.release("placement-1"));
+
+        assertEquals(5, productRepo.findByProductName(TEST_PRODUCT).getProductQuantity());
+        assertTrue(reservationRepo.findById("placement-1").orElseThrow().isReleased());
+    }
+
+    @Test
+    void release_WhenTheConsumeCallArrivesAfterIt_ShouldMakeItRollBack() {
+        transactionTemplate.executeWithoutResult(status -> productReservations.release("placement-2"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            productReservations.record("placement-2", Map.of(TEST_PRODUCT, 1));
+            productRepo.consumeProductQuantity(TEST_PRODUCT, 1);
+        }));
+
+        assertEquals(5, productRepo.findByProductName(TEST_PRODUCT).getProductQuantity());
+        ProductReservation reservation = reservationRepo.findById("placement-2").orElseThrow();
+        assertTrue(reservation.isReleased());
+        assertTrue(reservation.getQuantities().isEmpty());
+    }
+
+    @Test
+    void forget_WhenThePlacementWasRefused_ShouldLeaveNothingToRelease() {
+        transactionTemplate.executeWithoutResult(status -> {
+            productReservations.record("placement-3", Map.of(TEST_PRODUCT, 1));
+            productReservations.forget("placement-3");
+        });
+
+        assertTrue(productReservations.find("placement-3").isEmpty());
+    }
+
+    @Test
+    void recordHot_ShouldBeFoundBeforeAndAfterTheBatchIsWritten() {
+        assertTrue(productReservations.recordHot("hot-placement", Map.of(TEST_PRODUCT, 1)));
+        assertFalse(productReservations.recordHot("hot-placement", Map.of(TEST_PRODUCT, 1)));
+        assertFalse(reservationRepo.existsById("hot-placement"));
+        assertFalse(productReservations.find("hot-placement").orElseThrow().isReleased());
+
+        productReservations.flushHotReservations();
+
+        assertEquals(Map.of(TEST_PRODUCT, 1), reservationRepo.findById("hot-placement").orElseThrow().getQuantities());
+        verify(hotProductReservations, never()).giveBack(anyString(), anyInt());
+    }
+
+    @Test
+    void flushHotReservations_WhenThePlacementWasReleasedFirst_ShouldGiveTheUnitsBackToMemory() {
+        productReservations.recordHot("hot-placement", Map.of(TEST_PRODUCT, 2));
+        transactionTemplate.executeWithoutResult(status -> productReservations.release("hot-placement"));
+
+        productReservations.flushHotReservations();
+
+        verify(hotProductReservations).giveBack(TEST_PRODUCT, 2);
+        assertTrue(reservationRepo.findById("hot-placement").orElseThrow().isReleased());
+        assertEquals(5, productRepo.findByProductName(TEST_PRODUCT).getProductQuantity());
+    }
+
+    @Test
+    void purgeExpired_ShouldDropOnlyTheReservationsOlderThanTheRetention() {
+        reservationRepo.save(new ProductReservation("expired", Map.of(TEST_PRODUCT, 1), false, 0));
+        reservationRepo.save(new ProductReservation("recent", Map.of(TEST_PRODUCT, 1), false, System.currentTimeMillis()));
+
+        productReservations.purgeExpired();
+
+        assertFalse(reservationRepo.existsById("expired"));
+        assertEquals(Map.of(TEST_PRODUCT, 1), reservationRepo.findById("recent").orElseThrow().getQuantities());
+    }
+}
@@ -0,0 +1,147 @@
+package com.pcProject.ecomUsers.kafkaConfiguration;
+
+import com.pcProject.ecomUsers.model.OrderDetailsWrapper;
+import com.pcProject.ecomUsers.model.UserProductsResponse;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Compact binary encoding of the order events exchanged between the services. Field names are replaced by a fixed order:
+//   version, type, then for an OrderDetailsWrapper : orderId, userName, productName, eventId (from version 2)
+//   and for a UserProductsResponse : status, message, hasData, [OrderDetailsWrapper fields]
+// Numbers are zigzag varints, strings are a varint (length + 1) followed by UTF-8 bytes with 0 meaning null.
+// Changing the layout needs a new VERSION, JSON records never start with a byte below a space. Older versions are
+// still read, so consumers are deployed before the producers writing a new one.
+public final class OrderEventCodec {
+
+    public static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_EVENT_ID = 1;
+
+    private static final byte ORDER_DETAILS = 1;
+    private static final byte USER_PRODUCTS_RESPONSE = 2;
+
+    private OrderEventCodec() {
+    }
+
+    public static boolean supports(Object event) {
+        return event instanceof OrderDetailsWrapper
+                || event instanceof UserProductsResponse<?> response
+                    && (response.getData() == null || response.getData() instanceof OrderDetailsWrapper);
+    }
+
+    // JSON starts with a printable character or whitespace, binary records start with their version
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] > 0 && data[0] < ' '
+                && data[0] != '\t' && data[0] != '\n' && data[0] != '\r';
+    }
+
+    public static byte[] encode(Object event) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(VERSION);
+        if (event instanceof OrderDetailsWrapper orderDetails) {
+            out.write(ORDER_DETAILS);
+            writeOrderDetails(out, orderDetails);
+        } else if (supports(event)) {
+            UserProductsResponse<?> response = (UserProductsResponse<?>) event;
+            out.write(USER_PRODUCTS_RESPONSE);
+            writeInt(out, response.getStatus());
+            writeString(out, response.getMessage());
+            out.write(response.getData() == null ? 0 : 1);
+            if (response.getData() != null)
+                writeOrderDetails(out, (OrderDetailsWrapper) response.getData());
+        } else {
+            throw new SerializationException("Can't encode " + (event == null ? null : event.getClass().getName()) + " as an order event");
+        }
+        return out.toByteArray();
+    }
+
+    public static Object decode(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            byte version = in.get();
+            if (version != VERSION && version != VERSION_WITHOUT_EVENT_ID)
+                throw new SerializationException("Unsupported order event version " + version);
+
+            byte type = in.get();
+            if (type == ORDER_DETAILS)
+                return readOrderDetails(in, version);
+            if (type == USER_PRODUCTS_RESPONSE) {
+                UserProductsResponse<OrderDetailsWrapper> response = new UserProductsResponse<>();
+                response.setStatus(readInt(in));
+                response.setMessage(readString(in));
+                if (in.get() != 0)
+                    response.setData(readOrderDetails(in, version));
+                return response;
+            }
+            throw new SerializationException("Unknown order event type " + type);
+        } catch (BufferUnderflowException e) {
+            throw new SerializationException("Truncated order event", e);
+        }
+    }
+
+    private static void writeOrderDetails(ByteArrayOutputStream out, OrderDetailsWrapper orderDetails) {
+        writeInt(out, orderDetails.getOrderId());
+        writeString(out, orderDetails.getUserName());
+        writeString(out, orderDetails.getProductName());
+        writeString(out, orderDetails.getEventId());
+    }
+
+    private static OrderDetailsWrapper readOrderDetails(ByteBuffer in, byte version) {
+        OrderDetailsWrapper orderDetails = new OrderDetailsWrapper(readInt(in), readString(in), readString(in));
+        if (version != VERSION_WITHOUT_EVENT_ID)
+            orderDetails.setEventId(readString(in));
+        return orderDetails;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static int readInt(ByteBuffer in) {
+        int zigzag = readVarInt(in);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in) - 1;
+        if (length < 0)
+            return null;
+        if (length > in.remaining())
+            throw new BufferUnderflowException();
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte current = in.get();
+            value |= (current & 0x7F) << shift;
+            if ((current & 0x80) == 0)
+                return value;
+        }
+        throw new SerializationException("Malformed varint in order event");
+    }
+}
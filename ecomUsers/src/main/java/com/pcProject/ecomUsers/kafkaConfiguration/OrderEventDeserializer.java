@@ -0,0 +1,40 @@
+package com.pcProject.ecomUsers.kafkaConfiguration;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+// Reads both wire formats, so consumers keep working while the producers are switched from JSON to binary
+public class OrderEventDeserializer<T> implements Deserializer<T> {
+
+    private final Class<?> eventType;
+    private final Deserializer<T> jsonDeserializer;
+
+    public OrderEventDeserializer(Class<?> eventType, Deserializer<T> jsonDeserializer) {
+        this.eventType = eventType;
+        this.jsonDeserializer = jsonDeserializer;
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        return OrderEventCodec.isBinary(data) ? decode(data) : jsonDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        return OrderEventCodec.isBinary(data) ? decode(data) : jsonDeserializer.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T decode(byte[] data) {
+        Object event = OrderEventCodec.decode(data);
+        if (!eventType.isInstance(event))
+            throw new SerializationException("Expected " + eventType.getSimpleName() + " but received " + event.getClass().getSimpleName());
+        return (T) event;
+    }
+}
@@ -0,0 +1,33 @@
+package com.pcProject.ecomUsers.kafkaConfiguration;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+// Writes order events with OrderEventCodec, any other payload is still written as JSON
+public class OrderEventSerializer implements Serializer<Object> {
+
+    private final Serializer<Object> jsonSerializer;
+
+    public OrderEventSerializer(Serializer<Object> jsonSerializer) {
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (data == null)
+            return null;
+        return OrderEventCodec.supports(data) ? OrderEventCodec.encode(data) : jsonSerializer.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null)
+            return null;
+        return OrderEventCodec.supports(data) ? OrderEventCodec.encode(data) : jsonSerializer.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
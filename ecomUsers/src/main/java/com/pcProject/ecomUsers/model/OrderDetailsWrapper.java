@@ -11,4 +11,10 @@ public class OrderDetailsWrapper {
     private int orderId;
     private String userName;
     private String productName;
+    // Unique per event and kept by the events derived from it, consumers use it to skip redelivered records
+    private String eventId;
+
+    public OrderDetailsWrapper(int orderId, String userName, String productName) {
+        this(orderId, userName, productName, null);
+    }
 }
@@ -0,0 +1,44 @@
+package com.pcProject.ecomUsers.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+// An event a Kafka listener has applied, written in the same transaction as the changes it made
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "processed_event", indexes = @Index(name = "idx_processed_event_processed_at", columnList = "processedAt"))
+public class ProcessedEvent implements Persistable<String> {
+    @Id
+    @Column(length = 36)
+    private String eventId;
+    private long processedAt;
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean stored;
+
+    public ProcessedEvent(String eventId, long processedAt) {
+        this.eventId = eventId;
+        this.processedAt = processedAt;
+    }
+
+    @Override
+    public String getId() {
+        return eventId;
+    }
+
+    // New ones are persisted without a lookup first, loaded ones can still be deleted
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+}
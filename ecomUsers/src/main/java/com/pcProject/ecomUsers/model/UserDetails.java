@@ -5,7 +5,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Entity
@@ -15,7 +14,8 @@ import java.util.List;
 @Data
 public class UserDetails {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_details_seq")
+    @SequenceGenerator(name = "user_details_seq", sequenceName = "user_details_seq", allocationSize = 50)
     private int userId;
     @Column(unique = true)
     private String userName;
@@ -23,6 +23,4 @@ public class UserDetails {
     private List<String> userRoles;
     private String userEmail;
     private long userMobileNumber;
-    @ElementCollection
-    private List<String> userProductNames = new ArrayList<>();
 }
\ No newline at end of file
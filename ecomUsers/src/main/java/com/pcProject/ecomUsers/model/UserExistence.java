@@ -0,0 +1,14 @@
+package com.pcProject.ecomUsers.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// User lifecycle event, userExists is false once the User profile was deleted
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserExistence {
+    private String userName;
+    private boolean userExists;
+}
@@ -0,0 +1,23 @@
+package com.pcProject.ecomUsers.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One row per (user, product) pair, ordering the same product again only increments productQuantity
+@Entity
+@Table(name = "user_product_details",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_product", columnNames = {"userName", "productName"}))
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class UserProductDetails {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_product_details_seq")
+    @SequenceGenerator(name = "user_product_details_seq", sequenceName = "user_product_details_seq", allocationSize = 50)
+    private int userProductId;
+    private String userName;
+    private String productName;
+    private int productQuantity;
+}
@@ -0,0 +1,23 @@
+package com.pcProject.ecomUsers.repository;
+
+import com.pcProject.ecomUsers.model.ProcessedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent,String> {
+
+    @Query(value = "Select p.eventId from ProcessedEvent p where p.eventId in :eventIds")
+    List<String> findProcessedEventIds(Collection<String> eventIds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Delete from ProcessedEvent where processedAt < :processedAt")
+    int deleteAllProcessedBefore(long processedAt);
+}
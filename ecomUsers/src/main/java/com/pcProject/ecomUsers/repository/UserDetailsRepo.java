@@ -1,8 +1,10 @@
 package com.pcProject.ecomUsers.repository;
 
 import com.pcProject.ecomUsers.model.UserDetails;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -11,6 +13,11 @@ import org.springframework.stereotype.Repository;
 public interface UserDetailsRepo extends JpaRepository<UserDetails,String> {
     UserDetails findByUserName(String userName);
 
+    // Locks the User row so concurrent updates of the same User's product list don't overwrite each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "Select u from UserDetails u where u.userName = :userName")
+    UserDetails findByUserNameForUpdate(String userName);
+
     @Modifying
     @Transactional
     @Query(value = "Delete from UserDetails where userName =:userName")
@@ -0,0 +1,36 @@
+package com.pcProject.ecomUsers.repository;
+
+import com.pcProject.ecomUsers.model.UserProductDetails;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserProductDetailsRepo extends JpaRepository<UserProductDetails,Integer> {
+    List<UserProductDetails> findAllByUserNameOrderByUserProductId(String userName);
+    boolean existsByUserNameAndProductName(String userName, String productName);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Update UserProductDetails set productQuantity = productQuantity + :quantity where userName = :userName and productName = :productName")
+    int addProductQuantity(String userName, String productName, int quantity);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Update UserProductDetails set productQuantity = productQuantity - :quantity where userName = :userName and productName = :productName and productQuantity > :quantity")
+    int decrementProductQuantity(String userName, String productName, int quantity);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Delete from UserProductDetails where userName = :userName and productName = :productName and productQuantity <= :quantity")
+    int deleteLastProductQuantity(String userName, String productName, int quantity);
+
+    @Modifying
+    @Transactional
+    @Query(value = "Delete from UserProductDetails where userName = :userName")
+    void deleteAllByUserName(String userName);
+}
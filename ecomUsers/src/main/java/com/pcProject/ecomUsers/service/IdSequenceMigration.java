@@ -0,0 +1,61 @@
+package com.pcProject.ecomUsers.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// user_details ids used to come from an IDENTITY column. ddl-auto=update creates the new id sequences starting at 1,
+// below the ids already stored, so the sequences are moved past them once at startup before anything inserts a row.
+// It is only ever moved forward, safe to repeat and to run from several replicas at once.
+@Slf4j
+@Component
+public class IdSequenceMigration {
+
+    // allocationSize of the entities' @SequenceGenerator, Hibernate hands out a whole block below each value it reads
+    static final int ALLOCATION_SIZE = 50;
+    // Sequence -> {table, id column}
+    static final Map<String, String[]> SEQUENCES = Map.of(
+            "user_details_seq", new String[]{"user_details", "user_id"},
+            "user_product_details_seq", new String[]{"user_product_details", "user_product_id"});
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public IdSequenceMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void seedSequences() {
+        boolean mysql = isMySql();
+        SEQUENCES.forEach((sequence, idColumn) -> seed(sequence, idColumn[0], idColumn[1], mysql));
+    }
+
+    private void seed(String sequence, String table, String idColumn, boolean mysql) {
+        Long maxId = jdbcTemplate.queryForObject("Select coalesce(max(" + idColumn + "), 0) from " + table, Long.class);
+        // The first block read from the sequence starts above every stored id
+        long nextValue = (maxId == null ? 0 : maxId) + ALLOCATION_SIZE + 1;
+        if (mysql) {
+            // MySQL has no sequences, Hibernate keeps the next value in a one row table
+            if (jdbcTemplate.update("Update " + sequence + " set next_val = ? where next_val < ?", nextValue, nextValue) > 0)
+                log.info("Moved {} to {}, past the ids of {}", sequence, nextValue, table);
+            return;
+        }
+        Long currentValue = jdbcTemplate.queryForObject("Select base_value from information_schema.sequences where lower(sequence_name) = ?",
+                Long.class, sequence);
+        if (currentValue != null && currentValue < nextValue) {
+            jdbcTemplate.execute("Alter sequence " + sequence + " restart with " + nextValue);
+            log.info("Moved {} to {}, past the ids of {}", sequence, nextValue, table);
+        }
+    }
+
+    private boolean isMySql() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return product != null && product.toLowerCase().contains("mysql");
+    }
+}
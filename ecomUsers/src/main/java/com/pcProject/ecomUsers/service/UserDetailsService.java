@@ -1,12 +1,13 @@
 package com.pcProject.ecomUsers.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pcProject.ecomUsers.model.OrderDetailsWrapper;
 import com.pcProject.ecomUsers.model.UserDetails;
+import com.pcProject.ecomUsers.model.UserExistence;
+import com.pcProject.ecomUsers.model.UserProductDetails;
 import com.pcProject.ecomUsers.model.UserProducts;
 import com.pcProject.ecomUsers.model.UserProductsResponse;
 import com.pcProject.ecomUsers.repository.UserDetailsRepo;
+import com.pcProject.ecomUsers.repository.UserProductDetailsRepo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -18,19 +19,28 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Slf4j
 @Service
 public class UserDetailsService {
 
+    public static final String USER_CHANGED_TOPIC = "ecomUsers_userChanged";
+
     @Autowired
     private UserDetailsRepo userRepo;
-    private ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private UserProductDetailsRepo userProductRepo;
 
     @Autowired
     private KafkaTemplate<String,Object> kafkaTemplate;
 
+    @Autowired
+    private ProcessedEventStore processedEventStore;
+
     //Exposed to OrderService
     // To get all Products of a user
     public ResponseEntity<UserProductsResponse<List<String>>> getAllUserProducts(String userName) {
@@ -45,38 +55,54 @@ public class UserDetailsService {
         }
         response.setMessage("Success");
         response.setStatus(HttpStatus.OK.value());
-        response.setData(existingUser.getUserProductNames());
+        response.setData(getUserProductNames(userName));
         return new ResponseEntity<>(response,HttpStatus.OK);
     }
 
+    // Records arrive in batches, all orders of a User are applied under one row lock and one transaction
     @Transactional
-    @KafkaListener(topics = "ecomOrderService_addUserProduct")
-    public void kafkaConsumer_AddUserProduct(String userProduct) throws JsonProcessingException, InterruptedException {
-        log.info("Received ecomOrderService addUserProduct request : {}",userProduct);
-//        Thread.sleep(600);
-        OrderDetailsWrapper userProducts = objectMapper.readValue(userProduct,OrderDetailsWrapper.class);
-        UserDetails user =  userRepo.findByUserName(userProducts.getUserName());
-
-        log.info("Adding the details to the userList");
-        // Add the product details in userList
-        List<String> orderedProduct = user.getUserProductNames();
-        orderedProduct.add(userProducts.getProductName());
-        user.setUserProductNames(orderedProduct);
-        userRepo.save(user);
-        log.info("Added the {} to userList for {} user",userProducts.getProductName(),userProducts.getUserName());
-
-        UserProductsResponse<OrderDetailsWrapper> userProductsResponse = new UserProductsResponse<>();
-        userProductsResponse.setData(userProducts);
-        userProductsResponse.setMessage("Successfully Added "+userProducts.getUserName()+" details");
-        userProductsResponse.setStatus(HttpStatus.OK.value());
-
-        log.info("Sending the message to ecomOrderService for placing an Order {}", userProductsResponse);
-        kafkaTemplate.send("ecomUserService_addUserProduct" , userProductsResponse);
+    @KafkaListener(topics = "ecomOrderService_addUserProduct", containerFactory = "batchKafkaListenerContainerFactory")
+    public void kafkaConsumer_AddUserProduct(List<OrderDetailsWrapper> userProducts) {
+        log.info("Received {} ecomOrderService addUserProduct requests",userProducts.size());
+        List<UserProductsResponse<OrderDetailsWrapper>> placedOrders = new ArrayList<>();
+        // A redelivered order was added and confirmed already
+        List<OrderDetailsWrapper> newOrders = processedEventStore.claim(userProducts, OrderDetailsWrapper::getEventId);
+
+        // Users are locked in name order, so two batches with the same Users can't deadlock
+        groupByUserName(newOrders).forEach((userName, orders) -> {
+            UserDetails user =  userRepo.findByUserNameForUpdate(userName);
+            if(user == null){
+                log.error("Could not find the User {} to add {} products",userName,orders.size());
+                return;
+            }
+
+            // Add the product details in userList
+            countByProductName(orders).forEach((productName, quantity) -> addUserProductQuantity(userName, productName, quantity));
+            log.info("Added {} products to userList for {} user",orders.size(),userName);
+
+            for(OrderDetailsWrapper order : orders){
+                UserProductsResponse<OrderDetailsWrapper> userProductsResponse = new UserProductsResponse<>();
+                userProductsResponse.setData(order);
+                userProductsResponse.setMessage("Successfully Added "+order.getUserName()+" details");
+                userProductsResponse.setStatus(HttpStatus.OK.value());
+                placedOrders.add(userProductsResponse);
+            }
+        });
+
+        if(placedOrders.isEmpty())
+            return;
+        log.info("Sending {} messages to ecomOrderService for placing Orders", placedOrders.size());
+        // Keyed by User, the confirmations of a User reach ecomOrderService in the order they were applied
+        for(UserProductsResponse<OrderDetailsWrapper> placedOrder : placedOrders)
+            kafkaTemplate.send("ecomUserService_addUserProduct", placedOrder.getData().getUserName(), placedOrder);
+        // Push the whole batch out as one producer request instead of waiting for linger.ms
+        kafkaTemplate.flush();
     }
 
     //Exposed to OrderService where we are already doing userName and productName validation
+    @Transactional
     public ResponseEntity<UserProductsResponse<UserProducts>> addUserProduct(String userName, String productName){
-        UserDetails user =  userRepo.findByUserName(userName);
+        UserDetails user =  userRepo.findByUserNameForUpdate(userName);
         UserProductsResponse<UserProducts> response = new UserProductsResponse<>();
         UserProducts userProducts = new UserProducts(userName,productName);
 
@@ -89,10 +115,7 @@ public class UserDetailsService {
 
         // Need to add productName validation to make this method independent
 
-        List<String> orderedProduct = user.getUserProductNames();
-        orderedProduct.add(productName);
-        user.setUserProductNames(orderedProduct);
-        userRepo.save(user);
+        addUserProductQuantity(userName, productName, 1);
 
         response.setData(userProducts);
         response.setStatus(HttpStatus.OK.value());
@@ -103,23 +126,20 @@ public class UserDetailsService {
 
 
     @Transactional
-    @KafkaListener(topics="ecomOrderService_removeUserProduct")
-    public void kafkaConsumer_removeUserProduct(String orderDetails) throws JsonProcessingException {
-        log.info("Received ecomOrderService remove UserProduct request : {}",orderDetails);
-
-        OrderDetailsWrapper orderDetailsWrapper = objectMapper.readValue(orderDetails, OrderDetailsWrapper.class);
-        UserDetails userDetails = userRepo.findByUserName(orderDetailsWrapper.getUserName());
-        List<String> userProducts = userDetails.getUserProductNames();
-        log.info("Fetched User Details : {} -> {}",userDetails.getUserName(),userProducts);
-
-        userProducts.remove(orderDetailsWrapper.getProductName());
-        userDetails.setUserProductNames(userProducts);
-        userRepo.save(userDetails);
-        log.info("Saved the updated list successfully : {}",userDetails.getUserProductNames());
-
+    @KafkaListener(topics="ecomOrderService_removeUserProduct", containerFactory = "batchKafkaListenerContainerFactory")
+    public void kafkaConsumer_removeUserProduct(List<OrderDetailsWrapper> orderDetails) {
+        log.info("Received {} ecomOrderService remove UserProduct requests",orderDetails.size());
+
+        groupByUserName(processedEventStore.claim(orderDetails, OrderDetailsWrapper::getEventId)).forEach((userName, orders) ->
+            countByProductName(orders).forEach((productName, quantity) -> {
+                if(removeUserProductQuantity(userName, productName, quantity))
+                    log.info("Removed {} x {} from the userList of {}",quantity,productName,userName);
+                else
+                    log.info("Could not find {} x {} in the userList of {}",quantity,productName,userName);
+            }));
     }
 
-    //Exposed to OrderService
+    //Exposed to OrderService, which may remove several products of the same user concurrently
     public ResponseEntity<UserProductsResponse<UserProducts>> removeUserProduct(String userName, String productName) {
         UserDetails user =  userRepo.findByUserName(userName);
         UserProductsResponse<UserProducts> response = new UserProductsResponse<>();
@@ -139,18 +159,13 @@ public class UserDetailsService {
 
         // Need to add productName valiadation using ProductService
 
-        List<String> orderedProduct = user.getUserProductNames();
-
-        // Validate if Product exists in Order List
-        if(!orderedProduct.contains(productName)){
+        // Validate if Product exists in Order List while removing it
+        if(!removeUserProductQuantity(userName, productName, 1)){
             response.setData(null);
             response.setStatus(HttpStatus.BAD_REQUEST.value());
             response.setMessage("Could not find the Product in Order List");
             return new ResponseEntity<>(response, HttpStatus.OK);
         }
-        orderedProduct.remove(productName);
-        user.setUserProductNames(orderedProduct);
-        userRepo.save(user);
 
         return new ResponseEntity<>(response,HttpStatus.OK);
     }
@@ -166,7 +181,7 @@ public class UserDetailsService {
             response.setMessage("Could not find the User with given name");
             return new ResponseEntity<>(response, HttpStatus.OK);
         }
-        else if(!user.getUserProductNames().contains(productName)){
+        else if(!userProductRepo.existsByUserNameAndProductName(userName, productName)){
             response.setData(null);
             response.setStatus(HttpStatus.BAD_REQUEST.value());
             response.setMessage("Could not find the Product in User Order list");
@@ -181,7 +196,6 @@ public class UserDetailsService {
     // Exposed to OrderService
     public ResponseEntity<UserProductsResponse<UserProducts>> validateUser(String userName) {
         UserDetails existingUser = userRepo.findByUserName(userName);
-        ObjectMapper objectMapper = new ObjectMapper();
         UserProductsResponse<UserProducts> response = new UserProductsResponse<>();
 
         if(existingUser == null){
@@ -207,6 +221,7 @@ public class UserDetailsService {
     public Object addUserProfile(UserDetails user){
         user.setUserPassword(new BCryptPasswordEncoder().encode(user.getUserPassword()));
         userRepo.save(user);
+        publishUserExistence(user.getUserName(), true);
         return new ResponseEntity<>(user,HttpStatus.CREATED);
     }
 
@@ -227,7 +242,9 @@ public class UserDetailsService {
         if(existingUser == null)
             return new ResponseEntity<>("Could not find the User with given name",HttpStatus.BAD_REQUEST);
 
+        userProductRepo.deleteAllByUserName(userName);
         userRepo.deleteByUserName(userName);
+        publishUserExistence(userName, false);
         return new ResponseEntity<>("User Profile deleted successfully", HttpStatus.OK);
     }
 
@@ -235,5 +252,49 @@ public class UserDetailsService {
         return userRepo.findAll();
     }
 
+    // ecomOrderService caches whether a User exists, every replica updates its entry from this event
+    private void publishUserExistence(String userName, boolean userExists){
+        log.info("Publishing the existence of {} : {}", userName, userExists);
+        kafkaTemplate.send(USER_CHANGED_TOPIC, userName, new UserExistence(userName, userExists));
+    }
+
+    // Every order of a Product appears once in the list, as it did before the products were normalized
+    private List<String> getUserProductNames(String userName){
+        List<String> userProductNames = new ArrayList<>();
+        for(UserProductDetails userProduct : userProductRepo.findAllByUserNameOrderByUserProductId(userName))
+            for(int i = 0; i < userProduct.getProductQuantity(); i++)
+                userProductNames.add(userProduct.getProductName());
+        return userProductNames;
+    }
+
+    // Callers hold the User row lock, so two first orders of a Product can't both insert a row
+    private void addUserProductQuantity(String userName, String productName, int quantity){
+        if(userProductRepo.addProductQuantity(userName, productName, quantity) == 0)
+            userProductRepo.save(new UserProductDetails(0, userName, productName, quantity));
+    }
 
+    // Removes quantity orders of the Product, false if the User never ordered it
+    private boolean removeUserProductQuantity(String userName, String productName, int quantity){
+        return userProductRepo.decrementProductQuantity(userName, productName, quantity) == 1
+                || userProductRepo.deleteLastProductQuantity(userName, productName, quantity) == 1;
+    }
+
+    // Records that failed deserialization arrive as null, they are logged and skipped so they don't block the rest of the batch
+    private Map<String, List<OrderDetailsWrapper>> groupByUserName(List<OrderDetailsWrapper> orders){
+        Map<String, List<OrderDetailsWrapper>> ordersByUser = new TreeMap<>();
+        for(OrderDetailsWrapper order : orders){
+            if(order == null || order.getUserName() == null)
+                log.error("Skipping record without a User : {}",order);
+            else
+                ordersByUser.computeIfAbsent(order.getUserName(), userName -> new ArrayList<>()).add(order);
+        }
+        return ordersByUser;
+    }
+
+    private Map<String, Integer> countByProductName(List<OrderDetailsWrapper> orders){
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for(OrderDetailsWrapper order : orders)
+            quantities.merge(order.getProductName(), 1, Integer::sum);
+        return quantities;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.pcProject.ecomUsers.service;
+
+import com.pcProject.ecomUsers.model.UserProductDetails;
+import com.pcProject.ecomUsers.repository.UserProductDetailsRepo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// A User's Products used to be an element collection of names in user_details_user_product_names, one row per unit.
+// ddl-auto=update leaves that table in place, so its rows are copied once into user_product_details at startup, before
+// the Kafka listeners run, one row per (User, Product) with the number of units as its quantity. The copied rows are
+// locked when read and deleted in the same transaction : a replica starting at the same time waits on the lock and
+// then finds nothing left to copy, so no units are counted twice. The empty table can then be dropped by hand.
+@Slf4j
+@Component
+public class UserProductMigration {
+
+    static final String LEGACY_TABLE = "user_details_user_product_names";
+
+    // A grouped select can't lock its rows, the units are counted here instead
+    private static final String SELECT_LEGACY_UNITS_FOR_UPDATE = "Select u.user_name, p.user_product_names" +
+            " from " + LEGACY_TABLE + " p join user_details u on u.user_id = p.user_details_user_id for update";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserProductDetailsRepo userProductRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    // IdSequenceMigration is only taken so user_product_details_seq is past the stored ids before the copied rows use it
+    @Autowired
+    public UserProductMigration(JdbcTemplate jdbcTemplate,
+                                UserProductDetailsRepo userProductRepo,
+                                PlatformTransactionManager transactionManager,
+                                IdSequenceMigration idSequenceMigration) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userProductRepo = userProductRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrateLegacyUserProducts() {
+        if (legacyRowCount() == 0)
+            return;
+        Integer migrated = transactionTemplate.execute(status -> copyLegacyRows());
+        log.info("Migrated {} User Products from {} into user_product_details", migrated, LEGACY_TABLE);
+    }
+
+    // 0 as well when the table was never created or has been dropped
+    private int legacyRowCount() {
+        try {
+            Integer rows = jdbcTemplate.queryForObject("Select count(*) from " + LEGACY_TABLE, Integer.class);
+            return rows == null ? 0 : rows;
+        } catch (DataAccessException e) {
+            return 0;
+        }
+    }
+
+    // Rows added since the new table went live are kept, the old units are added to them
+    private int copyLegacyRows() {
+        Map<List<String>, Integer> legacyQuantities = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_LEGACY_UNITS_FOR_UPDATE,
+                (RowCallbackHandler) row -> legacyQuantities.merge(List.of(row.getString(1), row.getString(2)), 1, Integer::sum));
+        List<UserProductDetails> newRows = new ArrayList<>();
+        legacyQuantities.forEach((userProduct, quantity) -> {
+            String userName = userProduct.get(0);
+            String productName = userProduct.get(1);
+            if (userProductRepo.addProductQuantity(userName, productName, quantity) == 0)
+                newRows.add(new UserProductDetails(0, userName, productName, quantity));
+        });
+        userProductRepo.saveAll(newRows);
+        // Units of Users deleted meanwhile have no row to join and are dropped with the rest
+        jdbcTemplate.update("Delete from " + LEGACY_TABLE);
+        return legacyQuantities.size();
+    }
+}
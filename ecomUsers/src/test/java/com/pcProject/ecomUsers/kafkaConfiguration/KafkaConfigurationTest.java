@@ -0,0 +1,124 @@
+package com.pcProject.ecomUsers.kafkaConfiguration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pcProject.ecomUsers.model.OrderDetailsWrapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.mock.MockConsumerFactory;
+import org.springframework.kafka.support.TopicPartitionOffset;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaConfigurationTest {
+
+    private static final String TOPIC = "ecomOrderService_addUserProduct";
+
+    private KafkaConfiguration kafkaConfiguration;
+    private MockEnvironment environment;
+
+    @BeforeEach
+    void setUp() {
+        kafkaConfiguration = new KafkaConfiguration();
+        environment = new MockEnvironment();
+        ReflectionTestUtils.setField(kafkaConfiguration, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(kafkaConfiguration, "environment", environment);
+        ReflectionTestUtils.setField(kafkaConfiguration, "listenerConcurrency", 3);
+        ReflectionTestUtils.setField(kafkaConfiguration, "topicPartitions", 6);
+    }
+
+    @Test
+    void consumerFactory_ShouldReadJsonWrittenByAnotherServiceOnce() {
+        Deserializer<OrderDetailsWrapper> valueDeserializer =
+                ((DefaultKafkaConsumerFactory<String, OrderDetailsWrapper>) kafkaConfiguration.consumerFactory()).getValueDeserializer();
+
+        // The producer's type header names its own class, which doesn't exist in this service
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("__TypeId__", "com.pcProject.ecomOrderService.model.OrderDetailsWrapper".getBytes(StandardCharsets.UTF_8));
+        byte[] json = "{\"orderId\":7,\"userName\":\"test-userName\",\"productName\":\"test-productName\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new OrderDetailsWrapper(7, "test-userName", "test-productName"), valueDeserializer.deserialize(TOPIC, headers, json));
+    }
+
+    @Test
+    void consumerFactory_WhenRecordIsBinary_ShouldDecodeIt() {
+        Deserializer<OrderDetailsWrapper> valueDeserializer =
+                ((DefaultKafkaConsumerFactory<String, OrderDetailsWrapper>) kafkaConfiguration.consumerFactory()).getValueDeserializer();
+        OrderDetailsWrapper orderDetails = new OrderDetailsWrapper(7, "test-userName", "test-productName");
+
+        assertEquals(orderDetails, valueDeserializer.deserialize(TOPIC, new RecordHeaders(), OrderEventCodec.encode(orderDetails)));
+    }
+
+    @Test
+    void consumerFactory_WhenRecordIsMalformed_ShouldReturnNullAndRecordTheFailure() {
+        Deserializer<OrderDetailsWrapper> valueDeserializer =
+                ((DefaultKafkaConsumerFactory<String, OrderDetailsWrapper>) kafkaConfiguration.consumerFactory()).getValueDeserializer();
+
+        RecordHeaders headers = new RecordHeaders();
+        assertNull(valueDeserializer.deserialize(TOPIC, headers, "{\"orderId\": 7 \"userName\"".getBytes(StandardCharsets.UTF_8)));
+        assertNotNull(headers.lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER));
+    }
+
+    @Test
+    void batchKafkaListenerContainerFactory_ShouldDeliverAPollAsOneBatch() throws InterruptedException {
+        // Stubbed broker, the whole backlog is returned by the first poll
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        MockConsumer<String, OrderDetailsWrapper> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updateBeginningOffsets(Map.of(partition, 0L));
+        consumer.schedulePollTask(() -> {
+            for (int offset = 0; offset < 5; offset++)
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "test-userName", new OrderDetailsWrapper(offset, "test-userName", "product-" + offset)));
+        });
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderDetailsWrapper> factory = kafkaConfiguration.batchKafkaListenerContainerFactory();
+        factory.setConsumerFactory(new MockConsumerFactory<>(() -> consumer));
+        assertTrue(factory.isBatchListener());
+
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch received = new CountDownLatch(1);
+        ConcurrentMessageListenerContainer<String, OrderDetailsWrapper> container = factory.createContainer(new TopicPartitionOffset(TOPIC, 0));
+        container.getContainerProperties().setGroupId("ecomUsersTest");
+        container.getContainerProperties().setMessageListener((BatchMessageListener<String, OrderDetailsWrapper>) records -> {
+            batches.add(records.stream().map(record -> record.value().getProductName()).toList());
+            received.countDown();
+        });
+
+        container.start();
+        try {
+            assertTrue(received.await(10, TimeUnit.SECONDS));
+        } finally {
+            container.stop();
+        }
+
+        assertEquals(1, batches.size());
+        assertEquals(List.of("product-0", "product-1", "product-2", "product-3", "product-4"), batches.get(0));
+    }
+
+    @Test
+    void batchKafkaListenerContainerFactory_ShouldRunTheTopicsConsumerThreadsUpToItsPartitions() {
+        environment.setProperty("ecom.kafka.listener.concurrency." + TOPIC, "8");
+        ConcurrentKafkaListenerContainerFactory<String, OrderDetailsWrapper> factory = kafkaConfiguration.batchKafkaListenerContainerFactory();
+
+        assertEquals(6, factory.createContainer(TOPIC).getConcurrency());
+        assertEquals(3, factory.createContainer("ecomOrderService_removeUserProduct").getConcurrency());
+    }
+}
@@ -0,0 +1,157 @@
+package com.pcProject.ecomUsers.repository;
+
+import com.pcProject.ecomUsers.model.UserProductDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Cost of adding, validating and removing one Product of a User holding 10, 1k and 10k distinct Products. The old
+// element collection is replayed on its own table the way Hibernate used it : the whole list loaded, then deleted and
+// inserted again on every save, validation a contains over the loaded list. Rough figures on the H2 test database
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:userproductbench")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("benchmark")
+class UserProductDetailsBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProductDetailsBenchmarkTest.class);
+    private static final String LEGACY_TABLE = "user_details_user_product_names";
+    private static final int LEGACY_USER_ID = 1;
+    private static final int[] PRODUCTS_PER_USER = {10, 1_000, 10_000};
+    private static final int OPS = 200;
+    // The replay rewrites the whole list per op, fewer ops keep the 10k run short
+    private static final int LEGACY_OPS = 20;
+
+    @Autowired
+    private UserProductDetailsRepo userProductRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jdbcTemplate.execute("Create table " + LEGACY_TABLE + " (user_details_user_id integer not null, user_product_names varchar(255))");
+        jdbcTemplate.execute("Create index idx_legacy_user on " + LEGACY_TABLE + " (user_details_user_id)");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("Drop table if exists " + LEGACY_TABLE);
+        userProductRepo.deleteAllInBatch();
+    }
+
+    @Test
+    void userProducts_Benchmark_RowsAgainstTheWholeList() {
+        warmUp();
+        Map<Integer, long[]> rowNanos = new LinkedHashMap<>();
+        Map<Integer, long[]> listNanos = new LinkedHashMap<>();
+        for (int products : PRODUCTS_PER_USER) {
+            String userName = "user-" + products;
+            List<UserProductDetails> rows = new ArrayList<>(products);
+            for (int i = 0; i < products; i++)
+                rows.add(new UserProductDetails(0, userName, productName(i), 1));
+            userProductRepo.saveAll(rows);
+            List<String> names = rows.stream().map(UserProductDetails::getProductName).toList();
+            insertLegacyList(names);
+
+            // The same Product is added and removed again, the User keeps its size throughout
+            String productName = productName(products / 2);
+            long add = time(OPS, () -> assertEquals(1, userProductRepo.addProductQuantity(userName, productName, 1)));
+            long validate = time(OPS, () -> assertTrue(userProductRepo.existsByUserNameAndProductName(userName, productName)));
+            long remove = time(OPS, () -> assertEquals(1, userProductRepo.decrementProductQuantity(userName, productName, 1)));
+            rowNanos.put(products, new long[]{add, validate, remove});
+
+            long legacyAdd = time(LEGACY_OPS, () -> transactionTemplate.executeWithoutResult(status -> {
+                List<String> list = loadLegacyList();
+                list.add(productName);
+                rewriteLegacyList(list);
+            }));
+            long legacyValidate = time(LEGACY_OPS, () -> assertTrue(loadLegacyList().contains(productName)));
+            long legacyRemove = time(LEGACY_OPS, () -> transactionTemplate.executeWithoutResult(status -> {
+                List<String> list = loadLegacyList();
+                list.remove(productName);
+                rewriteLegacyList(list);
+            }));
+            listNanos.put(products, new long[]{legacyAdd, legacyValidate, legacyRemove});
+
+            log.info("{} Products per User, rows : add {} us, validate {} us, remove {} us | whole list : add {} us, validate {} us, remove {} us",
+                    products, add / 1000, validate / 1000, remove / 1000, legacyAdd / 1000, legacyValidate / 1000, legacyRemove / 1000);
+            jdbcTemplate.update("Delete from " + LEGACY_TABLE);
+        }
+
+        // A row update doesn't grow with the User's Products, a rewrite of the list does
+        int largest = PRODUCTS_PER_USER[PRODUCTS_PER_USER.length - 1];
+        assertTrue(rowNanos.get(largest)[0] < listNanos.get(largest)[0]);
+        assertTrue(rowNanos.get(largest)[1] < listNanos.get(largest)[1]);
+    }
+
+    // The queries are compiled and JIT-ed first so the smallest size isn't measuring that
+    private void warmUp() {
+        userProductRepo.save(new UserProductDetails(0, "warm-up", productName(0), 1));
+        insertLegacyList(List.of(productName(0)));
+        time(2_000, () -> {
+            userProductRepo.addProductQuantity("warm-up", productName(0), 1);
+            userProductRepo.existsByUserNameAndProductName("warm-up", productName(0));
+            userProductRepo.decrementProductQuantity("warm-up", productName(0), 1);
+            transactionTemplate.executeWithoutResult(status -> rewriteLegacyList(loadLegacyList()));
+        });
+        userProductRepo.deleteAllInBatch();
+        jdbcTemplate.update("Delete from " + LEGACY_TABLE);
+    }
+
+    private List<String> loadLegacyList() {
+        return new ArrayList<>(jdbcTemplate.queryForList("Select user_product_names from " + LEGACY_TABLE + " where user_details_user_id = ?",
+                String.class, LEGACY_USER_ID));
+    }
+
+    private void rewriteLegacyList(List<String> names) {
+        jdbcTemplate.update("Delete from " + LEGACY_TABLE + " where user_details_user_id = ?", LEGACY_USER_ID);
+        insertLegacyList(names);
+    }
+
+    private void insertLegacyList(List<String> names) {
+        jdbcTemplate.batchUpdate("Insert into " + LEGACY_TABLE + " (user_details_user_id, user_product_names) values (?, ?)",
+                names, 500, (statement, name) -> {
+                    statement.setInt(1, LEGACY_USER_ID);
+                    statement.setString(2, name);
+                });
+    }
+
+    private static String productName(int i) {
+        return "product-" + i;
+    }
+
+    // Nanoseconds per op
+    private static long time(int ops, Runnable op) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++)
+            op.run();
+        return (System.nanoTime() - start) / ops;
+    }
+}
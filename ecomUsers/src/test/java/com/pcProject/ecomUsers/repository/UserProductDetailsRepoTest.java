@@ -0,0 +1,80 @@
+package com.pcProject.ecomUsers.repository;
+
+import com.pcProject.ecomUsers.model.UserProductDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserProductDetailsRepoTest {
+
+    private static final String TEST_USER = "testUser";
+    private static final String TEST_PRODUCT = "testProduct";
+
+    @Autowired
+    private UserProductDetailsRepo userProductRepo;
+
+    @AfterEach
+    void cleanUp() {
+        userProductRepo.deleteAll();
+    }
+
+    @Test
+    void addProductQuantity_WhenRowExists_ShouldIncrementInPlace() {
+        userProductRepo.save(new UserProductDetails(0, TEST_USER, TEST_PRODUCT, 1));
+
+        assertEquals(1, userProductRepo.addProductQuantity(TEST_USER, TEST_PRODUCT, 1));
+        assertEquals(0, userProductRepo.addProductQuantity(TEST_USER, "otherProduct", 1));
+
+        List<UserProductDetails> userProducts = userProductRepo.findAllByUserNameOrderByUserProductId(TEST_USER);
+        assertEquals(1, userProducts.size());
+        assertEquals(2, userProducts.get(0).getProductQuantity());
+    }
+
+    @Test
+    void decrementAndDeleteLast_ShouldRemoveOneUnitAtATime() {
+        userProductRepo.save(new UserProductDetails(0, TEST_USER, TEST_PRODUCT, 2));
+
+        // Only one of the two statements matches for a given quantity
+        assertEquals(0, userProductRepo.deleteLastProductQuantity(TEST_USER, TEST_PRODUCT, 1));
+        assertEquals(1, userProductRepo.decrementProductQuantity(TEST_USER, TEST_PRODUCT, 1));
+        assertEquals(0, userProductRepo.decrementProductQuantity(TEST_USER, TEST_PRODUCT, 1));
+        assertEquals(1, userProductRepo.deleteLastProductQuantity(TEST_USER, TEST_PRODUCT, 1));
+
+        assertFalse(userProductRepo.existsByUserNameAndProductName(TEST_USER, TEST_PRODUCT));
+    }
+
+    @Test
+    void decrementAndDeleteLast_WhenRemovingSeveralUnits_ShouldApplyThemAtOnce() {
+        userProductRepo.save(new UserProductDetails(0, TEST_USER, TEST_PRODUCT, 5));
+
+        assertEquals(1, userProductRepo.decrementProductQuantity(TEST_USER, TEST_PRODUCT, 3));
+        assertEquals(0, userProductRepo.decrementProductQuantity(TEST_USER, TEST_PRODUCT, 2));
+        assertEquals(1, userProductRepo.deleteLastProductQuantity(TEST_USER, TEST_PRODUCT, 2));
+
+        assertFalse(userProductRepo.existsByUserNameAndProductName(TEST_USER, TEST_PRODUCT));
+    }
+
+    @Test
+    void deleteAllByUserName_ShouldOnlyRemoveThatUsersProducts() {
+        userProductRepo.save(new UserProductDetails(0, TEST_USER, TEST_PRODUCT, 1));
+        userProductRepo.save(new UserProductDetails(0, "otherUser", TEST_PRODUCT, 1));
+
+        userProductRepo.deleteAllByUserName(TEST_USER);
+
+        assertFalse(userProductRepo.existsByUserNameAndProductName(TEST_USER, TEST_PRODUCT));
+        assertTrue(userProductRepo.existsByUserNameAndProductName("otherUser", TEST_PRODUCT));
+    }
+}
@@ -0,0 +1,63 @@
+package com.pcProject.ecomUsers.service;
+
+import com.pcProject.ecomUsers.repository.UserDetailsRepo;
+import com.pcProject.ecomUsers.model.UserDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Users stored with IDENTITY ids before the sequence existed, on a database of its own so no id block is held yet
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:sequencedb")
+@Import(IdSequenceMigration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdSequenceMigrationTest {
+
+    private static final int LEGACY_USERS = 120;
+
+    @Autowired
+    private IdSequenceMigration idSequenceMigration;
+    @Autowired
+    private UserDetailsRepo userRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("Truncate table user_details");
+    }
+
+    @Test
+    void seedSequences_WhenTheTableHasIdentityIds_ShouldInsertPastThem() {
+        for (int userId = 1; userId <= LEGACY_USERS; userId++)
+            jdbcTemplate.update("Insert into user_details (user_id, user_name, user_mobile_number) values (?, ?, 0)", userId, "legacy-user-" + userId);
+
+        idSequenceMigration.seedSequences();
+        // Run again by a second replica, the sequence isn't moved back
+        idSequenceMigration.seedSequences();
+
+        // More than one block, so a second value is read from the sequence
+        List<UserDetails> newUsers = new ArrayList<>();
+        for (int i = 0; i < 2 * IdSequenceMigration.ALLOCATION_SIZE; i++)
+            newUsers.add(new UserDetails(0, "new-user-" + i, "password", List.of("USER"), "new@test.com", 0));
+        userRepo.saveAll(newUsers);
+
+        assertEquals(LEGACY_USERS + newUsers.size(), userRepo.count());
+        assertTrue(newUsers.stream().allMatch(user -> user.getUserId() > LEGACY_USERS));
+    }
+}
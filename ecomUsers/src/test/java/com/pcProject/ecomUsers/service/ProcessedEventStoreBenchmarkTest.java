@@ -0,0 +1,92 @@
+package com.pcProject.ecomUsers.service;
+
+import com.pcProject.ecomUsers.repository.ProcessedEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Cost of the duplicate check a listener pays per record, for new records, for a replay of recent ones answered from
+// memory and for a replay after a restart answered by the table. Rough figures on the H2 test database, the repo has
+// no benchmark harness
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("benchmark")
+class ProcessedEventStoreBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessedEventStoreBenchmarkTest.class);
+    private static final int EVENTS = 100_000;
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private ProcessedEventRepository processedEventRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        processedEventRepo.deleteAllInBatch();
+    }
+
+    @Test
+    void claim_Benchmark_NewRecentAndRestartedReplays() {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < EVENTS / BATCH_SIZE; i++) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = 0; j < BATCH_SIZE; j++)
+                batch.add(UUID.randomUUID().toString());
+            batches.add(batch);
+        }
+        ProcessedEventStore store = new ProcessedEventStore(processedEventRepo, EVENTS, 168);
+
+        long newNanos = time(() -> batches.forEach(batch -> assertEquals(BATCH_SIZE, claim(store, batch))));
+        long recentNanos = time(() -> batches.forEach(batch -> assertEquals(0, claim(store, batch))));
+        ProcessedEventStore restarted = new ProcessedEventStore(processedEventRepo, EVENTS, 168);
+        long restartedNanos = time(() -> batches.forEach(batch -> assertEquals(0, claim(restarted, batch))));
+
+        String missingId = UUID.randomUUID().toString();
+        String recentId = batches.get(batches.size() - 1).get(0);
+        int checks = 1_000_000;
+        long hitNanos = time(() -> {
+            for (int i = 0; i < checks; i++)
+                store.isRecent(recentId);
+        });
+        long missNanos = time(() -> {
+            for (int i = 0; i < checks; i++)
+                store.isRecent(missingId);
+        });
+
+        log.info("{} events in batches of {} : new {} ns/event, replay of recent events {} ns/event, replay after a restart {} ns/event",
+                EVENTS, BATCH_SIZE, newNanos / EVENTS, recentNanos / EVENTS, restartedNanos / EVENTS);
+        log.info("In-memory check with {} ids held : hit {} ns/op, miss {} ns/op", EVENTS, hitNanos / checks, missNanos / checks);
+        assertEquals(EVENTS, processedEventRepo.count());
+    }
+
+    private int claim(ProcessedEventStore store, List<String> batch) {
+        Integer claimed = new TransactionTemplate(transactionManager).execute(status -> store.claim(batch, eventId -> eventId).size());
+        return claimed == null ? 0 : claimed;
+    }
+
+    private static long time(Runnable run) {
+        long start = System.nanoTime();
+        run.run();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,165 @@
+package com.pcProject.ecomUsers.service;
+
+import com.pcProject.ecomUsers.model.OrderDetailsWrapper;
+import com.pcProject.ecomUsers.model.ProcessedEvent;
+import com.pcProject.ecomUsers.model.UserDetails;
+import com.pcProject.ecomUsers.model.UserProductDetails;
+import com.pcProject.ecomUsers.repository.ProcessedEventRepository;
+import com.pcProject.ecomUsers.repository.UserDetailsRepo;
+import com.pcProject.ecomUsers.repository.UserProductDetailsRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Records delivered again the way Kafka does after a rebalance, against the real tables
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProcessedEventStore.class, UserDetailsService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProcessedEventStoreTest {
+
+    private static final String TEST_USER = "replayUser";
+    private static final String TEST_PRODUCT = "replayProduct";
+
+    @Autowired
+    private ProcessedEventRepository processedEventRepo;
+    @Autowired
+    private UserDetailsService userDetailsService;
+    @Autowired
+    private UserDetailsRepo userRepo;
+    @Autowired
+    private UserProductDetailsRepo userProductRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    // Its own ids in memory, the listeners' store keeps them across tests
+    private ProcessedEventStore processedEventStore;
+
+    @BeforeEach
+    void setUp() {
+        processedEventStore = new ProcessedEventStore(processedEventRepo, 100, 168);
+        userRepo.save(new UserDetails(0, TEST_USER, "test_password", List.of("USER"), "replay@test.com", 0));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        processedEventRepo.deleteAll();
+        userProductRepo.deleteAll();
+        userRepo.deleteAll();
+    }
+
+    @Test
+    void claim_WhenBatchIsReplayed_ShouldOnlyReturnTheNewEvents() {
+        claimInTransaction(processedEventStore, List.of("event-1", "event-2"));
+
+        assertEquals(List.of("event-3"), claimInTransaction(processedEventStore, List.of("event-1", "event-2", "event-3")));
+    }
+
+    @Test
+    void claim_WhenReplayedAfterARestart_ShouldFindTheEventsInTheTable() {
+        claimInTransaction(processedEventStore, List.of("event-1", "event-2"));
+        ProcessedEventStore restarted = new ProcessedEventStore(processedEventRepo, 100, 168);
+
+        assertFalse(restarted.isRecent("event-1"));
+        assertEquals(List.of("event-3"), claimInTransaction(restarted, List.of("event-1", "event-3", "event-2")));
+    }
+
+    @Test
+    void claim_WhenBatchHasTheSameEventTwice_ShouldKeepTheFirst() {
+        assertEquals(List.of("event-1", "event-2"), claimInTransaction(processedEventStore, List.of("event-1", "event-2", "event-1")));
+    }
+
+    @Test
+    void claim_WhenEventsHaveNoId_ShouldAlwaysKeepThem() {
+        List<OrderDetailsWrapper> orders = Arrays.asList(new OrderDetailsWrapper(1, TEST_USER, TEST_PRODUCT), null);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                assertEquals(orders, processedEventStore.claim(orders, OrderDetailsWrapper::getEventId)));
+        assertTrue(processedEventStore.claim((String) null));
+        assertEquals(0, processedEventRepo.count());
+    }
+
+    @Test
+    void claim_WhenTransactionRollsBack_ShouldClaimTheEventAgain() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertTrue(processedEventStore.claim("event-1"));
+            status.setRollbackOnly();
+        });
+
+        assertFalse(processedEventStore.isRecent("event-1"));
+        assertEquals(List.of("event-1"), claimInTransaction(processedEventStore, List.of("event-1")));
+        assertTrue(processedEventStore.isRecent("event-1"));
+    }
+
+    @Test
+    void purgeExpired_ShouldOnlyDropEventsOlderThanTheRetention() {
+        long now = System.currentTimeMillis();
+        processedEventRepo.saveAll(List.of(new ProcessedEvent("expired", now - Duration.ofHours(169).toMillis()),
+                new ProcessedEvent("kept", now - Duration.ofHours(1).toMillis())));
+
+        processedEventStore.purgeExpired();
+
+        assertEquals(List.of("kept"), processedEventRepo.findAll().stream().map(ProcessedEvent::getEventId).toList());
+    }
+
+    @Test
+    void kafkaConsumer_AddUserProduct_WhenBatchIsReplayed_ShouldAddAndConfirmOnce() {
+        List<OrderDetailsWrapper> batch = List.of(
+                new OrderDetailsWrapper(1, TEST_USER, TEST_PRODUCT, "add-1"),
+                new OrderDetailsWrapper(2, TEST_USER, TEST_PRODUCT, "add-2"));
+
+        userDetailsService.kafkaConsumer_AddUserProduct(batch);
+        userDetailsService.kafkaConsumer_AddUserProduct(batch);
+        // The rebalance moved the partition, the next poll starts before the last order
+        userDetailsService.kafkaConsumer_AddUserProduct(List.of(batch.get(1), new OrderDetailsWrapper(3, TEST_USER, TEST_PRODUCT, "add-3")));
+
+        assertEquals(3, userProductRepo.findAllByUserNameOrderByUserProductId(TEST_USER).get(0).getProductQuantity());
+        verify(kafkaTemplate, times(3)).send(eq("ecomUserService_addUserProduct"), eq(TEST_USER), any());
+    }
+
+    @Test
+    void kafkaConsumer_removeUserProduct_WhenBatchIsReplayed_ShouldRemoveOnce() {
+        userProductRepo.save(new UserProductDetails(0, TEST_USER, TEST_PRODUCT, 3));
+        List<OrderDetailsWrapper> batch = List.of(new OrderDetailsWrapper(1, TEST_USER, TEST_PRODUCT, "remove-1"));
+
+        userDetailsService.kafkaConsumer_removeUserProduct(batch);
+        userDetailsService.kafkaConsumer_removeUserProduct(batch);
+
+        assertEquals(2, userProductRepo.findAllByUserNameOrderByUserProductId(TEST_USER).get(0).getProductQuantity());
+        verify(kafkaTemplate, times(0)).send(anyString(), anyString(), any());
+    }
+
+    private List<String> claimInTransaction(ProcessedEventStore store, List<String> eventIds) {
+        List<String> claimed = new ArrayList<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                claimed.addAll(store.claim(eventIds, eventId -> eventId)));
+        return claimed;
+    }
+}
@@ -4,22 +4,28 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import com.pcProject.ecomUsers.model.OrderDetailsWrapper;
 import com.pcProject.ecomUsers.model.UserDetails;
+import com.pcProject.ecomUsers.model.UserExistence;
+import com.pcProject.ecomUsers.model.UserProductDetails;
 import com.pcProject.ecomUsers.model.UserProducts;
 import com.pcProject.ecomUsers.model.UserProductsResponse;
 import com.pcProject.ecomUsers.repository.UserDetailsRepo;
+import com.pcProject.ecomUsers.repository.UserProductDetailsRepo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,20 +36,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 @ExtendWith(MockitoExtension.class)
 public class UserDetailsServiceTest {
 
     @Mock
     private UserDetailsRepo userRepo;
 
+    @Mock
+    private UserProductDetailsRepo userProductRepo;
+
     @Mock
     private KafkaTemplate<String, Object> kafkaTemplate;
 
     @Mock
-    private ObjectMapper mockObjectMapper;
+    private ProcessedEventStore processedEventStore;
 
     @InjectMocks
     private UserDetailsService userDetailsService;
@@ -57,7 +63,8 @@ public class UserDetailsServiceTest {
         existingUser = new UserDetails();
         existingUser.setUserName(TEST_USER);
         existingUser.setUserPassword("test_password");
-        existingUser.setUserProductNames(new ArrayList<>(Arrays.asList(TEST_PRODUCT)));
+        // Every event is new unless a test says otherwise
+        lenient().when(processedEventStore.claim(anyList(), any())).thenAnswer(invocation -> invocation.getArgument(0));
     }
 
     // --- getAllUserProducts Branch Coverage ---
@@ -73,64 +80,137 @@ public class UserDetailsServiceTest {
     @Test
     void getAllUserProducts_WhenUserExists_ShouldReturnProductList() {
         when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.findAllByUserNameOrderByUserProductId(TEST_USER)).thenReturn(List.of(new UserProductDetails(1, TEST_USER, TEST_PRODUCT, 1)));
         ResponseEntity<UserProductsResponse<List<String>>> response = userDetailsService.getAllUserProducts(TEST_USER);
         assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
         assertEquals(1, response.getBody().getData().size());
     }
 
+    @Test
+    void getAllUserProducts_WhenProductOrderedSeveralTimes_ShouldRepeatItInList() {
+        when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.findAllByUserNameOrderByUserProductId(TEST_USER)).thenReturn(List.of(
+                new UserProductDetails(1, TEST_USER, TEST_PRODUCT, 2),
+                new UserProductDetails(2, TEST_USER, "OtherProduct", 1)));
+        ResponseEntity<UserProductsResponse<List<String>>> response = userDetailsService.getAllUserProducts(TEST_USER);
+        assertEquals(Arrays.asList(TEST_PRODUCT, TEST_PRODUCT, "OtherProduct"), response.getBody().getData());
+    }
+
     // --- kafkaConsumer_AddUserProduct Branch Coverage ---
 
     @Test
-    void kafkaConsumer_AddUserProduct_WhenValidInput_ShouldSaveAndSendKafkaMessage() throws JsonProcessingException, InterruptedException {
-        String json = "{\"userName\":\"test-userName\", \"productName\":\"NewProduct\"}";
+    void kafkaConsumer_AddUserProduct_WhenValidInput_ShouldSaveAndSendKafkaMessage() {
         OrderDetailsWrapper wrapper = new OrderDetailsWrapper();
         wrapper.setUserName(TEST_USER);
         wrapper.setProductName("NewProduct");
 
-        // Use a real mapper or mock it to return our wrapper
-        when(mockObjectMapper.readValue(eq(json), eq(OrderDetailsWrapper.class))).thenReturn(wrapper);
-        when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userRepo.findByUserNameForUpdate(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.addProductQuantity(TEST_USER, "NewProduct", 1)).thenReturn(0);
 
-        userDetailsService.kafkaConsumer_AddUserProduct(json);
+        userDetailsService.kafkaConsumer_AddUserProduct(List.of(wrapper));
 
-        verify(userRepo, times(1)).save(existingUser);
-        verify(kafkaTemplate, times(1)).send(eq("ecomUserService_addUserProduct"), any());
-        assertEquals(2, existingUser.getUserProductNames().size());
+        verify(userProductRepo, times(1)).save(new UserProductDetails(0, TEST_USER, "NewProduct", 1));
+        verify(userRepo, never()).save(any());
+        verify(kafkaTemplate, times(1)).send(eq("ecomUserService_addUserProduct"), eq(TEST_USER), any());
+        verify(kafkaTemplate, times(1)).flush();
+    }
+
+    @Test
+    void kafkaConsumer_AddUserProduct_WhenBatchHasSeveralOrdersOfAUser_ShouldLockOnceAndAddQuantity() {
+        List<OrderDetailsWrapper> records = List.of(
+                new OrderDetailsWrapper(1, TEST_USER, TEST_PRODUCT),
+                new OrderDetailsWrapper(2, TEST_USER, "NewProduct"),
+                new OrderDetailsWrapper(3, TEST_USER, TEST_PRODUCT),
+                new OrderDetailsWrapper(4, "unknown-user", TEST_PRODUCT));
+        when(userRepo.findByUserNameForUpdate(TEST_USER)).thenReturn(existingUser);
+        when(userRepo.findByUserNameForUpdate("unknown-user")).thenReturn(null);
+        when(userProductRepo.addProductQuantity(TEST_USER, TEST_PRODUCT, 2)).thenReturn(1);
+        when(userProductRepo.addProductQuantity(TEST_USER, "NewProduct", 1)).thenReturn(0);
+
+        userDetailsService.kafkaConsumer_AddUserProduct(records);
+
+        verify(userRepo, times(1)).findByUserNameForUpdate(TEST_USER);
+        verify(userProductRepo).save(new UserProductDetails(0, TEST_USER, "NewProduct", 1));
+        // Orders of the unknown User are dropped, the other three are placed keyed by their User with one flush
+        verify(kafkaTemplate, times(3)).send(eq("ecomUserService_addUserProduct"), eq(TEST_USER), any());
+        verify(kafkaTemplate, times(1)).flush();
+    }
+
+    @Test
+    void kafkaConsumer_AddUserProduct_WhenBatchWasProcessedAlready_ShouldSendNothing() {
+        List<OrderDetailsWrapper> replayed = List.of(new OrderDetailsWrapper(1, TEST_USER, TEST_PRODUCT, "event-1"));
+        when(processedEventStore.claim(eq(replayed), any())).thenReturn(List.of());
+
+        userDetailsService.kafkaConsumer_AddUserProduct(replayed);
+
+        verify(userRepo, never()).findByUserNameForUpdate(anyString());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void kafkaConsumer_AddUserProduct_WhenRecordFailedDeserialization_ShouldSkipItAndSendNothing() {
+        // ErrorHandlingDeserializer hands a batch listener null for a record it couldn't read
+        userDetailsService.kafkaConsumer_AddUserProduct(Collections.singletonList(null));
+
+        verify(userRepo, never()).findByUserNameForUpdate(anyString());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+        verify(kafkaTemplate, never()).flush();
     }
 
     // --- addUserProduct Branch Coverage ---
 
     @Test
     void addUserProduct_WhenUserDoesNotExist_ShouldReturnBadRequestInBody() {
-        when(userRepo.findByUserName(TEST_USER)).thenReturn(null);
+        when(userRepo.findByUserNameForUpdate(TEST_USER)).thenReturn(null);
         ResponseEntity<UserProductsResponse<UserProducts>> response = userDetailsService.addUserProduct(TEST_USER, TEST_PRODUCT);
         assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
     }
 
     @Test
     void addUserProduct_WhenUserExists_ShouldAddProductAndSave() {
-        when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userRepo.findByUserNameForUpdate(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.addProductQuantity(TEST_USER, "NewProduct", 1)).thenReturn(0);
         ResponseEntity<UserProductsResponse<UserProducts>> response = userDetailsService.addUserProduct(TEST_USER, "NewProduct");
         assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
-        verify(userRepo).save(existingUser);
+        verify(userProductRepo).save(new UserProductDetails(0, TEST_USER, "NewProduct", 1));
+    }
+
+    @Test
+    void addUserProduct_WhenProductAlreadyOrdered_ShouldOnlyIncrementQuantity() {
+        when(userRepo.findByUserNameForUpdate(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.addProductQuantity(TEST_USER, TEST_PRODUCT, 1)).thenReturn(1);
+        ResponseEntity<UserProductsResponse<UserProducts>> response = userDetailsService.addUserProduct(TEST_USER, TEST_PRODUCT);
+        assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+        verify(userProductRepo, never()).save(any());
     }
 
     // --- kafkaConsumer_removeUserProduct Branch Coverage ---
 
     @Test
-    void kafkaConsumer_removeUserProduct_WhenValidInput_ShouldRemoveAndSave() throws JsonProcessingException {
-        String json = "{\"userName\":\"test-userName\", \"productName\":\"test-productName\"}";
+    void kafkaConsumer_removeUserProduct_WhenValidInput_ShouldRemoveAndSave() {
         OrderDetailsWrapper wrapper = new OrderDetailsWrapper();
         wrapper.setUserName(TEST_USER);
         wrapper.setProductName(TEST_PRODUCT);
 
-        when(mockObjectMapper.readValue(eq(json), eq(OrderDetailsWrapper.class))).thenReturn(wrapper);
-        when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.decrementProductQuantity(TEST_USER, TEST_PRODUCT, 1)).thenReturn(0);
+        when(userProductRepo.deleteLastProductQuantity(TEST_USER, TEST_PRODUCT, 1)).thenReturn(1);
 
-        userDetailsService.kafkaConsumer_removeUserProduct(json);
+        userDetailsService.kafkaConsumer_removeUserProduct(List.of(wrapper));
 
-        assertEquals(0, existingUser.getUserProductNames().size());
-        verify(userRepo).save(existingUser);
+        verify(userProductRepo).deleteLastProductQuantity(TEST_USER, TEST_PRODUCT, 1);
+        verify(userRepo, never()).save(any());
+    }
+
+    @Test
+    void kafkaConsumer_removeUserProduct_WhenBatchRemovesAProductTwice_ShouldRemoveBothInOneStatement() {
+        when(userProductRepo.decrementProductQuantity(TEST_USER, TEST_PRODUCT, 2)).thenReturn(1);
+
+        userDetailsService.kafkaConsumer_removeUserProduct(List.of(
+                new OrderDetailsWrapper(1, TEST_USER, TEST_PRODUCT),
+                new OrderDetailsWrapper(2, TEST_USER, TEST_PRODUCT)));
+
+        verify(userProductRepo, times(1)).decrementProductQuantity(TEST_USER, TEST_PRODUCT, 2);
+        verify(userProductRepo, never()).deleteLastProductQuantity(anyString(), anyString(), anyInt());
     }
 
     // --- removeUserProduct Branch Coverage ---
@@ -145,6 +225,8 @@ public class UserDetailsServiceTest {
     @Test
     void removeUserProduct_WhenProductNotInList_ShouldReturnBadRequestInBody() {
         when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.decrementProductQuantity(TEST_USER, "NonExistentProduct", 1)).thenReturn(0);
+        when(userProductRepo.deleteLastProductQuantity(TEST_USER, "NonExistentProduct", 1)).thenReturn(0);
         ResponseEntity<UserProductsResponse<UserProducts>> response = userDetailsService.removeUserProduct(TEST_USER, "NonExistentProduct");
         assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
         assertEquals("Could not find the Product in Order List", response.getBody().getMessage());
@@ -153,9 +235,10 @@ public class UserDetailsServiceTest {
     @Test
     void removeUserProduct_WhenProductInList_ShouldRemoveAndReturnOk() {
         when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.decrementProductQuantity(TEST_USER, TEST_PRODUCT, 1)).thenReturn(1);
         ResponseEntity<UserProductsResponse<UserProducts>> response = userDetailsService.removeUserProduct(TEST_USER, TEST_PRODUCT);
         assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
-        verify(userRepo).save(existingUser);
+        verify(userProductRepo, never()).deleteLastProductQuantity(anyString(), anyString(), anyInt());
     }
 
     // --- validateUserProduct Branch Coverage ---
@@ -170,6 +253,7 @@ public class UserDetailsServiceTest {
     @Test
     void validateUserProduct_WhenProductDoesNotExistInList_ShouldReturnBadRequestInBody() {
         when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.existsByUserNameAndProductName(TEST_USER, "WrongProduct")).thenReturn(false);
         ResponseEntity<UserProductsResponse<UserProducts>> response = userDetailsService.validateUserProduct(TEST_USER, "WrongProduct");
         assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
     }
@@ -177,6 +261,7 @@ public class UserDetailsServiceTest {
     @Test
     void validateUserProduct_WhenEverythingIsValid_ShouldReturnSuccess() {
         when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
+        when(userProductRepo.existsByUserNameAndProductName(TEST_USER, TEST_PRODUCT)).thenReturn(true);
         ResponseEntity<UserProductsResponse<UserProducts>> response = userDetailsService.validateUserProduct(TEST_USER, TEST_PRODUCT);
         assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
         assertEquals("Validation Successful", response.getBody().getMessage());
@@ -221,6 +306,7 @@ public class UserDetailsServiceTest {
         ResponseEntity<?> response = (ResponseEntity<?>) userDetailsService.addUserProfile(existingUser);
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         verify(userRepo).save(existingUser);
+        verify(kafkaTemplate).send(UserDetailsService.USER_CHANGED_TOPIC, TEST_USER, new UserExistence(TEST_USER, true));
     }
 
     @Test
@@ -243,6 +329,7 @@ public class UserDetailsServiceTest {
         when(userRepo.findByUserName(TEST_USER)).thenReturn(null);
         ResponseEntity<?> response = (ResponseEntity<?>) userDetailsService.deleteUserProfile(TEST_USER);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 
     @Test
@@ -250,7 +337,9 @@ public class UserDetailsServiceTest {
         when(userRepo.findByUserName(TEST_USER)).thenReturn(existingUser);
         ResponseEntity<?> response = (ResponseEntity<?>) userDetailsService.deleteUserProfile(TEST_USER);
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(userProductRepo).deleteAllByUserName(TEST_USER);
         verify(userRepo).deleteByUserName(TEST_USER);
+        verify(kafkaTemplate).send(UserDetailsService.USER_CHANGED_TOPIC, TEST_USER, new UserExistence(TEST_USER, false));
     }
 
     @Test
@@ -0,0 +1,129 @@
+package com.pcProject.ecomUsers.service;
+
+import com.pcProject.ecomUsers.model.UserDetails;
+import com.pcProject.ecomUsers.model.UserProductDetails;
+import com.pcProject.ecomUsers.repository.UserDetailsRepo;
+import com.pcProject.ecomUsers.repository.UserProductDetailsRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The element collection table the User's Products were kept in before user_product_details, created by hand
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({IdSequenceMigration.class, UserProductMigration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserProductMigrationTest {
+
+    private static final String TEST_USER = "legacyUser";
+
+    @Autowired
+    private UserProductMigration userProductMigration;
+    @Autowired
+    private UserDetailsRepo userRepo;
+    @Autowired
+    private UserProductDetailsRepo userProductRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userRepo.save(new UserDetails(0, TEST_USER, "test_password", List.of("USER"), "legacy@test.com", 0)).getUserId();
+        jdbcTemplate.execute("Create table " + UserProductMigration.LEGACY_TABLE + " (user_details_user_id integer not null, user_product_names varchar(255))");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("Drop table if exists " + UserProductMigration.LEGACY_TABLE);
+        userProductRepo.deleteAll();
+        userRepo.deleteAll();
+    }
+
+    @Test
+    void migrateLegacyUserProducts_ShouldAggregateTheUnitsIntoQuantities() {
+        insertLegacyRows("laptop", "laptop", "laptop", "mouse");
+
+        userProductMigration.migrateLegacyUserProducts();
+
+        assertEquals(Map.of("laptop", 3, "mouse", 1), quantitiesOf(TEST_USER));
+        assertEquals(0, jdbcTemplate.queryForObject("Select count(*) from " + UserProductMigration.LEGACY_TABLE, Integer.class));
+    }
+
+    @Test
+    void migrateLegacyUserProducts_WhenTheProductIsAlreadyInTheNewTable_ShouldAddTheUnits() {
+        userProductRepo.save(new UserProductDetails(0, TEST_USER, "laptop", 2));
+        insertLegacyRows("laptop");
+
+        userProductMigration.migrateLegacyUserProducts();
+
+        assertEquals(Map.of("laptop", 3), quantitiesOf(TEST_USER));
+    }
+
+    @Test
+    void migrateLegacyUserProducts_WhenRunAgain_ShouldNotCopyTwice() {
+        insertLegacyRows("laptop", "laptop");
+
+        userProductMigration.migrateLegacyUserProducts();
+        userProductMigration.migrateLegacyUserProducts();
+
+        assertEquals(Map.of("laptop", 2), quantitiesOf(TEST_USER));
+    }
+
+    @Test
+    void migrateLegacyUserProducts_WhenReplicasStartTogether_ShouldCopyTheUnitsOnce() throws Exception {
+        for (int i = 0; i < 200; i++)
+            insertLegacyRows("laptop", "mouse");
+        int replicas = 4;
+        CyclicBarrier start = new CyclicBarrier(replicas);
+        ExecutorService executor = Executors.newFixedThreadPool(replicas);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int i = 0; i < replicas; i++) {
+                runs.add(executor.submit(() -> {
+                    start.await(5, TimeUnit.SECONDS);
+                    userProductMigration.migrateLegacyUserProducts();
+                    return null;
+                }));
+            }
+            for (Future<?> run : runs)
+                run.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Map.of("laptop", 200, "mouse", 200), quantitiesOf(TEST_USER));
+    }
+
+    private void insertLegacyRows(String... productNames) {
+        for (String productName : productNames)
+            jdbcTemplate.update("Insert into " + UserProductMigration.LEGACY_TABLE + " values (?, ?)", userId, productName);
+    }
+
+    private Map<String, Integer> quantitiesOf(String userName) {
+        return userProductRepo.findAllByUserNameOrderByUserProductId(userName).stream()
+                .collect(Collectors.toMap(UserProductDetails::getProductName, UserProductDetails::getProductQuantity));
+    }
+}